@@ -378,20 +378,45 @@ public class MLPacFeatureExtractor {
 		return features;
 	}
 	
+	// The features which are set by extractFeaturesFromSearchResult
+	private static final PacFeature[] SEARCH_RESULT_FEATURES = {
+			PacFeature.GENERATED, PacFeature.EXPANDED, PacFeature.ROPENED, PacFeature.COST,
+			PacFeature.G_0, PacFeature.H_0, PacFeature.G_1, PacFeature.H_1, PacFeature.G_2, PacFeature.H_2,
+			PacFeature.W};
+	// The g and h features of the first nodes on the found path
+	private static final PacFeature[] PREFIX_G_FEATURES = {PacFeature.G_0, PacFeature.G_1, PacFeature.G_2};
+	private static final PacFeature[] PREFIX_H_FEATURES = {PacFeature.H_0, PacFeature.H_1, PacFeature.H_2};
+
 	public static Map<PacFeature,Double> extractFeaturesFromSearchResult(SearchResult b){
+		double[] values = new double[PacFeature.values().length];
+		extractFeaturesFromSearchResult(b, values);
+
 		Map<PacFeature,Double> features = new HashMap<>();
+		for (PacFeature feature : SEARCH_RESULT_FEATURES) {
+			features.put(feature, values[feature.ordinal()]);
+		}
+		return features;
+	}
 
+	/**
+	 * Same as extractFeaturesFromSearchResult, but writes the features into the given array (indexed by the ordinals
+	 * of the features) instead of allocating a map - used by the PAC conditions, which extract the features of every
+	 * incumbent solution
+	 *
+	 * @param b The search result
+	 * @param features The array to write the features into (of size PacFeature.values().length)
+	 */
+	public static void extractFeaturesFromSearchResult(SearchResult b, double[] features){
 		// "generated,expanded,reopened,cost,g1,h1,g2,h2,g3,h3,w,is-W-opt"
 
-		features.put(PacFeature.GENERATED, new Double(b.getGenerated()));
-		features.put(PacFeature.EXPANDED, new Double(b.getExpanded()));
-		features.put(PacFeature.ROPENED, new Double(b.getReopened()));
-
-		Double U = b.getBestSolution().getCost();
-		features.put(PacFeature.COST, new Double(U));
+		features[PacFeature.GENERATED.ordinal()] = b.getGenerated();
+		features[PacFeature.EXPANDED.ordinal()] = b.getExpanded();
+		features[PacFeature.ROPENED.ordinal()] = b.getReopened();
 
 		// Get h and g values of the first nodes on the found path
 		SearchResult.Solution solution = b.getBestSolution();
+		features[PacFeature.COST.ordinal()] = solution.getCost();
+
 		double g=0.0;
 		SearchDomain.State parent = null;
 		SearchDomain.State current;
@@ -410,20 +435,18 @@ public class MLPacFeatureExtractor {
 			}
 			h=current.getH();
 
-			features.put(PacFeature.getPacFeature("h_" + i), h);
-			features.put(PacFeature.getPacFeature("g_" + i), g);
+			features[PREFIX_H_FEATURES[i].ordinal()] = h;
+			features[PREFIX_G_FEATURES[i].ordinal()] = g;
 
 			parent = current;
 		}
 		while(i<maxPrefix){
-			features.put(PacFeature.getPacFeature("h_" + i), -1.0);
-			features.put(PacFeature.getPacFeature("g_" + i), -1.0);
+			features[PREFIX_H_FEATURES[i].ordinal()] = -1.0;
+			features[PREFIX_G_FEATURES[i].ordinal()] = -1.0;
 			i++;
 		}
 
-		features.put(PacFeature.W, 1.0 + (Double) b.getExtras().get("epsilon"));
-
-		return features;
+		features[PacFeature.W.ordinal()] = 1.0 + (Double) b.getExtras().get("epsilon");
 	}
 
 	public static String getHeaderLineFeatures() {
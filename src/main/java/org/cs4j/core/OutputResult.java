@@ -3,13 +3,14 @@ package org.cs4j.core;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.FileAlreadyExistsException;
 
 public class OutputResult {
 	private String basicResultsPath;
 	public String fname;
 
-	private FileWriter writer;
+	private Writer writer;
 	private StringBuilder currentResult;
 
 	/**
@@ -156,6 +157,18 @@ public class OutputResult {
 		this(null, wg, wh, reopen);
 	}
 
+	/**
+	 * Creates an output result which writes into the given writer (e.g. in order to buffer the results of a
+	 * single run in memory)
+	 *
+	 * @param writer
+	 *            The writer to write the results into
+	 */
+	public OutputResult(Writer writer) {
+		this.writer = writer;
+		this.currentResult = new StringBuilder();
+	}
+
 	/**
 	 * @return The prefix of the results file
 	 */
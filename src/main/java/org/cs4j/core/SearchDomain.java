@@ -77,6 +77,23 @@ public interface SearchDomain extends SearchConfigurable {
      */
     State applyOperator(State state, Operator op);
 
+    /**
+     * Applies the specified operator to the specified state and writes the result into the given buffer, in order to
+     * avoid allocating a state per generated child.
+     *
+     * The buffer must be null or a state which was returned by this domain (it must not be the given state), and its
+     * previous content is lost. Domains which don't support buffers return a new state, hence the returned state
+     * should always be used.
+     *
+     * @param state the state
+     * @param op the operator
+     * @param buffer a state which may be overwritten (or null)
+     * @return the new state (usually, the buffer)
+     */
+    default State applyOperator(State state, Operator op, State buffer) {
+        return this.applyOperator(state, op);
+    }
+
     /**
      * Returns a copy of the specified state.
      *
@@ -101,6 +118,53 @@ public interface SearchDomain extends SearchConfigurable {
      */
     State unpack(PackedElement packed);
 
+    /**
+     * Unpacks the specified packed representation into the given buffer (see applyOperator(State, Operator, State)).
+     *
+     * @param packed the long representation
+     * @param buffer a state which may be overwritten (or null)
+     * @return the unpacked state (usually, the buffer)
+     */
+    default State unpack(PackedElement packed, State buffer) {
+        return this.unpack(packed);
+    }
+
+    /**
+     * Creates a copy of the domain which can be used by another thread: the states and operators of a domain are
+     * usually not thread-safe (e.g. the heuristic calculation may use scratch arrays of the domain), while the large
+     * read-only data (e.g. PDBs) can be shared by the copies.
+     *
+     * The states of the copy are compatible with the states of this domain through pack and unpack.
+     *
+     * @return the copy, or null if the domain doesn't support copying (see supportsCopyForThread)
+     */
+    default SearchDomain copyForThread() {
+        return null;
+    }
+
+    /**
+     * @return whether the domain can be copied for other threads (see copyForThread) - this query doesn't copy anything
+     */
+    default boolean supportsCopyForThread() {
+        return false;
+    }
+
+    /**
+     * Creates the domain of a backward search (a search from the goal towards the initial state, e.g. by a
+     * bidirectional search): the initial state of the returned domain is the goal of this domain, its goal is the
+     * initial state of this domain, and its heuristic estimates the cost of reaching a state from the initial state of
+     * this domain.
+     *
+     * The moves of both domains must be reversible, and their states are packed into the same representation (a state
+     * which is packed by one domain can be unpacked by the other).
+     *
+     * @return the backward domain, or null if the domain doesn't support backward searches (e.g. it has more than a
+     *         single goal, or its heuristic can only estimate the cost of reaching its goal)
+     */
+    default SearchDomain createBackwardDomain() {
+        return null;
+    }
+
 
     /**
      * This function allows to dump a collection of states based on the domain (e.g. dump all the states of a
@@ -11,8 +11,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Created by Roni Stern on 23/02/2017.
@@ -20,17 +23,51 @@ import java.util.Map;
 public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
     final static Logger logger = Logger.getLogger(AbstractAnytimeSearch.class);
 
+    protected static final Map<String, Class> AnytimeSearchPossibleParameters;
+
+    // Declare the parameters that can be tuned before running the search
+    static
+    {
+        AnytimeSearchPossibleParameters = new HashMap<>();
+        AbstractAnytimeSearch.AnytimeSearchPossibleParameters.put("closed-impl", String.class);
+        AbstractAnytimeSearch.AnytimeSearchPossibleParameters.put("node-store", Boolean.class);
+        AbstractAnytimeSearch.AnytimeSearchPossibleParameters.put("heap-type", String.class);
+        AbstractAnytimeSearch.AnytimeSearchPossibleParameters.put("bucket-scale", Double.class);
+        AbstractAnytimeSearch.AnytimeSearchPossibleParameters.put("bucket-lifo", Boolean.class);
+    }
+
     // The domain to which the search problem belongs
     protected SearchDomain domain;
+    // Reusable states for the expansions (no state is allocated per generated node)
+    protected ExpansionBuffers buffers;
 
     // OPEN and CLOSED lists
 //    protected SearchQueue<Node> open;
     protected SearchQueue<AnytimeSearchNode> open;//gh_heap
-
-    protected Map<PackedElement, AnytimeSearchNode> closed;
-
-    // Inconsistent list
+    // The type of OPEN (see WAStar.HeapType), the number of buckets per unit of cost, and the order of nodes with the
+    // same rank and g (in a bucket heap)
+    protected WAStar.HeapType heapType;
+    protected double bucketScale;
+    protected boolean bucketLifo;
+
+    protected ClosedList<AnytimeSearchNode> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    protected ClosedListType closedListType;
+
+    // Whether to keep the nodes in a struct-of-arrays NodeStore (which serves as CLOSED) instead of
+    // an AnytimeSearchNode object per state. In this mode OPEN is the storeOpen heap
+    protected boolean useNodeStore;
+    protected NodeStore store;
+    protected NodeStoreHeap storeOpen;
+    // The ids of the nodes of the store whose states are in the two unpacked slots of the buffers, and their states
+    // (see _unpackStoreNode)
+    private int[] unpackedStoreNodes;
+    private SearchDomain.State[] unpackedStoreStates;
+
+    // Inconsistent list (the nodes which were improved while closed, if reopening isn't allowed), and its equivalent
+    // in the node-store mode (by the ids of the nodes)
     protected Map<PackedElement, AnytimeSearchNode> incons;
+    protected Set<Integer> storeIncons;
 
     // The search results encompasses all the iterations run so far
     protected SearchResultImpl totalSearchResults;
@@ -49,7 +86,7 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
 
 
     // A data structure to maintain minf. @TODO: Allow disabling this for Anytime algorithms that don't care about this
-    protected HashMap<Double, Integer> fCounter = new HashMap<Double,Integer>();
+    protected FValueHistogram fCounter = new FValueHistogram();
     protected double maxFmin; // The maximal fmin observed so far. This is a lower bound on the optimal cost
 
     // The minimal f value currently in the open list.
@@ -60,6 +97,11 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
     public AbstractAnytimeSearch() {
         // Initial values (afterwards they can be set independently)
         this.reopen = true;
+        this.closedListType = ClosedListType.HASH;
+        this.useNodeStore = false;
+        this.heapType = WAStar.HeapType.BIN;
+        this.bucketScale = 1;
+        this.bucketLifo = true;
     }
 
     @Override
@@ -76,10 +118,30 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
      */
     protected void _initDataStructures(boolean clearOpen, boolean clearClosed) {
         if (clearOpen) {
-            this.open = new BinHeap<AnytimeSearchNode>(this.createNodeComparator(), 0);
+            ToDoubleFunction<AnytimeSearchNode> bucketRank = null;
+            if (this.heapType == WAStar.HeapType.BUCKET) {
+                bucketRank = this.createBucketRank();
+                if (bucketRank == null) {
+                    System.out.println("[WARNING] " + this.getName() + " doesn't support a bucket OPEN (its priority " +
+                            "can't be bucketed exactly), using a binary heap");
+                }
+            }
+            if (bucketRank != null) {
+                this.open = new BucketHeap<AnytimeSearchNode>(100, 0, this.bucketScale, this.bucketLifo, bucketRank);
+            } else {
+                this.open = new BinHeap<AnytimeSearchNode>(this.createNodeComparator(), 0);
+            }
         }
         if (clearClosed) {
-            this.closed = new HashMap<>();
+            this.closed = this.closedListType.create();
+            this.incons = new HashMap<>();
+        }
+        if (this.useNodeStore && clearClosed) {
+            this.store = new NodeStore();
+            this.storeOpen = new NodeStoreHeap(this.store);
+            this.storeIncons = new HashSet<>();
+            this.unpackedStoreNodes = new int[]{NodeStore.NO_NODE, NodeStore.NO_NODE};
+            this.unpackedStoreStates = new SearchDomain.State[2];
         }
         this.fCounter.clear();
         this.totalSearchResults=null;
@@ -96,6 +158,42 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
      */
     abstract protected Comparator<AnytimeSearchNode> createNodeComparator();
 
+    /**
+     * Create the priority of the nodes in a bucket OPEN - the equivalent of the node comparator (smaller is expanded
+     * first, and ties are broken in favor of higher g values). The bucket heap keeps an exact order only if the ranks
+     * are multiples of 1/bucket-scale, hence a search whose priority is fractional by nature (e.g. a potential) doesn't
+     * support a bucket OPEN.
+     *
+     * @return The (non-negative) primary rank of the nodes in the bucket heap, or null if the search doesn't support a
+     * bucket OPEN (then, a binary heap is used)
+     */
+    protected ToDoubleFunction<AnytimeSearchNode> createBucketRank() {
+        return null;
+    }
+
+    /**
+     * The priority of a node in the node-store mode - the equivalent of the node comparator
+     * (smaller is expanded first)
+     *
+     * @param g The g value of the node
+     * @param h The h value of the node
+     *
+     * @return The primary key of the node in storeOpen
+     */
+    protected abstract double getNodeStorePrimaryKey(double g, double h);
+
+    /**
+     * The tie-breaker of a node in the node-store mode (smaller is expanded first)
+     *
+     * @param g The g value of the node
+     * @param h The h value of the node
+     *
+     * @return The secondary key of the node in storeOpen
+     */
+    protected double getNodeStoreSecondaryKey(double g, double h) {
+        return 0;
+    }
+
 
     /**
      * The internal main search procedure
@@ -103,6 +201,9 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
      * @return The search result filled by all the results of the search
      */
     protected SearchResultImpl _search() {
+        if (this.useNodeStore) {
+            return this._searchOnNodeStore();
+        }
         // The result will be stored here
         AnytimeSearchNode goal = null;
         this.result = new SearchResultImpl();
@@ -139,6 +240,223 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
         return result;
     }
 
+    /**
+     * The same as _search(), but runs on the node store
+     *
+     * @return The search result filled by all the results of the search
+     */
+    protected SearchResultImpl _searchOnNodeStore() {
+        int goal = NodeStore.NO_NODE;
+        this.result = new SearchResultImpl();
+        if(this.totalSearchResults==null)
+            this.totalSearchResults=this.result;
+
+        result.startTimer();
+
+        // Loop while there is no solution and there are states in the OPEN list
+        int currentNode;
+        double currentF;
+        while ((goal == NodeStore.NO_NODE) && !this.storeOpen.isEmpty()) {
+            currentNode = this.storeOpen.poll();
+            currentF = this.store.getF(currentNode);
+            this.removeFromfCounter(currentF);
+
+            goal = this.expandStoreNode(currentNode);
+            ++result.expanded;
+            if (result.expanded % 1000000 == 0)
+                logger.info("[INFO] Expanded so far " + result.expanded + ", incumbent ="+this.incumbentSolution+", fmin="+this.fmin+",opensize="+this.storeOpen.size());
+
+            if(currentF==this.fmin)
+                this.updateFmin();
+        }
+        // Stop the timer and check that a goal was found
+        result.stopTimer();
+
+        // If a goal was found: update the solution
+        if (goal != NodeStore.NO_NODE) {
+            result.addSolution(constructSolution(this.store, goal, this.domain));
+        }
+
+        result.setExtras("fmin",this.maxFmin); // Record the lower bound for future analysis @TODO: Not super elegant
+        return result;
+    }
+
+    /**
+     * Expands a node of the node store and generates its children (the same as expand())
+     *
+     * NOTE: A goal child is added to the store (but not to OPEN), since the solution is reconstructed from it
+     *
+     * @return The id of the goal node if it was generated, NodeStore.NO_NODE otherwise
+     */
+    protected int expandStoreNode(int currentNode) {
+        SearchDomain.Operator op;
+        SearchDomain.State childState;
+        PackedElement childPacked;
+        double childg;
+        double childh;
+        double childf;
+        int dupChildNode;
+        double dupChildf;
+
+        // Extract a state from the node
+        int parentNode = this.store.getParent(currentNode);
+        SearchDomain.State currentState = this._unpackStoreNode(currentNode, parentNode);
+        double currentg = this.store.getG(currentNode);
+
+        // The operator which reverses the last applied one (the equivalent of AnytimeSearchNode.pop)
+        SearchDomain.Operator pop = null;
+        if (parentNode != NodeStore.NO_NODE) {
+            SearchDomain.State parentState = this._unpackStoreNode(parentNode, currentNode);
+            pop = domain.getOperator(parentState, this.store.getOperator(currentNode)).reverse(parentState);
+        }
+
+        int numOperators = domain.getNumOperators(currentState);
+        for (int i = 0; i < numOperators; ++i) {
+            // Get the current operator
+            op = domain.getOperator(currentState, i);
+            // Don't apply the previous operator on the state - in order not to enter a loop
+            if (op.equals(pop)) {
+                continue;
+            }
+            // Otherwise, let's generate the child state
+            ++result.generated;
+            // Get it by applying the operator on the parent state
+            childState = this.buffers.applyOperator(currentState, op, 0);
+            childg = currentg + op.getCost(childState, currentState);
+            childh = childState.getH();
+            childf = childg + childh;
+
+            // Prune nodes over the bound
+            if (childf >= this.incumbentSolution) {
+                continue;
+            }
+
+            childPacked = domain.pack(childState);
+            dupChildNode = this.store.find(childPacked);
+
+            // If the generated node satisfies the goal condition - let' mark the goal and break
+            if (domain.isGoal(childState)) {
+                if (dupChildNode == NodeStore.NO_NODE) {
+                    return this.store.add(childPacked, childg, childh, currentNode, i);
+                }
+                // The goal was already stored (by a previous iteration) - update it to the new path
+                this.store.setG(dupChildNode, childg);
+                this.store.setParent(dupChildNode, currentNode);
+                this.store.setOperator(dupChildNode, i);
+                return dupChildNode;
+            }
+
+            // Now, merge duplicates - let's check if the state already exists in CLOSE/OPEN
+            if (dupChildNode != NodeStore.NO_NODE) {
+                // Count the duplicates
+                ++result.duplicates;
+                dupChildf = this.store.getF(dupChildNode);
+                // Consider only duplicates with higher G value
+                if (dupChildf > childf && this.store.getG(dupChildNode) > childg) {
+                    // Make the duplicate to be successor of the current parent node
+                    this.store.setG(dupChildNode, childg);
+                    this.store.setParent(dupChildNode, currentNode);
+                    this.store.setOperator(dupChildNode, i);
+
+                    // In case the node is in the OPEN list - update its key using the new G
+                    if (this.storeOpen.contains(dupChildNode)) {
+                        ++result.opupdated;
+                        this.storeOpen.update(dupChildNode,
+                                this.getNodeStorePrimaryKey(childg, childh),
+                                this.getNodeStoreSecondaryKey(childg, childh));
+
+                        // Update fCounter (and possible minf and maxminf)
+                        this.addTofCounter(childf);
+                        this.removeFromfCounter(dupChildf);
+                    } else if (this.reopen) {
+                        // Return to OPEN list only if reopening is allowed
+                        ++result.reopened;
+                        this.addToStoreOpen(dupChildNode);
+                        this.addTofCounter(childf);
+                    } else {
+                        // Maybe, we will want to expand these states later
+                        this.storeIncons.add(dupChildNode);
+                    }
+                }
+            } else {
+                // Otherwise, add the node to the search lists
+                this.addToStoreOpen(this.store.add(childPacked, childg, childh, currentNode, i));
+                this.addTofCounter(childf);
+            }
+        }
+        return NodeStore.NO_NODE;
+    }
+
+    /**
+     * Returns the state of a node of the store, which is unpacked into one of the two unpacked slots of the buffers
+     * unless it is already there (the parent of an expanded node is usually the node that was expanded just before
+     * it, or the parent of that node - hence it is rarely unpacked again)
+     *
+     * @param node The node
+     * @param keptNode A node whose state must stay in its slot (NodeStore.NO_NODE if none)
+     *
+     * @return The state of the node (valid until the slot is reused)
+     */
+    private SearchDomain.State _unpackStoreNode(int node, int keptNode) {
+        for (int slot = 0; slot < 2; ++slot) {
+            if (this.unpackedStoreNodes[slot] == node) {
+                return this.unpackedStoreStates[slot];
+            }
+        }
+        int slot = (keptNode != NodeStore.NO_NODE && this.unpackedStoreNodes[0] == keptNode) ? 1 : 0;
+        this.unpackedStoreNodes[slot] = node;
+        this.unpackedStoreStates[slot] = this.buffers.unpack(this.store.getPacked(node), slot);
+        return this.unpackedStoreStates[slot];
+    }
+
+    /**
+     * Adds a node of the store to storeOpen, prioritized according to getNodeStorePrimaryKey
+     */
+    protected void addToStoreOpen(int node) {
+        double g = this.store.getG(node);
+        double h = this.store.getH(node);
+        this.storeOpen.add(node, this.getNodeStorePrimaryKey(g, h), this.getNodeStoreSecondaryKey(g, h));
+    }
+
+    /**
+     * Recomputes the keys of all the nodes in storeOpen and restores the heap in O(n)
+     * (required since the priority may depend on the incumbent solution)
+     */
+    protected void rekeyStoreOpen() {
+        for (int i = 0; i < this.storeOpen.size(); ++i) {
+            int node = this.storeOpen.getNodeAt(i);
+            double g = this.store.getG(node);
+            double h = this.store.getH(node);
+            this.storeOpen.setKeysAt(i, this.getNodeStorePrimaryKey(g, h), this.getNodeStoreSecondaryKey(g, h));
+        }
+        this.storeOpen.heapify();
+    }
+
+    /**
+     * Restores OPEN after a new incumbent solution was found: the order of OPEN is rebuilt in place (the priority may
+     * depend on the incumbent solution), and the nodes that can't lead to a better solution (f >= incumbent) are pruned
+     */
+    protected void rekeyOpen() {
+        // The keys of storeOpen are recomputed when the incumbent is added
+        if (this.useNodeStore) {
+            return;
+        }
+        this.open.rekey(node -> node.getF() >= this.incumbentSolution,
+                node -> this.removeFromfCounter(node.getF()));
+
+        if (this.fCounter.isEmpty()) {
+            // All of OPEN was pruned, hence every other solution costs at least the incumbent (which is optimal) -
+            // fmin is reset as for an empty OPEN, instead of the Double.MAX_VALUE of fCounter.min()
+            this.fmin = -1;
+            if (this.maxFmin < this.incumbentSolution)
+                this.maxFmin = this.incumbentSolution;
+        } else if (this.fCounter.contains(this.fmin) == false) {
+            this.fmin = this.fCounter.min();
+            if (this.maxFmin < this.fmin)
+                this.maxFmin = this.fmin;
+        }
+    }
+
     /**
      * Expands a node and generate its children
      */
@@ -152,9 +470,10 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
         AnytimeSearchNode goal = null;
 
         // Extract a state from the node
-        SearchDomain.State currentState = domain.unpack(currentNode.packed);
+        SearchDomain.State currentState = this.buffers.unpack(currentNode.packed);
 
-        for (int i = 0; i < domain.getNumOperators(currentState); ++i) {
+        int numOperators = domain.getNumOperators(currentState);
+        for (int i = 0; i < numOperators; ++i) {
             // Get the current operator
             op = domain.getOperator(currentState, i);
             // Don't apply the previous operator on the state - in order not to enter a loop
@@ -164,7 +483,7 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
             // Otherwise, let's generate the child state
             ++result.generated;
             // Get it by applying the operator on the parent state
-            childState = domain.applyOperator(currentState, op);
+            childState = this.buffers.applyOperator(currentState, op, 0);
             // Create a search node for this state
             childNode = new AnytimeSearchNode(this.domain,
                     childState,
@@ -249,10 +568,7 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
      * @param f the (admissible) f value of the node that was just added to OPEN
      */
     protected void addTofCounter(double f){
-        if(this.fCounter.containsKey(f))
-            this.fCounter.put(f, this.fCounter.get(f)+1);
-        else
-            this.fCounter.put(f,1);
+        this.fCounter.add(f);
 
         // Update fmin if needed
         if(f<this.fmin)
@@ -262,25 +578,16 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
      * After removing from OPEN a node with a given f-value,
      */
     protected void removeFromfCounter(double f) {
-        int newfCount = this.fCounter.get(f)-1;
-        this.fCounter.put(f,newfCount);
-
-        if(newfCount==0){
-            this.fCounter.remove(f);
-        }
+        this.fCounter.remove(f);
     }
 
     /**
      * If there are no more nodes with the old fmin, need to update fmin and maybe also maxfmin accordingly.
      */
     protected void updateFmin(){
-        // If fmin is no longer fmin, need to search for a new fmin @TODO: May improve efficiency
-        if(this.fCounter.containsKey(fmin)==false){
-            fmin=Double.MAX_VALUE;
-            for(double fInOpen : this.fCounter.keySet()){
-                if(fInOpen<fmin)
-                    fmin=fInOpen;
-            }
+        // If fmin is no longer fmin, need to find the new fmin (Double.MAX_VALUE if there are no more nodes)
+        if(this.fCounter.contains(fmin)==false){
+            fmin=this.fCounter.min();
             if(maxFmin<fmin)
                 maxFmin=fmin;
         }
@@ -333,6 +640,45 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
         return solution;
     }
 
+    /**
+     * Construct a solution from a goal node of a node store (see constructSolution above)
+     * @param store The node store
+     * @param goal The id of the goal node
+     * @param domain The domain
+     * @return The new solution found
+     */
+    protected static SearchResult.Solution constructSolution(NodeStore store, int goal, SearchDomain domain) {
+        SearchResultImpl.SolutionImpl solution = new SearchResultImpl.SolutionImpl(domain);
+        List<SearchDomain.Operator> path = new ArrayList<>();
+        List<SearchDomain.State> statesPath = new ArrayList<>();
+        double cost = 0;
+
+        SearchDomain.State currentState = domain.unpack(store.getPacked(goal));
+        for (int currentNode = goal; currentNode != NodeStore.NO_NODE; currentNode = store.getParent(currentNode)) {
+            statesPath.add(currentState);
+            int parentNode = store.getParent(currentNode);
+            if (parentNode != NodeStore.NO_NODE) {
+                SearchDomain.State parentState = domain.unpack(store.getPacked(parentNode));
+                SearchDomain.Operator op = domain.getOperator(parentState, store.getOperator(currentNode));
+                path.add(op);
+                cost += op.getCost(currentState, parentState);
+                currentState = parentState;
+            }
+        }
+        logger.info("[INFO] Solved - Generating output path. Cost="+cost);
+        // The actual size of the found path can be only lower the G value of the found goal
+        assert cost <= store.getG(goal);
+
+        Collections.reverse(path);
+        solution.addOperators(path);
+
+        Collections.reverse(statesPath);
+        solution.addStates(statesPath);
+
+        solution.setCost(cost);
+        return solution;
+    }
+
     /**
      * Search from a given start node until finding the first goal
      * @param domain The domain to apply the search on
@@ -341,6 +687,7 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
     public SearchResult search(SearchDomain domain) {
         // Initially all the data structures are cleaned
         this.domain = domain;
+        this.buffers = new ExpansionBuffers(domain);
 
         // The result will be stored here
         // Initialize all the data structures )
@@ -348,12 +695,24 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
 
         // Create the initial node and add it to OPEN
         SearchDomain.State currentState = domain.initialState();
+        if (this.useNodeStore) {
+            int initialNode = this.store.add(domain.pack(currentState), 0, currentState.getH(), NodeStore.NO_NODE, -1);
+            this.addToStoreOpen(initialNode);
+            this.fCounter.add(this.store.getF(initialNode));
+            this.fmin = this.store.getF(initialNode);
+            this.maxFmin = this.fmin;
+
+            SearchResult result = this._search();
+            if(result.hasSolution())
+                this.addNewIncumbent(result.getBestSolution());
+            return result;
+        }
         AnytimeSearchNode initialNode = new AnytimeSearchNode(this.domain,currentState);
         this.open.add(initialNode);
 
         // Set the min f counters to the f value of the initial node
         double startFmin = initialNode.getF();
-        this.fCounter.put(startFmin,1);
+        this.fCounter.add(startFmin);
         this.fmin=startFmin;
         this.maxFmin=this.fmin;
 
@@ -394,6 +753,9 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
         double solutionCost = newSolution.getCost();
         assert solutionCost<this.incumbentSolution;
         this.incumbentSolution = solutionCost;
+        if (this.useNodeStore) {
+            this.rekeyStoreOpen();
+        }
         if(this.totalSearchResults!=this.result) { // If this is not the first result returned, update the total search results
             // @TODO: Fix the SearchResults object to do this by itself in the addIteration function
             this.totalSearchResults.getSolutions().add(newSolution);
@@ -404,12 +766,36 @@ public abstract class AbstractAnytimeSearch implements AnytimeSearchAlgorithm {
 
     @Override
     public Map<String, Class> getPossibleParameters() {
-        return new HashMap<>();
+        return AbstractAnytimeSearch.AnytimeSearchPossibleParameters;
     }
 
     @Override
     public void setAdditionalParameter(String parameterName, String value) {
         switch (parameterName) {
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
+            case "node-store": {
+                this.useNodeStore = Boolean.parseBoolean(value);
+                break;
+            }
+            case "heap-type": {
+                this.heapType = WAStar.HeapType.fromString(value);
+                break;
+            }
+            case "bucket-scale": {
+                this.bucketScale = Double.parseDouble(value);
+                if (this.bucketScale <= 0) {
+                    System.out.println("[ERROR] The bucket scale must be > 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "bucket-lifo": {
+                this.bucketLifo = Boolean.parseBoolean(value);
+                break;
+            }
             default: {
                 System.err.println("No such parameter: " + parameterName + " (value: " + value + ")");
                 throw new UnsupportedOperationException();
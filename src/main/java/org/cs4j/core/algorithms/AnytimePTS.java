@@ -25,12 +25,7 @@ public class AnytimePTS extends AbstractAnytimeSearch {
     @Override
     public SearchResult continueSearch() {
         // Resort open according to the new incumbent @TODO: Study if this actually helps or not?
-        List<AnytimeSearchNode> openNodes = new ArrayList<AnytimeSearchNode>(this.open.size());
-        while(this.open.size()>0)
-            openNodes.add(this.open.poll());
-        for(AnytimeSearchNode node : openNodes)
-            this.open.add(node);
-        openNodes.clear();
+        this.rekeyOpen();
 
         return super.continueSearch();
     }
@@ -46,6 +41,12 @@ public class AnytimePTS extends AbstractAnytimeSearch {
     }
 
 
+    @Override
+    protected double getNodeStorePrimaryKey(double g, double h) {
+        // The potential is maximized, hence its negation is minimized
+        return -(this.incumbentSolution - g) / h;
+    }
+
     /**
      * The node comparator class
      */
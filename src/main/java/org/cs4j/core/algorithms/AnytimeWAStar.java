@@ -3,6 +3,7 @@ package org.cs4j.core.algorithms;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.ToDoubleFunction;
 
 import org.cs4j.core.algorithms.pac.conditions.BoundedCostPACSearch;
 
@@ -17,7 +18,7 @@ public class AnytimeWAStar extends AbstractAnytimeSearch{
     // Declare the parameters that can be tunes before running the search
     static
     {
-        POSSIBLE_PARAMETERS = new HashMap<>();
+        POSSIBLE_PARAMETERS = new HashMap<>(AbstractAnytimeSearch.AnytimeSearchPossibleParameters);
         POSSIBLE_PARAMETERS .put("weight", Double.class);
     }
 
@@ -45,8 +46,7 @@ public class AnytimeWAStar extends AbstractAnytimeSearch{
                 break;
             }
             default: {
-                System.err.println("No such parameter: " + parameterName + " (value: " + value + ")");
-                throw new UnsupportedOperationException();
+                super.setAdditionalParameter(parameterName, value);
             }
         }
     }
@@ -62,6 +62,22 @@ public class AnytimeWAStar extends AbstractAnytimeSearch{
         return new AnytimeWAStar.NodeComparator();
     }
 
+    @Override
+    protected ToDoubleFunction<AnytimeSearchNode> createBucketRank() {
+        return node -> node.g + this.weight * node.h;
+    }
+
+    @Override
+    protected double getNodeStorePrimaryKey(double g, double h) {
+        return g + this.weight * h;
+    }
+
+    @Override
+    protected double getNodeStoreSecondaryKey(double g, double h) {
+        // Tie breaking using h
+        return h;
+    }
+
     /**
      * The node comparator class
      */
@@ -13,6 +13,8 @@ import org.cs4j.core.SearchDomain.Operator;
 import org.cs4j.core.SearchDomain.State;
 import org.cs4j.core.SearchResult;
 import org.cs4j.core.collections.BinHeap;
+import org.cs4j.core.collections.ClosedList;
+import org.cs4j.core.collections.ClosedListType;
 import org.cs4j.core.collections.PackedElement;
 import org.cs4j.core.collections.SearchQueueElement;
 
@@ -35,6 +37,7 @@ public class BEES implements SearchAlgorithm {
         BEES.BEESPossibleParameters.put("max-cost", Double.class);
         BEES.BEESPossibleParameters.put("reopen", Boolean.class);
         BEES.BEESPossibleParameters.put("rerun-if-not-found-and-nr", Boolean.class);
+        BEES.BEESPossibleParameters.put("closed-impl", String.class);
     }
 
 
@@ -53,7 +56,9 @@ public class BEES implements SearchAlgorithm {
     // cleanup is implemented as a binary heap and actually contains nodes ordered by their f values
     private BinHeap<Node> cleanup;
     // Closed list
-    private Map<PackedElement, Node> closed;
+    private ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    private ClosedListType closedListType = ClosedListType.HASH;
 
     /**
      * Initializes all the data structures required for the search, especially OPEN, FOCAL, CLEANUP and CLOSED lists
@@ -67,7 +72,7 @@ public class BEES implements SearchAlgorithm {
                 new BinHeap<>(
                         new CleanupNodeComparator(),
                         BEES.CLEANUP_ID);
-        this.closed = new HashMap<>();
+        this.closed = this.closedListType.create();
     }
 
     /**
@@ -130,6 +135,9 @@ public class BEES implements SearchAlgorithm {
             } case "rerun-if-not-found-and-nr": {
                 this.rerun = Boolean.parseBoolean(value);
                 break;
+            } case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
             } default: {
                 System.err.println("No such parameter: " + parameterName + " (value: " + value + ")");
                 throw new UnsupportedOperationException();
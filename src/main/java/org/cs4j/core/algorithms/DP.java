@@ -3,6 +3,8 @@ package org.cs4j.core.algorithms;
 import org.cs4j.core.SearchAlgorithm;
 import org.cs4j.core.SearchDomain;
 import org.cs4j.core.SearchResult;
+import org.cs4j.core.collections.ClosedList;
+import org.cs4j.core.collections.ClosedListType;
 import org.cs4j.core.collections.GH_heap;
 import org.cs4j.core.collections.PackedElement;
 import org.cs4j.core.collections.SearchQueueElement;
@@ -30,17 +32,21 @@ public class DP  implements SearchAlgorithm {
         DP.DPPossibleParameters.put("reopen", Boolean.class);
         DP.DPPossibleParameters.put("FR", Integer.class);
         DP.DPPossibleParameters.put("optimalSolution", Double.class);
+        DP.DPPossibleParameters.put("closed-impl", String.class);
     }
 
     // The domain for the search
     private SearchDomain domain;
+    // Reusable states for the expansions
+    private ExpansionBuffers buffers;
     // Open list (frontier)
 //    private BinHeapF<Node> open;
     private GH_heap<Node> open;//gh_heap
     //    private BinHeapF<Node> openF;
     // Closed list (seen states)
-    private TreeMap<PackedElement, Node> closed;
-    //    private Map<PackedElement, Node> closed;
+    private ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    private ClosedListType closedListType;
     //the result to return
     private SearchResultImpl result;
 
@@ -72,6 +78,7 @@ public class DP  implements SearchAlgorithm {
         this.reopen = true;
         this.FR = Integer.MAX_VALUE;
         this.useFR = false;
+        this.closedListType = ClosedListType.TREE;
     }
 
 
@@ -100,6 +107,7 @@ public class DP  implements SearchAlgorithm {
 
     private void _initDataStructures(SearchDomain domain) {
         this.domain = domain;
+        this.buffers = new ExpansionBuffers(domain);
         this.result = new SearchResultImpl();
         this.NC = new NodeComparator();
 //        this.open = new BinHeapF<>(open_ID,domain,this.NC);
@@ -110,8 +118,7 @@ public class DP  implements SearchAlgorithm {
         }
 //        this.openF = new BinHeapF<>(openF_ID,domain);
         //this.open = buildHeap(heapType, 100);
-        this.closed = new TreeMap<>();
-//        this.closed = new HashMap<>();
+        this.closed = this.closedListType.create();
     }
 
     @Override
@@ -149,14 +156,15 @@ public class DP  implements SearchAlgorithm {
                 ++result.expanded;
 
                 // Go over all the possible operators and apply them
-                for (int i = 0; i < getNumOperators(currentState); ++i) {
+                int numOperators = getNumOperators(currentState);
+                for (int i = 0; i < numOperators; ++i) {
                     SearchDomain.Operator op = getOperator(currentState, i);
                     // Try to avoid loops
                     if (op.equals(currentNode.pop)) {
                         continue;
                     }
                     // Here we actually generate a new state
-                    SearchDomain.State childState = applyOperator(currentState, op);
+                    SearchDomain.State childState = applyOperator(currentState, op, i);
                     Node childNode = new Node(childState, currentNode, currentState, op, op.reverse(currentState));
 
                     ++result.generated;
@@ -186,8 +194,8 @@ public class DP  implements SearchAlgorithm {
         return result.getGenerated() < domain.maxGeneratedSize();
     }
 
-    private SearchDomain.State applyOperator(SearchDomain.State currentState, SearchDomain.Operator op){
-        return domain.applyOperator(currentState, op);
+    private SearchDomain.State applyOperator(SearchDomain.State currentState, SearchDomain.Operator op, int slot){
+        return buffers.applyOperator(currentState, op, slot);
     }
     private SearchDomain.Operator getOperator(SearchDomain.State currentState, int i){
         return domain.getOperator(currentState, i);
@@ -198,7 +206,7 @@ public class DP  implements SearchAlgorithm {
     }
 
     private SearchDomain.State unpackDomain(Node currentNode){
-        return domain.unpack(currentNode.packed);
+        return buffers.unpack(currentNode.packed);
     }
 
     private boolean checkIfGoal(SearchDomain.State currentState, Node currentNode){
@@ -345,6 +353,10 @@ public class DP  implements SearchAlgorithm {
                 this.optimalSolution = Double.parseDouble(value);
                 break;
             }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException();
             }
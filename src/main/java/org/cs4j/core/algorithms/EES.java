@@ -20,6 +20,8 @@ public class EES implements SearchAlgorithm {
     private static final int FOCAL_ID = 1;
 
     private SearchDomain domain;
+    // Reusable states for the expansions
+    private ExpansionBuffers buffers;
     private double weight;
     private boolean reopen;
 
@@ -30,8 +32,9 @@ public class EES implements SearchAlgorithm {
     private BinHeap<Node> cleanup;
     // Closed list
     // private LongObjectOpenHashMap<Node> closed;
-    private TreeMap<PackedElement, Node> closed;
-//    private Map<PackedElement, Node> closed;
+    private ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    private ClosedListType closedListType = ClosedListType.TREE;
 
     private SearchResultImpl result;
 
@@ -40,8 +43,7 @@ public class EES implements SearchAlgorithm {
      */
     private void _initDataStructures() {
         //this.closed = new LongObjectOpenHashMap<>();
-        this.closed = new TreeMap<>();
-//        this.closed = new HashMap<>();
+        this.closed = this.closedListType.create();
 
         this.gequeue =
                 new GEQueue<>(
@@ -184,6 +186,10 @@ public class EES implements SearchAlgorithm {
                 this.reopen = Boolean.parseBoolean(value);
                 break;
             }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException();
             }
@@ -200,6 +206,7 @@ public class EES implements SearchAlgorithm {
         this._initDataStructures();
 
         this.domain = domain;
+        this.buffers = new ExpansionBuffers(domain);
 
         Node goal = null;
 
@@ -226,7 +233,7 @@ public class EES implements SearchAlgorithm {
                     break;
                 }
                 // Extract the state from the chosen node
-                State state = domain.unpack(bestNode.packed);
+                State state = this.buffers.unpack(bestNode.packed);
                 // Check if it is a goal
                 if (domain.isGoal(state)) {
                     goal = bestNode;
@@ -251,7 +258,7 @@ public class EES implements SearchAlgorithm {
                                 +"\tWall Time:" + formatter.format(result.getWallTimePassedInMS()));
                     }*/
                     // Apply the operator and extract the child state
-                    State childState = domain.applyOperator(state, op);
+                    State childState = this.buffers.applyOperator(state, op, 0);
                     // Create the child node
                     Node childNode = new Node(childState, bestNode, state, op, op.reverse(state));
                     // merge duplicates
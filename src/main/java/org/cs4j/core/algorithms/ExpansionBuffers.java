@@ -0,0 +1,75 @@
+package org.cs4j.core.algorithms;
+
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.SearchDomain.Operator;
+import org.cs4j.core.SearchDomain.State;
+import org.cs4j.core.collections.PackedElement;
+
+import java.util.Arrays;
+
+/**
+ * Reusable states for expanding nodes: the expanded states are unpacked into the same buffers and the children are
+ * generated into the same buffers (see SearchDomain.unpack(PackedElement, State) and
+ * SearchDomain.applyOperator(State, Operator, State)), hence no state is allocated per generated node in domains
+ * which support buffers (in other domains, new states are allocated as usual).
+ *
+ * Each buffer is identified by a slot (e.g. the index of the operator that generated a child), and a state returned
+ * for some slot is valid only until the same slot is used again - hence, the search must not keep the states.
+ */
+public final class ExpansionBuffers {
+
+    private final SearchDomain domain;
+    private State[] unpacked;
+    private State[] children;
+
+    /**
+     * @param domain The domain whose states are kept in the buffers
+     */
+    public ExpansionBuffers(SearchDomain domain) {
+        this.domain = domain;
+        this.unpacked = new State[2];
+        this.children = new State[8];
+    }
+
+    /**
+     * Unpacks a state into the buffer of the given slot
+     *
+     * @param packed The packed state
+     * @param slot The slot of the buffer
+     *
+     * @return The unpacked state
+     */
+    public State unpack(PackedElement packed, int slot) {
+        if (slot >= this.unpacked.length) {
+            this.unpacked = Arrays.copyOf(this.unpacked, slot + 1);
+        }
+        State state = this.domain.unpack(packed, this.unpacked[slot]);
+        this.unpacked[slot] = state;
+        return state;
+    }
+
+    /**
+     * Unpacks the expanded state (into slot 0)
+     */
+    public State unpack(PackedElement packed) {
+        return this.unpack(packed, 0);
+    }
+
+    /**
+     * Generates a child into the buffer of the given slot
+     *
+     * @param state The expanded state (must not be a child returned by this object)
+     * @param op The operator to apply
+     * @param slot The slot of the buffer (usually the index of the operator)
+     *
+     * @return The child state
+     */
+    public State applyOperator(State state, Operator op, int slot) {
+        if (slot >= this.children.length) {
+            this.children = Arrays.copyOf(this.children, Math.max(slot + 1, 2 * this.children.length));
+        }
+        State child = this.domain.applyOperator(state, op, this.children[slot]);
+        this.children[slot] = child;
+        return child;
+    }
+}
@@ -0,0 +1,799 @@
+package org.cs4j.core.algorithms;
+
+import org.cs4j.core.SearchAlgorithm;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.SearchDomain.Operator;
+import org.cs4j.core.SearchDomain.State;
+import org.cs4j.core.SearchResult;
+import org.cs4j.core.algorithms.SearchResultImpl.SolutionImpl;
+import org.cs4j.core.collections.PackedElement;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * External-memory A*: a best-first search whose OPEN and CLOSED lists are kept on disk.
+ *
+ * A node is a fixed-size record of longs: the packed state, g (as raw long bits) and the packed parent (the initial
+ * state is its own parent). OPEN is partitioned into layers by f and g (a layer holds the nodes whose f is in
+ * [f, f + layer-width) and whose g is in [g, g + layer-width), or of a single f and g if layer-width is 0) and each
+ * layer is partitioned into hash buckets of the states. CLOSED is partitioned into the same hash buckets, each kept in
+ * a file which is sorted by the states.
+ *
+ * Duplicates are detected in a delayed manner (sort-merge): the lowest layer is expanded bucket by bucket - the
+ * records of the bucket are read, sorted, and merged with the matching CLOSED file; only the states which weren't
+ * closed with a lower (or equal) g are expanded. The layers of the same f are expanded from the highest g (like the
+ * tie-breaking of A* on larger g), hence the last f-layer is searched in depth and the goal is reached early. The children are buffered in memory and appended to the files of
+ * their layers, and all the files are read and written sequentially by NIO channels. Hence, only a single bucket of a
+ * single layer and the write buffers are held in memory.
+ *
+ * Goals are recorded when they are generated, and the search stops once the lowest layer can't contain a better
+ * solution than the best one found (hence, the returned solution is optimal, given an admissible heuristic). The path
+ * of the solution is reconstructed by following the parents through the CLOSED files.
+ */
+public class ExternalAstar implements SearchAlgorithm {
+
+    // The size of the buffers which are used to read and write the files
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+    // The initial capacity (in records) of the write buffer of a bucket of a layer
+    private static final int INITIAL_BUFFER_RECORDS = 64;
+    // The maximal number of longs in a bucket (a bucket is read into a single array in order to be sorted)
+    private static final long MAX_BUCKET_LONGS = Integer.MAX_VALUE - 8;
+
+    private static final Map<String, Class> ExternalAstarPossibleParameters;
+
+    // Declare the parameters that can be tuned before running the search
+    static
+    {
+        ExternalAstarPossibleParameters = new HashMap<>();
+        // The number of hash buckets of each layer (a single bucket of a layer must fit in memory)
+        ExternalAstar.ExternalAstarPossibleParameters.put("buckets", Integer.class);
+        // The memory of the write buffers of OPEN (in MB)
+        ExternalAstar.ExternalAstarPossibleParameters.put("buffer-mb", Integer.class);
+        // The range of f values of each layer (0 means a layer for each f value)
+        ExternalAstar.ExternalAstarPossibleParameters.put("layer-width", Double.class);
+        // The directory in which the files are created (the temporary directory by default)
+        ExternalAstar.ExternalAstarPossibleParameters.put("directory", String.class);
+    }
+
+    private int bucketsCount;
+    private long bufferBytes;
+    private double layerWidth;
+    private String directory;
+
+    // The state of the current search
+    private SearchDomain domain;
+    private SearchResultImpl result;
+    private Path workDirectory;
+    // The number of longs of a packed state, and of a record
+    private int width;
+    private int stride;
+    // The layers of OPEN, by their lowest f and then by their highest g
+    private TreeMap<LayerKey, Layer> layers;
+    private int layersCreated;
+    private long bufferedBytes;
+    private long closedCount;
+    // The cost of the best solution found so far, and the record of its goal
+    private double bestCost;
+    private long[] goalRecord;
+    // The buffers of the sequential reads and writes
+    private ByteBuffer readBuffer;
+    private ByteBuffer writeBuffer;
+    private long[] childRecord;
+
+    /**
+     * The default constructor of the class
+     */
+    public ExternalAstar() {
+        this.bucketsCount = 256;
+        this.bufferBytes = 64L << 20;
+        this.layerWidth = 0;
+        this.directory = null;
+    }
+
+    @Override
+    public String getName() {
+        return "external-astar";
+    }
+
+    @Override
+    public Map<String, Class> getPossibleParameters() {
+        return ExternalAstar.ExternalAstarPossibleParameters;
+    }
+
+    @Override
+    public void setAdditionalParameter(String parameterName, String value) {
+        switch (parameterName) {
+            case "buckets": {
+                this.bucketsCount = Integer.parseInt(value);
+                if (this.bucketsCount <= 0) {
+                    System.out.println("[ERROR] The number of buckets must be > 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "buffer-mb": {
+                int megabytes = Integer.parseInt(value);
+                if (megabytes <= 0) {
+                    System.out.println("[ERROR] The memory of the write buffers must be > 0");
+                    throw new IllegalArgumentException();
+                }
+                this.bufferBytes = (long) megabytes << 20;
+                break;
+            }
+            case "layer-width": {
+                this.layerWidth = Double.parseDouble(value);
+                if (this.layerWidth < 0) {
+                    System.out.println("[ERROR] The width of a layer must be >= 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "directory": {
+                this.directory = value;
+                break;
+            }
+            default: {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    @Override
+    public SearchResult search(SearchDomain domain) {
+        this.domain = domain;
+        this.result = new SearchResultImpl();
+        this.layers = new TreeMap<>();
+        this.layersCreated = 0;
+        this.bufferedBytes = 0;
+        this.closedCount = 0;
+        this.bestCost = Double.MAX_VALUE;
+        this.goalRecord = null;
+
+        this.result.startTimer();
+        try {
+            if (this.directory == null) {
+                this.workDirectory = Files.createTempDirectory("external-astar");
+            } else {
+                Files.createDirectories(Paths.get(this.directory));
+                this.workDirectory = Files.createTempDirectory(Paths.get(this.directory), "external-astar");
+            }
+            try {
+                this.readBuffer = ByteBuffer.allocateDirect(ExternalAstar.IO_BUFFER_BYTES);
+                this.writeBuffer = ByteBuffer.allocateDirect(ExternalAstar.IO_BUFFER_BYTES);
+                // Let's instantiate the initial state and add it to OPEN
+                State initialState = domain.initialState();
+                long[] initialPacked = domain.pack(initialState).getInternal();
+                this.width = initialPacked.length;
+                this.stride = 2 * this.width + 1;
+                this.childRecord = new long[this.stride];
+                this._setRecord(this.childRecord, initialPacked, 0, initialPacked);
+                this._add(this.childRecord, initialState.getH(), 0);
+                this._search();
+                // If a solution was found: update it
+                if (this.goalRecord != null) {
+                    this.result.addSolution(this._buildSolution());
+                }
+            } finally {
+                this._deleteFiles();
+            }
+        } catch (IOException e) {
+            System.out.println("[ERROR] External A* failed on I/O: " + e);
+            throw new UncheckedIOException(e);
+        } catch (OutOfMemoryError e) {
+            // A single bucket of a layer doesn't fit in memory - more buckets are required
+            System.out.println("[INFO] External A* OutOfMemory :-( " + e);
+            System.out.println("[INFO] OutOfMemory External A* on:" + domain.getClass().getSimpleName() +
+                    " generated:" + this.result.getGenerated());
+        }
+        this.result.stopTimer();
+
+        this.layers = null;
+        this.readBuffer = null;
+        this.writeBuffer = null;
+        return this.result;
+    }
+
+    /**
+     * Expands the layers of OPEN (from the lowest f) until the best solution can't be improved
+     */
+    private void _search() throws IOException {
+        while (!this.layers.isEmpty() && this.result.checkMinTimeOut()) {
+            Layer layer = this.layers.firstEntry().getValue();
+            // All the remaining nodes can't lead to a better solution
+            if (layer.key.f >= this.bestCost) {
+                break;
+            }
+            // The children which belong to this layer are written to the next pass of it
+            layer.flush();
+            int pass = layer.pass++;
+            boolean[] files = layer.files;
+            layer.files = new boolean[this.bucketsCount];
+            layer.empty = true;
+            for (int bucket = 0; bucket < this.bucketsCount; ++bucket) {
+                if (files[bucket]) {
+                    Path path = layer.path(pass, bucket);
+                    if (layer.key.f < this.bestCost) {
+                        this._expandBucket(path, bucket);
+                    }
+                    Files.delete(path);
+                }
+            }
+            if (layer.empty) {
+                this.layers.remove(layer.key);
+            }
+        }
+    }
+
+    /**
+     * Expands the records of a bucket of OPEN: removes the duplicates, merges the bucket into the matching CLOSED file
+     * and expands the states which weren't closed with a lower (or equal) g
+     *
+     * @param openPath The file of the bucket
+     * @param bucket The index of the bucket
+     */
+    private void _expandBucket(Path openPath, int bucket) throws IOException {
+        long[] records = this._read(openPath);
+        int count = records.length / this.stride;
+        int[] order = this._sort(records, count);
+
+        Path closedPath = this._closedPath(bucket);
+        Path mergedPath = this.workDirectory.resolve("closed-" + bucket + ".merged");
+        RecordReader closed = Files.exists(closedPath) ? new RecordReader(closedPath) : null;
+        RecordWriter merged = new RecordWriter(mergedPath);
+        int[] toExpand = new int[count];
+        int expandCount = 0;
+        try {
+            long[] closedRecord = (closed != null) ? closed.next() : null;
+            int i = 0;
+            while (i < count) {
+                int offset = order[i] * this.stride;
+                // The first record of each state has the lowest g (see _sort) - the rest are duplicates
+                for (++i; i < count &&
+                        this._compareStates(records, order[i] * this.stride, records, offset) == 0; ++i) {
+                    ++this.result.duplicates;
+                }
+                // Copy the closed states which precede the current one
+                int comparison = -1;
+                while (closedRecord != null &&
+                        (comparison = this._compareStates(closedRecord, 0, records, offset)) < 0) {
+                    merged.write(closedRecord, 0);
+                    closedRecord = closed.next();
+                }
+                if (closedRecord != null && comparison == 0) {
+                    ++this.result.duplicates;
+                    if (this._getG(closedRecord, 0) <= this._getG(records, offset)) {
+                        continue;
+                    }
+                    // Found a shorter path to a closed state: replace it
+                    ++this.result.reopened;
+                    closedRecord = closed.next();
+                } else {
+                    ++this.closedCount;
+                }
+                merged.write(records, offset);
+                toExpand[expandCount++] = offset;
+            }
+            while (closedRecord != null) {
+                merged.write(closedRecord, 0);
+                closedRecord = closed.next();
+            }
+        } finally {
+            if (closed != null) {
+                closed.close();
+            }
+            merged.close();
+        }
+        Files.move(mergedPath, closedPath, StandardCopyOption.REPLACE_EXISTING);
+
+        for (int i = 0; i < expandCount; ++i) {
+            this._expand(records, toExpand[i]);
+        }
+    }
+
+    /**
+     * Expands a single record (the children are added to OPEN)
+     *
+     * @param records The records
+     * @param offset The offset of the record to expand
+     */
+    private void _expand(long[] records, int offset) throws IOException {
+        long[] packed = Arrays.copyOfRange(records, offset, offset + this.width);
+        State state = this.domain.unpack(new PackedElement(packed));
+        double g = this._getG(records, offset);
+        // The node can't lead to a better solution (an earlier goal of this layer was found)
+        if (g + state.getH() >= this.bestCost) {
+            return;
+        }
+        if (this.domain.isGoal(state)) {
+            this.bestCost = g;
+            this.goalRecord = Arrays.copyOfRange(records, offset, offset + this.stride);
+            return;
+        }
+        ++this.result.expanded;
+        int parentOffset = offset + this.width + 1;
+        int numOperators = this.domain.getNumOperators(state);
+        for (int i = 0; i < numOperators; ++i) {
+            Operator op = this.domain.getOperator(state, i);
+            State childState = this.domain.applyOperator(state, op);
+            long[] childPacked = this.domain.pack(childState).getInternal();
+            if (childPacked.length != this.width) {
+                System.out.println("[ERROR] External A* requires states which are packed into a fixed number of longs");
+                throw new UnsupportedOperationException();
+            }
+            // Try to avoid loops
+            if (this._compareStates(childPacked, 0, records, parentOffset) == 0) {
+                continue;
+            }
+            // Here we actually generated a new state
+            ++this.result.generated;
+            double childG = g + op.getCost(childState, state);
+            double childF = childG + childState.getH();
+            // Prune (the child can't improve the best solution)
+            if (childF >= this.bestCost) {
+                continue;
+            }
+            this._setRecord(this.childRecord, childPacked, childG, packed);
+            // A goal is only an upper bound until the lowest layer reaches its cost, hence it can be recorded as soon
+            // as it is generated (this saves the expansion of the rest of the last layer)
+            if (this.domain.isGoal(childState)) {
+                this.bestCost = childG;
+                this.goalRecord = Arrays.copyOf(this.childRecord, this.stride);
+                continue;
+            }
+            this._add(this.childRecord, childF, childG);
+        }
+    }
+
+    /**
+     * Adds a record to the matching bucket of the matching layer of OPEN
+     *
+     * @param record The record
+     * @param f The f value of the record
+     * @param g The g value of the record
+     */
+    private void _add(long[] record, double f, double g) throws IOException {
+        LayerKey key = (this.layerWidth > 0) ?
+                new LayerKey(Math.floor(f / this.layerWidth) * this.layerWidth,
+                        Math.floor(g / this.layerWidth) * this.layerWidth) :
+                new LayerKey(f, g);
+        Layer layer = this.layers.get(key);
+        if (layer == null) {
+            layer = new Layer(key, this.layersCreated++);
+            this.layers.put(key, layer);
+        }
+        layer.append(this._bucketOf(record), record);
+        // Flush all the buffers once they take too much memory
+        if (this.bufferedBytes > this.bufferBytes) {
+            for (Layer current : this.layers.values()) {
+                current.flush();
+            }
+        }
+    }
+
+    /**
+     * Reconstructs the path to the goal by following the parents through the CLOSED files
+     *
+     * @return The solution
+     */
+    private SolutionImpl _buildSolution() throws IOException {
+        // The packed states from the goal to the initial state
+        List<PackedElement> packedPath = new ArrayList<>();
+        long[] current = this.goalRecord;
+        while (true) {
+            long[] packed = Arrays.copyOfRange(current, 0, this.width);
+            packedPath.add(new PackedElement(packed));
+            long[] parent = Arrays.copyOfRange(current, this.width + 1, this.stride);
+            // The initial state is its own parent
+            if (this._compareStates(packed, 0, parent, 0) == 0) {
+                break;
+            }
+            current = this._findClosed(parent);
+            if (current == null || packedPath.size() > this.closedCount) {
+                System.out.println("[ERROR] External A*: the path of the solution is broken");
+                throw new IllegalStateException();
+            }
+        }
+        Collections.reverse(packedPath);
+
+        SolutionImpl solution = new SolutionImpl(this.domain);
+        List<Operator> path = new ArrayList<>();
+        List<State> statesPath = new ArrayList<>();
+        double cost = 0;
+        State currentState = this.domain.unpack(packedPath.get(0));
+        statesPath.add(currentState);
+        for (int s = 1; s < packedPath.size(); ++s) {
+            PackedElement nextPacked = packedPath.get(s);
+            // Find the cheapest operator which leads to the next state
+            Operator bestOp = null;
+            State nextState = null;
+            double bestOpCost = Double.MAX_VALUE;
+            int numOperators = this.domain.getNumOperators(currentState);
+            for (int i = 0; i < numOperators; ++i) {
+                Operator op = this.domain.getOperator(currentState, i);
+                State childState = this.domain.applyOperator(currentState, op);
+                double opCost = op.getCost(childState, currentState);
+                if (opCost < bestOpCost && this.domain.pack(childState).equals(nextPacked)) {
+                    bestOp = op;
+                    bestOpCost = opCost;
+                    nextState = childState;
+                }
+            }
+            if (bestOp == null) {
+                System.out.println("[ERROR] External A*: the path of the solution is broken");
+                throw new IllegalStateException();
+            }
+            path.add(bestOp);
+            statesPath.add(nextState);
+            cost += bestOpCost;
+            currentState = nextState;
+        }
+        solution.addOperators(path);
+        solution.addStates(statesPath);
+        solution.setCost(cost);
+        return solution;
+    }
+
+    /**
+     * Looks a state up in CLOSED
+     *
+     * @param packed The packed state
+     *
+     * @return The record of the state (or null if it isn't closed)
+     */
+    private long[] _findClosed(long[] packed) throws IOException {
+        Path closedPath = this._closedPath(this._bucketOf(packed));
+        if (!Files.exists(closedPath)) {
+            return null;
+        }
+        RecordReader closed = new RecordReader(closedPath);
+        try {
+            long[] record;
+            while ((record = closed.next()) != null) {
+                int comparison = this._compareStates(record, 0, packed, 0);
+                if (comparison == 0) {
+                    return Arrays.copyOf(record, this.stride);
+                } else if (comparison > 0) {
+                    // The file is sorted
+                    break;
+                }
+            }
+            return null;
+        } finally {
+            closed.close();
+        }
+    }
+
+    private void _setRecord(long[] record, long[] packed, double g, long[] parent) {
+        System.arraycopy(packed, 0, record, 0, this.width);
+        record[this.width] = Double.doubleToRawLongBits(g);
+        System.arraycopy(parent, 0, record, this.width + 1, this.width);
+    }
+
+    private double _getG(long[] records, int offset) {
+        return Double.longBitsToDouble(records[offset + this.width]);
+    }
+
+    private int _compareStates(long[] first, int firstOffset, long[] second, int secondOffset) {
+        for (int i = 0; i < this.width; ++i) {
+            int comparison = Long.compare(first[firstOffset + i], second[secondOffset + i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Scrambles the bits of a long (the MurmurHash3 finalizer) - packed states are usually far from uniform
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * @return The hash bucket of the state of the given record (or packed state)
+     */
+    private int _bucketOf(long[] record) {
+        long h = 0;
+        for (int i = 0; i < this.width; ++i) {
+            h = ExternalAstar.mix(h * 31 + record[i]);
+        }
+        return (int) Math.floorMod(h, (long) this.bucketsCount);
+    }
+
+    private Path _closedPath(int bucket) {
+        return this.workDirectory.resolve("closed-" + bucket);
+    }
+
+    /**
+     * Sorts the records by their states and then by g (a merge sort of the indexes of the records)
+     *
+     * @param records The records
+     * @param count The number of records
+     *
+     * @return The indexes of the records in a sorted order
+     */
+    private int[] _sort(long[] records, int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; ++i) {
+            order[i] = i;
+        }
+        int[] temp = new int[count];
+        for (int run = 1; run < count; run *= 2) {
+            for (int start = 0; start < count - run; start += 2 * run) {
+                int middle = start + run;
+                int end = Math.min(start + 2 * run, count);
+                int left = start;
+                int right = middle;
+                int target = start;
+                while (left < middle && right < end) {
+                    temp[target++] = (this._compareRecords(records, order[right], order[left]) < 0) ?
+                            order[right++] : order[left++];
+                }
+                while (left < middle) {
+                    temp[target++] = order[left++];
+                }
+                while (right < end) {
+                    temp[target++] = order[right++];
+                }
+                System.arraycopy(temp, start, order, start, end - start);
+            }
+        }
+        return order;
+    }
+
+    private int _compareRecords(long[] records, int first, int second) {
+        int comparison = this._compareStates(records, first * this.stride, records, second * this.stride);
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Double.compare(this._getG(records, first * this.stride), this._getG(records, second * this.stride));
+    }
+
+    /**
+     * Reads a whole file of longs
+     *
+     * @throws IOException If the file is too large to be read into an array (more buckets are required)
+     */
+    private long[] _read(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size() / 8;
+            if (size > ExternalAstar.MAX_BUCKET_LONGS) {
+                System.out.println("[ERROR] The bucket " + path + " is too large to be read (" + channel.size() +
+                        " bytes) - more buckets are required");
+                throw new IOException("Bucket too large: " + path);
+            }
+            long[] data = new long[(int) size];
+            int position = 0;
+            this.readBuffer.clear();
+            while (position < data.length) {
+                if (channel.read(this.readBuffer) < 0) {
+                    throw new EOFException(path.toString());
+                }
+                this.readBuffer.flip();
+                int longs = Math.min(this.readBuffer.remaining() / 8, data.length - position);
+                this.readBuffer.asLongBuffer().get(data, position, longs);
+                this.readBuffer.position(this.readBuffer.position() + 8 * longs);
+                position += longs;
+                this.readBuffer.compact();
+            }
+            return data;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends longs to the end of a file
+     */
+    private void _append(Path path, long[] data, int length) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            int position = 0;
+            while (position < length) {
+                this.writeBuffer.clear();
+                int longs = Math.min(this.writeBuffer.capacity() / 8, length - position);
+                this.writeBuffer.asLongBuffer().put(data, position, longs);
+                this.writeBuffer.limit(8 * longs);
+                while (this.writeBuffer.hasRemaining()) {
+                    channel.write(this.writeBuffer);
+                }
+                position += longs;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Deletes all the files of the search
+     */
+    private void _deleteFiles() throws IOException {
+        File[] files = this.workDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(this.workDirectory);
+    }
+
+    /**
+     * The key of a layer of OPEN: the layers are ordered by f, and the layers of the same f by descending g
+     */
+    private static final class LayerKey implements Comparable<LayerKey> {
+        private final double f;
+        private final double g;
+
+        private LayerKey(double f, double g) {
+            this.f = f;
+            this.g = g;
+        }
+
+        @Override
+        public int compareTo(LayerKey other) {
+            int comparison = Double.compare(this.f, other.f);
+            return (comparison != 0) ? comparison : Double.compare(other.g, this.g);
+        }
+    }
+
+    /**
+     * A layer of OPEN: the files of its buckets and their write buffers
+     */
+    private final class Layer {
+        private final LayerKey key;
+        private final int id;
+        // The pass to which new records are written (a layer may be expanded several times, e.g. on zero-cost moves)
+        private int pass;
+        // Whether a record was added to the current pass, and which buckets of it were written to files
+        private boolean empty;
+        private boolean[] files;
+        private final long[][] buffers;
+        private final int[] sizes;
+
+        private Layer(LayerKey key, int id) {
+            this.key = key;
+            this.id = id;
+            this.pass = 0;
+            this.empty = true;
+            this.files = new boolean[ExternalAstar.this.bucketsCount];
+            this.buffers = new long[ExternalAstar.this.bucketsCount][];
+            this.sizes = new int[ExternalAstar.this.bucketsCount];
+        }
+
+        private Path path(int pass, int bucket) {
+            return ExternalAstar.this.workDirectory.resolve("open-" + this.id + "-" + pass + "-" + bucket);
+        }
+
+        private void append(int bucket, long[] record) {
+            int stride = ExternalAstar.this.stride;
+            long[] buffer = this.buffers[bucket];
+            if (buffer == null || this.sizes[bucket] + stride > buffer.length) {
+                int capacity = (buffer == null) ?
+                        ExternalAstar.INITIAL_BUFFER_RECORDS * stride :
+                        2 * buffer.length;
+                ExternalAstar.this.bufferedBytes += 8L * (capacity - ((buffer == null) ? 0 : buffer.length));
+                this.buffers[bucket] = buffer = (buffer == null) ? new long[capacity] : Arrays.copyOf(buffer, capacity);
+            }
+            System.arraycopy(record, 0, buffer, this.sizes[bucket], stride);
+            this.sizes[bucket] += stride;
+            this.empty = false;
+        }
+
+        /**
+         * Writes the buffers to the files of the current pass (and releases them)
+         */
+        private void flush() throws IOException {
+            for (int bucket = 0; bucket < this.buffers.length; ++bucket) {
+                long[] buffer = this.buffers[bucket];
+                if (buffer != null) {
+                    ExternalAstar.this._append(this.path(this.pass, bucket), buffer, this.sizes[bucket]);
+                    this.files[bucket] = true;
+                    ExternalAstar.this.bufferedBytes -= 8L * buffer.length;
+                    this.buffers[bucket] = null;
+                    this.sizes[bucket] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a file sequentially (the returned record is reused)
+     */
+    private final class RecordReader {
+        private final FileChannel channel;
+        private final long[] record;
+        private boolean done;
+
+        private RecordReader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.record = new long[ExternalAstar.this.stride];
+            this.done = false;
+            ExternalAstar.this.readBuffer.clear();
+            ExternalAstar.this.readBuffer.flip();
+        }
+
+        /**
+         * @return The next record or null if there are no more records
+         */
+        private long[] next() throws IOException {
+            ByteBuffer buffer = ExternalAstar.this.readBuffer;
+            while (buffer.remaining() < 8 * this.record.length) {
+                if (this.done) {
+                    return null;
+                }
+                buffer.compact();
+                this.done = this.channel.read(buffer) < 0;
+                buffer.flip();
+            }
+            buffer.asLongBuffer().get(this.record);
+            buffer.position(buffer.position() + 8 * this.record.length);
+            return this.record;
+        }
+
+        private void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Writes records to a new file sequentially
+     */
+    private final class RecordWriter {
+        private final FileChannel channel;
+
+        private RecordWriter(Path path) throws IOException {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ExternalAstar.this.writeBuffer.clear();
+        }
+
+        private void write(long[] records, int offset) throws IOException {
+            ByteBuffer buffer = ExternalAstar.this.writeBuffer;
+            int stride = ExternalAstar.this.stride;
+            if (buffer.remaining() < 8 * stride) {
+                this.flush();
+            }
+            buffer.asLongBuffer().put(records, offset, stride);
+            buffer.position(buffer.position() + 8 * stride);
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer buffer = ExternalAstar.this.writeBuffer;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void close() throws IOException {
+            this.flush();
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package org.cs4j.core.algorithms;
+
+import org.cs4j.core.SearchAlgorithm;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.SearchDomain.Operator;
+import org.cs4j.core.SearchDomain.State;
+import org.cs4j.core.SearchResult;
+import org.cs4j.core.algorithms.SearchResultImpl.SolutionImpl;
+import org.cs4j.core.collections.BinHeap;
+import org.cs4j.core.collections.ClosedList;
+import org.cs4j.core.collections.ClosedListType;
+import org.cs4j.core.collections.PackedElement;
+import org.cs4j.core.collections.SearchQueueElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-Distributed A* (HDA*) and its weighted version
+ *
+ * Each thread (worker) owns the states whose packed representations are hashed to it, and keeps OPEN and CLOSED lists
+ * of its states only. A generated child is sent to its owner, which performs the duplicate detection and adds it to its
+ * OPEN. The children are sent in batches through lock-free queues (the batches of a worker are flushed when they are
+ * full, periodically and whenever the worker runs out of nodes).
+ *
+ * Since the nodes aren't expanded in a global best-first order, finding a goal doesn't end the search: the cost of the
+ * best goal found so far (the incumbent) is shared by all the workers, and a node is pruned if weight * (g + h) isn't
+ * lower than the incumbent. The search ends when no worker has a node and no node is on its way - hence, the cost of
+ * the returned solution is at most weight times the optimal cost (and optimal if the weight is 1).
+ *
+ * Each worker searches on its own copy of the domain (see SearchDomain.copyForThread) - a domain which can't be copied
+ * is searched by a single worker.
+ */
+public class HDAstar implements SearchAlgorithm {
+
+    private static final int QID = 0;
+
+    private static final Map<String, Class> HDAstarPossibleParameters;
+
+    // Declare the parameters that can be tuned before running the search
+    static
+    {
+        HDAstarPossibleParameters = new HashMap<>();
+        HDAstar.HDAstarPossibleParameters.put("weight", Double.class);
+        // The number of workers (0 means the number of available processors)
+        HDAstar.HDAstarPossibleParameters.put("threads", Integer.class);
+        // The maximum number of nodes in a batch which is sent to another worker
+        HDAstar.HDAstarPossibleParameters.put("batch-size", Integer.class);
+        HDAstar.HDAstarPossibleParameters.put("closed-impl", String.class);
+    }
+
+    // The number of expansions after which a worker flushes its batches (even if they aren't full)
+    private static final int FLUSH_PERIOD = 64;
+    // The maximum time an idle worker waits before checking for termination again
+    private static final long IDLE_WAIT_NANOS = 1000000L;
+
+    private double weight;
+    private int threads;
+    private int batchSize;
+    private ClosedListType closedListType;
+
+    // The state of the current search
+    private SearchResultImpl result;
+    private Worker[] workers;
+    // The number of busy workers plus the number of nodes which were sent and weren't received yet (the search ends
+    // when it reaches 0)
+    private AtomicLong activeWork;
+    // Set if the search must end before the termination condition holds (e.g. time out)
+    private volatile boolean stopped;
+    // The best goal found so far (the cost is kept as raw long bits of a double, for the workers to read it)
+    private AtomicLong incumbentCostBits;
+    private Node incumbent;
+
+    /**
+     * The default constructor of the class (weight of 1.0 and a worker per available processor)
+     */
+    public HDAstar() {
+        this.weight = 1.0;
+        this.threads = 0;
+        this.batchSize = 64;
+        // Each worker keeps a closed list of its own, hence the primitive one saves the most memory
+        this.closedListType = ClosedListType.OPEN_ADDRESSING;
+    }
+
+    @Override
+    public String getName() {
+        return "hdastar";
+    }
+
+    @Override
+    public Map<String, Class> getPossibleParameters() {
+        return HDAstar.HDAstarPossibleParameters;
+    }
+
+    @Override
+    public void setAdditionalParameter(String parameterName, String value) {
+        switch (parameterName) {
+            case "weight": {
+                this.weight = Double.parseDouble(value);
+                if (this.weight < 1.0d) {
+                    System.out.println("[ERROR] The weight must be >= 1.0");
+                    throw new IllegalArgumentException();
+                } else if (this.weight == 1.0d) {
+                    System.out.println("[WARNING] Weight of 1.0 is equivalent to HDA*");
+                }
+                break;
+            }
+            case "threads": {
+                this.threads = Integer.parseInt(value);
+                if (this.threads < 0) {
+                    System.out.println("[ERROR] The number of threads must be >= 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "batch-size": {
+                this.batchSize = Integer.parseInt(value);
+                if (this.batchSize < 1) {
+                    System.out.println("[ERROR] The batch size must be >= 1");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
+            default: {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    /**
+     * Scrambles the bits of a long (the MurmurHash3 finalizer) - the hash of PackedElement is far from uniform
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * @return The index of the worker which owns the given state
+     */
+    private int _ownerOf(PackedElement packed) {
+        long h = 0;
+        for (long current : packed.getInternal()) {
+            h = HDAstar.mix(h * 31 + current);
+        }
+        return (int) ((h >>> 1) % this.workers.length);
+    }
+
+    /**
+     * @return The cost of the best goal found so far (Double.MAX_VALUE if no goal was found)
+     */
+    private double _getIncumbentCost() {
+        return Double.longBitsToDouble(this.incumbentCostBits.get());
+    }
+
+    /**
+     * Updates the incumbent solution if the given goal is better
+     */
+    private synchronized void _updateIncumbent(Node goal) {
+        if (goal.g < this._getIncumbentCost()) {
+            this.incumbent = goal;
+            this.incumbentCostBits.set(Double.doubleToRawLongBits(goal.g));
+        }
+    }
+
+    /**
+     * @return Whether the given node can't lead to a solution which is better than the incumbent (according to the
+     *         required bound)
+     */
+    private boolean _canPrune(Node node) {
+        return this.weight * (node.g + node.h) >= this._getIncumbentCost();
+    }
+
+    @Override
+    public SearchResult search(SearchDomain domain) {
+        int workersCount = (this.threads > 0) ? this.threads : Runtime.getRuntime().availableProcessors();
+        if (workersCount > 1 && !domain.supportsCopyForThread()) {
+            System.out.println("[WARNING] The domain " + domain.getClass().getSimpleName() + " can't be copied for " +
+                    "the workers of HDA*, running a single worker");
+            workersCount = 1;
+        }
+        this.result = new SearchResultImpl();
+        this.stopped = false;
+        this.incumbentCostBits = new AtomicLong(Double.doubleToRawLongBits(Double.MAX_VALUE));
+        this.incumbent = null;
+
+        this.result.startTimer();
+        // A single worker can search on the domain itself
+        this.workers = new Worker[workersCount];
+        for (int i = 0; i < workersCount; ++i) {
+            SearchDomain workerDomain = (workersCount == 1) ? domain : domain.copyForThread();
+            this.workers[i] = new Worker(i, workerDomain);
+        }
+        // All the workers are initially busy
+        this.activeWork = new AtomicLong(workersCount);
+
+        // Let's instantiate the initial state and give it to its owner
+        State initialState = domain.initialState();
+        Node initNode = new Node(domain.pack(initialState), 0, initialState.getH(), null, -1);
+        this.workers[this._ownerOf(initNode.packed)].receive(initNode);
+
+        Thread[] threads = new Thread[workersCount];
+        for (int i = 0; i < workersCount; ++i) {
+            threads[i] = new Thread(this.workers[i], "hdastar-worker-" + i);
+            this.workers[i].thread = threads[i];
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            this.stopped = true;
+            Thread.currentThread().interrupt();
+        }
+        this.result.stopTimer();
+
+        Throwable error = null;
+        for (Worker worker : this.workers) {
+            if (error == null) {
+                error = worker.error;
+            }
+            this.result.expanded += worker.expanded;
+            this.result.generated += worker.generated;
+            this.result.duplicates += worker.duplicates;
+            this.result.opupdated += worker.opupdated;
+            this.result.reopened += worker.reopened;
+        }
+        // Release the memory of the workers
+        this.workers = null;
+
+        // A failure of a worker fails the search (e.g. an OutOfMemoryError is handled by the caller, as in the other
+        // algorithms), since the incumbent isn't necessarily the best solution
+        if (error != null) {
+            this.incumbent = null;
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw (RuntimeException) error;
+        }
+
+        // If a goal was found: update the solution
+        if (this.incumbent != null) {
+            this.result.addSolution(this._buildSolution(domain, this.incumbent));
+        }
+        this.incumbent = null;
+        return this.result;
+    }
+
+    /**
+     * Reconstructs the path to the given goal (on the original domain)
+     *
+     * @param domain The domain on which the search was performed
+     * @param goal The goal node
+     *
+     * @return The solution
+     */
+    private SolutionImpl _buildSolution(SearchDomain domain, Node goal) {
+        SolutionImpl solution = new SolutionImpl(domain);
+        List<Operator> path = new ArrayList<>();
+        List<State> statesPath = new ArrayList<>();
+        double cost = 0;
+        State currentState = domain.unpack(goal.packed);
+        for (Node currentNode = goal; currentNode != null; currentNode = currentNode.parent) {
+            statesPath.add(currentState);
+            if (currentNode.parent != null) {
+                State parentState = domain.unpack(currentNode.parent.packed);
+                Operator op = domain.getOperator(parentState, currentNode.opIndex);
+                path.add(op);
+                cost += op.getCost(currentState, parentState);
+                currentState = parentState;
+            }
+        }
+        Collections.reverse(path);
+        solution.addOperators(path);
+        Collections.reverse(statesPath);
+        solution.addStates(statesPath);
+        solution.setCost(cost);
+        return solution;
+    }
+
+    /**
+     * A worker of the search - owns a part of the states and keeps their OPEN and CLOSED lists
+     */
+    private final class Worker implements Runnable {
+        private final int index;
+        private final SearchDomain domain;
+        private Thread thread;
+
+        private final BinHeap<Node> open;
+        private final ClosedList<Node> closed;
+        // The batches which were sent to this worker
+        private final ConcurrentLinkedQueue<List<Node>> inbox;
+        // The batches which are being filled for the other workers (by their indexes)
+        private final List<Node>[] outbox;
+
+        private long expanded;
+        private long generated;
+        private long duplicates;
+        private long opupdated;
+        private long reopened;
+        private Throwable error;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Worker(int index, SearchDomain domain) {
+            this.index = index;
+            this.domain = domain;
+            this.open = new BinHeap<>(new NodeComparator(), HDAstar.QID);
+            this.closed = HDAstar.this.closedListType.create();
+            this.inbox = new ConcurrentLinkedQueue<>();
+            this.outbox = new List[HDAstar.this.workers.length];
+        }
+
+        /**
+         * Performs the duplicate detection of a node which is owned by this worker, and adds it to OPEN if required
+         */
+        private void receive(Node node) {
+            if (HDAstar.this._canPrune(node)) {
+                return;
+            }
+            Node dupNode = this.closed.get(node.packed);
+            if (dupNode == null) {
+                this.open.add(node);
+                this.closed.put(node.packed, node);
+                return;
+            }
+            // Count the duplicates
+            ++this.duplicates;
+            // Found a shorter path to the node
+            if (dupNode.g > node.g) {
+                dupNode.g = node.g;
+                dupNode.parent = node.parent;
+                dupNode.opIndex = node.opIndex;
+                // if dupNode is in open, update it there too
+                if (dupNode.getIndex(HDAstar.QID) != -1) {
+                    ++this.opupdated;
+                    this.open.update(dupNode);
+                } else {
+                    // Otherwise, reopen it (the nodes aren't expanded in a best-first order, hence reopening is
+                    // always required)
+                    ++this.reopened;
+                    this.open.add(dupNode);
+                }
+            }
+        }
+
+        /**
+         * Receives all the batches which were sent to this worker
+         */
+        private void _receiveAll() {
+            List<Node> batch;
+            while ((batch = this.inbox.poll()) != null) {
+                for (Node node : batch) {
+                    this.receive(node);
+                }
+                // The nodes aren't on their way anymore
+                HDAstar.this.activeWork.addAndGet(-batch.size());
+            }
+        }
+
+        /**
+         * Sends the batch of the given worker
+         */
+        private void _flush(int to) {
+            List<Node> batch = this.outbox[to];
+            if (batch == null || batch.isEmpty()) {
+                return;
+            }
+            this.outbox[to] = null;
+            Worker receiver = HDAstar.this.workers[to];
+            // The nodes are counted before they can be received (hence, the count never drops to 0 while they are on
+            // their way)
+            HDAstar.this.activeWork.addAndGet(batch.size());
+            receiver.inbox.add(batch);
+            LockSupport.unpark(receiver.thread);
+        }
+
+        private void _flushAll() {
+            for (int to = 0; to < this.outbox.length; ++to) {
+                this._flush(to);
+            }
+        }
+
+        /**
+         * Sends a generated node to its owner
+         */
+        private void _send(Node node) {
+            int owner = HDAstar.this._ownerOf(node.packed);
+            if (owner == this.index) {
+                this.receive(node);
+                return;
+            }
+            List<Node> batch = this.outbox[owner];
+            if (batch == null) {
+                batch = new ArrayList<>(HDAstar.this.batchSize);
+                this.outbox[owner] = batch;
+            }
+            batch.add(node);
+            if (batch.size() >= HDAstar.this.batchSize) {
+                this._flush(owner);
+            }
+        }
+
+        /**
+         * Expands the given node
+         */
+        private void _expand(Node node) {
+            State state = this.domain.unpack(node.packed);
+            // Check for goal condition
+            if (this.domain.isGoal(state)) {
+                HDAstar.this._updateIncumbent(node);
+                return;
+            }
+            ++this.expanded;
+            PackedElement parentPacked = (node.parent != null) ? node.parent.packed : null;
+            int numOperators = this.domain.getNumOperators(state);
+            for (int i = 0; i < numOperators; ++i) {
+                Operator op = this.domain.getOperator(state, i);
+                State childState = this.domain.applyOperator(state, op);
+                PackedElement childPacked = this.domain.pack(childState);
+                // Try to avoid loops
+                if (parentPacked != null && childPacked.equals(parentPacked)) {
+                    continue;
+                }
+                // Here we actually generated a new state
+                ++this.generated;
+                this._send(new Node(childPacked, node.g + op.getCost(childState, state), childState.getH(), node,
+                        i));
+            }
+        }
+
+        /**
+         * Waits until a batch is sent to this worker
+         *
+         * @return Whether the worker should continue (false if the search has ended)
+         */
+        private boolean _waitForWork() {
+            // The worker becomes idle
+            if (HDAstar.this.activeWork.decrementAndGet() == 0) {
+                // Wake up all the other (idle) workers, for them to notice the termination
+                for (Worker worker : HDAstar.this.workers) {
+                    LockSupport.unpark(worker.thread);
+                }
+                return false;
+            }
+            while (!HDAstar.this.stopped) {
+                if (!this.inbox.isEmpty()) {
+                    // The nodes in the inbox are still counted, hence the count can't drop to 0 meanwhile
+                    HDAstar.this.activeWork.incrementAndGet();
+                    return true;
+                }
+                if (HDAstar.this.activeWork.get() == 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, HDAstar.IDLE_WAIT_NANOS);
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int sinceFlush = 0;
+                while (!HDAstar.this.stopped) {
+                    this._receiveAll();
+                    Node node = this.open.poll();
+                    if (node == null) {
+                        this._flushAll();
+                        sinceFlush = 0;
+                        if (!this._waitForWork()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    // Prune (the incumbent may have been improved since the node was added)
+                    if (HDAstar.this._canPrune(node)) {
+                        continue;
+                    }
+                    this._expand(node);
+                    if (++sinceFlush >= HDAstar.FLUSH_PERIOD) {
+                        this._flushAll();
+                        sinceFlush = 0;
+                        if (!HDAstar.this.result.checkMinTimeOut()) {
+                            HDAstar.this.stopped = true;
+                        }
+                    }
+                }
+            } catch (OutOfMemoryError e) {
+                // Release the memory of this worker before reporting
+                this.open.clear();
+                this.closed.clear();
+                this.error = e;
+                HDAstar.this.stopped = true;
+            } catch (RuntimeException | Error e) {
+                this.error = e;
+                HDAstar.this.stopped = true;
+            }
+        }
+    }
+
+    /**
+     * The node class (the operator which generated the node is kept by its index, since the operators belong to the
+     * domain of the worker which generated it)
+     */
+    private static final class Node extends SearchQueueElementImpl {
+        private final PackedElement packed;
+        private double g;
+        private final double h;
+        private Node parent;
+        private int opIndex;
+
+        private Node(PackedElement packed, double g, double h, Node parent, int opIndex) {
+            // Size of key
+            super(1);
+            this.packed = packed;
+            this.g = g;
+            this.h = h;
+            this.parent = parent;
+            this.opIndex = opIndex;
+        }
+
+        @Override
+        public double getF() {
+            return this.g + this.h;
+        }
+
+        @Override
+        public double getG() {
+            return this.g;
+        }
+
+        @Override
+        public double getDepth() {
+            return 0;
+        }
+
+        @Override
+        public double getH() {
+            return this.h;
+        }
+
+        @Override
+        public double getD() {
+            return 0;
+        }
+
+        @Override
+        public double getHhat() {
+            return 0;
+        }
+
+        @Override
+        public double getDhat() {
+            return 0;
+        }
+
+        @Override
+        public SearchQueueElement getParent() {
+            return this.parent;
+        }
+    }
+
+    /**
+     * The nodes comparator class
+     */
+    private final class NodeComparator implements Comparator<Node> {
+
+        @Override
+        public int compare(final Node a, final Node b) {
+            // First compare by wF (smaller is preferred), then by g (bigger is preferred)
+            double aWf = a.g + HDAstar.this.weight * a.h;
+            double bWf = b.g + HDAstar.this.weight * b.h;
+            if (aWf < bWf) return -1;
+            if (aWf > bWf) return 1;
+            if (a.g > b.g) return -1;
+            if (a.g < b.g) return 1;
+            return 0;
+        }
+    }
+}
@@ -6,19 +6,61 @@ import org.cs4j.core.SearchDomain.State;
 import org.cs4j.core.SearchAlgorithm;
 import org.cs4j.core.SearchResult;
 import org.cs4j.core.algorithms.SearchResultImpl.SolutionImpl;
+import org.cs4j.core.collections.PackedElement;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Iterative Deepening A* Search
  *
+ * Optionally, the search uses a bounded transposition table (see TranspositionTable) which is shared by all the
+ * iterations: a state which was already searched in the current iteration with a g that isn't greater is pruned, and
+ * the backed-up f of a state (from the previous iterations) is used for improving its heuristic value.
+ *
+ * Optionally, the iterations are run by several threads: the top of the search tree is expanded once, by a
+ * breadth-first search, and in each iteration the subtrees of its frontier are searched by a work-stealing fork/join
+ * pool (a subtree is split further when the pool runs out of queued work). Each thread searches on its own copy of the
+ * domain (see SearchDomain.copyForThread), the minimum f that exceeds the bound is shared through an atomic, and all the
+ * threads stop once a goal is found.
+ *
  * @author Matthew Hatem
  */
 public class IDAstar implements SearchAlgorithm {
     final static Logger logger = Logger.getLogger(IDAstar.class);
 
+    private static final Map<String, Class> IDAstarPossibleParameters;
+
+    // Declare the parameters that can be tuned before running the search
+    static
+    {
+        IDAstarPossibleParameters = new HashMap<>();
+        IDAstar.IDAstarPossibleParameters.put("weight", Double.class);
+        // The memory of the transposition table in MB (0 means no transposition table)
+        IDAstar.IDAstarPossibleParameters.put("transposition-table-mb", Integer.class);
+        IDAstar.IDAstarPossibleParameters.put("transposition-table-policy", String.class);
+        // The number of threads that search each iteration (1 means a sequential search)
+        IDAstar.IDAstarPossibleParameters.put("threads", Integer.class);
+    }
+
+    // A value which is returned by dfs if a solution was found
+    private static final double FOUND = -1;
+
+    // The number of frontier nodes (per thread) which are generated by the breadth-first search of the parallel search
+    private static final int SEED_NODES_PER_THREAD = 64;
+    // A subtree is split (instead of searched) if the number of tasks in the queue of the thread is below this value
+    private static final int SPLIT_THRESHOLD = 2;
+
     // The domain for the search
     private SearchDomain domain;
 
@@ -29,6 +71,21 @@ public class IDAstar implements SearchAlgorithm {
     private double bound;
     private double minNextF;
 
+    private int transpositionTableMB;
+    private TranspositionTable.ReplacementPolicy transpositionTablePolicy;
+    private TranspositionTable transpositionTable;
+    // The number of the current iteration
+    private int iteration;
+
+    private int threads;
+    // The state of the parallel search (valid during a single iteration)
+    private ThreadLocal<SearchDomain> threadDomains;
+    private AtomicBoolean goalFound;
+    // The raw long bits of the minimum f that exceeds the bound (as a double)
+    private AtomicLong minNextFBits;
+    private AtomicLong parallelExpanded;
+    private AtomicLong parallelGenerated;
+
     /**
      * The default constructor of the class
      */
@@ -38,6 +95,9 @@ public class IDAstar implements SearchAlgorithm {
 
     protected IDAstar(double weight) {
         this.weight = weight;
+        this.transpositionTableMB = 0;
+        this.transpositionTablePolicy = TranspositionTable.ReplacementPolicy.TWO_TIER;
+        this.threads = 1;
     }
 
     @Override
@@ -47,7 +107,7 @@ public class IDAstar implements SearchAlgorithm {
 
     @Override
     public Map<String, Class> getPossibleParameters() {
-        return null;
+        return IDAstar.IDAstarPossibleParameters;
     }
 
     @Override
@@ -63,6 +123,26 @@ public class IDAstar implements SearchAlgorithm {
                 }
                 break;
             }
+            case "transposition-table-mb": {
+                this.transpositionTableMB = Integer.parseInt(value);
+                if (this.transpositionTableMB < 0) {
+                    System.out.println("[ERROR] The memory of the transposition table must be >= 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "transposition-table-policy": {
+                this.transpositionTablePolicy = TranspositionTable.ReplacementPolicy.fromString(value);
+                break;
+            }
+            case "threads": {
+                this.threads = Integer.parseInt(value);
+                if (this.threads < 1) {
+                    System.out.println("[ERROR] The number of threads must be >= 1");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
             default:{
                 throw new UnsupportedOperationException();
             }
@@ -76,17 +156,32 @@ public class IDAstar implements SearchAlgorithm {
         State root = domain.initialState();
         this.result.startTimer();
         this.bound = this.weight * root.getH();
-        int i = 0;
-        do {
-            this.minNextF = -1;
-            boolean goalWasFound = this.dfs(domain, root, 0, null);
-            this.result.addIteration(i, this.bound, this.result.expanded, this.result.generated);
-            this.bound = this.minNextF;
-            if (goalWasFound) {
-                break;
-            }
-        } while (true);
+        this.transpositionTable = (this.transpositionTableMB > 0) ?
+                new TranspositionTable(this.transpositionTableMB * 1024L * 1024L, this.transpositionTablePolicy) :
+                null;
+        this.iteration = 0;
+        boolean goalWasFound;
+        if (this.threads > 1) {
+            goalWasFound = this._parallelSearch(domain, root);
+        } else {
+            int i = 0;
+            do {
+                this.minNextF = -1;
+                goalWasFound = this.dfs(domain, root, 0, null) == IDAstar.FOUND;
+                this.result.addIteration(i, this.bound, this.result.expanded, this.result.generated);
+                this.bound = this.minNextF;
+                ++this.iteration;
+                if (goalWasFound) {
+                    break;
+                }
+            } while (true);
+        }
         this.result.stopTimer();
+        // Release the memory of the table
+        this.transpositionTable = null;
+        if (!goalWasFound) {
+            return this.result;
+        }
 
         SearchResultImpl.SolutionImpl solution = new SearchResultImpl.SolutionImpl(this.domain);
         List<SearchDomain.Operator> path = this.solution.getOperators();
@@ -114,28 +209,54 @@ public class IDAstar implements SearchAlgorithm {
      * @param cost The cost to reach the parent state
      * @param pop The reverse operator?
      *
-     * @return Whether a solution was found
+     * @return FOUND if a solution was found, and otherwise, the minimum f that exceeds the bound in the subtree of
+     *         the parent state (Double.MAX_VALUE if there is no such f)
      */
-    private boolean dfs(SearchDomain domain, State parent, double cost, Operator pop) {
+    private double dfs(SearchDomain domain, State parent, double cost, Operator pop) {
         double f = cost + this.weight * parent.getH();
-    
+
+        PackedElement packed = null;
+        // The table can only increase f (or prune the state), hence there is no need to look up states whose f already
+        // exceeds the bound (the leaves of the iteration)
+        if (this.transpositionTable != null && f <= this.bound) {
+            packed = domain.pack(parent);
+            int entry = this.transpositionTable.find(packed);
+            if (entry != TranspositionTable.NOT_FOUND) {
+                // The state was already searched in this iteration, with a g that isn't greater
+                if (this.transpositionTable.getIteration(entry) == this.iteration &&
+                        this.transpositionTable.getG(entry) <= cost) {
+                    ++result.duplicates;
+                    return Double.MAX_VALUE;
+                }
+                // The backed-up f excludes the parent, hence it is valid only if the parent is the same
+                Operator storedPop = this.transpositionTable.getPop(entry);
+                if ((pop == null) ? (storedPop == null) : pop.equals(storedPop)) {
+                    f = Math.max(f,
+                            cost + this.transpositionTable.getF(entry) - this.transpositionTable.getG(entry));
+                }
+            }
+        }
+
         if (f <= this.bound && domain.isGoal(parent)) {
             this.solution.setCost(f);
             this.solution.addOperator(pop);
-            return true;
+            return IDAstar.FOUND;
         }
 
         if (f > this.bound) {
             // Let's record the lowest value of f that is greater than the bound
             if (this.minNextF < 0 || f < this.minNextF)
                 this.minNextF = f;
-            return false;
+            return f;
         }
 
         // Expand the current node
         ++result.expanded;
         if((result.expanded % 10000000)==0)
             logger.info("Expanded "+result.expanded+" so far...");
+        long expandedBefore = result.expanded;
+        long duplicatesBefore = result.duplicates;
+        double minChildF = Double.MAX_VALUE;
         int numOps = domain.getNumOperators(parent);
         for (int i = 0; i < numOps; ++i) {
     	    Operator op = domain.getOperator(parent, i);
@@ -145,15 +266,347 @@ public class IDAstar implements SearchAlgorithm {
             }
             ++result.generated;
             State child = domain.applyOperator(parent, op);
-            boolean goal = this.dfs(domain, child, op.getCost(child, parent) + cost, op.reverse(parent));
-            if (goal) {
+            double childF = this.dfs(domain, child, op.getCost(child, parent) + cost, op.reverse(parent));
+            if (childF == IDAstar.FOUND) {
                 this.solution.addOperator(op);
                 this.solution.addState(parent);
-                return true;
+                return IDAstar.FOUND;
             }
+            minChildF = Math.min(minChildF, childF);
+        }
+
+        if (this.transpositionTable != null) {
+            // If a duplicate was pruned in the subtree, the minimum f of the subtree isn't a valid bound
+            double backedUpF = (result.duplicates == duplicatesBefore) ? Math.max(f, minChildF) : f;
+            this.transpositionTable.store(packed, cost, backedUpF, pop, result.expanded - expandedBefore,
+                    this.iteration);
         }
 
         // No solution was found
-        return false;
+        return minChildF;
+    }
+
+    /**
+     * A node of the top of the search tree, which is expanded once for all the iterations of the parallel search (or a
+     * node at which a subtree was split)
+     */
+    private static final class SeedNode {
+        private final SeedNode parent;
+        private final State state;
+        // The operator which generated the node (null for the root) and its reverse
+        private final Operator op;
+        private final Operator pop;
+        private final double g;
+        // Filled when the node is expanded (the frontier nodes have no children)
+        private PackedElement packed;
+        private List<SeedNode> children;
+        // The index of the operator which generated the node (required for generating it again on another domain)
+        private int opIndex;
+
+        private SeedNode(SeedNode parent, State state, Operator op, Operator pop, double g) {
+            this.parent = parent;
+            this.state = state;
+            this.op = op;
+            this.pop = pop;
+            this.g = g;
+        }
+    }
+
+    /**
+     * Adds the path from the root to the given node to the given (reversed) solution lists, in the order in which dfs
+     * adds them
+     */
+    private static void _addPath(SeedNode node, List<Operator> operators, List<State> states) {
+        for (SeedNode current = node; current.parent != null; current = current.parent) {
+            operators.add(current.op);
+            states.add(current.parent.state);
+        }
+    }
+
+    /**
+     * Expands the top of the search tree by a breadth-first search
+     *
+     * @param domain The domain on which the search is performed
+     * @param root The initial state
+     *
+     * @return The root of the expanded tree
+     */
+    private SeedNode _seed(SearchDomain domain, State root) {
+        SeedNode seedRoot = new SeedNode(null, root, null, null, 0);
+        ArrayDeque<SeedNode> frontier = new ArrayDeque<>();
+        frontier.add(seedRoot);
+        int requiredFrontierSize = this.threads * IDAstar.SEED_NODES_PER_THREAD;
+        while (!frontier.isEmpty() && frontier.size() < requiredFrontierSize) {
+            SeedNode node = frontier.poll();
+            node.packed = domain.pack(node.state);
+            node.children = new ArrayList<>();
+            int numOps = domain.getNumOperators(node.state);
+            for (int i = 0; i < numOps; ++i) {
+                Operator op = domain.getOperator(node.state, i);
+                // Bypass reverse operators
+                if (op.equals(node.pop)) {
+                    continue;
+                }
+                State child = domain.applyOperator(node.state, op);
+                SeedNode childNode = new SeedNode(node, child, op, op.reverse(node.state),
+                        node.g + op.getCost(child, node.state));
+                childNode.opIndex = i;
+                node.children.add(childNode);
+                frontier.add(childNode);
+            }
+        }
+        return seedRoot;
+    }
+
+    /**
+     * Searches the expanded top of the search tree in a single iteration (sequentially), and collects the tasks of the
+     * subtrees of its frontier nodes
+     *
+     * @param domain The domain on which the search is performed
+     * @param node The current node
+     * @param tasks The collected tasks
+     *
+     * @return FOUND if a solution was found, and otherwise, the minimum f that exceeds the bound in the expanded part
+     *         of the subtree of the node (Double.MAX_VALUE if there is no such f)
+     */
+    private double _searchSeed(SearchDomain domain, SeedNode node, List<SubtreeTask> tasks) {
+        double f = node.g + this.weight * node.state.getH();
+        if (f <= this.bound && domain.isGoal(node.state)) {
+            this.solution.setCost(f);
+            this.solution.addOperator(node.pop);
+            IDAstar._addPath(node, this.solution.getOperators(), this.solution.getStates());
+            return IDAstar.FOUND;
+        }
+        if (f > this.bound) {
+            return f;
+        }
+        ++result.expanded;
+        double minChildF = Double.MAX_VALUE;
+        for (SeedNode child : node.children) {
+            if (child.children == null) {
+                // The subtree of a frontier node is searched by a task (which also generates the node)
+                tasks.add(new SubtreeTask(node, child.opIndex));
+                continue;
+            }
+            ++result.generated;
+            double childF = this._searchSeed(domain, child, tasks);
+            if (childF == IDAstar.FOUND) {
+                return IDAstar.FOUND;
+            }
+            minChildF = Math.min(minChildF, childF);
+        }
+        return minChildF;
+    }
+
+    /**
+     * Updates the shared minimum f that exceeds the bound
+     */
+    private void _updateMinNextF(double f) {
+        long current = this.minNextFBits.get();
+        while (f < Double.longBitsToDouble(current)) {
+            if (this.minNextFBits.compareAndSet(current, Double.doubleToRawLongBits(f))) {
+                return;
+            }
+            current = this.minNextFBits.get();
+        }
+    }
+
+    /**
+     * Runs the iterations of the parallel search
+     *
+     * @param domain The domain on which the search is performed
+     * @param root The initial state
+     *
+     * @return Whether a goal was found
+     */
+    private boolean _parallelSearch(SearchDomain domain, State root) {
+        if (this.transpositionTable != null) {
+            System.out.println("[ERROR] The transposition table isn't supported by the parallel search");
+            throw new IllegalArgumentException();
+        }
+        if (!domain.supportsCopyForThread()) {
+            System.out.println("[ERROR] The domain can't be copied for the threads of the parallel search");
+            throw new UnsupportedOperationException();
+        }
+        this.threadDomains = ThreadLocal.withInitial(domain::copyForThread);
+        this.goalFound = new AtomicBoolean();
+        this.minNextFBits = new AtomicLong();
+        this.parallelExpanded = new AtomicLong();
+        this.parallelGenerated = new AtomicLong();
+        SeedNode seedRoot = this._seed(domain, root);
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            int i = 0;
+            do {
+                this.minNextFBits.set(Double.doubleToRawLongBits(Double.MAX_VALUE));
+                List<SubtreeTask> tasks = new ArrayList<>();
+                double seedF = this._searchSeed(domain, seedRoot, tasks);
+                boolean goalWasFound = seedF == IDAstar.FOUND;
+                if (!goalWasFound) {
+                    this._updateMinNextF(seedF);
+                    try {
+                        pool.submit(() -> ForkJoinTask.invokeAll(tasks)).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new RuntimeException(e);
+                    }
+                    goalWasFound = this.goalFound.get();
+                    this.result.expanded += this.parallelExpanded.getAndSet(0);
+                    this.result.generated += this.parallelGenerated.getAndSet(0);
+                }
+                this.result.addIteration(i, this.bound, this.result.expanded, this.result.generated);
+                this.bound = Double.longBitsToDouble(this.minNextFBits.get());
+                ++this.iteration;
+                if (goalWasFound) {
+                    return true;
+                }
+            } while (this.bound < Double.MAX_VALUE);
+            // The whole tree was searched
+            return false;
+        } finally {
+            pool.shutdown();
+            this.threadDomains = null;
+        }
+    }
+
+    /**
+     * The search of a subtree in a single iteration of the parallel search - the task generates the root of the subtree
+     * (on the domain of the thread) and either searches it or splits it into tasks of its children
+     */
+    private final class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // The parent of the root of the subtree and the index of the operator which generates the root
+        private final SeedNode parent;
+        private final int opIndex;
+
+        private long expanded;
+        private long generated;
+        // The reversed solution and its cost (filled only if a goal was found)
+        private List<Operator> operators;
+        private List<State> states;
+        private double solutionCost;
+
+        private SubtreeTask(SeedNode parent, int opIndex) {
+            this.parent = parent;
+            this.opIndex = opIndex;
+        }
+
+        @Override
+        protected void compute() {
+            if (IDAstar.this.goalFound.get()) {
+                return;
+            }
+            SearchDomain domain = IDAstar.this.threadDomains.get();
+            State parentState = domain.unpack(this.parent.packed);
+            Operator op = domain.getOperator(parentState, this.opIndex);
+            State state = domain.applyOperator(parentState, op);
+            ++this.generated;
+            SeedNode node = new SeedNode(this.parent, state, op, op.reverse(parentState),
+                    this.parent.g + op.getCost(state, parentState));
+            double minF;
+            if (ForkJoinTask.getSurplusQueuedTaskCount() < IDAstar.SPLIT_THRESHOLD) {
+                minF = this._split(domain, node);
+            } else {
+                minF = this.dfs(domain, state, node.g, node.pop);
+                if (minF == IDAstar.FOUND) {
+                    this._publishSolution(node);
+                }
+            }
+            IDAstar.this.parallelExpanded.addAndGet(this.expanded);
+            IDAstar.this.parallelGenerated.addAndGet(this.generated);
+            if (minF != IDAstar.FOUND) {
+                IDAstar.this._updateMinNextF(minF);
+            }
+        }
+
+        /**
+         * Expands the root of the subtree and searches the subtrees of its children by new tasks
+         *
+         * @return FOUND if the root is a goal, and otherwise, the f of the root if it exceeds the bound (or
+         *         Double.MAX_VALUE)
+         */
+        private double _split(SearchDomain domain, SeedNode node) {
+            double f = node.g + IDAstar.this.weight * node.state.getH();
+            if (f <= IDAstar.this.bound && domain.isGoal(node.state)) {
+                this.solutionCost = f;
+                this.operators = new ArrayList<>();
+                this.states = new ArrayList<>();
+                this.operators.add(node.pop);
+                this._publishSolution(node);
+                return IDAstar.FOUND;
+            }
+            if (f > IDAstar.this.bound) {
+                return f;
+            }
+            ++this.expanded;
+            node.packed = domain.pack(node.state);
+            List<SubtreeTask> tasks = new ArrayList<>();
+            int numOps = domain.getNumOperators(node.state);
+            for (int i = 0; i < numOps; ++i) {
+                // Bypass reverse operators
+                if (!domain.getOperator(node.state, i).equals(node.pop)) {
+                    tasks.add(new SubtreeTask(node, i));
+                }
+            }
+            ForkJoinTask.invokeAll(tasks);
+            return Double.MAX_VALUE;
+        }
+
+        /**
+         * Publishes the solution that was found in the subtree of the given node (unless another thread has already
+         * found a solution)
+         */
+        private void _publishSolution(SeedNode node) {
+            if (IDAstar.this.goalFound.compareAndSet(false, true)) {
+                IDAstar._addPath(node, this.operators, this.states);
+                IDAstar.this.solution.getOperators().addAll(this.operators);
+                IDAstar.this.solution.getStates().addAll(this.states);
+                IDAstar.this.solution.setCost(this.solutionCost);
+            }
+        }
+
+        /**
+         * Similar to IDAstar.dfs, but runs on the domain of the thread and stops once a goal is found by any thread
+         */
+        private double dfs(SearchDomain domain, State parent, double cost, Operator pop) {
+            if (IDAstar.this.goalFound.get()) {
+                return Double.MAX_VALUE;
+            }
+            double f = cost + IDAstar.this.weight * parent.getH();
+
+            if (f <= IDAstar.this.bound && domain.isGoal(parent)) {
+                this.solutionCost = f;
+                this.operators = new ArrayList<>();
+                this.states = new ArrayList<>();
+                this.operators.add(pop);
+                return IDAstar.FOUND;
+            }
+
+            if (f > IDAstar.this.bound) {
+                return f;
+            }
+
+            // Expand the current node
+            ++this.expanded;
+            double minChildF = Double.MAX_VALUE;
+            int numOps = domain.getNumOperators(parent);
+            for (int i = 0; i < numOps; ++i) {
+                Operator op = domain.getOperator(parent, i);
+                // Bypass reverse operators
+                if (op.equals(pop)) {
+                    continue;
+                }
+                ++this.generated;
+                State child = domain.applyOperator(parent, op);
+                double childF = this.dfs(domain, child, op.getCost(child, parent) + cost, op.reverse(parent));
+                if (childF == IDAstar.FOUND) {
+                    this.operators.add(op);
+                    this.states.add(parent);
+                    return IDAstar.FOUND;
+                }
+                minChildF = Math.min(minChildF, childF);
+            }
+            return minChildF;
+        }
     }
 }
@@ -0,0 +1,429 @@
+package org.cs4j.core.algorithms;
+
+import org.cs4j.core.SearchAlgorithm;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.SearchDomain.Operator;
+import org.cs4j.core.SearchDomain.State;
+import org.cs4j.core.SearchResult;
+import org.cs4j.core.algorithms.SearchResultImpl.SolutionImpl;
+import org.cs4j.core.collections.BinHeap;
+import org.cs4j.core.collections.ClosedList;
+import org.cs4j.core.collections.ClosedListType;
+import org.cs4j.core.collections.PackedElement;
+import org.cs4j.core.collections.SearchQueueElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MM: a bidirectional heuristic search which is guaranteed to meet in the middle (Holte et al., 2016)
+ *
+ * A forward search from the initial state and a backward search from the goal (on the domain which is returned by
+ * SearchDomain.createBackwardDomain) are interleaved. Each search orders its OPEN by pr(n) = max(f(n), 2g(n)), and the
+ * search with the lowest pr expands a node in each step. Whenever a state is reached by both searches, the cost of the
+ * path through it may improve the best solution found so far (U).
+ *
+ * The search ends once U <= max(C, fminF, fminB, gminF + gminB + epsilon), where C is the lowest pr of both searches and
+ * epsilon is the minimal cost of a move - hence, the returned solution is optimal (given admissible heuristics).
+ */
+public class MM implements SearchAlgorithm {
+
+    // The keys of the heaps of each search (by pr, by f and by g)
+    private static final int PR_QID = 0;
+    private static final int F_QID = 1;
+    private static final int G_QID = 2;
+
+    private static final Map<String, Class> MMPossibleParameters;
+
+    // Declare the parameters that can be tuned before running the search
+    static
+    {
+        MMPossibleParameters = new HashMap<>();
+        // The minimal cost of a move (e.g. 1 for unit-cost domains)
+        MM.MMPossibleParameters.put("epsilon", Double.class);
+        MM.MMPossibleParameters.put("closed-impl", String.class);
+    }
+
+    private double epsilon;
+    private ClosedListType closedListType;
+
+    // The state of the current search
+    private SearchResultImpl result;
+    // The cost of the best solution found so far (U) and the nodes of its meeting state
+    private double bestCost;
+    private Node forwardMeeting;
+    private Node backwardMeeting;
+
+    /**
+     * The default constructor of the class (no minimal cost of a move is assumed)
+     */
+    public MM() {
+        this.epsilon = 0;
+        this.closedListType = ClosedListType.OPEN_ADDRESSING;
+    }
+
+    @Override
+    public String getName() {
+        return "mm";
+    }
+
+    @Override
+    public Map<String, Class> getPossibleParameters() {
+        return MM.MMPossibleParameters;
+    }
+
+    @Override
+    public void setAdditionalParameter(String parameterName, String value) {
+        switch (parameterName) {
+            case "epsilon": {
+                this.epsilon = Double.parseDouble(value);
+                if (this.epsilon < 0) {
+                    System.out.println("[ERROR] The minimal cost of a move must be >= 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
+            default: {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    @Override
+    public SearchResult search(SearchDomain domain) {
+        SearchDomain backwardDomain = domain.createBackwardDomain();
+        if (backwardDomain == null) {
+            System.out.println("[ERROR] The domain doesn't support backward searches (required by MM)");
+            throw new UnsupportedOperationException();
+        }
+        this.result = new SearchResultImpl();
+        this.bestCost = Double.MAX_VALUE;
+        this.forwardMeeting = null;
+        this.backwardMeeting = null;
+
+        this.result.startTimer();
+        Direction forward = new Direction(domain, false);
+        Direction backward = new Direction(backwardDomain, true);
+        forward.other = backward;
+        backward.other = forward;
+
+        // Let's instantiate the initial state and the goal and add them to the frontiers
+        State initialState = domain.initialState();
+        State goalState = backwardDomain.initialState();
+        Node initNode = new Node(domain.pack(initialState), 0, initialState.getH(), null);
+        Node goalNode = new Node(backwardDomain.pack(goalState), 0, goalState.getH(), null);
+        forward.add(initNode);
+        backward.add(goalNode);
+        if (initNode.packed.equals(goalNode.packed)) {
+            this._updateBestCost(forward, initNode, goalNode);
+        }
+
+        try {
+            while (!forward.open.isEmpty() && !backward.open.isEmpty() && this.result.checkMinTimeOut()) {
+                double forwardPr = forward.open.peek().getPr();
+                double backwardPr = backward.open.peek().getPr();
+                // The lower bound on the cost of a solution which hasn't been found yet
+                double lowerBound = Math.max(Math.min(forwardPr, backwardPr),
+                        Math.max(Math.max(forward.openF.peek().getF(), backward.openF.peek().getF()),
+                                forward.openG.peek().g + backward.openG.peek().g + this.epsilon));
+                if (this.bestCost <= lowerBound) {
+                    break;
+                }
+                this._expand((forwardPr <= backwardPr) ? forward : backward);
+            }
+        } catch (OutOfMemoryError e) {
+            System.out.println("[INFO] MM OutOfMemory :-( " + e);
+            System.out.println("[INFO] OutOfMemory MM on:" + domain.getClass().getSimpleName() +
+                    " generated:" + this.result.getGenerated());
+        }
+        this.result.stopTimer();
+
+        // If a solution was found: update it
+        if (this.forwardMeeting != null) {
+            this.result.addSolution(this._buildSolution(domain));
+        }
+        this.forwardMeeting = null;
+        this.backwardMeeting = null;
+        return this.result;
+    }
+
+    /**
+     * Updates the best solution if the path through the given state (which was reached by both searches) is better
+     *
+     * @param direction The search that reached the state by the given node
+     * @param node The node of the state in the given search
+     * @param otherNode The node of the state in the other search
+     */
+    private void _updateBestCost(Direction direction, Node node, Node otherNode) {
+        double cost = node.g + otherNode.g;
+        if (cost < this.bestCost) {
+            this.bestCost = cost;
+            this.forwardMeeting = direction.backward ? otherNode : node;
+            this.backwardMeeting = direction.backward ? node : otherNode;
+        }
+    }
+
+    /**
+     * Expands the best node of the given search
+     *
+     * @param direction The search
+     */
+    private void _expand(Direction direction) {
+        Node node = direction.poll();
+        SearchDomain domain = direction.domain;
+        State state = domain.unpack(node.packed);
+        ++this.result.expanded;
+        PackedElement parentPacked = (node.parent != null) ? node.parent.packed : null;
+        int numOperators = domain.getNumOperators(state);
+        for (int i = 0; i < numOperators; ++i) {
+            Operator op = domain.getOperator(state, i);
+            State childState = domain.applyOperator(state, op);
+            PackedElement childPacked = domain.pack(childState);
+            // Try to avoid loops
+            if (parentPacked != null && childPacked.equals(parentPacked)) {
+                continue;
+            }
+            // Here we actually generated a new state
+            ++this.result.generated;
+            // The backward search moves from a state to its predecessor, hence the cost is of the reverse move
+            double cost = direction.backward ?
+                    op.reverse(state).getCost(state, childState) :
+                    op.getCost(childState, state);
+            double childG = node.g + cost;
+            double childH = childState.getH();
+            // Prune (the child can't improve the best solution)
+            if (childG + childH >= this.bestCost) {
+                continue;
+            }
+            Node childNode = direction.nodes.get(childPacked);
+            if (childNode != null) {
+                // Count the duplicates
+                ++this.result.duplicates;
+                if (childNode.g <= childG) {
+                    continue;
+                }
+                // Found a shorter path to the node
+                childNode.g = childG;
+                childNode.parent = node;
+                // if childNode is in open, update it there too
+                if (childNode.getIndex(MM.PR_QID) != -1) {
+                    ++this.result.opupdated;
+                    direction.update(childNode);
+                } else {
+                    ++this.result.reopened;
+                    direction.add(childNode);
+                }
+            } else {
+                childNode = new Node(childPacked, childG, childH, node);
+                direction.add(childNode);
+            }
+            // Check whether the searches meet at the child
+            Node otherNode = direction.other.nodes.get(childPacked);
+            if (otherNode != null) {
+                this._updateBestCost(direction, childNode, otherNode);
+            }
+        }
+    }
+
+    /**
+     * Reconstructs the path through the meeting state of the best solution (on the original domain)
+     *
+     * @param domain The domain on which the search was performed
+     *
+     * @return The solution
+     */
+    private SolutionImpl _buildSolution(SearchDomain domain) {
+        // The packed states from the initial state to the goal
+        List<PackedElement> packedPath = new ArrayList<>();
+        for (Node current = this.forwardMeeting; current != null; current = current.parent) {
+            packedPath.add(current.packed);
+        }
+        Collections.reverse(packedPath);
+        for (Node current = this.backwardMeeting.parent; current != null; current = current.parent) {
+            packedPath.add(current.packed);
+        }
+
+        SolutionImpl solution = new SolutionImpl(domain);
+        List<Operator> path = new ArrayList<>();
+        List<State> statesPath = new ArrayList<>();
+        double cost = 0;
+        State currentState = domain.unpack(packedPath.get(0));
+        statesPath.add(currentState);
+        for (int s = 1; s < packedPath.size(); ++s) {
+            PackedElement nextPacked = packedPath.get(s);
+            // Find the operator which leads to the next state
+            State nextState = null;
+            int numOperators = domain.getNumOperators(currentState);
+            for (int i = 0; i < numOperators && nextState == null; ++i) {
+                Operator op = domain.getOperator(currentState, i);
+                State childState = domain.applyOperator(currentState, op);
+                if (domain.pack(childState).equals(nextPacked)) {
+                    path.add(op);
+                    cost += op.getCost(childState, currentState);
+                    nextState = childState;
+                }
+            }
+            if (nextState == null) {
+                System.out.println("[ERROR] MM: the path of the backward search isn't reversible");
+                throw new IllegalStateException();
+            }
+            statesPath.add(nextState);
+            currentState = nextState;
+        }
+        solution.addOperators(path);
+        solution.addStates(statesPath);
+        solution.setCost(cost);
+        return solution;
+    }
+
+    /**
+     * The data of a single search (forward or backward)
+     */
+    private final class Direction {
+        private final SearchDomain domain;
+        private final boolean backward;
+        private Direction other;
+
+        // OPEN, ordered by pr, and the same nodes ordered by f and by g (for the termination condition)
+        private final BinHeap<Node> open;
+        private final BinHeap<Node> openF;
+        private final BinHeap<Node> openG;
+        // All the nodes of the search (both in OPEN and in CLOSED)
+        private final ClosedList<Node> nodes;
+
+        private Direction(SearchDomain domain, boolean backward) {
+            this.domain = domain;
+            this.backward = backward;
+            this.open = new BinHeap<>(new PrComparator(), MM.PR_QID);
+            this.openF = new BinHeap<>(new FComparator(), MM.F_QID);
+            this.openG = new BinHeap<>(new GComparator(), MM.G_QID);
+            this.nodes = MM.this.closedListType.create();
+        }
+
+        private void add(Node node) {
+            this.open.add(node);
+            this.openF.add(node);
+            this.openG.add(node);
+            this.nodes.put(node.packed, node);
+        }
+
+        private void update(Node node) {
+            this.open.update(node);
+            this.openF.update(node);
+            this.openG.update(node);
+        }
+
+        private Node poll() {
+            Node node = this.open.poll();
+            this.openF.remove(node);
+            this.openG.remove(node);
+            return node;
+        }
+    }
+
+    /**
+     * The node class
+     */
+    private static final class Node extends SearchQueueElementImpl {
+        private final PackedElement packed;
+        private double g;
+        // The heuristic estimate of the cost to the goal of the search of the node
+        private final double h;
+        private Node parent;
+
+        private Node(PackedElement packed, double g, double h, Node parent) {
+            // Size of key
+            super(3);
+            this.packed = packed;
+            this.g = g;
+            this.h = h;
+            this.parent = parent;
+        }
+
+        /**
+         * @return The priority of the node: max(f, 2g)
+         */
+        private double getPr() {
+            return Math.max(this.g + this.h, 2 * this.g);
+        }
+
+        @Override
+        public double getF() {
+            return this.g + this.h;
+        }
+
+        @Override
+        public double getG() {
+            return this.g;
+        }
+
+        @Override
+        public double getDepth() {
+            return 0;
+        }
+
+        @Override
+        public double getH() {
+            return this.h;
+        }
+
+        @Override
+        public double getD() {
+            return 0;
+        }
+
+        @Override
+        public double getHhat() {
+            return 0;
+        }
+
+        @Override
+        public double getDhat() {
+            return 0;
+        }
+
+        @Override
+        public SearchQueueElement getParent() {
+            return this.parent;
+        }
+    }
+
+    /**
+     * Orders the nodes by pr (smaller is preferred), then by g (larger is preferred - the searches meet sooner)
+     */
+    private static final class PrComparator implements Comparator<Node> {
+
+        @Override
+        public int compare(final Node a, final Node b) {
+            double aPr = a.getPr();
+            double bPr = b.getPr();
+            if (aPr < bPr) return -1;
+            if (aPr > bPr) return 1;
+            return Double.compare(b.g, a.g);
+        }
+    }
+
+    private static final class FComparator implements Comparator<Node> {
+
+        @Override
+        public int compare(final Node a, final Node b) {
+            return Double.compare(a.getF(), b.getF());
+        }
+    }
+
+    private static final class GComparator implements Comparator<Node> {
+
+        @Override
+        public int compare(final Node a, final Node b) {
+            return Double.compare(a.g, b.g);
+        }
+    }
+}
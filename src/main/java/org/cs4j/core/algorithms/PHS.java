@@ -35,20 +35,30 @@ public class PHS implements SearchAlgorithm {
         PHSPossibleParameters.put("max-cost", Double.class);
         PHSPossibleParameters.put("reopen", Boolean.class);
         PHSPossibleParameters.put("rerun-if-not-found-and-nr", Boolean.class);
+        PHSPossibleParameters.put("closed-impl", String.class);
+        PHSPossibleParameters.put("heap-type", String.class);
+        PHSPossibleParameters.put("bucket-scale", Double.class);
+        PHSPossibleParameters.put("bucket-lifo", Boolean.class);
     }
 
     private static final int QID = 0;
 
-    public enum HeapType {BIN, BUCKET}
-    // TODO ...
-    private HeapType heapType;
+    // The type of OPEN (see WAStar.HeapType), the number of buckets per unit of h, and the order of nodes with the
+    // same h and g (in a bucket heap)
+    private WAStar.HeapType heapType;
+    private double bucketScale;
+    private boolean bucketLifo;
 
     // The domain for the search
     private SearchDomain domain;
+    // Reusable states for the expansions
+    private ExpansionBuffers buffers;
     // Open list (frontier)
     private SearchQueue<Node> open;
     // Closed list (seen states)
-    private Map<PackedElement, Node> closed;
+    private ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    private ClosedListType closedListType = ClosedListType.HASH;
 
     protected double maxCost;
     // Whether to perform reopening of states
@@ -60,7 +70,9 @@ public class PHS implements SearchAlgorithm {
      * The default Constructor for PHS (AR and maximum cost of DOUBLE.MAX_VALUE)
      */
     public PHS() {
-        this.heapType = HeapType.BIN;
+        this.heapType = WAStar.HeapType.BIN;
+        this.bucketScale = 1;
+        this.bucketLifo = true;
         // Default values for parameters
         this.maxCost = Double.MAX_VALUE;
         this.reopen = true;
@@ -82,11 +94,11 @@ public class PHS implements SearchAlgorithm {
      * NOTE: In case of unknown type, null is returned (no exception is thrown)
      * @return The created heap
      */
-    private SearchQueue<Node> buildHeap(HeapType heapType, int size) {
+    private SearchQueue<Node> buildHeap(WAStar.HeapType heapType, int size) {
         SearchQueue<Node> heap = null;
         switch (heapType) {
             case BUCKET:
-                heap = new BucketHeap<>(size, QID);
+                heap = new BucketHeap<>(size, QID, this.bucketScale, this.bucketLifo);
                 break;
             case BIN:
                 heap = new BinHeap<>(new NodeComparator(), 0);
@@ -98,7 +110,7 @@ public class PHS implements SearchAlgorithm {
     private void _initDataStructures() {
         // (Initial size is 100)
         this.open = buildHeap(heapType, 100);
-        this.closed = new HashMap<>();
+        this.closed = this.closedListType.create();
     }
 
     @Override
@@ -118,6 +130,22 @@ public class PHS implements SearchAlgorithm {
             } case "rerun-if-not-found-and-nr": {
                 this.rerun = Boolean.parseBoolean(value);
                 break;
+            } case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            } case "heap-type": {
+                this.heapType = WAStar.HeapType.fromString(value);
+                break;
+            } case "bucket-scale": {
+                this.bucketScale = Double.parseDouble(value);
+                if (this.bucketScale <= 0) {
+                    System.out.println("[ERROR] The bucket scale must be > 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            } case "bucket-lifo": {
+                this.bucketLifo = Boolean.parseBoolean(value);
+                break;
             } default: {
                 System.err.println("No such parameter: " + parameterName + " (value: " + value + ")");
                 throw new UnsupportedOperationException();
@@ -127,6 +155,7 @@ public class PHS implements SearchAlgorithm {
 
     public SearchResult _search(SearchDomain domain) {
         this.domain = domain;
+        this.buffers = new ExpansionBuffers(domain);
         Node goal = null;
         // Initialize all the data structures required for the search
         this._initDataStructures();
@@ -155,12 +184,13 @@ public class PHS implements SearchAlgorithm {
             // Take the first state (still don't remove it)
             Node currentNode = this.open.poll();
             // Extract the state from the packed value of the node
-            currentState = domain.unpack(currentNode.packed);
+            currentState = this.buffers.unpack(currentNode.packed);
 
             // Expand the current node
             ++result.expanded;
             // Go over all the possible operators and apply them
-            for (int i = 0; i < domain.getNumOperators(currentState); ++i) {
+            int numOperators = domain.getNumOperators(currentState);
+            for (int i = 0; i < numOperators; ++i) {
                 Operator op = domain.getOperator(currentState, i);
                 // Try to avoid loops
                 if (op.equals(currentNode.pop)) {
@@ -168,7 +198,7 @@ public class PHS implements SearchAlgorithm {
                 }
                 // Here we actually generate a new state
                 ++result.generated;
-                State childState = domain.applyOperator(currentState, op);
+                State childState = this.buffers.applyOperator(currentState, op, 0);
                 Node childNode = new Node(childState, currentNode, currentState, op, op.reverse(currentState));
 
                 // Ignore the node if its f value is too big
@@ -306,8 +336,7 @@ public class PHS implements SearchAlgorithm {
         private Node(State state, Node parent, State parentState, Operator op, Operator pop) {
             // Size of key
             super(1);
-            // TODO: Why?
-            this.secondaryIndex = new int[(heapType == HeapType.BUCKET) ? 2 : 1];
+            this.secondaryIndex = new int[1];
             double cost = (op != null) ? op.getCost(state, parentState) : 0;
             this.h = state.getH();
             this.d = state.getD();
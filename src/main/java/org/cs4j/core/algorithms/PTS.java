@@ -22,10 +22,14 @@ public class PTS implements SearchAlgorithm {
 
     // The domain to which the search problem belongs
     private SearchDomain domain;
+    // Reusable states for the expansions
+    private ExpansionBuffers buffers;
 
     // OPEN and CLOSED lists
     private SearchQueue<Node> open;
-    private Map<PackedElement, Node> closed;
+    private ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    private ClosedListType closedListType;
 
     // Inconsistent list
     protected Map<PackedElement, Node> incons;
@@ -57,6 +61,7 @@ public class PTS implements SearchAlgorithm {
         PTS.PTSPossibleParameters.put("max-cost", Double.class);
         PTS.PTSPossibleParameters.put("reopen", Boolean.class);
         PTS.PTSPossibleParameters.put("rerun-type-if-not-found", String.class);
+        PTS.PTSPossibleParameters.put("closed-impl", String.class);
     }
 
     public PTS() {
@@ -64,6 +69,7 @@ public class PTS implements SearchAlgorithm {
         this.maxCost = Double.MAX_VALUE;
         this.reopen = true;
         this.rerun = RERUN_TYPES.NO_RERUN;
+        this.closedListType = ClosedListType.HASH;
     }
 
     @Override
@@ -86,7 +92,7 @@ public class PTS implements SearchAlgorithm {
             this.incons = new HashMap<>();
         }
         if (clearClosed) {
-            this.closed = new HashMap<>();
+            this.closed = this.closedListType.create();
         }
     }
 
@@ -132,6 +138,10 @@ public class PTS implements SearchAlgorithm {
                 }
                 break;
             }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
             default: {
                 System.err.println("No such parameter: " + parameterName + " (value: " + value + ")");
                 throw new UnsupportedOperationException();
@@ -149,6 +159,7 @@ public class PTS implements SearchAlgorithm {
      */
     private SearchResult _search(SearchDomain domain, boolean clearOpenList) {
         this.domain = domain;
+        this.buffers = new ExpansionBuffers(domain);
         // The result will be stored here
         Node goal = null;
         // Initialize all the data structures required for the search (CLOSED list is always cleared)
@@ -180,11 +191,12 @@ public class PTS implements SearchAlgorithm {
             // Take a node from the OPEN list (nodes are sorted according to the 'u' function)
             Node currentNode = this.open.poll();
             // Extract a state from the node
-            currentState = domain.unpack(currentNode.packed);
+            currentState = this.buffers.unpack(currentNode.packed);
             // expand the node (since, if its g satisfies the goal test - it would be already returned)
             ++result.expanded;
             // Go over all the successors of the state
-            for (int i = 0; i < domain.getNumOperators(currentState); ++i) {
+            int numOperators = domain.getNumOperators(currentState);
+            for (int i = 0; i < numOperators; ++i) {
                 // Get the current operator
                 Operator op = domain.getOperator(currentState, i);
                 // Don't apply the previous operator on the state - in order not to enter a loop
@@ -194,7 +206,7 @@ public class PTS implements SearchAlgorithm {
                 // Otherwise, let's generate the child state
                 ++result.generated;
                 // Get it by applying the operator on the parent state
-                State childState = domain.applyOperator(currentState, op);
+                State childState = this.buffers.applyOperator(currentState, op, 0);
                 // Create a search node for this state
                 Node childNode = new Node(childState, currentNode, currentState, op, op.reverse(currentState));
 
@@ -18,6 +18,7 @@ package org.cs4j.core.algorithms;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,19 +28,38 @@ import org.cs4j.core.SearchDomain.Operator;
 import org.cs4j.core.SearchDomain.State;
 import org.cs4j.core.algorithms.SearchResultImpl.SolutionImpl;
 import org.cs4j.core.SearchResult;
+import org.cs4j.core.collections.PackedElement;
 
 
 /**
  * Recursive Best-First Search
+ *
+ * Optionally, the search uses a bounded transposition table (see TranspositionTable): a state which was already
+ * reached with a smaller g is pruned, and the stored backed-up f of a state is used when it is generated again.
  * 
  * @author Matthew Hatem
  */
 public class RBFS implements SearchAlgorithm {
+
+  private static final Map<String, Class> RBFSPossibleParameters;
+
+  // Declare the parameters that can be tuned before running the search
+  static
+  {
+    RBFSPossibleParameters = new HashMap<>();
+    // The memory of the transposition table in MB (0 means no transposition table)
+    RBFS.RBFSPossibleParameters.put("transposition-table-mb", Integer.class);
+    RBFS.RBFSPossibleParameters.put("transposition-table-policy", String.class);
+  }
   
 	private SearchResultImpl result;
 	private SearchDomain domain;
   private Node goal;
   private double weight;
+
+  private int transpositionTableMB;
+  private TranspositionTable.ReplacementPolicy transpositionTablePolicy;
+  private TranspositionTable transpositionTable;
   
   private List<Operator> path = new ArrayList<Operator>(3);
   
@@ -49,6 +69,8 @@ public class RBFS implements SearchAlgorithm {
   
   public RBFS(double w) {
     this.weight = w;
+    this.transpositionTableMB = 0;
+    this.transpositionTablePolicy = TranspositionTable.ReplacementPolicy.TWO_TIER;
   }
 
   @Override
@@ -58,12 +80,28 @@ public class RBFS implements SearchAlgorithm {
 
   @Override
   public Map<String, Class> getPossibleParameters() {
-    return null;
+    return RBFS.RBFSPossibleParameters;
   }
 
   @Override
   public void setAdditionalParameter(String parameterName, String value) {
-    throw new UnsupportedOperationException();
+    switch (parameterName) {
+      case "transposition-table-mb": {
+        this.transpositionTableMB = Integer.parseInt(value);
+        if (this.transpositionTableMB < 0) {
+          System.out.println("[ERROR] The memory of the transposition table must be >= 0");
+          throw new IllegalArgumentException();
+        }
+        break;
+      }
+      case "transposition-table-policy": {
+        this.transpositionTablePolicy = TranspositionTable.ReplacementPolicy.fromString(value);
+        break;
+      }
+      default: {
+        throw new UnsupportedOperationException();
+      }
+    }
   }
 
   @Override
@@ -72,6 +110,9 @@ public class RBFS implements SearchAlgorithm {
     
   	result = new SearchResultImpl();
     result.startTimer();
+    this.transpositionTable = (this.transpositionTableMB > 0) ?
+        new TranspositionTable(this.transpositionTableMB * 1024L * 1024L, this.transpositionTablePolicy) :
+        null;
     
     State initialState = domain.initialState();
     Node initialNode = new Node(initialState);
@@ -79,6 +120,8 @@ public class RBFS implements SearchAlgorithm {
     rbfs(initialNode, Double.MAX_VALUE);
     
     result.stopTimer();
+    // Release the memory of the table
+    this.transpositionTable = null;
     
     if (goal != null) {
     	SolutionImpl solution = new SolutionImpl();
@@ -108,6 +151,8 @@ public class RBFS implements SearchAlgorithm {
     
     // generate all successors
     result.expanded++;
+    long expandedBefore = result.expanded;
+    long duplicatesBefore = result.duplicates;
     List<Node> succ = new ArrayList<Node>();
     int numOps = domain.getNumOperators(n.state);
     for (int i = 0; i < numOps; i++) {
@@ -117,7 +162,17 @@ public class RBFS implements SearchAlgorithm {
       }
       result.generated++;
       State childState = domain.applyOperator(n.state, op);
-      succ.add(new Node(childState, n, n.state, op, op.reverse(n.state)));
+      Node child = new Node(childState, n, n.state, op, op.reverse(n.state));
+      if (this.transpositionTable != null) {
+        child.packed = domain.pack(child.state);
+        child.entry = this.transpositionTable.find(child.packed);
+        // The state was already reached with a smaller g
+        if (child.entry != TranspositionTable.NOT_FOUND && this.transpositionTable.getG(child.entry) < child.g) {
+          result.duplicates++;
+          continue;
+        }
+      }
+      succ.add(child);
     }
     
     // no successors
@@ -133,6 +188,11 @@ public class RBFS implements SearchAlgorithm {
       else {
         s.fPrime = s.f;
       }
+      // The stored backed-up f excludes the parent, hence it is valid only if the parent is the same
+      if (s.entry != TranspositionTable.NOT_FOUND && s.pop.equals(this.transpositionTable.getPop(s.entry))) {
+        s.fPrime = Math.max(s.fPrime,
+            s.g + this.transpositionTable.getF(s.entry) - this.transpositionTable.getG(s.entry));
+      }
     }
     
     // explore virtual fringe
@@ -145,6 +205,14 @@ public class RBFS implements SearchAlgorithm {
       Collections.sort(succ);
       top = succ.get(0);       
     }
+
+    if (this.transpositionTable != null && goal == null) {
+      // If a duplicate was pruned in the subtree, its backed-up f isn't a valid bound
+      double backedUpF = (result.duplicates == duplicatesBefore) ? Math.max(n.f, top.fPrime) : n.f;
+      PackedElement packed = (n.packed != null) ? n.packed : this.domain.pack(n.state);
+      this.transpositionTable.store(packed, n.g, backedUpF, n.pop,
+          result.expanded - expandedBefore, 0);
+    }
         
     return top.fPrime;    
   }
@@ -159,6 +227,9 @@ public class RBFS implements SearchAlgorithm {
     State state;
     Node parent;
     double fPrime;
+    // The packed state and its entry in the transposition table (if a table is used)
+    PackedElement packed;
+    int entry = TranspositionTable.NOT_FOUND;
     
     private Node(State state) {
     	this(state, null, null, null, null);
@@ -58,6 +58,22 @@ public class SearchResultImpl implements SearchResult {
     private List<Solution> solutions = new ArrayList<>();
     private int minTimeOutInMs;
 
+    // The default time out of a search (20 minutes)
+    public static final int DEFAULT_TIME_OUT_IN_MS = 1000 * 60 * 20;
+    // The time out of the searches which are started by the current thread (see setTimeOutForCurrentThread)
+    private static final ThreadLocal<Integer> threadTimeOutInMs =
+            ThreadLocal.withInitial(() -> SearchResultImpl.DEFAULT_TIME_OUT_IN_MS);
+
+    /**
+     * Sets the time out of all the searches which will be started by the current thread (the searches stop when
+     * checkMinTimeOut returns false)
+     *
+     * @param timeOutInMs The time out in milliseconds
+     */
+    public static void setTimeOutForCurrentThread(int timeOutInMs) {
+        SearchResultImpl.threadTimeOutInMs.set(timeOutInMs);
+    }
+
     public void setExtras(String key,Object val){
         extras.put(key,val);
     }
@@ -200,7 +216,7 @@ public class SearchResultImpl implements SearchResult {
     public void startTimer() {
         this.startWallTimeMillis = System.currentTimeMillis();
         this.startCpuTimeMillis = getCpuTime();
-        this.minTimeOutInMs = 1000*60*20;
+        this.minTimeOutInMs = SearchResultImpl.threadTimeOutInMs.get();
     }
 
     public void stopTimer() {
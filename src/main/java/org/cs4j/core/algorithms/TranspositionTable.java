@@ -0,0 +1,302 @@
+package org.cs4j.core.algorithms;
+
+import org.cs4j.core.SearchDomain.Operator;
+import org.cs4j.core.collections.PackedElement;
+
+import java.util.Arrays;
+
+/**
+ * A bounded transposition table for the linear-space searches (IDAstar and RBFS).
+ *
+ * Each entry is keyed by a packed state and stores the best g with which the state was searched, the backed-up f of
+ * its subtree, the reverse operator of the search (the backed-up f doesn't take the parent into account, hence it is
+ * valid only when the state is reached from the same parent), the amount of work (expansions) that the subtree took
+ * and the iteration in which the entry was stored.
+ *
+ * The table never grows: its capacity is derived from a memory cap, and when the bucket of a key is occupied, the
+ * replacement policy decides which entry to keep:
+ *
+ * DEPTH_PREFERRED - each bucket holds a single entry, which is replaced by an entry of more work (or by any entry, if
+ *                   it is from a previous iteration)
+ * TWO_TIER - each bucket holds two entries: a depth-preferred one and one which is always replaced (an entry which is
+ *            pushed out of the first tier moves to the second one)
+ */
+public final class TranspositionTable {
+
+    public static final int NOT_FOUND = -1;
+
+    // The iteration and work of an empty entry (iterations are non-negative)
+    private static final long EMPTY_INFO = -1L;
+
+    public enum ReplacementPolicy {
+        DEPTH_PREFERRED("depth-preferred", 1),
+        TWO_TIER("two-tier", 2);
+
+        private final String name;
+        private final int bucketSize;
+
+        ReplacementPolicy(String name, int bucketSize) {
+            this.name = name;
+            this.bucketSize = bucketSize;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Finds the policy that matches the given value of the "transposition-table-policy" parameter
+         *
+         * @param value The value of the parameter (e.g. "depth-preferred", "two-tier")
+         *
+         * @return The matching policy
+         */
+        public static ReplacementPolicy fromString(String value) {
+            for (ReplacementPolicy policy : ReplacementPolicy.values()) {
+                if (policy.name.equalsIgnoreCase(value) || policy.name().equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            System.out.println("[ERROR] Unknown transposition table policy: " + value +
+                    " (the available policies are depth-preferred and two-tier)");
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private final long memoryBytes;
+    private final ReplacementPolicy policy;
+    private final int bucketSize;
+
+    // The number of longs in each key (0 means that no key has been stored yet - the table is allocated lazily, since
+    // its capacity depends on the size of the keys)
+    private int width;
+    // The number of longs in each entry: the key, g, f (as raw long bits) and the iteration and work (packed)
+    private int stride;
+    private int bucketsMask;
+    // The entries are interleaved, so that looking an entry up touches as few cache lines as possible
+    private long[] entries;
+    // The reverse operators (only read when the backed-up f of an entry is used)
+    private Operator[] pops;
+    private int size;
+
+    /**
+     * @param memoryBytes The maximum memory that the entries may take (in bytes)
+     * @param policy The replacement policy
+     */
+    public TranspositionTable(long memoryBytes, ReplacementPolicy policy) {
+        if (memoryBytes <= 0) {
+            System.out.println("[ERROR] The memory of the transposition table must be > 0");
+            throw new IllegalArgumentException();
+        }
+        this.memoryBytes = memoryBytes;
+        this.policy = policy;
+        this.bucketSize = policy.bucketSize;
+        this.width = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Allocates the table for keys of the given number of longs
+     */
+    private void allocate(int width) {
+        int stride = width + 3;
+        // The entry and the reference to the operator
+        long entryBytes = 8L * stride + 8;
+        long buckets = Math.max(1L, this.memoryBytes / (entryBytes * this.bucketSize));
+        buckets = Math.min(Long.highestOneBit(buckets),
+                Integer.highestOneBit(Integer.MAX_VALUE / this.bucketSize / stride));
+        int capacity = (int) buckets * this.bucketSize;
+        this.width = width;
+        this.stride = stride;
+        this.bucketsMask = (int) buckets - 1;
+        this.entries = new long[capacity * stride];
+        this.pops = new Operator[capacity];
+        this.clear();
+    }
+
+    /**
+     * @return The maximum number of entries in the table (0 if nothing was stored yet)
+     */
+    public int getCapacity() {
+        return (this.pops == null) ? 0 : this.pops.length;
+    }
+
+    /**
+     * @return The number of stored entries
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public void clear() {
+        if (this.pops != null) {
+            for (int entry = 0; entry < this.pops.length; ++entry) {
+                this.entries[entry * this.stride + this.width + 2] = TranspositionTable.EMPTY_INFO;
+            }
+            Arrays.fill(this.pops, null);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Scrambles the bits of a long (the MurmurHash3 finalizer) - packed states are usually far from uniform
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * @return The first entry of the bucket of the given key
+     */
+    private int bucketOf(long[] key) {
+        long h = 0;
+        for (int i = 0; i < this.width; ++i) {
+            h = TranspositionTable.mix(h * 31 + key[i]);
+        }
+        return ((int) h & this.bucketsMask) * this.bucketSize;
+    }
+
+    /**
+     * @return The iteration and the work of the given entry (EMPTY_INFO for empty entries)
+     */
+    private long info(int entry) {
+        return this.entries[entry * this.stride + this.width + 2];
+    }
+
+    private static int iterationOf(long info) {
+        return (int) (info >> 32);
+    }
+
+    private static int workOf(long info) {
+        return (int) info;
+    }
+
+    private boolean matches(int entry, long[] key) {
+        int offset = entry * this.stride;
+        for (int i = 0; i < this.width; ++i) {
+            if (this.entries[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return this.info(entry) != TranspositionTable.EMPTY_INFO;
+    }
+
+    /**
+     * Looks a state up
+     *
+     * @param key The packed state
+     *
+     * @return The entry of the state (to be passed to the getters) or NOT_FOUND
+     */
+    public int find(PackedElement key) {
+        if (this.width == 0 || key.getLongsCount() != this.width) {
+            return TranspositionTable.NOT_FOUND;
+        }
+        long[] internal = key.getInternal();
+        int bucket = this.bucketOf(internal);
+        for (int entry = bucket; entry < bucket + this.bucketSize; ++entry) {
+            if (this.matches(entry, internal)) {
+                return entry;
+            }
+        }
+        return TranspositionTable.NOT_FOUND;
+    }
+
+    public double getG(int entry) {
+        return Double.longBitsToDouble(this.entries[entry * this.stride + this.width]);
+    }
+
+    public double getF(int entry) {
+        return Double.longBitsToDouble(this.entries[entry * this.stride + this.width + 1]);
+    }
+
+    public Operator getPop(int entry) {
+        return this.pops[entry];
+    }
+
+    public int getIteration(int entry) {
+        return TranspositionTable.iterationOf(this.info(entry));
+    }
+
+    private void write(int entry, long[] key, double g, double f, Operator pop, int work, int iteration) {
+        int offset = entry * this.stride;
+        if (this.entries[offset + this.width + 2] == TranspositionTable.EMPTY_INFO) {
+            ++this.size;
+        }
+        System.arraycopy(key, 0, this.entries, offset, this.width);
+        this.entries[offset + this.width] = Double.doubleToRawLongBits(g);
+        this.entries[offset + this.width + 1] = Double.doubleToRawLongBits(f);
+        this.entries[offset + this.width + 2] = ((long) iteration << 32) | work;
+        this.pops[entry] = pop;
+    }
+
+    private void move(int from, int to) {
+        if (this.info(to) == TranspositionTable.EMPTY_INFO) {
+            ++this.size;
+        }
+        System.arraycopy(this.entries, from * this.stride, this.entries, to * this.stride, this.stride);
+        this.pops[to] = this.pops[from];
+    }
+
+    /**
+     * @return Whether a new entry (of the given work and iteration) should replace the given entry
+     */
+    private boolean preferred(int entry, int work, int iteration) {
+        long info = this.info(entry);
+        return info == TranspositionTable.EMPTY_INFO ||
+                TranspositionTable.iterationOf(info) != iteration ||
+                work >= TranspositionTable.workOf(info);
+    }
+
+    /**
+     * Stores the search result of a state (the entry may be dropped, according to the replacement policy)
+     *
+     * An existing entry of the same state is updated, unless it was stored in the same iteration with a smaller g
+     *
+     * @param key The packed state
+     * @param g The g with which the state was searched
+     * @param f The backed-up f of the subtree of the state
+     * @param pop The reverse operator of the search (the operator that leads back to the parent, null for the root)
+     * @param work The amount of work of the search of the subtree (e.g. the number of expanded nodes)
+     * @param iteration The current iteration
+     */
+    public void store(PackedElement key, double g, double f, Operator pop, long work, int iteration) {
+        if (this.width == 0) {
+            this.allocate(key.getLongsCount());
+        } else if (key.getLongsCount() != this.width) {
+            System.out.println("[ERROR] All the keys of the transposition table must be composed of " +
+                    this.width + " longs (got " + key.getLongsCount() + ")");
+            throw new IllegalArgumentException();
+        }
+        long[] internal = key.getInternal();
+        int intWork = (int) Math.min(work, Integer.MAX_VALUE);
+        int bucket = this.bucketOf(internal);
+        for (int entry = bucket; entry < bucket + this.bucketSize; ++entry) {
+            if (this.matches(entry, internal)) {
+                if (this.getIteration(entry) != iteration || g <= this.getG(entry)) {
+                    this.write(entry, internal, g, f, pop, intWork, iteration);
+                }
+                return;
+            }
+        }
+        // The first tier is depth-preferred
+        if (this.preferred(bucket, intWork, iteration)) {
+            // An entry which is pushed out of the first tier moves to the second one (if there is one)
+            if (this.bucketSize > 1 && this.info(bucket) != TranspositionTable.EMPTY_INFO) {
+                this.move(bucket, bucket + 1);
+            }
+            this.write(bucket, internal, g, f, pop, intWork, iteration);
+        } else if (this.bucketSize > 1) {
+            // The second tier is always replaced
+            this.write(bucket + 1, internal, g, f, pop, intWork, iteration);
+        }
+    }
+}
@@ -48,6 +48,11 @@ public class WAStar implements SearchAlgorithm {
         WAStar.WAStarPossibleParameters.put("reopen", Boolean.class);
         WAStar.WAStarPossibleParameters.put("max-cost", Double.class);
         WAStar.WAStarPossibleParameters.put("bpmx", Boolean.class);
+        WAStar.WAStarPossibleParameters.put("closed-impl", String.class);
+        WAStar.WAStarPossibleParameters.put("node-store", Boolean.class);
+        WAStar.WAStarPossibleParameters.put("heap-type", String.class);
+        WAStar.WAStarPossibleParameters.put("bucket-scale", Double.class);
+        WAStar.WAStarPossibleParameters.put("bucket-lifo", Boolean.class);
     }
 
     // The domain for the search
@@ -56,13 +61,36 @@ public class WAStar implements SearchAlgorithm {
     protected SearchQueue<Node> open;
 //    private BinHeapF<Node> openF;
     // Closed list (seen states)
-    protected TreeMap<PackedElement, Node> closed;
-//    private Map<PackedElement, Node> closed;
-
-    // TODO ...
+    protected ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    protected ClosedListType closedListType;
+
+    // Whether to keep the nodes in a struct-of-arrays NodeStore instead of a Node object per state
+    protected boolean useNodeStore;
+    protected NodeStore store;
+    protected NodeStoreHeap storeOpen;
+    // Reusable states for the expansions (no state is allocated per generated node)
+    protected ExpansionBuffers buffers;
+
+    // The type of OPEN: a binary heap, or a bucket heap (for integral, or small-denominator, costs)
     protected HeapType heapType;
+    // The number of buckets per unit of cost, and the order of nodes with the same f and g (in a bucket heap)
+    protected double bucketScale;
+    protected boolean bucketLifo;
 
-    public enum HeapType {BIN, BUCKET}
+    public enum HeapType {
+        BIN, BUCKET;
+
+        public static HeapType fromString(String value) {
+            for (HeapType type : HeapType.values()) {
+                if (type.name().equalsIgnoreCase(value)) {
+                    return type;
+                }
+            }
+            System.out.println("[ERROR] Unknown heap type: " + value + " (the available types are bin and bucket)");
+            throw new IllegalArgumentException();
+        }
+    }
 
     // For weighted A*
     protected double weight;
@@ -87,6 +115,10 @@ public class WAStar implements SearchAlgorithm {
         this.maxCost = Double.MAX_VALUE;
         this.useBPMX = false;
         this.FR = Integer.MAX_VALUE;
+        this.closedListType = ClosedListType.TREE;
+        this.useNodeStore = false;
+        this.bucketScale = 1;
+        this.bucketLifo = true;
     }
 
 
@@ -127,7 +159,7 @@ public class WAStar implements SearchAlgorithm {
         SearchQueue<Node> heap = null;
         switch (heapType) {
             case BUCKET:
-//                heap = new BucketHeap<>(size, QID);
+                heap = new BucketHeap<>(size, QID, this.bucketScale, this.bucketLifo);
                 break;
             case BIN:
                 heap = new BinHeap<>(new NodeComparator(), 0);
@@ -138,15 +170,17 @@ public class WAStar implements SearchAlgorithm {
 
     protected void _initDataStructures(SearchDomain domain) {
         this.domain = domain;
-        this.open = new BinHeap<>(new NodeComparator(), 0);
+        this.buffers = new ExpansionBuffers(domain);
 //        this.openF = new BinHeapF<>(1,domain);
-//        this.open = buildHeap(heapType, 100);
-        this.closed = new TreeMap<>();
-//        this.closed = new HashMap<>();
+        this.open = buildHeap(heapType, 100);
+        this.closed = this.closedListType.create();
     }
 
     @Override
     public SearchResult search(SearchDomain domain) {
+        if (this.useNodeStore) {
+            return this._searchOnNodeStore(domain);
+        }
         // Initialize all the data structures required for the search
         this._initDataStructures(domain);
         Node goal = null;
@@ -174,7 +208,7 @@ public class WAStar implements SearchAlgorithm {
                 }
 
                 // Extract the state from the packed value of the node
-                currentState = domain.unpack(currentNode.packed);
+                currentState = this.buffers.unpack(currentNode.packed);
 
                 //System.out.println(currentState.dumpStateShort());
                 // Check for goal condition
@@ -191,13 +225,15 @@ public class WAStar implements SearchAlgorithm {
                 double bestHValue = 0.0d;
                 // First, let's generate all the children
                 // Go over all the possible operators and apply them
-                for (int i = 0; i < domain.getNumOperators(currentState); ++i) {
+                int numOperators = domain.getNumOperators(currentState);
+                for (int i = 0; i < numOperators; ++i) {
                     Operator op = domain.getOperator(currentState, i);
                     // Try to avoid loops
                     if (op.equals(currentNode.pop)) {
                         continue;
                     }
-                    State childState = domain.applyOperator(currentState, op);
+                    // Each child has its own buffer, since the children are kept until all of them are generated
+                    State childState = this.buffers.applyOperator(currentState, op, i);
                     Node childNode = new Node(childState, currentNode, currentState, op, op.reverse(currentState));
                     // Here we actually generated a new state
                     ++result.generated;
@@ -363,6 +399,190 @@ public class WAStar implements SearchAlgorithm {
         return result;
     }
 
+    /**
+     * The same search as search(), but the nodes are kept in a NodeStore (a struct of primitive arrays), and
+     * OPEN is a NodeStoreHeap of node ids - hence, no object is retained per generated node.
+     *
+     * Since the store keeps only the index of the operator that generated each node, the operator which reverses
+     * it (used for avoiding the immediate return to the parent) is recomputed from the parent state on expansion.
+     *
+     * NOTE: BPMX isn't supported in this mode
+     *
+     * @param domain The domain to apply the search on
+     *
+     * @return The search result
+     */
+    protected SearchResult _searchOnNodeStore(SearchDomain domain) {
+        if (this.useBPMX) {
+            System.out.println("[ERROR] BPMX isn't supported when running on a node store");
+            throw new UnsupportedOperationException();
+        }
+        if (this.heapType != HeapType.BIN) {
+            System.out.println("[ERROR] Only a binary heap is supported when running on a node store");
+            throw new UnsupportedOperationException();
+        }
+        this.domain = domain;
+        this.buffers = new ExpansionBuffers(domain);
+        this.store = new NodeStore();
+        this.storeOpen = new NodeStoreHeap(this.store);
+        int goal = NodeStore.NO_NODE;
+
+        result = new SearchResultImpl();
+
+        result.startTimer();
+
+        // Let's instantiate the initial state and add it to the frontier
+        State initialState = domain.initialState();
+        int initNode = this.store.add(domain.pack(initialState), 0, initialState.getH(), NodeStore.NO_NODE, -1);
+        this._addStoreNode(initNode);
+        try {
+            // Loop over the frontier
+            while (!this.storeOpen.isEmpty() && result.getGenerated() < this.domain.maxGeneratedSize() && result.checkMinTimeOut()) {
+                int currentNode = this.storeOpen.poll();
+                double currentG = this.store.getG(currentNode);
+                // Prune
+                if (currentG + this.store.getH(currentNode) >= this.maxCost) {
+                    continue;
+                }
+
+                // Extract the state from the packed value of the node
+                State currentState = this.buffers.unpack(this.store.getPacked(currentNode));
+
+                // Check for goal condition
+                if (domain.isGoal(currentState)) {
+                    goal = currentNode;
+                    break;
+                }
+
+                // Expand the current node
+                ++result.expanded;
+                Operator pop = this._getStoreNodeReverseOperator(currentNode);
+                int numOperators = domain.getNumOperators(currentState);
+                for (int i = 0; i < numOperators; ++i) {
+                    Operator op = domain.getOperator(currentState, i);
+                    // Try to avoid loops
+                    if (op.equals(pop)) {
+                        continue;
+                    }
+                    State childState = this.buffers.applyOperator(currentState, op, 0);
+                    // Here we actually generated a new state
+                    ++result.generated;
+                    double childG = currentG + op.getCost(childState, currentState);
+                    double childH = childState.getH();
+
+                    // Prune
+                    if (childG + childH >= this.maxCost) {
+                        continue;
+                    }
+                    // Treat duplicates
+                    PackedElement childPacked = domain.pack(childState);
+                    int dupChildNode = this.store.find(childPacked);
+                    if (dupChildNode != NodeStore.NO_NODE) {
+                        // Count the duplicates
+                        ++result.duplicates;
+                        double dupG = this.store.getG(dupChildNode);
+                        // Found a shorter path to the node
+                        if (dupG > childG) {
+                            double dupH = this.store.getH(dupChildNode);
+                            // Check that the f actually decreases
+                            if (dupG + this.weight * dupH <= childG + this.weight * childH) {
+                                if (this.domain.isCurrentHeuristicConsistent()) {
+                                    assert false;
+                                }
+                                continue;
+                            }
+                            // In any case update the duplicate with the new values - we reached it via a shorter path
+                            this.store.setG(dupChildNode, childG);
+                            this.store.setParent(dupChildNode, currentNode);
+                            this.store.setOperator(dupChildNode, i);
+
+                            // if dupChildNode is in open, update it there too
+                            if (this.storeOpen.contains(dupChildNode)) {
+                                ++result.opupdated;
+                                this.storeOpen.update(dupChildNode, childG + this.weight * dupH, -childG);
+                            }
+                            // Otherwise, consider to reopen dupChildNode
+                            else if (this.reopen) {
+                                ++result.reopened;
+                                this._addStoreNode(dupChildNode);
+                            }
+                        }
+                        // Otherwise, the node is new (hasn't been reached yet)
+                    } else {
+                        this._addStoreNode(this.store.add(childPacked, childG, childH, currentNode, i));
+                    }
+                }
+            }
+        }
+        catch(OutOfMemoryError e){
+            System.out.println("[INFO] WAstar OutOfMemory :-( "+e);
+            System.out.println("[INFO] OutOfMemory WAstar on:"+this.domain.getClass().getSimpleName()+" generated:"+result.getGenerated());
+        }
+
+        result.stopTimer();
+
+        // If a goal was found: update the solution
+        if (goal != NodeStore.NO_NODE) {
+            SolutionImpl solution = new SolutionImpl(this.domain);
+            List<Operator> path = new ArrayList<>();
+            List<State> statesPath = new ArrayList<>();
+            double cost = 0;
+
+            State currentState = domain.unpack(this.store.getPacked(goal));
+            for (int currentNode = goal; currentNode != NodeStore.NO_NODE; currentNode = this.store.getParent(currentNode)) {
+                statesPath.add(currentState);
+                int parentNode = this.store.getParent(currentNode);
+                if (parentNode != NodeStore.NO_NODE) {
+                    State parentState = domain.unpack(this.store.getPacked(parentNode));
+                    Operator op = domain.getOperator(parentState, this.store.getOperator(currentNode));
+                    path.add(op);
+                    cost += op.getCost(currentState, parentState);
+                    currentState = parentState;
+                }
+            }
+            // The actual size of the found path can be only lower the G value of the found goal
+            assert cost <= this.store.getG(goal);
+
+            Collections.reverse(path);
+            solution.addOperators(path);
+
+            Collections.reverse(statesPath);
+            solution.addStates(statesPath);
+
+            solution.setCost(cost);
+            result.addSolution(solution);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a node of the store to OPEN (ordered by wF and then by g - bigger is preferred)
+     *
+     * @param node The id of the node to add
+     */
+    protected void _addStoreNode(int node) {
+        double g = this.store.getG(node);
+        this.storeOpen.add(node, g + this.weight * this.store.getH(node), -g);
+    }
+
+    /**
+     * Computes the operator which reverses the last operator applied on a node of the store
+     * (the equivalent of Node.pop)
+     *
+     * @param node The id of the node
+     *
+     * @return The reverse operator or null if the node is the root
+     */
+    protected Operator _getStoreNodeReverseOperator(int node) {
+        int parent = this.store.getParent(node);
+        if (parent == NodeStore.NO_NODE) {
+            return null;
+        }
+        State parentState = this.buffers.unpack(this.store.getPacked(parent), 1);
+        return this.domain.getOperator(parentState, this.store.getOperator(node)).reverse(parentState);
+    }
+
     /**
      *
      * @return chosen Node for expansion
@@ -430,6 +650,30 @@ public class WAStar implements SearchAlgorithm {
                 this.FR = Integer.parseInt(value);
                 break;
             }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
+            case "node-store": {
+                this.useNodeStore = Boolean.parseBoolean(value);
+                break;
+            }
+            case "heap-type": {
+                this.heapType = HeapType.fromString(value);
+                break;
+            }
+            case "bucket-scale": {
+                this.bucketScale = Double.parseDouble(value);
+                if (this.bucketScale <= 0) {
+                    System.out.println("[ERROR] The bucket scale must be > 0");
+                    throw new IllegalArgumentException();
+                }
+                break;
+            }
+            case "bucket-lifo": {
+                this.bucketLifo = Boolean.parseBoolean(value);
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException();
             }
@@ -439,7 +683,7 @@ public class WAStar implements SearchAlgorithm {
     /**
      * The node class
      */
-    protected final class Node extends SearchQueueElementImpl{
+    protected final class Node extends SearchQueueElementImpl implements BucketHeap.BucketHeapElement {
     	protected double g;
         protected double h;
 
@@ -448,13 +692,12 @@ public class WAStar implements SearchAlgorithm {
 
         protected Node parent;
         protected PackedElement packed;
-//        private int[] secondaryIndex;
+        private int[] secondaryIndex;
 
         protected Node(State state, Node parent, State parentState, Operator op, Operator pop) {
             // Size of key
             super(2);
-            // TODO: Why?
-//            this.secondaryIndex = new int[(heapType == HeapType.BUCKET) ? 2 : 1];
+            this.secondaryIndex = new int[2];
             double cost = (op != null) ? op.getCost(state, parentState) : 0;
             this.h = state.getH();
             // If each operation costs something, we should add the cost to the g value of the parent
@@ -527,6 +770,22 @@ public class WAStar implements SearchAlgorithm {
 
         @Override
         public SearchQueueElement getParent() {return this.parent;}
+
+        @Override
+        public void setSecondaryIndex(int key, int index) {
+            this.secondaryIndex[key] = index;
+        }
+
+        @Override
+        public int getSecondaryIndex(int key) {
+            return this.secondaryIndex[key];
+        }
+
+        @Override
+        public double getRank(int level) {
+            // The same order as the NodeComparator: by wF (smaller first), then by g (bigger first)
+            return (level == 0) ? this.getWf() : this.g;
+        }
     }
 
     /**
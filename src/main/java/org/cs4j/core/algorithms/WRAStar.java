@@ -56,6 +56,7 @@ public class WRAStar implements SearchAlgorithm {
         WRAStar.WRAStarPossibleParameters.put("iteration-to-start-reopening", Integer.class);
         WRAStar.WRAStarPossibleParameters.put("bpmx", Boolean.class);
         WRAStar.WRAStarPossibleParameters.put("restart-closed-list", Boolean.class);
+        WRAStar.WRAStarPossibleParameters.put("closed-impl", String.class);
     }
 
     // The domain for the search
@@ -71,7 +72,9 @@ public class WRAStar implements SearchAlgorithm {
     protected Map<PackedElement, Node> incons;
 
     // Closed list (seen states)
-    protected Map<PackedElement, Node> closed;
+    protected ClosedList<Node> closed;
+    // The implementation of the closed list (tree, hash or open-addressing)
+    protected ClosedListType closedListType;
 
     // TODO ...
     protected HeapType heapType;
@@ -101,6 +104,7 @@ public class WRAStar implements SearchAlgorithm {
         this.iterationToStartReopening = Integer.MAX_VALUE;
         // By default, empty the closed list after each iteration
         this.restartClosedList = true;
+        this.closedListType = ClosedListType.HASH;
     }
 
     @Override
@@ -118,7 +122,7 @@ public class WRAStar implements SearchAlgorithm {
                         new CleanupNodeComparator(),
                         1);
         this.incons = new HashMap<>();
-        this.closed = new HashMap<>();
+        this.closed = this.closedListType.create();
     }
 
     @Override
@@ -167,6 +171,10 @@ public class WRAStar implements SearchAlgorithm {
                 this.restartClosedList = Boolean.parseBoolean(value);
                 break;
             }
+            case "closed-impl": {
+                this.closedListType = ClosedListType.fromString(value);
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException();
             }
@@ -483,7 +491,7 @@ public class WRAStar implements SearchAlgorithm {
                 }
                 this.incons.clear();
                 if (this.restartClosedList) {
-                    this.closed = new HashMap<>();
+                    this.closed = this.closedListType.create();
                 }
                 System.out.println("[INFO] Calling another search iteration (maxCost = " + maxPreviousCost + ", bestF: " + bestF + ")");
             } else {
@@ -506,7 +514,7 @@ public class WRAStar implements SearchAlgorithm {
                     }
                     this.incons.clear();
                     if (this.restartClosedList) {
-                        this.closed = new HashMap<>();
+                        this.closed = this.closedListType.create();
                     }
                     continue;
                 }
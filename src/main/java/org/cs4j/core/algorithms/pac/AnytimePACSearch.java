@@ -28,8 +28,7 @@ public abstract class AnytimePACSearch extends AbstractAnytimeSearch {
     public void setAdditionalParameter(String parameterName, String value) {
         switch (parameterName) {
             default: {
-                logger.error("No such parameter: " + parameterName + " (value: " + value + ")");
-                throw new UnsupportedOperationException();
+                super.setAdditionalParameter(parameterName, value);
             }
         }
     }
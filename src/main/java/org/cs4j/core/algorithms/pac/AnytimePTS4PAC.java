@@ -3,9 +3,7 @@ package org.cs4j.core.algorithms.pac;
 import org.cs4j.core.SearchResult;
 import org.cs4j.core.algorithms.AnytimeSearchNode;
 
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * Created by Roni Stern on 26/02/2017.
@@ -35,6 +33,12 @@ public class AnytimePTS4PAC extends AnytimePACSearch {
     }
 
 
+    @Override
+    protected double getNodeStorePrimaryKey(double g, double h) {
+        // The potential is maximized, hence its negation is minimized
+        return -(this.incumbentSolution - g) / h;
+    }
+
     /**
      * Resort OPEN before continuing the search, because the PTS evaluation function considers the incumbent solution
      * @param newSolution the new result found
@@ -43,11 +47,7 @@ public class AnytimePTS4PAC extends AnytimePACSearch {
     protected void addNewIncumbent(SearchResult.Solution newSolution){
         super.addNewIncumbent(newSolution);
 
-        //@TODO: Replace this by defining an iterator over open instead of adding and removing all of the nodes in OPEN
-        // Get all nodes in OPEN by removing all of them and then re-inserting them
-        List<AnytimeSearchNode> openNodes = new ArrayList<>(this.open.size());
-        while(this.open.size()>0) openNodes.add(this.open.poll());
-        for(AnytimeSearchNode node : openNodes) this.open.add(node);
-        openNodes.clear(); // To free space. Probably this is not needed @TODO: Check if this helps memory and runtime
+        // Resort open according to the new incumbent
+        this.rekeyOpen();
     }
 }
@@ -1,7 +1,7 @@
 package org.cs4j.core.algorithms.pac;
 
 import java.util.Map;
-import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Created by user on 26/02/2017.
@@ -12,4 +12,24 @@ public class PACStatistics {
     public Map<Integer, Double> instanceToOptimal;
     public Map<Integer, Double> instanceToInitialH;
 
+    // The rows from which the maps were built (the data derived from the statistics is cached by the version of the
+    // table - see PACUtils.getDerived - hence the maps shouldn't be changed)
+    public final PACStatisticsTable table;
+
+    /**
+     * Creates the statistics from the rows of a statistics file (if an instance appears more than once, its last row
+     * is used)
+     *
+     * @param table The rows of the statistics file
+     */
+    public PACStatistics(PACStatisticsTable table) {
+        this.table = table;
+        this.instanceToOptimal = new TreeMap<>();
+        this.instanceToInitialH = new TreeMap<>();
+        for (int i = 0; i < table.size(); ++i) {
+            this.instanceToOptimal.put(table.instances[i], table.optimals[i]);
+            this.instanceToInitialH.put(table.instances[i], table.initialHs[i]);
+        }
+    }
+
 }
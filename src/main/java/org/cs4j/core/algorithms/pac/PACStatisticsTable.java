@@ -0,0 +1,245 @@
+package org.cs4j.core.algorithms.pac;
+
+import org.apache.log4j.Logger;
+import org.cs4j.core.pac.conf.PacConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The rows of a PAC statistics file (StatisticsGenerator.csv or openBasedStatistics.csv), kept in primitive columns:
+ * the instance id, the h value (of the initial state) and the optimal cost - in the order of the file.
+ *
+ * Parsing a CSV file is slow, hence the first time a CSV file is read, its columns are also written into a binary file
+ * in the statistics cache directory (PacConfig.pacStatisticsCacheDirectory - the input directories are left untouched)
+ * which is memory-mapped by the next reads (as long as the CSV file isn't modified). The binary file is named after the
+ * CSV file and a hash of its absolute path (+ BINARY_SUFFIX), and consists of MAGIC (int), the last-modified time and the length of the CSV file (longs),
+ * the number of rows (int), and then the three columns (int ids, double h values and double optimal costs).
+ *
+ * Each loaded table gets a unique version, which identifies the data derived from it (see PACUtils.getDerived).
+ */
+public class PACStatisticsTable {
+
+    final static Logger logger = Logger.getLogger(PACStatisticsTable.class);
+
+    // "PACS"
+    public static final int MAGIC = 0x50414353;
+    public static final String BINARY_SUFFIX = ".bin";
+    // Magic, the last-modified time and the length of the CSV file, and the number of rows
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 4;
+
+    private static final AtomicLong nextVersion = new AtomicLong();
+
+    public final int[] instances;
+    public final double[] initialHs;
+    public final double[] optimals;
+    public final long version;
+
+    // The last-modified time and the length of the CSV file from which the table was read
+    private final long sourceLastModified;
+    private final long sourceLength;
+
+    private PACStatisticsTable(int[] instances, double[] initialHs, double[] optimals,
+                               long sourceLastModified, long sourceLength) {
+        this.instances = instances;
+        this.initialHs = initialHs;
+        this.optimals = optimals;
+        this.sourceLastModified = sourceLastModified;
+        this.sourceLength = sourceLength;
+        this.version = PACStatisticsTable.nextVersion.incrementAndGet();
+    }
+
+    /**
+     * @return The number of rows in the table
+     */
+    public int size() {
+        return this.instances.length;
+    }
+
+    /**
+     * @param csvFileName The name of the CSV file
+     *
+     * @return Whether the table still reflects the given CSV file (i.e. the file wasn't modified since it was read)
+     */
+    public boolean isUpToDate(String csvFileName) {
+        File csvFile = new File(csvFileName);
+        return !csvFile.exists() ||
+                (csvFile.lastModified() == this.sourceLastModified && csvFile.length() == this.sourceLength);
+    }
+
+    /**
+     * Reads a statistics table, through the binary files of the configured cache directory
+     *
+     * @param csvFileName The name of the CSV file
+     *
+     * @return The read table
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static PACStatisticsTable read(String csvFileName) throws IOException {
+        return PACStatisticsTable.read(csvFileName, PacConfig.instance.pacStatisticsCacheDirectory());
+    }
+
+    /**
+     * @param csvFileName The name of the CSV file
+     * @param cacheDirectory The directory of the binary files
+     *
+     * @return The binary file of the given CSV file (the absolute path of the CSV file is hashed into the name, so that
+     * CSV files of different directories don't share a binary file)
+     */
+    public static File getBinaryFile(String csvFileName, String cacheDirectory) {
+        File csvFile = new File(csvFileName).getAbsoluteFile();
+        return new File(cacheDirectory, csvFile.getName() + "-" + Integer.toHexString(csvFile.getPath().hashCode()) +
+                PACStatisticsTable.BINARY_SUFFIX);
+    }
+
+    /**
+     * Reads a statistics table - from the binary file if it is up to date, and from the CSV file otherwise
+     * (in this case the binary file is (re)written)
+     *
+     * @param csvFileName The name of the CSV file
+     * @param cacheDirectory The directory of the binary files (null or empty means that the CSV file is always parsed)
+     *
+     * @return The read table
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static PACStatisticsTable read(String csvFileName, String cacheDirectory) throws IOException {
+        File csvFile = new File(csvFileName);
+        if (cacheDirectory == null || cacheDirectory.isEmpty()) {
+            return PACStatisticsTable.readCSV(csvFile);
+        }
+        File binaryFile = PACStatisticsTable.getBinaryFile(csvFileName, cacheDirectory);
+        if (binaryFile.exists()) {
+            PACStatisticsTable table = PACStatisticsTable.readBinary(binaryFile);
+            // If there is no CSV file, the binary file is all we have
+            if (table != null && (!csvFile.exists() || table.isUpToDate(csvFileName))) {
+                return table;
+            }
+        }
+        PACStatisticsTable table = PACStatisticsTable.readCSV(csvFile);
+        try {
+            Files.createDirectories(Paths.get(cacheDirectory));
+            table.writeBinary(binaryFile);
+        } catch (IOException e) {
+            // Not critical - the CSV will be parsed again next time
+            logger.warn("Cannot write binary statistics file " + binaryFile, e);
+        }
+        return table;
+    }
+
+    /**
+     * Parses a CSV file of (instance, h, optimal) rows (the first row is for the column headers)
+     */
+    private static PACStatisticsTable readCSV(File csvFile) throws IOException {
+        int[] instances = new int[1024];
+        double[] initialHs = new double[1024];
+        double[] optimals = new double[1024];
+        int rows = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(csvFile));
+        try {
+            reader.readLine(); // Ignore the first row - it is for the column headers
+            String line = reader.readLine();
+            String[] parts;
+            while (line != null) {
+                if (rows == instances.length) {
+                    instances = Arrays.copyOf(instances, rows * 2);
+                    initialHs = Arrays.copyOf(initialHs, rows * 2);
+                    optimals = Arrays.copyOf(optimals, rows * 2);
+                }
+                parts = line.split(",");
+                instances[rows] = (int) Double.parseDouble(parts[0]);
+                initialHs[rows] = Double.parseDouble(parts[1]);
+                optimals[rows] = Double.parseDouble(parts[2]);
+                ++rows;
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+        return new PACStatisticsTable(Arrays.copyOf(instances, rows), Arrays.copyOf(initialHs, rows),
+                Arrays.copyOf(optimals, rows), csvFile.lastModified(), csvFile.length());
+    }
+
+    /**
+     * Maps a binary statistics file and reads its columns
+     *
+     * @return The read table, or null if the file isn't a valid binary statistics file
+     */
+    private static PACStatisticsTable readBinary(File binaryFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(binaryFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < PACStatisticsTable.HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt() != PACStatisticsTable.MAGIC) {
+                return null;
+            }
+            long sourceLastModified = data.getLong();
+            long sourceLength = data.getLong();
+            int rows = data.getInt();
+            if (rows < 0 || channel.size() != PACStatisticsTable.HEADER_SIZE + (long) rows * (4 + 8 + 8)) {
+                return null;
+            }
+            int[] instances = new int[rows];
+            double[] initialHs = new double[rows];
+            double[] optimals = new double[rows];
+            data.asIntBuffer().get(instances);
+            data.position(data.position() + rows * 4);
+            data.asDoubleBuffer().get(initialHs);
+            data.position(data.position() + rows * 8);
+            data.asDoubleBuffer().get(optimals);
+            return new PACStatisticsTable(instances, initialHs, optimals, sourceLastModified, sourceLength);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the table into a binary statistics file (through a temporary file, so that concurrent readers never see
+     * a partially written file)
+     */
+    private void writeBinary(File binaryFile) throws IOException {
+        File tempFile = File.createTempFile(binaryFile.getName(), ".tmp", binaryFile.getAbsoluteFile().getParentFile());
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            output.writeInt(PACStatisticsTable.MAGIC);
+            output.writeLong(this.sourceLastModified);
+            output.writeLong(this.sourceLength);
+            output.writeInt(this.instances.length);
+            for (int instance : this.instances) {
+                output.writeInt(instance);
+            }
+            for (double h : this.initialHs) {
+                output.writeDouble(h);
+            }
+            for (double optimal : this.optimals) {
+                output.writeDouble(optimal);
+            }
+        } finally {
+            output.close();
+        }
+        if (!tempFile.renameTo(binaryFile)) {
+            // Maybe the target exists (on some platforms, rename doesn't replace files)
+            binaryFile.delete();
+            if (!tempFile.renameTo(binaryFile)) {
+                tempFile.delete();
+                throw new IOException("Cannot rename " + tempFile + " to " + binaryFile);
+            }
+        }
+    }
+}
@@ -6,11 +6,11 @@ import org.cs4j.core.algorithms.pac.conditions.TrivialPACCondition;
 import org.cs4j.core.mains.DomainExperimentData;
 import org.cs4j.core.mains.DomainExperimentData.RunType;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Created by Roni Stern on 26/02/2017.
@@ -22,8 +22,31 @@ public class PACUtils {
     final static Logger logger = Logger.getLogger(TrivialPACCondition.class);
 
     // Maps a domain to a PAC statistics object, used later by the PAC conditions
+    // (concurrent, since experiments may run on several threads)
     private static Map<Class, PACStatistics> domainToPACStatistics
-            = new HashMap<>();
+            = new ConcurrentHashMap<>();
+
+    // Maps a statistics file to its rows (which are re-read only if the file is modified)
+    private static Map<String, PACStatisticsTable> fileToStatisticsTable
+            = new ConcurrentHashMap<>();
+
+    // Data derived from the statistics (e.g. CDFs), keyed by the domain and the kind of the data - only the data of the
+    // latest version of the statistics table is kept (see getDerived)
+    private static Map<String, DerivedStatistics> derivedStatistics
+            = new ConcurrentHashMap<>();
+
+    /**
+     * Some data derived from the statistics, and the version of the statistics table it was derived from
+     */
+    private static final class DerivedStatistics {
+        private final long version;
+        private final Object data;
+
+        private DerivedStatistics(long version, Object data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
 
 
     public static PACStatistics getPACStatistics(Class domainClass)
@@ -79,76 +102,89 @@ public class PACUtils {
      * @param inputFile input file for this domain
      */
     public static PACStatistics parsePACStatisticsFile(String inputFile){
-        Map<Integer,Double> instanceToInitialH= new TreeMap<>();
-        Map<Integer,Double> instanceToOptimal= new TreeMap<>();
+        return new PACStatistics(getStatisticsTable(inputFile));
+    }
+
+    /**
+     * Reads the rows of a statistics file (see PACStatisticsTable). The rows are cached, and are read again only if
+     * the file was modified.
+     *
+     * @param inputFile The name of the (CSV) statistics file
+     * @return The rows of the file
+     */
+    public static synchronized PACStatisticsTable getStatisticsTable(String inputFile){
+        PACStatisticsTable table = fileToStatisticsTable.get(inputFile);
+        if(table!=null && table.isUpToDate(inputFile))
+            return table;
         try{
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            String line;
-            String[] parts;
-
-            // Handle first line if headers, if such exists
-            reader.readLine(); // Ignore the first row - it is for the column headers
-            line = reader.readLine();
-            int instanceId;
-            Double optimal;
-            Double initialH;
-            while(line!=null){
-                parts = line.split(",");
-                instanceId = (int)(Double.parseDouble(parts[0]));
-                initialH = Double.parseDouble(parts[1]);
-                optimal = Double.parseDouble(parts[2]);
-
-                instanceToOptimal.put(instanceId,optimal);
-                instanceToInitialH.put(instanceId,initialH);
-                line = reader.readLine();
-            }
-            reader.close();
+            table = PACStatisticsTable.read(inputFile);
         }
         catch(IOException e){
             logger.error("Cannot load statistics",e);
             throw new RuntimeException(e);
         }
+        fileToStatisticsTable.put(inputFile,table);
+        return table;
+    }
 
-        PACStatistics statistics = new PACStatistics();
-        statistics.instanceToOptimal=instanceToOptimal;
-        statistics.instanceToInitialH=instanceToInitialH;
+    /**
+     * Returns some data derived from the statistics of a domain, computing it only if it wasn't computed before
+     * for the same statistics (the data is shared by all the threads, hence it mustn't be changed).
+     * The data of a newer version of the statistics replaces the data of the older one, hence the cache holds at most
+     * one entry per domain and kind.
+     *
+     * @param domainClass the domain of the statistics
+     * @param kind identifies the kind of the derived data (and any parameter it depends on)
+     * @param version the version of the statistics table the data is derived from
+     * @param compute computes the data
+     * @return the derived data
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getDerived(Class<?> domainClass, String kind, long version, Supplier<T> compute){
+        String key = domainClass.getName()+"#"+kind;
+        DerivedStatistics derived = derivedStatistics.compute(key, (k, current) ->
+                (current != null && current.version >= version) ? current :
+                        new DerivedStatistics(version, compute.get()));
+        if (derived.version != version) {
+            // The statistics were already replaced by newer ones (whose data isn't evicted)
+            return compute.get();
+        }
+        return (T) derived.data;
+    }
 
-        return statistics;
+    /**
+     * Read the rows of the h to optimal statistics of this domain
+     */
+    public static PACStatisticsTable getHtoOptimalTable(Class<? extends SearchDomain> domainClass)
+    {
+        DomainExperimentData domainDetails = DomainExperimentData.get(domainClass,RunType.TRAIN);
+        return getStatisticsTable(domainDetails.outputPreprocessPath+File.separator+"openBasedStatistics.csv");
     }
 
     /**
      * Read from disk the h to optimal statistics for this domain
      */
-    public static List<Tuple<Double,Double>> getHtoOptimalTuples(Class domainClass)
+    public static List<Tuple<Double,Double>> getHtoOptimalTuples(Class<? extends SearchDomain> domainClass)
+    {
+        return getHtoOptimalTuples(domainClass, getHtoOptimalTable(domainClass));
+    }
+
+    /**
+     * Extracts the h to optimal tuples of the training instances of this domain from the given rows, sorted by h
+     */
+    public static List<Tuple<Double,Double>> getHtoOptimalTuples(Class<? extends SearchDomain> domainClass,
+                                                                 PACStatisticsTable table)
     {
         DomainExperimentData domainDetails = DomainExperimentData.get(domainClass,RunType.TRAIN);
-        String inputFile = domainDetails.outputPreprocessPath+File.separator+"openBasedStatistics.csv";
         List<Tuple<Double,Double>> tuples = new ArrayList<>();
-        String[] parts;
-        double h,opt;
-        // Read the tuples from the statistics file
-        try{
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            reader.readLine();// Headers row
-            String line = reader.readLine();
-            int instance;
-            while(line!=null) {
-                parts = line.split(",");
-                instance = Integer.parseInt(parts[0]);
-                if((instance>= domainDetails.fromInstance)&&(instance<=domainDetails.toInstance)) {
-                    h = Double.parseDouble(parts[1]);
-                    opt = Double.parseDouble(parts[2]);
-                    if(opt>=0) // In some cases we didn't find the optimal solution, so skip thoseS
-                        tuples.add(new Tuple<>(h,opt));
-                }
-
-                line = reader.readLine();
+        int instance;
+        for(int i=0;i<table.size();i++) {
+            instance = table.instances[i];
+            if((instance>= domainDetails.fromInstance)&&(instance<=domainDetails.toInstance)) {
+                if(table.optimals[i]>=0) // In some cases we didn't find the optimal solution, so skip thoseS
+                    tuples.add(new Tuple<>(table.initialHs[i],table.optimals[i]));
             }
         }
-        catch(IOException e){
-            logger.error(e);
-            throw new RuntimeException(e);
-        }
 
         // Sort tuples according to the h values
         tuples.sort(new Comparator<Tuple<Double, Double>>() {
@@ -166,6 +202,41 @@ public class PACUtils {
         return  tuples;
     }
 
+    /**
+     * Computes the CDF of the ratios between the optimal cost and the initial h of the instances in the statistics
+     * (the result is cached for the statistics - see getDerived)
+     *
+     * @return two arrays: the sorted (distinct) ratios, and Pr(ratio <= each ratio)
+     */
+    public static double[][] getRatioCDF(Class<?> domainClass, PACStatistics statistics){
+        return getDerived(domainClass, "ratio-cdf", statistics.table.version, () -> {
+            double[] ratios = new double[statistics.instanceToOptimal.size()];
+            int count = 0;
+            for(Map.Entry<Integer, Double> instanceToOptimal : statistics.instanceToOptimal.entrySet())
+                ratios[count++] = instanceToOptimal.getValue()/
+                        statistics.instanceToInitialH.get(instanceToOptimal.getKey());
+            // The same order (and equality) as of Double keys in a sorted map
+            Arrays.sort(ratios);
+
+            double[] distinctRatios = new double[count];
+            double[] cdf = new double[count];
+            int distinct = 0;
+            double oldCDFValue = 0.0;
+            for(int i=0;i<count;) {
+                int j = i;
+                while (j < count && Double.compare(ratios[j], ratios[i]) == 0)
+                    j++;
+                // The probability of the ratio, accumulated
+                oldCDFValue = ((double)(j-i))/count + oldCDFValue;
+                distinctRatios[distinct] = ratios[i];
+                cdf[distinct] = oldCDFValue;
+                distinct++;
+                i = j;
+            }
+            return new double[][]{Arrays.copyOf(distinctRatios, distinct), Arrays.copyOf(cdf, distinct)};
+        });
+    }
+
     public static PACStatistics getStatisticsFile(PACCondition condition, Class domainClass){
         return domainToPACStatistics.get(domainClass);
     }
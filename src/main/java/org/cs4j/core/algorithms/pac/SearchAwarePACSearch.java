@@ -28,9 +28,16 @@ abstract public class SearchAwarePACSearch extends AnytimePACSearch {
     @Override
     public void setAdditionalParameter(String parameterName, String value) {
         switch (parameterName) {
+            case "node-store": {
+                // The search-aware PAC conditions are notified with the nodes that enter and leave OPEN
+                if (Boolean.parseBoolean(value)) {
+                    logger.error("Search-aware PAC search can't run on a node store");
+                    throw new UnsupportedOperationException();
+                }
+                break;
+            }
             default: {
-                logger.error("No such parameter: " + parameterName + " (value: " + value + ")");
-                throw new UnsupportedOperationException();
+                super.setAdditionalParameter(parameterName, value);
             }
         }
     }
@@ -54,8 +61,9 @@ abstract public class SearchAwarePACSearch extends AnytimePACSearch {
         ((SearchAwarePACCondition)this.pacCondition).removedFromOpen(currentNode);
 
         // Extract a state from the node
-        SearchDomain.State currentState = domain.unpack(currentNode.packed);
-        for (int i = 0; i < domain.getNumOperators(currentState); ++i) {
+        SearchDomain.State currentState = this.buffers.unpack(currentNode.packed);
+        int numOperators = domain.getNumOperators(currentState);
+        for (int i = 0; i < numOperators; ++i) {
             // Get the current operator
             op = domain.getOperator(currentState, i);
             // Don't apply the previous operator on the state - in order not to enter a loop
@@ -65,7 +73,7 @@ abstract public class SearchAwarePACSearch extends AnytimePACSearch {
             // Otherwise, let's generate the child state
             ++result.generated;
             // Get it by applying the operator on the parent state
-            childState = domain.applyOperator(currentState, op);
+            childState = this.buffers.applyOperator(currentState, op, 0);
             // Create a search node for this state
             childNode = new AnytimeSearchNode(this.domain,
                     childState, currentNode, currentState, op, op.reverse(currentState));
@@ -155,17 +163,12 @@ abstract public class SearchAwarePACSearch extends AnytimePACSearch {
 
         // Update OPEN and PAC condition
 
-        //@TODO: Replace this by defining an iterator over open instead of adding and removing all of the nodes in OPEN
-        // Get all nodes in OPEN by removing all of them and then re-inserting them
-        List<AnytimeSearchNode> openNodes = new ArrayList<>(this.open.size());
-        while(this.open.size()>0) openNodes.add(this.open.poll());
-        for(AnytimeSearchNode node : openNodes) this.open.add(node);
+        // Resort open according to the new incumbent (pruned nodes can't invalidate the incumbent)
+        this.rekeyOpen();
 
         // Update the PAC condition (this may throw PACCondition satisfied
         ((SearchAwarePACCondition) this.pacCondition).addNewSearchResults(
-                this.totalSearchResults,openNodes);
-
-        openNodes.clear(); // To free space. Probably this is not needed @TODO: Check if this helps memory and runtime
+                this.totalSearchResults,this.open.getElements());
     }
 
 }
\ No newline at end of file
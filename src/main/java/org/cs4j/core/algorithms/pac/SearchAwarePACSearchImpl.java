@@ -30,4 +30,10 @@ public class SearchAwarePACSearchImpl extends SearchAwarePACSearch {
             }
         };
     }
+
+    @Override
+    protected double getNodeStorePrimaryKey(double g, double h) {
+        // Never used - the search-aware PAC search can't run on a node store (see setAdditionalParameter)
+        return -(this.incumbentSolution - g) / h;
+    }
 }
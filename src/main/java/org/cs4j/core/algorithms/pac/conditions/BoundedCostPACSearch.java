@@ -52,6 +52,29 @@ public class BoundedCostPACSearch extends AnytimePACSearch {
         }
     }
 
+    @Override
+    public void setAdditionalParameter(String parameterName, String value) {
+        switch (parameterName) {
+            case "node-store": {
+                // OPEN is resorted whenever the threshold is raised, which storeOpen doesn't support
+                if (Boolean.parseBoolean(value)) {
+                    System.out.println("[ERROR] Bounded-cost PAC search can't run on a node store");
+                    throw new UnsupportedOperationException();
+                }
+                break;
+            }
+            default: {
+                super.setAdditionalParameter(parameterName, value);
+            }
+        }
+    }
+
+    @Override
+    protected double getNodeStorePrimaryKey(double g, double h) {
+        // Never used - the bounded-cost PAC search can't run on a node store (see setAdditionalParameter)
+        return -(this.threshold - g) / h;
+    }
+
     private void resortOpen() {
         //@TODO: Replace this by defining an iterator over open instead of adding and removing all of the nodes in OPEN
         // Get all nodes in OPEN by removing all of them and then re-inserting them
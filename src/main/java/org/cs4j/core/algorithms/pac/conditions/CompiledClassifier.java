@@ -0,0 +1,482 @@
+package org.cs4j.core.algorithms.pac.conditions;
+
+import org.apache.log4j.Logger;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.MultilayerPerceptron;
+import weka.classifiers.functions.neural.NeuralConnection;
+import weka.classifiers.functions.neural.NeuralNode;
+import weka.classifiers.functions.neural.SigmoidUnit;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierSplitModel;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.NoSplit;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A trained Weka classifier, exported into flat arrays such that its class distribution can be computed directly from
+ * the attribute values of an instance (without creating instances and without calling Weka).
+ *
+ * Two models are supported:
+ *  - J48 trees over numeric attributes: the tree is flattened into arrays of split attributes, split points and
+ *    children, and the class distribution of each leaf is computed in advance
+ *  - MultilayerPerceptron networks over numeric attributes with a nominal class: the attribute normalization and the
+ *    weights of each (sigmoid) unit are kept in flat arrays, and the units are evaluated in topological order
+ *
+ * The computations are done in the same order as in Weka, hence the results are the same. Yet, since the models are
+ * read from the (non-public) fields of Weka, a compiled model is used only after its results were compared against
+ * Weka on the instances of a dataset (see compile).
+ *
+ * Compiled models keep no state between calls, hence they can be shared between threads.
+ */
+public abstract class CompiledClassifier {
+
+    private final static Logger logger = Logger.getLogger(CompiledClassifier.class);
+
+    // The maximal number of dataset instances on which a compiled model is compared against Weka
+    private static final int MAX_VALIDATION_INSTANCES = 1000;
+    private static final double VALIDATION_TOLERANCE = 1e-9;
+
+    // The compiled models of the model files (keyed by the name, the last-modified time and the length of the file)
+    private static final Map<String, Optional<CompiledClassifier>> compiledModels = new ConcurrentHashMap<>();
+
+    /**
+     * Computes the class distribution of an instance
+     *
+     * @param values The attribute values of the instance (in the order of the attributes of the dataset)
+     * @param distribution The array into which the distribution is written (of size numClasses())
+     *
+     * @return Whether the distribution was computed (if not, the instance should be classified by Weka - e.g. if a
+     * value which is required by the model is missing)
+     */
+    public abstract boolean distributionForValues(double[] values, double[] distribution);
+
+    /**
+     * @return The number of classes
+     */
+    public abstract int numClasses();
+
+    /**
+     * Returns the compiled model of a model file - the model is compiled only once for each version of the file
+     *
+     * @param modelPath The file from which the classifier was loaded
+     * @param classifier The classifier
+     * @param dataset The dataset (whose class index is set) which determines the attributes of the classified
+     *                instances
+     *
+     * @return The compiled model, or null if the classifier isn't supported
+     */
+    public static CompiledClassifier get(String modelPath, Classifier classifier, Instances dataset) {
+        File modelFile = new File(modelPath);
+        String key = modelFile.getAbsolutePath() + "#" + modelFile.lastModified() + "#" + modelFile.length();
+        return CompiledClassifier.compiledModels.computeIfAbsent(key,
+                k -> Optional.ofNullable(CompiledClassifier.compile(classifier, dataset))).orElse(null);
+    }
+
+    /**
+     * Exports the given classifier and checks that the exported model computes the same distributions as Weka on the
+     * instances of the given dataset
+     *
+     * @param classifier The trained classifier
+     * @param dataset The dataset (whose class index is set) which determines the attributes of the classified
+     *                instances
+     *
+     * @return The compiled model, or null if the classifier isn't supported (in which case Weka should be used)
+     */
+    public static CompiledClassifier compile(Classifier classifier, Instances dataset) {
+        CompiledClassifier compiled = null;
+        try {
+            if (classifier instanceof J48) {
+                compiled = CompiledJ48.create((J48) classifier, dataset);
+            } else if (classifier instanceof MultilayerPerceptron) {
+                compiled = CompiledMultilayerPerceptron.create((MultilayerPerceptron) classifier, dataset);
+            }
+            if (compiled != null && !CompiledClassifier.validate(compiled, classifier, dataset)) {
+                logger.warn("The compiled " + classifier.getClass().getSimpleName() +
+                        " doesn't agree with Weka - using Weka");
+                compiled = null;
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to compile " + classifier.getClass().getSimpleName() + " - using Weka", e);
+            compiled = null;
+        }
+        return compiled;
+    }
+
+    /**
+     * Compares the distributions of the compiled model against Weka, on (a prefix of) the instances of the dataset
+     */
+    private static boolean validate(CompiledClassifier compiled, Classifier classifier, Instances dataset)
+            throws Exception {
+        double[] distribution = new double[compiled.numClasses()];
+        int count = Math.min(dataset.numInstances(), CompiledClassifier.MAX_VALIDATION_INSTANCES);
+        for (int i = 0; i < count; ++i) {
+            Instance instance = dataset.instance(i);
+            if (!compiled.distributionForValues(instance.toDoubleArray(), distribution)) {
+                continue;
+            }
+            double[] expected = classifier.distributionForInstance(instance);
+            if (expected.length != distribution.length) {
+                return false;
+            }
+            for (int j = 0; j < expected.length; ++j) {
+                if (Math.abs(expected[j] - distribution[j]) > CompiledClassifier.VALIDATION_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a (non-public) field of a Weka object
+     */
+    private static Object _getField(Object object, Class<?> declaringClass, String name) throws Exception {
+        Field field = declaringClass.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    /**
+     * @return Whether all the attributes of the dataset (except of the class) are numeric, and the class is nominal
+     */
+    private static boolean _isNumericWithNominalClass(Instances dataset) {
+        if (dataset.classIndex() < 0 || !dataset.classAttribute().isNominal()) {
+            return false;
+        }
+        for (int i = 0; i < dataset.numAttributes(); ++i) {
+            if (i != dataset.classIndex() && !dataset.attribute(i).isNumeric()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A J48 tree, flattened into arrays (node 0 is the root)
+     */
+    private static class CompiledJ48 extends CompiledClassifier {
+        private int classesCount;
+        // For each node: the split attribute (-1 for leaves), the split point, and the children (values which are
+        // smaller or equal to the split point go to the left child); for leaves, left holds the offset of the
+        // distribution in the distributions array
+        private int[] attributes;
+        private double[] splitPoints;
+        private int[] left;
+        private int[] right;
+        private double[] distributions;
+
+        // Used during the export
+        private int nodesCount;
+        private int distributionsCount;
+
+        static CompiledJ48 create(J48 tree, Instances dataset) throws Exception {
+            if (!CompiledClassifier._isNumericWithNominalClass(dataset)) {
+                return null;
+            }
+            ClassifierTree root = (ClassifierTree) CompiledClassifier._getField(tree, J48.class, "m_root");
+            CompiledJ48 compiled = new CompiledJ48();
+            compiled.classesCount = dataset.numClasses();
+            int nodes = root.numNodes();
+            compiled.attributes = new int[nodes];
+            compiled.splitPoints = new double[nodes];
+            compiled.left = new int[nodes];
+            compiled.right = new int[nodes];
+            compiled.distributions = new double[nodes * compiled.classesCount];
+            // Any instance will do - the class probabilities of leaves don't depend on the instance
+            Instance dummy = new DenseInstance(dataset.numAttributes());
+            dummy.setDataset(dataset);
+            if (compiled._addNode(root, tree.getUseLaplace(), dataset, dummy) < 0) {
+                return null;
+            }
+            compiled.distributions = Arrays.copyOf(compiled.distributions, compiled.distributionsCount);
+            return compiled;
+        }
+
+        /**
+         * Adds a leaf whose distribution is given by the split model (of the leaf itself or of its parent)
+         */
+        private int _addLeaf(ClassifierSplitModel model, int subset, boolean useLaplace, Instance dummy)
+                throws Exception {
+            int node = this.nodesCount++;
+            this.attributes[node] = -1;
+            this.left[node] = this.distributionsCount;
+            for (int c = 0; c < this.classesCount; ++c) {
+                this.distributions[this.distributionsCount++] = useLaplace ?
+                        model.classProbLaplace(c, dummy, subset) :
+                        model.classProb(c, dummy, subset);
+            }
+            return node;
+        }
+
+        /**
+         * Adds the subtree of the given node
+         *
+         * @return The index of the added node, or -1 if the subtree contains an unsupported split
+         */
+        private int _addNode(ClassifierTree tree, boolean useLaplace, Instances dataset, Instance dummy)
+                throws Exception {
+            ClassifierSplitModel model = tree.getLocalModel();
+            if (tree.isLeaf()) {
+                return (model instanceof NoSplit) ? this._addLeaf(model, -1, useLaplace, dummy) : -1;
+            }
+            if (!(model instanceof C45Split) || model.numSubsets() != 2) {
+                return -1;
+            }
+            C45Split split = (C45Split) model;
+            if (!dataset.attribute(split.attIndex()).isNumeric()) {
+                return -1;
+            }
+            int node = this.nodesCount++;
+            this.attributes[node] = split.attIndex();
+            this.splitPoints[node] = split.splitPoint();
+            ClassifierTree[] sons = tree.getSons();
+            int[] children = new int[2];
+            for (int i = 0; i < 2; ++i) {
+                boolean isEmpty = (Boolean) CompiledClassifier._getField(sons[i], ClassifierTree.class, "m_isEmpty");
+                // Weka takes the distribution of an empty son from the split of its parent
+                children[i] = isEmpty ?
+                        this._addLeaf(split, i, useLaplace, dummy) :
+                        this._addNode(sons[i], useLaplace, dataset, dummy);
+                if (children[i] < 0) {
+                    return -1;
+                }
+            }
+            this.left[node] = children[0];
+            this.right[node] = children[1];
+            return node;
+        }
+
+        @Override
+        public boolean distributionForValues(double[] values, double[] distribution) {
+            int node = 0;
+            int attribute = this.attributes[node];
+            while (attribute >= 0) {
+                double value = values[attribute];
+                if (Double.isNaN(value)) {
+                    // Missing values are split among the children by Weka
+                    return false;
+                }
+                node = Utils.smOrEq(value, this.splitPoints[node]) ? this.left[node] : this.right[node];
+                attribute = this.attributes[node];
+            }
+            System.arraycopy(this.distributions, this.left[node], distribution, 0, this.classesCount);
+            return true;
+        }
+
+        @Override
+        public int numClasses() {
+            return this.classesCount;
+        }
+    }
+
+    /**
+     * A MultilayerPerceptron network, whose units are kept in topological order (the outputs are the last units)
+     */
+    private static class CompiledMultilayerPerceptron extends CompiledClassifier {
+        private int classesCount;
+        private int classIndex;
+        // The normalization of the attributes (null if the attributes aren't normalized)
+        private double[] attributeBases;
+        private double[] attributeRanges;
+        // The attributes of the input units
+        private int[] inputAttributes;
+        // For each (sigmoid) unit: the offset of its weights (the bias, followed by the weight of each input) in the
+        // weights array, and its inputs (the indices of the input units, followed by the indices of the sigmoid
+        // units, in the values array); unit u takes the inputs in [inputOffsets[u], inputOffsets[u+1])
+        private int[] inputOffsets;
+        private int[] inputs;
+        private int[] weightOffsets;
+        private double[] weights;
+        // For each class, the offsets of the units which feed its output (in the same array format)
+        private int[] outputOffsets;
+        private int[] outputs;
+
+        // The values of all the units (the inputs, followed by the sigmoid units) of the current call
+        private final ThreadLocal<double[]> unitValues =
+                ThreadLocal.withInitial(() -> new double[this.inputAttributes.length + this.weightOffsets.length]);
+
+        static CompiledMultilayerPerceptron create(MultilayerPerceptron network, Instances dataset) throws Exception {
+            Class<MultilayerPerceptron> c = MultilayerPerceptron.class;
+            Instances header = (Instances) CompiledClassifier._getField(network, c, "m_instances");
+            if ((Boolean) CompiledClassifier._getField(network, c, "m_useDefaultModel") ||
+                    !CompiledClassifier._isNumericWithNominalClass(dataset) ||
+                    header.numAttributes() != dataset.numAttributes() ||
+                    header.classIndex() != dataset.classIndex()) {
+                // Without nominal attributes, the nominal to binary filter doesn't change the instances
+                return null;
+            }
+            CompiledMultilayerPerceptron compiled = new CompiledMultilayerPerceptron();
+            compiled.classesCount = dataset.numClasses();
+            compiled.classIndex = dataset.classIndex();
+            if ((Boolean) CompiledClassifier._getField(network, c, "m_normalizeAttributes")) {
+                compiled.attributeBases = (double[]) CompiledClassifier._getField(network, c, "m_attributeBases");
+                compiled.attributeRanges = (double[]) CompiledClassifier._getField(network, c, "m_attributeRanges");
+            }
+            Object[] outputEnds = (Object[]) CompiledClassifier._getField(network, c, "m_outputs");
+            if (outputEnds.length != compiled.classesCount) {
+                return null;
+            }
+
+            // Order the units topologically (inputs first)
+            List<NeuralConnection> inputEnds = new ArrayList<>();
+            List<NeuralNode> units = new ArrayList<>();
+            Map<NeuralConnection, Integer> indices = new IdentityHashMap<>();
+            for (Object outputEnd : outputEnds) {
+                NeuralConnection end = (NeuralConnection) outputEnd;
+                for (int i = 0; i < end.getNumInputs(); ++i) {
+                    if (!CompiledMultilayerPerceptron._order(end.getInputs()[i], inputEnds, units, indices)) {
+                        return null;
+                    }
+                }
+            }
+            // The indices of the inputs were set before the order was complete
+            int inputsCount = inputEnds.size();
+            for (Map.Entry<NeuralConnection, Integer> entry : indices.entrySet()) {
+                if (entry.getKey() instanceof NeuralNode) {
+                    entry.setValue(entry.getValue() + inputsCount);
+                }
+            }
+            compiled.inputAttributes = new int[inputsCount];
+            for (int i = 0; i < inputsCount; ++i) {
+                compiled.inputAttributes[i] = (Integer) CompiledClassifier._getField(inputEnds.get(i),
+                        inputEnds.get(i).getClass(), "m_link");
+            }
+            compiled.inputOffsets = new int[units.size() + 1];
+            compiled.weightOffsets = new int[units.size()];
+            int inputsTotal = 0;
+            for (NeuralNode unit : units) {
+                inputsTotal += unit.getNumInputs();
+            }
+            compiled.inputs = new int[inputsTotal];
+            compiled.weights = new double[inputsTotal + units.size()];
+            int inputIndex = 0;
+            int weightIndex = 0;
+            for (int u = 0; u < units.size(); ++u) {
+                NeuralNode unit = units.get(u);
+                double[] unitWeights = unit.getWeights();
+                compiled.inputOffsets[u] = inputIndex;
+                compiled.weightOffsets[u] = weightIndex;
+                compiled.weights[weightIndex++] = unitWeights[0];
+                for (int i = 0; i < unit.getNumInputs(); ++i) {
+                    compiled.inputs[inputIndex++] = indices.get(unit.getInputs()[i]);
+                    compiled.weights[weightIndex++] = unitWeights[i + 1];
+                }
+            }
+            compiled.inputOffsets[units.size()] = inputIndex;
+            compiled.outputOffsets = new int[outputEnds.length + 1];
+            List<Integer> outputs = new ArrayList<>();
+            for (int o = 0; o < outputEnds.length; ++o) {
+                NeuralConnection end = (NeuralConnection) outputEnds[o];
+                compiled.outputOffsets[o] = outputs.size();
+                for (int i = 0; i < end.getNumInputs(); ++i) {
+                    outputs.add(indices.get(end.getInputs()[i]));
+                }
+            }
+            compiled.outputOffsets[outputEnds.length] = outputs.size();
+            compiled.outputs = outputs.stream().mapToInt(Integer::intValue).toArray();
+            return compiled;
+        }
+
+        /**
+         * Adds the given unit (after its inputs) to the topological order
+         *
+         * @return Whether all the units are supported
+         */
+        private static boolean _order(NeuralConnection connection, List<NeuralConnection> inputEnds,
+                                      List<NeuralNode> units, Map<NeuralConnection, Integer> indices) {
+            if (indices.containsKey(connection)) {
+                return true;
+            }
+            if (connection instanceof NeuralNode) {
+                NeuralNode unit = (NeuralNode) connection;
+                if (!(unit.getMethod() instanceof SigmoidUnit)) {
+                    return false;
+                }
+                for (int i = 0; i < unit.getNumInputs(); ++i) {
+                    if (!CompiledMultilayerPerceptron._order(unit.getInputs()[i], inputEnds, units, indices)) {
+                        return false;
+                    }
+                }
+                indices.put(unit, units.size());
+                units.add(unit);
+            } else {
+                // An input end of the network
+                if (connection.getNumInputs() != 0) {
+                    return false;
+                }
+                indices.put(connection, inputEnds.size());
+                inputEnds.add(connection);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean distributionForValues(double[] values, double[] distribution) {
+            double[] unitValues = this.unitValues.get();
+            for (int i = 0; i < this.inputAttributes.length; ++i) {
+                int attribute = this.inputAttributes[i];
+                double value = values[attribute];
+                if (this.attributeBases != null && attribute != this.classIndex) {
+                    value -= this.attributeBases[attribute];
+                    if (this.attributeRanges[attribute] != 0) {
+                        value /= this.attributeRanges[attribute];
+                    }
+                }
+                // Missing inputs are zero
+                unitValues[i] = Double.isNaN(value) ? 0 : value;
+            }
+            int unitsStart = this.inputAttributes.length;
+            for (int u = 0; u < this.weightOffsets.length; ++u) {
+                int w = this.weightOffsets[u];
+                double value = this.weights[w++];
+                for (int i = this.inputOffsets[u]; i < this.inputOffsets[u + 1]; ++i) {
+                    value += unitValues[this.inputs[i]] * this.weights[w++];
+                }
+                if (value < -45) {
+                    value = 0;
+                } else if (value > 45) {
+                    value = 1;
+                } else {
+                    value = 1 / (1 + Math.exp(-value));
+                }
+                unitValues[unitsStart + u] = value;
+            }
+            double sum = 0;
+            for (int c = 0; c < this.classesCount; ++c) {
+                double value = 0;
+                for (int i = this.outputOffsets[c]; i < this.outputOffsets[c + 1]; ++i) {
+                    value += unitValues[this.outputs[i]];
+                }
+                distribution[c] = value;
+                sum += value;
+            }
+            if (sum <= 0) {
+                // Weka uses its default model in this case
+                return false;
+            }
+            for (int c = 0; c < this.classesCount; ++c) {
+                distribution[c] /= sum;
+            }
+            return true;
+        }
+
+        @Override
+        public int numClasses() {
+            return this.classesCount;
+        }
+    }
+}
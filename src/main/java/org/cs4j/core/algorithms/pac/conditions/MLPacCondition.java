@@ -23,6 +23,7 @@ import org.cs4j.core.experiments.MLPacExperiment;
 import org.cs4j.core.mains.DomainExperimentData;
 
 import org.cs4j.core.pac.conf.PacConfig;
+import org.cs4j.core.pac.evaluation.PacDenseInstance;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.evaluation.Evaluation;
@@ -38,8 +39,29 @@ public class MLPacCondition extends RatioBasedPACCondition {
 	protected AbstractClassifier classifier;
 	protected ArrayList<Attribute> attributes;
 	protected Instances dataset;
-	protected static String clsType;
-	
+	// The type of the classifier (part of the name of the model file), set by the subclasses
+	protected String clsType;
+
+	// The indices of the values of the class attribute (is-W-opt {true,false})
+	protected static final int TRUE_CLASS_VALUE = 0;
+	protected static final int FALSE_CLASS_VALUE = 1;
+
+	// The features of the classified instances, in the order of the attributes of the dataset (followed by the
+	// domain features and the class)
+	private static final PacFeature[] INSTANCE_FEATURES = {
+			PacFeature.GENERATED, PacFeature.EXPANDED, PacFeature.ROPENED, PacFeature.COST,
+			PacFeature.G_0, PacFeature.H_0, PacFeature.G_2, PacFeature.H_2, PacFeature.G_2, PacFeature.H_2,
+			PacFeature.W};
+
+	// The classifier exported into flat arrays (null if it isn't supported - then the classifier itself is used)
+	protected CompiledClassifier compiledClassifier;
+	// The classified instance, which is created once and reused by changing its values
+	protected PacDenseInstance instance;
+	protected double[] instanceValues;
+	// The features of the current incumbent solution (indexed by the ordinals of the features)
+	protected double[] features;
+	protected double[] distribution;
+
 
 	@Override
 	public void setup(SearchDomain domain, double epsilon, double delta) {
@@ -59,12 +81,54 @@ public class MLPacCondition extends RatioBasedPACCondition {
 
 			this.dataset = MLPacPreprocess.getInputInstance(inputDataPath);
 			this.dataset.setClassIndex(this.dataset.numAttributes() - 1);
+
+			int addedFeatures = PacConfig.instance.useDomainFeatures()? 4 : 0;
+			this.prepareInference(inputModelPath, MLPacCondition.INSTANCE_FEATURES.length + addedFeatures + 1);
 		} catch (Exception e) {
 			logger.error("Failed to load model for input file [" +
 					inputDataPath + "]", e);
 		}
 	}
 
+	/**
+	 * Creates the buffers which are used for classifying the incumbent solutions, and compiles the classifier (must
+	 * be called after the classifier and the dataset are loaded)
+	 *
+	 * @param modelPath The file from which the classifier was loaded
+	 * @param instanceSize The number of values of a classified instance (including the class)
+	 */
+	protected void prepareInference(String modelPath, int instanceSize) {
+		this.instance = new PacDenseInstance(instanceSize);
+		this.instance.setDataset(this.dataset);
+		this.instanceValues = this.instance.getAttValues();
+		this.features = new double[PacFeature.values().length];
+		this.distribution = new double[this.dataset.numClasses()];
+		this.compiledClassifier = null;
+		if (instanceSize == this.dataset.numAttributes()) {
+			this.compiledClassifier = CompiledClassifier.get(modelPath, this.classifier, this.dataset);
+		}
+	}
+
+	/**
+	 * Computes the class distribution of the instance (whose values were set in instanceValues) - using the compiled
+	 * classifier if possible
+	 *
+	 * @return The distribution (an empty array if the classification failed). The returned array may be reused by the
+	 * next calls.
+	 */
+	protected double[] distributionForInstance() {
+		if (this.compiledClassifier != null &&
+				this.compiledClassifier.distributionForValues(this.instanceValues, this.distribution)) {
+			return this.distribution;
+		}
+		try {
+			return this.classifier.distributionForInstance(this.instance);
+		} catch (Exception e) {
+			logger.error("ERROR: Failed to classify instance: ",e);
+			return new double[0];
+		}
+	}
+
 	private void setupAttributes() {
 		this.attributes = MLPacFeatureExtractor.getAttributes();
 		
@@ -98,43 +162,14 @@ public class MLPacCondition extends RatioBasedPACCondition {
             return true;
 
 	    //Extract features from an incumbent solution
-		Map<PacFeature,Double> features = MLPacFeatureExtractor.extractFeaturesFromSearchResult(incumbentSolution);
-		int addedFeatures = PacConfig.instance.useDomainFeatures()? 4 : 0;
-		int size = features.size() + addedFeatures;
-
-		// Init a classifier input instance
-		Instance ins = new DenseInstance(size + 1);
+		MLPacFeatureExtractor.extractFeaturesFromSearchResult(incumbentSolution, this.features);
 
-        // Add features to the input instance
+		// Set the values of the input instance
+		double[] values = this.instanceValues;
 		int indx = 0;
-
-		this.dataset.setClassIndex(this.dataset.numAttributes() - 1);
-		ins.setDataset(this.dataset);
-
-		double generated = features.get(PacFeature.GENERATED);
-//		Attribute generated = new Attribute("generated");
-		ins.setValue(new Attribute("generated",indx++),generated);
-		double expanded = features.get(PacFeature.EXPANDED);
-		ins.setValue(new Attribute("expanded",indx++),expanded);
-		double reopened = features.get(PacFeature.ROPENED);
-		ins.setValue(new Attribute("reopened",indx++),reopened);
-		double U = features.get(PacFeature.COST);
-		ins.setValue(new Attribute("cost",indx++),U);
-		double g1 = features.get(PacFeature.G_0);
-		ins.setValue(new Attribute("g1",indx++),g1);
-		double h1 = features.get(PacFeature.H_0);
-		ins.setValue(new Attribute("h1",indx++),h1);
-		double g2 = features.get(PacFeature.G_2);
-		ins.setValue(new Attribute("g2",indx++),g2);
-		double h2 = features.get(PacFeature.H_2);
-		ins.setValue(new Attribute("h2",indx++),h2);
-		double g3 = features.get(PacFeature.G_2);
-		ins.setValue(new Attribute("g3",indx++),g3);
-		double h3 = features.get(PacFeature.H_2);
-		ins.setValue(new Attribute("h3",indx++),h3);
-		double w = 1.0 + (Double) incumbentSolution.getExtras().get("epsilon");
-		ins.setValue(new Attribute("w",indx++),w);
-
+		for (PacFeature feature : MLPacCondition.INSTANCE_FEATURES) {
+			values[indx++] = this.features[feature.ordinal()];
+		}
 
 		if(PacConfig.instance.useDomainFeatures()) {
 			VacuumRobot.VacuumRobotState start = (VacuumRobot.VacuumRobotState) incumbentSolution.getBestSolution().getStates().get(0);
@@ -148,40 +183,31 @@ public class MLPacCondition extends RatioBasedPACCondition {
 			double remainingDirtyLocationCount_goal = goaltMap.get(PacFeature.remainingDirtyLocationsCount);
 			double dirtyVector_goal = goaltMap.get(PacFeature.dirtyVector);
 
-			ins.setValue(new Attribute("remainingDirtyLocationCount_start", indx++), dirtyVector_start);
-			ins.setValue(new Attribute("dirtyVector_start", indx++), dirtyVector_start);
+			values[indx++] = dirtyVector_start;
+			values[indx++] = dirtyVector_start;
 
-			ins.setValue(new Attribute("remainingDirtyLocationCount_goal", indx++), remainingDirtyLocationCount_goal);
-			ins.setValue(new Attribute("dirtyVector_goal", indx++), dirtyVector_goal);
+			values[indx++] = remainingDirtyLocationCount_goal;
+			values[indx++] = dirtyVector_goal;
 		}
-		FastVector fvNominalVal = new FastVector(2);
-		fvNominalVal.addElement("true");
-		fvNominalVal.addElement("false");
-		Attribute classAtt = new Attribute("is-W-opt", fvNominalVal,indx++);
-		ins.setValue( classAtt,"false");
-
-		logger.info("instance to classify: "+ins.toString());
-
+		values[indx] = MLPacCondition.FALSE_CLASS_VALUE;
 
-		double[] distributeResult = {};
-		double classificationResult = -1;
+		if (logger.isDebugEnabled()) {
+			logger.debug("instance to classify: " + this.instance);
+		}
 
 		// Classify
-		try {
-			classificationResult = this.classifier.classifyInstance(ins);
-			distributeResult = this.classifier.distributionForInstance(ins); // TODO: GAL WILL CHECK IF WE NEED THE ZERO OR THE ONE CLASS
-		} catch (Exception e) {
-			logger.error("ERROR: Failed to classify instance: ",e);
-		}
+		double[] distributeResult = this.distributionForInstance(); // TODO: GAL WILL CHECK IF WE NEED THE ZERO OR THE ONE CLASS
 
 		if(distributeResult.length <= 1){
 			// in case of only one or less labels the classifier probably did not trained properly on more then one label
 			return false;
 		}
 
-		logger.debug("Classifier type: " +this.classifier.getClass().getSimpleName());
-		logger.debug("distribute  result for instance: [" + ins.toString() +"] is ["+ distributeResult[0] +"] ["+ distributeResult[1] +"]");
-		logger.debug("classification  result for instance: [" + ins.toString() +"] is ["+ classificationResult +"]");
+		if (logger.isDebugEnabled()) {
+			logger.debug("Classifier type: " + this.classifier.getClass().getSimpleName());
+			logger.debug("distribute  result for instance: [" + this.instance + "] is [" + distributeResult[0] + "] [" + distributeResult[1] + "]");
+			logger.debug("classification  result for instance: [" + this.instance + "] is [" + Utils.maxIndex(distributeResult) + "]");
+		}
 		boolean pacConditionResult = distributeResult[0] >= (1-this.delta);
 		return pacConditionResult;
 	}
@@ -29,10 +29,15 @@ public class MLPacConditionForBoundSolPred extends MLPacCondition {
     private final static Logger logger = Logger.getLogger(MLPacConditionForBoundSolPred.class);
 
 
-    protected static String trainFormat;
-    protected static double domainLevel;
-    protected static OutputResult output;
-    protected static double currentOptimalCost;
+    // The parameters of the current run (set through the PACSearchFramework which owns this condition)
+    protected String trainFormat;
+    protected double domainLevel;
+    protected OutputResult output;
+    protected double currentOptimalCost;
+
+    // The number of values of a classified instance (the features, the ratios of the h values to the domain level,
+    // and the class)
+    protected static final int INSTANCE_SIZE = 16;
 
 
 
@@ -47,9 +52,9 @@ public class MLPacConditionForBoundSolPred extends MLPacCondition {
         String modelFileName = String.format(MLPacBoundedSolPredictor.modelFileFormat,epsilon,this.clsType, this.trainFormat);
         String dateFileName = String.format(MLPacBoundedSolPredictor.dataFileFormat,epsilon,this.clsType, this.trainFormat);
         String inputModelPath = String.format(DomainExperimentData.get(domain.getClass(),
-                DomainExperimentData.RunType.ALL).outputPreprocessPathFormat,trainFormat)+ File.separator + modelFileName;
+                DomainExperimentData.RunType.ALL).outputPreprocessPathFormat, this.trainFormat)+ File.separator + modelFileName;
         String inputDataPath = String.format(DomainExperimentData.get(domain.getClass(),
-                DomainExperimentData.RunType.ALL).outputPreprocessPathFormat, trainFormat)+ File.separator + dateFileName;
+                DomainExperimentData.RunType.ALL).outputPreprocessPathFormat, this.trainFormat)+ File.separator + dateFileName;
 
 
         try {
@@ -59,6 +64,8 @@ public class MLPacConditionForBoundSolPred extends MLPacCondition {
 
             this.dataset = MLPacPreprocess.getInputInstance(inputDataPath);
             this.dataset.setClassIndex(this.dataset.numAttributes() - 1);
+
+            this.prepareInference(inputModelPath, MLPacConditionForBoundSolPred.INSTANCE_SIZE);
         } catch (Exception e) {
             logger.error("Failed to load model for input file [" +
                     inputDataPath + "]", e);
@@ -85,72 +92,42 @@ public class MLPacConditionForBoundSolPred extends MLPacCondition {
             return true;
 
         //Extract features from an incumbent solution
-        Map<MLPacFeatureExtractor.PacFeature,Double> features = MLPacFeatureExtractor.extractFeaturesFromSearchResult(incumbentSolution);
-        int size = features.size() + 4;
-
-        // Init a classifier input instance
-        Instance ins = new DenseInstance(size + 1);
-        StringBuilder sb = new StringBuilder();
+        double[] features = this.features;
+        MLPacFeatureExtractor.extractFeaturesFromSearchResult(incumbentSolution, features);
 
-        // Add features to the input instance
+        // Set the values of the input instance
+        double[] values = this.instanceValues;
         int indx = 0;
 
-        this.dataset.setClassIndex(this.dataset.numAttributes() - 1);
-        ins.setDataset(this.dataset);
-
-
-        double generated = features.get(MLPacFeatureExtractor.PacFeature.GENERATED);
-        ins.setValue(new Attribute("generated",indx++),generated);
-
-        double expanded = features.get(MLPacFeatureExtractor.PacFeature.EXPANDED);
-        ins.setValue(new Attribute("expanded",indx++),expanded);
-
-        double reopened = features.get(MLPacFeatureExtractor.PacFeature.ROPENED);
-        ins.setValue(new Attribute("reopened",indx++),reopened);
-
-        ins.setValue(new Attribute("domainLevel",indx++),domainLevel);
-
-        double U = features.get(MLPacFeatureExtractor.PacFeature.COST);
-        ins.setValue(new Attribute("cost",indx++),U);
-
-        double g1 = features.get(MLPacFeatureExtractor.PacFeature.G_0);
-        ins.setValue(new Attribute("g1",indx++),g1);
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.GENERATED.ordinal()];
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.EXPANDED.ordinal()];
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.ROPENED.ordinal()];
+        values[indx++] = this.domainLevel;
 
-        double h1 = features.get(MLPacFeatureExtractor.PacFeature.H_0);
-        ins.setValue(new Attribute("h1",indx++),h1);
+        double U = features[MLPacFeatureExtractor.PacFeature.COST.ordinal()];
+        values[indx++] = U;
 
-        double h1ToLevel = h1/this.domainLevel;
-        ins.setValue(new Attribute("h1ToLevel",indx++),h1ToLevel);
-        sb.append(generated); sb.append(",");
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.G_0.ordinal()];
+        double h1 = features[MLPacFeatureExtractor.PacFeature.H_0.ordinal()];
+        values[indx++] = h1;
+        values[indx++] = h1/this.domainLevel;
 
-        double g2 = features.get(MLPacFeatureExtractor.PacFeature.G_2);
-        ins.setValue(new Attribute("g2",indx++),g2);
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.G_2.ordinal()];
+        double h2 = features[MLPacFeatureExtractor.PacFeature.H_2.ordinal()];
+        values[indx++] = h2;
+        values[indx++] = h2/this.domainLevel;
 
-        double h2 = features.get(MLPacFeatureExtractor.PacFeature.H_2);
-        ins.setValue(new Attribute("h2",indx++),h2);
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.G_2.ordinal()];
+        double h3 = features[MLPacFeatureExtractor.PacFeature.H_2.ordinal()];
+        values[indx++] = h3;
+        values[indx++] = h3/this.domainLevel;
 
-        double h2ToLevel = h2/this.domainLevel;
-        ins.setValue(new Attribute("h2ToLevel",indx++),h2ToLevel);
+        values[indx++] = features[MLPacFeatureExtractor.PacFeature.W.ordinal()];
 
-        double g3 = features.get(MLPacFeatureExtractor.PacFeature.G_2);
-        ins.setValue(new Attribute("g3",indx++),g3);
-
-        double h3 = features.get(MLPacFeatureExtractor.PacFeature.H_2);
-        ins.setValue(new Attribute("h3",indx++),h3);
-
-        double h3ToLevel = h3/this.domainLevel;
-        ins.setValue(new Attribute("h3ToLevel",indx++),h3ToLevel);
-
-        double w = 1.0 + (Double) incumbentSolution.getExtras().get("epsilon");
-        ins.setValue(new Attribute("w",indx++),w);
-
-        FastVector fvNominalVal = new FastVector(2);
-        fvNominalVal.addElement("true");
-        fvNominalVal.addElement("false");
-        Attribute classAtt = new Attribute("is-W-opt", fvNominalVal,indx++);
         boolean isEpsilon = this.currentOptimalCost * (1 + epsilon) >= U;
-        ins.setValue( classAtt,isEpsilon+"");
+        values[indx] = isEpsilon ? MLPacCondition.TRUE_CLASS_VALUE : MLPacCondition.FALSE_CLASS_VALUE;
 
+        Instance ins = this.instance;
         String instanceFeatures = ins.toString();
         logger.info("instance to classify: "+instanceFeatures);
 
@@ -171,25 +148,19 @@ public class MLPacConditionForBoundSolPred extends MLPacCondition {
             }
         }
 
-        double[] distributeResult = {};
-        double classificationResult = -1;
-
         // Classify
-        try {
-            classificationResult = this.classifier.classifyInstance(ins);
-            distributeResult = this.classifier.distributionForInstance(ins); // TODO: GAL WILL CHECK IF WE NEED THE ZERO OR THE ONE CLASS
-        } catch (Exception e) {
-            logger.error("ERROR: Failed to classify instance: ",e);
-        }
+        double[] distributeResult = this.distributionForInstance(); // TODO: GAL WILL CHECK IF WE NEED THE ZERO OR THE ONE CLASS
 
         if(distributeResult.length <= 1){
             // in case of only one or less labels the classifier probably did not trained properly on more then one label
             return false;
         }
 
-        logger.debug("Classifier type: " +this.classifier.getClass().getSimpleName());
-        logger.debug("distribute  result for instance: [" + ins.toString() +"] is ["+ distributeResult[0] +"] ["+ distributeResult[1] +"]");
-        logger.debug("classification  result for instance: [" + ins.toString() +"] is ["+ classificationResult +"]");
+        if (logger.isDebugEnabled()) {
+            logger.debug("Classifier type: " + this.classifier.getClass().getSimpleName());
+            logger.debug("distribute  result for instance: [" + instanceFeatures + "] is [" + distributeResult[0] + "] [" + distributeResult[1] + "]");
+            logger.debug("classification  result for instance: [" + instanceFeatures + "] is [" + Utils.maxIndex(distributeResult) + "]");
+        }
         boolean pacConditionResult = distributeResult[0] >= (1-this.delta);
         return pacConditionResult;
     }
@@ -19,8 +19,8 @@ public class MLPacConditionForBoundSolPredNN extends  MLPacConditionForBoundSolP
 
     private final static Logger logger = Logger.getLogger(MLPacConditionForBoundSolPredNN.class);
 
-    static {
-        MLPacCondition.clsType = "NN";
+    public MLPacConditionForBoundSolPredNN() {
+        this.clsType = "NN";
     }
 
     @Override
@@ -47,6 +47,8 @@ public class MLPacConditionForBoundSolPredNN extends  MLPacConditionForBoundSolP
 
             this.dataset = MLPacPreprocess.getInputInstance(inputDataPath);
             this.dataset.setClassIndex(this.dataset.numAttributes() - 1);
+
+            this.prepareInference(inputModelPath, MLPacConditionForBoundSolPred.INSTANCE_SIZE);
         } catch (Exception e) {
             logger.error("Failed to load model for input file [" +
                     inputDataPath + "]", e);
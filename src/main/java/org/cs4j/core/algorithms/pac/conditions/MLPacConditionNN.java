@@ -7,8 +7,8 @@ import org.cs4j.core.SearchDomain;
  */
 public class MLPacConditionNN extends MLPacCondition {
 
-    static {
-        MLPacCondition.clsType = "NN";
+    public MLPacConditionNN() {
+        this.clsType = "NN";
     }
 
     @Override
@@ -4,6 +4,7 @@ import org.cs4j.core.SearchDomain;
 import org.cs4j.core.SearchResult;
 import org.cs4j.core.algorithms.AnytimeSearchNode;
 import org.cs4j.core.algorithms.pac.PACConditionSatisfied;
+import org.cs4j.core.algorithms.pac.PACStatisticsTable;
 import org.cs4j.core.algorithms.pac.PACUtils;
 import org.cs4j.core.algorithms.pac.Tuple;
 import org.cs4j.core.mains.DomainExperimentData;
@@ -48,6 +49,11 @@ public class OpenBasedPACCondition extends RatioBasedPACCondition implements Sea
 	// Each CDF is a MAP that maps a value v to the value Pr(h*/h(n)<= v)
 	public SortedMap<Double, SortedMap<Double, Double>> hToCdf;
 
+	// The CDFs of hToCdf, compiled into flat arrays (see CompiledCDFs)
+	private double[] cdfHValues;
+	private double[][] cdfRatios;
+	private double[][] cdfLogProbs;
+
 	@Override
 	public void setup(SearchDomain domain, double epsilon, double delta) {
 		this.probIncumbentPAC = 1;
@@ -73,19 +79,19 @@ public class OpenBasedPACCondition extends RatioBasedPACCondition implements Sea
 	}
 
 	public void removedFromOpen(AnytimeSearchNode node) {
-		double probGood = this.getProb(node);
-		if (probGood == 0)
+		double logProbGood = this.getLogProb(node);
+		if (logProbGood == Double.NEGATIVE_INFINITY)
 			--this.zeroProbabilityCounter;
 		else
-			this.probIncumbentPAC = this.probIncumbentPAC - Math.log10(probGood);
+			this.probIncumbentPAC = this.probIncumbentPAC - logProbGood;
 	}
 
 	public void addedToOpen(AnytimeSearchNode node) {
-		double probGood = this.getProb(node);
-		if (probGood == 0)
+		double logProbGood = this.getLogProb(node);
+		if (logProbGood == Double.NEGATIVE_INFINITY)
 			++this.zeroProbabilityCounter;
 		else
-			this.probIncumbentPAC = this.probIncumbentPAC + Math.log10(probGood);
+			this.probIncumbentPAC = this.probIncumbentPAC + logProbGood;
 	}
 
 	/**
@@ -100,15 +106,23 @@ public class OpenBasedPACCondition extends RatioBasedPACCondition implements Sea
 	public void addNewSearchResults(SearchResult newSearchResults, List<AnytimeSearchNode> openNodes) {
 		this.incumbent = newSearchResults.getBestSolution().getCost();
 
-		// Recompute the prob not suboptimal
-		this.probIncumbentPAC = 0;
-		this.zeroProbabilityCounter = 0;
-		this.fmin = Double.MAX_VALUE;
+		// Recompute the prob not suboptimal (in a single pass over OPEN)
+		double probSum = 0;
+		int zeroProbabilities = 0;
+		double minF = Double.MAX_VALUE;
 		for (AnytimeSearchNode node : openNodes) {
-			this.addedToOpen(node);
-			if (node.getF() < this.fmin)
-				this.fmin = node.getF();
+			double logProbGood = this.getLogProb(node);
+			if (logProbGood == Double.NEGATIVE_INFINITY)
+				++zeroProbabilities;
+			else
+				probSum += logProbGood;
+			double f = node.getF();
+			if (f < minF)
+				minF = f;
 		}
+		this.probIncumbentPAC = probSum;
+		this.zeroProbabilityCounter = zeroProbabilities;
+		this.fmin = minF;
 
 		if (this.shouldStop(newSearchResults)) {
 			if (openNodes.size() == 0)
@@ -132,12 +146,66 @@ public class OpenBasedPACCondition extends RatioBasedPACCondition implements Sea
 	 */
 	@Override
 	protected void prepareStatistics() {
-		List<Tuple<Double, Double>> hToOptimalTuples = PACUtils.getHtoOptimalTuples(this.domain.getClass());
-		List<Double> hRanges = this.computeHRanges(hToOptimalTuples);
-		this.hToCdf = this.createCDFs(hRanges, hToOptimalTuples);
+		Class<? extends SearchDomain> domainClass = this.domain.getClass();
+		DomainExperimentData domainDetails = DomainExperimentData.get(domainClass, DomainExperimentData.RunType.TRAIN);
+		PACStatisticsTable table = PACUtils.getHtoOptimalTable(domainClass);
+		// The CDFs depend only on the statistics (and on the range of the
+		// training instances), hence they are built once and shared by all the
+		// instances of the domain
+		CompiledCDFs compiled = PACUtils.getDerived(domainClass,
+				"open-based-cdfs-" + domainDetails.fromInstance + "-" + domainDetails.toInstance, table.version, () -> {
+					List<Tuple<Double, Double>> hToOptimalTuples = PACUtils.getHtoOptimalTuples(domainClass, table);
+					List<Double> hRanges = this.computeHRanges(hToOptimalTuples);
+					this.hToCdf = Collections.unmodifiableSortedMap(this.createCDFs(hRanges, hToOptimalTuples));
+
+					// Dump statistics (for DEBUG)
+					dumpCDFsToFile();
+					return new CompiledCDFs(this.hToCdf);
+				});
+		this.hToCdf = compiled.hToCdf;
+		this.cdfHValues = compiled.hValues;
+		this.cdfRatios = compiled.ratios;
+		this.cdfLogProbs = compiled.logProbs;
+	}
 
-		// Dump statistics (for DEBUG)
-		dumpCDFsToFile();
+	/**
+	 * The CDFs of hToCdf, compiled into flat arrays, so that the probability of
+	 * a node can be computed by a binary search (with no boxing and no log
+	 * computation): the h values of the bins, and for each bin the sorted
+	 * ratios of its CDF and the log of the probability that the h*-to-h ratio
+	 * is bigger than each ratio (Double.NEGATIVE_INFINITY for a zero
+	 * probability)
+	 */
+	private static class CompiledCDFs {
+		private final SortedMap<Double, SortedMap<Double, Double>> hToCdf;
+		private final double[] hValues;
+		private final double[][] ratios;
+		private final double[][] logProbs;
+
+		private CompiledCDFs(SortedMap<Double, SortedMap<Double, Double>> hToCdf) {
+			this.hToCdf = hToCdf;
+			int binsCount = hToCdf.size();
+			this.hValues = new double[binsCount];
+			this.ratios = new double[binsCount][];
+			this.logProbs = new double[binsCount][];
+			int bin = 0;
+			for (Map.Entry<Double, SortedMap<Double, Double>> hAndCdf : hToCdf.entrySet()) {
+				SortedMap<Double, Double> cdf = hAndCdf.getValue();
+				double[] binRatios = new double[cdf.size()];
+				double[] binLogProbs = new double[cdf.size()];
+				int step = 0;
+				for (Map.Entry<Double, Double> ratioAndProb : cdf.entrySet()) {
+					binRatios[step] = ratioAndProb.getKey();
+					// log10(0) is Double.NEGATIVE_INFINITY
+					binLogProbs[step] = Math.log10(1 - ratioAndProb.getValue()); // @TODO: This is a conservative estimate
+					++step;
+				}
+				this.hValues[bin] = hAndCdf.getKey();
+				this.ratios[bin] = binRatios;
+				this.logProbs[bin] = binLogProbs;
+				++bin;
+			}
+		}
 	}
 
 	/**
@@ -308,51 +376,60 @@ public class OpenBasedPACCondition extends RatioBasedPACCondition implements Sea
 	}
 
 	/**
-	 * This returns the probability that the incumbent solution is smaller than
-	 * 1+epsilon times the cost of the optimal path from the initial state to
-	 * the goal state that passes through this node. ion an Formally: getProb(n)
-	 * = Pr(incumbent <= (1+epsilon)*g(n)+h*(n)
+	 * This returns the log of the probability that the incumbent solution is
+	 * smaller than 1+epsilon times the cost of the optimal path from the
+	 * initial state to the goal state that passes through this node. Formally:
+	 * getProb(n) = Pr(incumbent <= (1+epsilon)*g(n)+h*(n)
 	 * 
 	 * @param node
 	 *            The node
-	 * @return The prob. that it cannto invalidate the PAC-ness of the incumbent
+	 * @return The log of the prob. that it cannot invalidate the PAC-ness of
+	 *         the incumbent (Double.NEGATIVE_INFINITY if the prob. is 0)
 	 */
-	private double getProb(AnytimeSearchNode node) {
+	private double getLogProb(AnytimeSearchNode node) {
 		// Maps an h*-to-h ratio to likelihood that the actual h-to-h* is
 		// smaller or equal
-		SortedMap<Double, Double> cdf = getCDF(node);
+		int bin = this.getCDFBin(node);
 		// In this case node is guaranteed to lead to a solution that is more
 		// than (1+epsilon) times the incumbent
 		if (this.incumbent <= (1 + this.epsilon) * node.getF())
-			return 1;
+			return 0; // log(1)
 
 		// If the h*-to-h ratio is smaller than this value, our solution is not
 		// PAC
 		double sufficientRatio = ((this.incumbent / (1 + this.epsilon)) - node.g) / node.h;
-		for (Double ratio : cdf.keySet()) { // Note that costsToCDF is a sorted
-											// list!
-			if (ratio >= sufficientRatio)
-				return 1 - cdf.get(ratio); // @TODO: This is a conservative
-											// estimate
-
+		// Find the first ratio which is at least the sufficient ratio (the
+		// ratios are sorted)
+		double[] ratios = this.cdfRatios[bin];
+		int low = 0;
+		int high = ratios.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (ratios[middle] >= sufficientRatio)
+				high = middle;
+			else
+				low = middle + 1;
 		}
-		return 0;
+		if (low < ratios.length)
+			return this.cdfLogProbs[bin][low];
+		return Double.NEGATIVE_INFINITY; // log(0)
 	}
 
 	/**
 	 * Finds the suitable CDF for the given node
 	 * 
+	 * NOTE: This is the first bin whose h value is at most the h of the node
+	 * (or the last bin if there is no such bin) - since the h values of the
+	 * bins are sorted, it is either the first bin or the last one
+	 * 
 	 * @param node
 	 *            the node to find a CDF for
-	 * @return a CDF
+	 * @return the index of the CDF in the compiled arrays
 	 */
-	private SortedMap<Double, Double> getCDF(AnytimeSearchNode node) {
-		for (Double hValue : this.hToCdf.keySet()) {
-			if (node.h >= hValue)
-				return this.hToCdf.get(hValue);
-
-		}
-		return this.hToCdf.get(this.hToCdf.lastKey());
+	private int getCDFBin(AnytimeSearchNode node) {
+		if (node.h >= this.cdfHValues[0])
+			return 0;
+		return this.cdfHValues.length - 1;
 	}
 
 	@Override
@@ -39,27 +39,17 @@ public class RatioBasedPACCondition extends ThresholdPACCondition {
 
         PACStatistics domainStatistics = PACUtils.getPACStatistics(domain.getClass());
 
-        // Building the PDF (  cost -> prob. that optimal is less than or equal to cost)
-        SortedMap<Double, Double> ratioToPDF = new TreeMap<Double, Double>();
-        double ratio;
-        for(Integer instance : domainStatistics.instanceToOptimal.keySet()){
-            ratio = domainStatistics.instanceToOptimal.get(instance)/
-                    domainStatistics.instanceToInitialH.get(instance);
-            if(ratioToPDF.containsKey(ratio)==false)
-                ratioToPDF.put(ratio,1.0);
-            else
-                ratioToPDF.put(ratio,(ratioToPDF.get(ratio)+1));
-        }
-        for(Double cost : ratioToPDF.keySet())
-            ratioToPDF.put(cost,(ratioToPDF.get(cost)/
-                    domainStatistics.instanceToOptimal.size()));
+        // The CDF of the ratios is the same for all the instances of the domain (hence, it is computed only once)
+        double[][] ratiosAndCDF = PACUtils.getRatioCDF(domain.getClass(), domainStatistics);
+        double[] ratios = ratiosAndCDF[0];
+        double[] cdf = ratiosAndCDF[1];
 
-        // Building the CDF (cumulative)
+        // Building the CDF of the costs (cumulative)
         SortedMap<Double, Double>ratioToCDF = new TreeMap<Double, Double>();
         Double oldCDFValue=0.0;
-        for(Double cost : ratioToPDF.keySet()) {
-            ratioToCDF.put(cost*this.initialH, ratioToPDF.get(cost) + oldCDFValue);
-            oldCDFValue = ratioToCDF.get(cost*this.initialH);
+        for(int i=0;i<ratios.length;i++) {
+            ratioToCDF.put(ratios[i]*this.initialH, cdf[i]);
+            oldCDFValue = cdf[i];
         }
 
         // Accuracy issues
@@ -9,6 +9,7 @@ import org.cs4j.core.algorithms.SearchResultImpl;
 import org.cs4j.core.algorithms.pac.PACUtils;
 import org.cs4j.core.domains.VacuumRobot;
 import org.cs4j.core.experiments.ExperimentUtils;
+import org.cs4j.core.experiments.PreprocessCache;
 import org.cs4j.core.mains.DomainExperimentData;
 import org.cs4j.core.mains.DomainExperimentData.RunType;
 import org.cs4j.core.pac.conf.PacConfig;
@@ -30,6 +31,10 @@ public class MLPacPreprocess {
 	private final static Logger logger = Logger.getLogger(MLPacPreprocess.class);
 	private static OutputResult output;
 
+	// The columns of the cost and of w in a row of features (see extractFeaturesRow)
+	private static final int FEATURES_COST_COLUMN = 3;
+	private static final int FEATURES_W_COLUMN = 10;
+
 	/**
 	 * for each domain in Domains: 1. train a classifier: 1.1 for each problem
 	 * in domain: apply AnytimeSearchAlgo on problem: for each solution extract
@@ -49,104 +54,165 @@ public class MLPacPreprocess {
 		Class[] domains = PacConfig.instance.pacPreProcessDomains();//{  VacuumRobot.class};//, VacuumRobot.class,  Pancakes.class};
 
 
+		// The tables are written in the binary format of PacDatasetWriter, and exported to ARFF when they are complete
 		String outfilePostfix = ".arff";
+		// Instances that were preprocessed by previous runs are read from the cache
+		PreprocessCache cache = PreprocessCache.open();
+		// The models are trained in parallel (and while the next domains are preprocessed)
+		PacTrainingScheduler scheduler = PacTrainingScheduler.create();
 
 		for (Class domainClass : domains) {
-			for (double epsilon : inputEpsilon) {
-
-				String outFile = DomainExperimentData.get(domainClass, RunType.TRAIN).outputPreprocessPath;
-				try {
-					output = new OutputResult(outFile, "MLPacPreprocess_e"+epsilon, true,outfilePostfix);
-				} catch (IOException e1) {
-					logger.error("Failed to create output ML PAC preprocess output file at: " + outFile, e1);
-				}
 
-				String tableHeader = MLPacFeatureExtractor.getFeaturesARFFHeader();
+			// A table for each epsilon - all of them are filled from the same anytime runs, since the epsilon only
+			// labels the solutions (w and is-W-opt)
+			String outFile = DomainExperimentData.get(domainClass, RunType.TRAIN).outputPreprocessPath;
+			PacDatasetWriter[] outputs = new PacDatasetWriter[inputEpsilon.length];
+			// The epsilons whose tables couldn't be created
+			boolean[] failedOutputs = new boolean[inputEpsilon.length];
+			String tableHeader = MLPacFeatureExtractor.getFeaturesARFFHeader();
+			for (int e = 0; e < inputEpsilon.length; ++e) {
 				try {
-					output.writeln(tableHeader);
+					outputs[e] = PacDatasetWriter.create(outFile + File.separator + "MLPacPreprocess_e" + inputEpsilon[e] +
+							PacDatasetWriter.FILE_EXTENSION, tableHeader);
 				} catch (IOException e1) {
-					logger.error("Failed to write header to output ML preprocess table: " + tableHeader, e1);
+					// The epsilon is skipped (no table is written and no model is trained for it)
+					failedOutputs[e] = true;
+					logger.error("Failed to create output ML PAC preprocess output file at: " + outFile +
+							" (skipping epsilon " + inputEpsilon[e] + ")", e1);
 				}
+			}
 
-				logger.info("Running anytime for domain " + domainClass.getName());
-				try {
-					logger.info("Solving " + domainClass.getName());
-
-					// -------------------------------------------------
-					// 1. load PAC statistics (to get optimal solutions
-					PACUtils.getPACStatistics(domainClass);
-
-					// --------------------------------------------------------------
-					// 2. run anytime search and for every solution collect
-					// features
-					SearchDomain domain;
-					Map<String, String> domainParams = new TreeMap<>();
-					Constructor<?> cons = ExperimentUtils.getSearchDomainConstructor(domainClass);
-					int fromInstance = DomainExperimentData.get(domainClass, RunType.TRAIN).fromInstance;
-					int toInstance = DomainExperimentData.get(domainClass, RunType.TRAIN).toInstance;
-					String inputPath = DomainExperimentData.get(domainClass, RunType.TRAIN).inputPath;
-
-					AnytimeSearchAlgorithm algorithm = getAnytimeAlg(epsilon);
-
-					for (int i = fromInstance; i <= toInstance; ++i) {
-						logger.info("\rSolving " + domainClass.getName() + "\t instance " + i);
+			logger.info("Running anytime for domain " + domainClass.getName());
+			try {
+				logger.info("Solving " + domainClass.getName());
+
+				// -------------------------------------------------
+				// 1. load PAC statistics (to get optimal solutions
+				PACUtils.getPACStatistics(domainClass);
+
+				// --------------------------------------------------------------
+				// 2. run anytime search and for every solution collect
+				// features
+				SearchDomain domain;
+				Map<String, String> domainParams = new TreeMap<>();
+				Constructor<?> cons = ExperimentUtils.getSearchDomainConstructor(domainClass);
+				int fromInstance = DomainExperimentData.get(domainClass, RunType.TRAIN).fromInstance;
+				int toInstance = DomainExperimentData.get(domainClass, RunType.TRAIN).toInstance;
+				String inputPath = DomainExperimentData.get(domainClass, RunType.TRAIN).inputPath;
+
+				// The epsilon of the algorithm is only recorded in the results (the rows are relabeled for each
+				// epsilon), hence a single run of each instance serves all the epsilons
+				AnytimeSearchAlgorithm algorithm = getAnytimeAlg(inputEpsilon[0]);
+
+				for (int i = fromInstance; i <= toInstance; ++i) {
+					logger.info("\rSolving " + domainClass.getName() + "\t instance " + i);
+
+					double optimalCost = PACUtils.getOptimalSolution(domainClass, i);
+
+					// The cached rows aren't labeled, hence they don't depend on the epsilons or the optimal cost
+					String cacheKey = (cache != null) ? PreprocessCache.key(domainClass,
+							new File(inputPath + "/" + i + ".in"), domainParams,
+							"anytime-pts(domain-features=" + PacConfig.instance.useDomainFeatures() + ")") : null;
+					double[] cachedRows = (cacheKey != null) ? cache.get(cacheKey) : null;
+					List<double[]> rows;
+					if (cachedRows != null) {
+						logger.info("Instance " + i + " was already preprocessed (found in the preprocess cache)");
+						rows = unflattenFeaturesRows(cachedRows);
+					} else {
 						domain = ExperimentUtils.getSearchDomain(inputPath, domainParams, cons, i);
 
-						double optimalCost = PACUtils.getOptimalSolution(domainClass, i);
-
-						int problemAttemptIndx = 1;
+						rows = new ArrayList<>();
 						SearchResultImpl result = (SearchResultImpl) algorithm.search(domain);
 
 						// if another solution is possible - continue searing
 						while (result.hasSolution()) {
 							// extract feature out of every solution:
-							ExtractFeaturesToFile(result, domain, domainClass, problemAttemptIndx++, i, optimalCost,
-									epsilon);
+							rows.add(extractFeaturesRow(result, optimalCost, inputEpsilon[0]));
 
 							// continue to search another solution:
 							result = (SearchResultImpl) algorithm.continueSearch();
 						}
+						if (cacheKey != null && !rows.isEmpty()) {
+							cache.put(cacheKey, flattenFeaturesRows(rows));
+						}
+					}
+
+					// Label the solutions for each epsilon
+					for (double[] row : rows) {
+						for (int e = 0; e < inputEpsilon.length; ++e) {
+							if (outputs[e] != null) {
+								writeFeaturesRow(outputs[e], labelFeaturesRow(row, optimalCost, inputEpsilon[e]));
+							}
+						}
+					}
 
-						System.out.println("------------------");
-						System.out.println("------------------");
+					System.out.println("------------------");
+					System.out.println("------------------");
+
+				}
+				// The tables must be complete before they are exported (each writer is closed once - the finally block
+				// only closes the writers which weren't closed here)
+				for (int e = 0; e < outputs.length; ++e) {
+					if (outputs[e] != null) {
+						PacDatasetWriter output = outputs[e];
+						outputs[e] = null;
+						output.close();
+					}
+				}
 
+				for (int index = 0; index < inputEpsilon.length; ++index) {
+					double epsilon = inputEpsilon[index];
+					if (failedOutputs[index]) {
+						continue;
 					}
-					output.close();
-
-					// -------------------------------------------------
-					// 3. train a model
-					// -------------------------------------------------
-                    List<PacClassifierType> clsTypes = Arrays.asList(/*PacClassifierType.J48,*/ PacClassifierType.NN);
-					String inputDataPath = DomainExperimentData.get(domainClass,
-							RunType.TRAIN).outputPreprocessPath + "MLPacPreprocess_e"+epsilon+outfilePostfix;
-
-					// -------------------------------------------------
-                    // 4. save model to file
-					// -------------------------------------------------
-                    for(PacClassifierType clsType: clsTypes) {
-
-                        AbstractClassifier cls = setupAndGetClassifier(inputDataPath,clsType, true, DomainExperimentData.get(domainClass,
-                                RunType.TRAIN).outputPreprocessPath + "MLPacPreprocess_e" + epsilon + "_"+clsType+".arff");
-                        ObjectOutputStream oos = new ObjectOutputStream(
-                                    new FileOutputStream(DomainExperimentData.get(domainClass,
-                                            RunType.TRAIN).outputPreprocessPath + "MLPacPreprocess_e" + epsilon + "_"+clsType+".model"));
-                            oos.writeObject(cls);
-                            oos.flush();
+					try {
+						// -------------------------------------------------
+						// 3. train a model
+						// -------------------------------------------------
+						List<PacClassifierType> clsTypes = Arrays.asList(/*PacClassifierType.J48,*/ PacClassifierType.NN);
+						String inputDataPath = outFile + "MLPacPreprocess_e"+epsilon+PacDatasetWriter.FILE_EXTENSION;
+						// The ARFF table is read by MLPacCondition and by the evaluators
+						PacDatasetReader.exportArff(inputDataPath, outFile + "MLPacPreprocess_e"+epsilon+outfilePostfix);
+
+						// -------------------------------------------------
+						// 4. save model to file
+						// -------------------------------------------------
+						for(PacClassifierType clsType: clsTypes) {
+
+							scheduler.submitModel(inputDataPath,clsType, true, DomainExperimentData.get(domainClass,
+									RunType.TRAIN).outputPreprocessPath + "MLPacPreprocess_e" + epsilon + "_"+clsType+".arff",
+									DomainExperimentData.get(domainClass,
+											RunType.TRAIN).outputPreprocessPath + "MLPacPreprocess_e" + epsilon + "_"+clsType+".model");
 
-                    }
+						}
+					} catch (Exception e) {
+						logger.error(e);
+						e.printStackTrace();
+					}
+				}
 
 
 
-				} catch (Exception e) {
-					logger.error(e);
-					e.printStackTrace();
-				} finally {
+			} catch (Exception e) {
+				logger.error(e);
+				e.printStackTrace();
+			} finally {
+				for (PacDatasetWriter output : outputs) {
 					if (output != null) {
-						output.close();
+						try {
+							output.close();
+						} catch (IOException e) {
+							logger.error("Failed to close ML preprocess table", e);
+						}
 					}
 				}
 			}
 		}
+		scheduler.awaitModels();
+		scheduler.shutdown();
+		if (cache != null) {
+			cache.close();
+		}
 	}
 
 	public static AbstractClassifier setupAndGetClassifier(String inputDataPath, PacClassifierType classifierType){
@@ -178,12 +244,28 @@ public class MLPacPreprocess {
 
 
 			try {
+				// Without resampling, a binary table is streamed into the classifier (an updateable classifier
+				// doesn't need the table in memory at all)
+				if (!PacConfig.instance.pacPreProcessUseResampleFilter() &&
+						PacDatasetReader.isDatasetFile(inputDataPath)) {
+					PacDatasetReader reader = new PacDatasetReader(inputDataPath);
+					try {
+						logger.info(String.format("Training Dataset shape: instances [%d], features [%d]",
+								reader.numRows(), reader.getStructure().numAttributes()));
+						reader.buildClassifier(classifier);
+					} finally {
+						reader.close();
+					}
+					return classifier;
+				}
+
 				Instances dataset = getInputInstance(inputDataPath);
 
 
 
                 if(PacConfig.instance.pacPreProcessUseResampleFilter()){
-                    Instances tempTraining = new Instances(dataset);
+                    // The filter doesn't modify its input, hence the dataset isn't copied
+                    Instances tempTraining = dataset;
                     tempTraining.setClassIndex(tempTraining.numAttributes()-1);
                     final Resample resample = new Resample();
                     try {
@@ -207,10 +289,7 @@ public class MLPacPreprocess {
 					// save the new dataset to file and overwrite the previous one
 					if(datasetOtFile != null && !datasetOtFile.isEmpty()){
 						logger.info("writing filtered balances data set to file: " + datasetOtFile);
-						BufferedWriter writer = new BufferedWriter(new FileWriter(datasetOtFile));
-						writer.write(dataset.toString());
-						writer.flush();
-						writer.close();
+						PacDatasetReader.writeArff(dataset, datasetOtFile);
 					}
 
 
@@ -227,10 +306,7 @@ public class MLPacPreprocess {
 
 	public static void saveDatasetToFile(String filename, Instances dataset){
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-            writer.write(dataset.toString());
-            writer.flush();
-            writer.close();
+            PacDatasetReader.writeArff(dataset, filename);
         } catch (IOException e) {
             logger.error("ERROR: Failed to write dataset for classifier: " + filename,e);
         }
@@ -240,6 +316,9 @@ public class MLPacPreprocess {
 		logger.debug("getInputInstance | input file: " + inputDataPath);
 		Instances data = null;
 		try {
+			if (PacDatasetReader.isDatasetFile(inputDataPath)) {
+				return PacDatasetReader.read(inputDataPath);
+			}
 			BufferedReader reader = new BufferedReader(
 					new FileReader(inputDataPath));
 			data = new Instances(reader);
@@ -264,6 +343,16 @@ public class MLPacPreprocess {
 //		int problemInstance = instance;
 //		int attempt = attemptCounter++;
 
+		writeFeaturesRow(output, extractFeaturesRow(searchResult, optimalCost, inputEpsilon));
+	}
+
+	/**
+	 * Extracts the features of the solution of a search into a row of the preprocess table
+	 *
+	 * @return The values of the row - the last one is the target (1 if the solution is w-optimal and 0 otherwise)
+	 */
+	public static double[] extractFeaturesRow(SearchResultImpl searchResult, double optimalCost, double inputEpsilon) {
+
 		// "generated,expanded,reopened,cost,g1,h1,g2,h2,g3,h3,w,is-W-opt"
 
 		Map<PacFeature, Double> features = MLPacFeatureExtractor
@@ -285,9 +374,7 @@ public class MLPacPreprocess {
 
 		double w = 1.0 + (Double) searchResult.getExtras().get("epsilon");
 
-		boolean isWOptimal =  features.get(PacFeature.IS_W_OPT).intValue() == 1? true : false;
-
-		List<String> lineParts = null;
+		double isWOptimal = features.get(PacFeature.IS_W_OPT).intValue() == 1 ? 1 : 0;
 
 		if(PacConfig.instance.useDomainFeatures()) {
 			VacuumRobot.VacuumRobotState start = (VacuumRobot.VacuumRobotState) searchResult.getBestSolution().getStates().get(0);
@@ -300,11 +387,52 @@ public class MLPacPreprocess {
 			double remainingDirtyLocationCount_goal = goaltMap.get(PacFeature.remainingDirtyLocationsCount);
 			double dirtyVector_goal = goaltMap.get(PacFeature.dirtyVector);
 
-			lineParts = Arrays.asList(generated+"",expanded+"",reopened+"",U+"",g1+"",h1+"",g2+"",h2+"",g3+"",h3+"",w+"",remainingDirtyLocationCount_start+""
-				,dirtyVector_start+"",remainingDirtyLocationCount_goal+"",dirtyVector_goal+"",isWOptimal+"");
+			return new double[]{generated,expanded,reopened,U,g1,h1,g2,h2,g3,h3,w,remainingDirtyLocationCount_start
+				,dirtyVector_start,remainingDirtyLocationCount_goal,dirtyVector_goal,isWOptimal};
 		} else{
-			lineParts = Arrays.asList(generated+"",expanded+"",reopened+"",U+"",g1+"",h1+"",g2+"",h2+"",g3+"",h3+"",w+"",isWOptimal+"");
+			return new double[]{generated,expanded,reopened,U,g1,h1,g2,h2,g3,h3,w,isWOptimal};
+		}
+	}
+
+	/**
+	 * Labels a row of features (see extractFeaturesRow) for the given epsilon: sets w and whether the solution is
+	 * w-optimal
+	 *
+	 * @return The labeled row (a copy)
+	 */
+	public static double[] labelFeaturesRow(double[] row, double optimalCost, double inputEpsilon) {
+		double[] labeled = Arrays.copyOf(row, row.length);
+		labeled[FEATURES_W_COLUMN] = 1.0 + inputEpsilon;
+		labeled[labeled.length - 1] = MLPacFeatureExtractor.isWOpttimal(row[FEATURES_COST_COLUMN], optimalCost,
+				inputEpsilon) ? 1 : 0;
+		return labeled;
+	}
+
+	/**
+	 * Writes a row of features (see extractFeaturesRow) to the given binary preprocess table
+	 */
+	private static void writeFeaturesRow(PacDatasetWriter output, double[] row) {
+		double[] values = Arrays.copyOf(row, row.length);
+		// The target is nominal, hence it is written as the index of its label
+		values[values.length - 1] = output.getStructure().classAttribute()
+				.indexOfValue((row[row.length - 1] == 1)+"");
+		try {
+			output.write(values);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes a row of features (see extractFeaturesRow) to the given preprocess table
+	 */
+	private static void writeFeaturesRow(OutputResult output, double[] row) {
+		List<String> lineParts = new ArrayList<>();
+		for (int i = 0; i < row.length - 1; ++i) {
+			lineParts.add(row[i]+"");
 		}
+		// The target is written as a boolean
+		lineParts.add((row[row.length - 1] == 1)+"");
 		String line = String.join(",", lineParts);
 		logger.debug("adding new features to table: " + line);
 		try {
@@ -315,6 +443,31 @@ public class MLPacPreprocess {
 
 	}
 
+	/**
+	 * Flattens the rows of features of an instance into the values of a cached result: [the width of a row, rows...]
+	 */
+	private static double[] flattenFeaturesRows(List<double[]> rows) {
+		int width = rows.get(0).length;
+		double[] values = new double[1 + rows.size() * width];
+		values[0] = width;
+		for (int i = 0; i < rows.size(); ++i) {
+			System.arraycopy(rows.get(i), 0, values, 1 + i * width, width);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the rows of features of a cached result (see flattenFeaturesRows)
+	 */
+	private static List<double[]> unflattenFeaturesRows(double[] values) {
+		List<double[]> rows = new ArrayList<>();
+		int width = (int) values[0];
+		for (int start = 1; start + width <= values.length; start += width) {
+			rows.add(Arrays.copyOfRange(values, start, start + width));
+		}
+		return rows;
+	}
+
 	public static AnytimeSearchAlgorithm getAnytimeAlg(double epsilon) {
 		AnytimeSearchAlgorithm algorithm = new AnytimePTS() {
 			@Override
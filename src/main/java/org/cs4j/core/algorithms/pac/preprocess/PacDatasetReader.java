@@ -0,0 +1,256 @@
+package org.cs4j.core.algorithms.pac.preprocess;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a dataset that was written by PacDatasetWriter, row by row.
+ *
+ * The rows can be streamed (next), into an updateable classifier (buildClassifier), or loaded at once into an Instances
+ * object whose capacity is preallocated (readAll). The dataset can also be exported to ARFF without building it in
+ * memory (exportArff).
+ */
+public class PacDatasetReader {
+
+    private final Instances structure;
+    private final DataInputStream in;
+    private final long rows;
+    private long read;
+
+    /**
+     * Opens a dataset file
+     *
+     * @param fileName The name of the file
+     *
+     * @throws IOException If something wrong occurred (e.g. the file isn't a dataset file)
+     */
+    public PacDatasetReader(String fileName) throws IOException {
+        File file = new File(fileName);
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try {
+            if (this.in.readLong() != PacDatasetWriter.MAGIC) {
+                throw new IOException("Not a dataset file (or an unknown version): " + fileName);
+            }
+            int headerLength = this.in.readInt();
+            if (headerLength < 0 || headerLength > file.length()) {
+                throw new IOException("Invalid header of dataset file " + fileName);
+            }
+            byte[] headerBytes = new byte[headerLength];
+            this.in.readFully(headerBytes);
+            long headerSize = 8 + 4 + headerBytes.length;
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+            String relation = header.readUTF();
+            int numAttributes = header.readInt();
+            int classIndex = header.readInt();
+            ArrayList<Attribute> attributes = new ArrayList<>(numAttributes);
+            for (int i = 0; i < numAttributes; ++i) {
+                String name = header.readUTF();
+                byte type = header.readByte();
+                if (type == PacDatasetWriter.NUMERIC) {
+                    attributes.add(new Attribute(name));
+                } else if (type == PacDatasetWriter.NOMINAL) {
+                    int numValues = header.readInt();
+                    List<String> values = new ArrayList<>(numValues);
+                    for (int v = 0; v < numValues; ++v) {
+                        values.add(header.readUTF());
+                    }
+                    attributes.add(new Attribute(name, values));
+                } else {
+                    throw new IOException("Unknown attribute type " + type + " in " + fileName);
+                }
+            }
+            long rowSize = 8L * numAttributes;
+            this.rows = (file.length() - headerSize) / rowSize;
+            this.structure = new Instances(relation, attributes, 0);
+            this.structure.setClassIndex(classIndex);
+        } catch (IOException e) {
+            this.in.close();
+            throw e;
+        }
+        this.read = 0;
+    }
+
+    /**
+     * Reads a whole dataset file
+     *
+     * @param fileName The name of the file
+     *
+     * @return The dataset (with its class index set)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static Instances read(String fileName) throws IOException {
+        PacDatasetReader reader = new PacDatasetReader(fileName);
+        try {
+            return reader.readAll();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param fileName The name of a file
+     *
+     * @return Whether the file is a binary dataset file (by its extension)
+     */
+    public static boolean isDatasetFile(String fileName) {
+        return fileName.endsWith(PacDatasetWriter.FILE_EXTENSION);
+    }
+
+    /**
+     * @return The attributes of the dataset (without rows)
+     */
+    public Instances getStructure() {
+        return this.structure;
+    }
+
+    /**
+     * @return The number of rows of the dataset
+     */
+    public long numRows() {
+        return this.rows;
+    }
+
+    /**
+     * Reads the next row
+     *
+     * @return The row (whose dataset is the structure), or null if all the rows were read
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public Instance next() throws IOException {
+        if (this.read >= this.rows) {
+            return null;
+        }
+        double[] values = new double[this.structure.numAttributes()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = this.in.readDouble();
+        }
+        ++this.read;
+        Instance instance = new DenseInstance(1.0, values);
+        instance.setDataset(this.structure);
+        return instance;
+    }
+
+    /**
+     * Reads the remaining rows into a single dataset
+     *
+     * @return The dataset (with its class index set)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public Instances readAll() throws IOException {
+        Instances dataset = new Instances(this.structure, (int) (this.rows - this.read));
+        Instance instance;
+        while ((instance = this.next()) != null) {
+            // Instances.add copies the instance, but a DenseInstance shares its values (so nothing is duplicated)
+            dataset.add(instance);
+        }
+        return dataset;
+    }
+
+    /**
+     * Trains a classifier by the remaining rows: an updateable classifier is trained row by row, without loading the
+     * dataset, while any other classifier is trained by the whole dataset (a single copy of it)
+     *
+     * @param classifier The classifier to train
+     *
+     * @throws Exception If something wrong occurred
+     */
+    public void buildClassifier(Classifier classifier) throws Exception {
+        if (classifier instanceof UpdateableClassifier) {
+            classifier.buildClassifier(new Instances(this.structure, 0));
+            Instance instance;
+            while ((instance = this.next()) != null) {
+                ((UpdateableClassifier) classifier).updateClassifier(instance);
+            }
+        } else {
+            classifier.buildClassifier(this.readAll());
+        }
+    }
+
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Exports a dataset file to ARFF, row by row
+     *
+     * @param fileName The name of the dataset file
+     * @param arffFileName The name of the ARFF file (an existing file is overwritten)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static void exportArff(String fileName, String arffFileName) throws IOException {
+        PacDatasetReader reader = new PacDatasetReader(fileName);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(arffFileName), 1 << 16);
+        try {
+            PacDatasetReader._writeArffHeader(reader.getStructure(), writer);
+            Instance instance;
+            while ((instance = reader.next()) != null) {
+                PacDatasetReader._writeArffRow(instance, writer);
+            }
+        } finally {
+            writer.close();
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes a dataset to ARFF, row by row (unlike Instances.toString, the whole text isn't built in memory)
+     *
+     * @param dataset The dataset
+     * @param arffFileName The name of the ARFF file (an existing file is overwritten)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static void writeArff(Instances dataset, String arffFileName) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(arffFileName), 1 << 16);
+        try {
+            PacDatasetReader._writeArffHeader(dataset, writer);
+            for (int i = 0; i < dataset.numInstances(); ++i) {
+                PacDatasetReader._writeArffRow(dataset.instance(i), writer);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void _writeArffHeader(Instances structure, BufferedWriter writer) throws IOException {
+        // The header is the ARFF representation of an empty dataset (which ends by the @data line)
+        writer.write(new Instances(structure, 0).toString().trim());
+        writer.newLine();
+    }
+
+    private static void _writeArffRow(Instance instance, BufferedWriter writer) throws IOException {
+        for (int i = 0; i < instance.numAttributes(); ++i) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (instance.isMissing(i)) {
+                writer.write('?');
+            } else if (instance.attribute(i).isNominal()) {
+                writer.write(Utils.quote(instance.stringValue(i)));
+            } else {
+                writer.write(Double.toString(instance.value(i)));
+            }
+        }
+        writer.newLine();
+    }
+}
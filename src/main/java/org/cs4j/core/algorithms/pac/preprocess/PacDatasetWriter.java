@@ -0,0 +1,138 @@
+package org.cs4j.core.algorithms.pac.preprocess;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Writes a dataset of the ML PAC pipeline in a compact binary format, row by row (see PacDatasetReader).
+ *
+ * The format is a header and then the rows, each of which is a fixed number of doubles (in the internal representation
+ * of Weka: a nominal value is the index of its label, and a missing value is NaN). The header starts by MAGIC and the
+ * size of the rest of the header, which holds the relation name, the index of the class attribute and the attributes
+ * (their names, types and the labels of nominal ones). Since the rows have a fixed size, their number isn't stored -
+ * it is derived from the size of the file and the size of the header.
+ */
+public class PacDatasetWriter {
+
+    // Identifies (and versions) the format
+    static final long MAGIC = 0x5041434453455402L;
+    static final byte NUMERIC = 0;
+    static final byte NOMINAL = 1;
+    // The extension of the binary datasets
+    public static final String FILE_EXTENSION = ".pacds";
+
+    private final Instances structure;
+    private final DataOutputStream out;
+    private int rows;
+
+    /**
+     * Creates a dataset file (an existing file is overwritten)
+     *
+     * @param fileName The name of the file
+     * @param structure The attributes of the dataset (only numeric and nominal attributes are supported) - the class
+     *                  attribute is the last one, unless the structure defines another one
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public PacDatasetWriter(String fileName, Instances structure) throws IOException {
+        this.structure = new Instances(structure, 0);
+        if (this.structure.classIndex() < 0) {
+            this.structure.setClassIndex(this.structure.numAttributes() - 1);
+        }
+        File file = new File(fileName);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.rows = 0;
+        this._writeHeader();
+    }
+
+    /**
+     * Creates a dataset file whose attributes are given by an ARFF header
+     *
+     * @param fileName The name of the file
+     * @param arffHeader The ARFF header (e.g. MLPacFeatureExtractor.getFeaturesARFFHeader())
+     *
+     * @return The writer
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static PacDatasetWriter create(String fileName, String arffHeader) throws IOException {
+        return new PacDatasetWriter(fileName, new Instances(new StringReader(arffHeader)));
+    }
+
+    private void _writeHeader() throws IOException {
+        // The header is encoded first, since its size (in the modified UTF-8 of the strings) precedes it
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeUTF(this.structure.relationName());
+        header.writeInt(this.structure.numAttributes());
+        header.writeInt(this.structure.classIndex());
+        for (int i = 0; i < this.structure.numAttributes(); ++i) {
+            Attribute attribute = this.structure.attribute(i);
+            header.writeUTF(attribute.name());
+            if (attribute.isNumeric()) {
+                header.writeByte(PacDatasetWriter.NUMERIC);
+            } else if (attribute.isNominal()) {
+                header.writeByte(PacDatasetWriter.NOMINAL);
+                header.writeInt(attribute.numValues());
+                for (int v = 0; v < attribute.numValues(); ++v) {
+                    header.writeUTF(attribute.value(v));
+                }
+            } else {
+                System.out.println("[ERROR] Unsupported attribute type: " + attribute);
+                throw new IllegalArgumentException();
+            }
+        }
+        header.flush();
+        this.out.writeLong(PacDatasetWriter.MAGIC);
+        this.out.writeInt(headerBytes.size());
+        headerBytes.writeTo(this.out);
+    }
+
+    /**
+     * @return The attributes of the dataset (without rows)
+     */
+    public Instances getStructure() {
+        return this.structure;
+    }
+
+    /**
+     * @return The number of rows written so far
+     */
+    public int numRows() {
+        return this.rows;
+    }
+
+    /**
+     * Appends a row
+     *
+     * @param values The values of the row (in the internal representation of Weka)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public void write(double[] values) throws IOException {
+        if (values.length != this.structure.numAttributes()) {
+            System.out.println("[ERROR] A row of " + values.length + " values, while the dataset has " +
+                    this.structure.numAttributes() + " attributes");
+            throw new IllegalArgumentException();
+        }
+        for (double value : values) {
+            this.out.writeDouble(value);
+        }
+        ++this.rows;
+    }
+
+    public void close() throws IOException {
+        this.out.close();
+    }
+}
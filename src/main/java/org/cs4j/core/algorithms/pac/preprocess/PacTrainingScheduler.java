@@ -0,0 +1,319 @@
+package org.cs4j.core.algorithms.pac.preprocess;
+
+import org.apache.log4j.Logger;
+import org.cs4j.core.pac.conf.PacConfig;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.evaluation.Evaluation;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Trains the classifiers of the ML PAC pipeline, and their cross-validation folds, in parallel.
+ *
+ * A model job (see submitModel) trains a single model (e.g. of a single domain, epsilon, classifier type and train
+ * levels) by MLPacPreprocess.setupAndGetClassifier, and serializes it to its model file - the models are the same as
+ * the ones of a sequential run, since each job trains its own classifier object by the same data.
+ *
+ * A cross-validation (see crossValidateModel) builds the models of its folds in parallel, while the folds are cut and
+ * evaluated in order - hence, the evaluation is the same as the one of Evaluation.crossValidateModel with the same
+ * random generator.
+ *
+ * The jobs are executed by a work-stealing pool, and the memory which they hold together is bounded: each job reserves
+ * an estimate of its memory (by the size of its data) before it starts, and waits while the reservations of the running
+ * jobs don't leave room for it. A job which is larger than the whole bound runs alone.
+ */
+public class PacTrainingScheduler {
+    final static Logger logger = Logger.getLogger(PacTrainingScheduler.class);
+
+    // The memory of a model job, relative to the size of its dataset file (the loaded dataset, its resampled copy and
+    // the copy that the classifier builds)
+    private static final int MODEL_MEMORY_FACTOR = 4;
+    // The memory of a fold, relative to the size of the values of the dataset (the train set, the test set and the
+    // copy that the classifier builds)
+    private static final int FOLD_MEMORY_FACTOR = 3;
+    private static final long MB = 1024 * 1024;
+
+    private ForkJoinPool pool;
+    private int threadsCount;
+    private int memoryMB;
+    // A permit for every MB of the memory bound
+    private Semaphore memory;
+
+    // The models of the submitted jobs, in submission order
+    private List<Future<AbstractClassifier>> pendingModels;
+
+    /**
+     * @param threadsCount The maximal number of threads (0 means the number of available processors)
+     * @param memoryMB The memory that the concurrent jobs may hold together (0 means 3/4 of the maximal heap size)
+     */
+    public PacTrainingScheduler(int threadsCount, int memoryMB) {
+        if (threadsCount < 0 || memoryMB < 0) {
+            System.out.println("[ERROR] Invalid parameters for the training scheduler (threads: " + threadsCount +
+                    ", memory: " + memoryMB + ")");
+            throw new IllegalArgumentException();
+        }
+        if (threadsCount == 0) {
+            threadsCount = Runtime.getRuntime().availableProcessors();
+        }
+        if (memoryMB == 0) {
+            memoryMB = (int) Math.max(1, Runtime.getRuntime().maxMemory() / 4 * 3 / PacTrainingScheduler.MB);
+        }
+        this.threadsCount = threadsCount;
+        this.memoryMB = memoryMB;
+        this.memory = new Semaphore(memoryMB);
+        this.pool = new ForkJoinPool(threadsCount);
+        this.pendingModels = new ArrayList<>();
+        logger.info("Training classifiers on " + threadsCount + " threads (memory bound: " + memoryMB + "MB)");
+    }
+
+    /**
+     * Creates a scheduler by the configuration (see PacConfig)
+     */
+    public static PacTrainingScheduler create() {
+        return new PacTrainingScheduler(PacConfig.instance.pacPreprocessTrainingThreads(),
+                PacConfig.instance.pacPreprocessTrainingMemoryMB());
+    }
+
+    /**
+     * @return The number of threads which actually run the jobs
+     */
+    public int getThreadsCount() {
+        return this.threadsCount;
+    }
+
+    /**
+     * Submits a model job (see MLPacPreprocess.setupAndGetClassifier for the parameters of the training). The memory
+     * of the job is reserved here, hence the caller waits while the memory bound is taken by the running jobs (the
+     * worker threads never block on the reservation)
+     *
+     * @param inputDataPath The dataset file
+     * @param classifierType The type of the classifier
+     * @param enableDataPreperation Whether the dataset is prepared for the training
+     * @param datasetOtFile The file into which the prepared dataset is written (if any)
+     * @param modelFile The file into which the model is serialized
+     *
+     * @return The model (which is available once the model file is written)
+     */
+    public Future<AbstractClassifier> submitModel(String inputDataPath,
+                                                  PacClassifierType classifierType,
+                                                  boolean enableDataPreperation,
+                                                  String datasetOtFile,
+                                                  String modelFile) {
+        int permits = this._permits(new File(inputDataPath).length() * PacTrainingScheduler.MODEL_MEMORY_FACTOR);
+        this.memory.acquireUninterruptibly(permits);
+        Future<AbstractClassifier> model;
+        try {
+            model = this.pool.submit(() -> this._trainModel(inputDataPath, classifierType,
+                    enableDataPreperation, datasetOtFile, modelFile, permits));
+        } catch (RuntimeException e) {
+            this.memory.release(permits);
+            throw e;
+        }
+        this.pendingModels.add(model);
+        return model;
+    }
+
+    /**
+     * Trains a model and writes it to its file, on the current (worker) thread, and releases the reservation of the
+     * job
+     */
+    private AbstractClassifier _trainModel(String inputDataPath,
+                                           PacClassifierType classifierType,
+                                           boolean enableDataPreperation,
+                                           String datasetOtFile,
+                                           String modelFile,
+                                           int permits) throws IOException {
+        try {
+            logger.info("Training " + classifierType + " by " + inputDataPath);
+            AbstractClassifier classifier = MLPacPreprocess.setupAndGetClassifier(inputDataPath, classifierType,
+                    enableDataPreperation, datasetOtFile);
+            PacTrainingScheduler.writeModel(classifier, modelFile);
+            logger.info("Wrote model " + modelFile);
+            return classifier;
+        } finally {
+            this.memory.release(permits);
+        }
+    }
+
+    /**
+     * Serializes a model to a file
+     *
+     * @param classifier The model
+     * @param modelFile The file (an existing file is overwritten)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static void writeModel(Classifier classifier, String modelFile) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(modelFile));
+        try {
+            oos.writeObject(classifier);
+            oos.flush();
+        } finally {
+            oos.close();
+        }
+    }
+
+    /**
+     * Waits for all the submitted model jobs (a job that failed is logged, and doesn't stop the others)
+     *
+     * @return The number of jobs that failed
+     */
+    public int awaitModels() {
+        int failed = 0;
+        try {
+            for (Future<AbstractClassifier> model : this.pendingModels) {
+                try {
+                    model.get();
+                } catch (ExecutionException e) {
+                    logger.error("Failed training a model", e.getCause());
+                    ++failed;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while waiting for the training jobs", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            this.pendingModels.clear();
+        }
+        return failed;
+    }
+
+    /**
+     * Cross-validates a classifier, like Evaluation.crossValidateModel, while the models of the folds are built in
+     * parallel
+     *
+     * @param classifier The classifier (it isn't trained - a copy of it is trained for each fold)
+     * @param data The dataset (with its class index set)
+     * @param numFolds The number of folds
+     * @param random The random generator that shuffles the dataset and the folds
+     *
+     * @return The evaluation of all the folds
+     *
+     * @throws Exception If something wrong occurred
+     */
+    public Evaluation crossValidateModel(Classifier classifier, Instances data, int numFolds, Random random)
+            throws Exception {
+        CrossValidation evaluation = new CrossValidation(data);
+        // Make a copy of the data which can be reordered
+        data = new Instances(data);
+        data.randomize(random);
+        if (data.classAttribute().isNominal()) {
+            data.stratify(numFolds);
+        }
+        int permits = this._permits((long) data.numInstances() * data.numAttributes() * 8 *
+                PacTrainingScheduler.FOLD_MEMORY_FACTOR);
+        Deque<Fold> pending = new ArrayDeque<>();
+        try {
+            for (int i = 0; i < numFolds; ++i) {
+                // Evaluate the built folds (in order) until there is room for the next one
+                while (!this.memory.tryAcquire(permits)) {
+                    if (pending.isEmpty()) {
+                        this.memory.acquireUninterruptibly(permits);
+                        break;
+                    }
+                    // The fold stays pending until it is evaluated (hence a failed fold is released below)
+                    evaluation._evaluate(pending.peek());
+                    pending.poll();
+                    this.memory.release(permits);
+                }
+                // The train sets are cut in order, since each one of them shuffles by the random generator
+                Instances train = data.trainCV(numFolds, i, random);
+                Instances test = data.testCV(numFolds, i);
+                Classifier model = AbstractClassifier.makeCopy(classifier);
+                pending.add(new Fold(train, test, this.pool.submit(() -> {
+                    model.buildClassifier(train);
+                    return model;
+                })));
+            }
+            while (!pending.isEmpty()) {
+                evaluation._evaluate(pending.peek());
+                pending.poll();
+                this.memory.release(permits);
+            }
+        } finally {
+            // The folds that weren't evaluated (due to a failure, including the failed fold) still hold their
+            // reservations
+            for (Fold fold : pending) {
+                fold.model.cancel(false);
+                this.memory.release(permits);
+            }
+        }
+        evaluation._setNumFolds(numFolds);
+        return evaluation;
+    }
+
+    /**
+     * Stops the worker threads (after all the submitted jobs are done)
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * @param bytes An estimate of the memory of a job
+     *
+     * @return The number of permits (MBs) that the job reserves (at most the whole bound)
+     */
+    private int _permits(long bytes) {
+        long mbs = (bytes + PacTrainingScheduler.MB - 1) / PacTrainingScheduler.MB;
+        return (int) Math.max(1, Math.min(mbs, this.memoryMB));
+    }
+
+    /**
+     * A fold of a cross-validation, whose model is being built
+     */
+    private static class Fold {
+        private Instances train;
+        private Instances test;
+        private Future<Classifier> model;
+
+        private Fold(Instances train, Instances test, Future<Classifier> model) {
+            this.train = train;
+            this.test = test;
+            this.model = model;
+        }
+    }
+
+    /**
+     * An evaluation which is accumulated fold by fold (in the order of the folds)
+     */
+    private static class CrossValidation extends Evaluation {
+        private static final long serialVersionUID = 1L;
+
+        private CrossValidation(Instances data) throws Exception {
+            super(data);
+        }
+
+        private void _evaluate(Fold fold) throws Exception {
+            Classifier model;
+            try {
+                model = fold.model.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            this.setPriors(fold.train);
+            this.evaluateModel(model, fold.test);
+        }
+
+        private void _setNumFolds(int numFolds) {
+            this.m_NumFolds = numFolds;
+        }
+    }
+}
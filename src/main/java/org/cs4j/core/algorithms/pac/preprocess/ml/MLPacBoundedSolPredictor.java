@@ -8,6 +8,7 @@ import org.cs4j.core.algorithms.pac.PACSearchFramework;
 import org.cs4j.core.algorithms.pac.conditions.MLPacConditionForBoundSolPredNN;
 import org.cs4j.core.algorithms.pac.preprocess.MLPacPreprocess;
 import org.cs4j.core.algorithms.pac.preprocess.PacClassifierType;
+import org.cs4j.core.algorithms.pac.preprocess.PacTrainingScheduler;
 import org.cs4j.core.experiments.ExperimentUtils;
 import org.cs4j.core.mains.DomainExperimentData;
 import org.cs4j.core.pac.conf.MLPacPreprocessExperimentValues;
@@ -62,11 +63,15 @@ public class MLPacBoundedSolPredictor {
 
             int trainLevelLow = experimentValues.getTrainLevelLow(), trainLevelHigh = experimentValues.getTrainLevelHigh(), trainLevelDelta = experimentValues.getTrainLevelDelta();
             int testLevel = experimentValues.getTestLevel();
+            // The models are trained in parallel (and while the next tables are extracted)
+            PacTrainingScheduler scheduler = PacTrainingScheduler.create();
             for (PacClassifierType type : clsTypes) {
                 for (double epsilon : epsilons) {
-                    train(domainClass, epsilon, trainLevelLow, trainLevelHigh, trainLevelDelta, type);
+                    train(domainClass, epsilon, trainLevelLow, trainLevelHigh, trainLevelDelta, type, scheduler);
                 }
             }
+            scheduler.awaitModels();
+            scheduler.shutdown();
 
 
             // prediction:
@@ -323,7 +328,7 @@ public class MLPacBoundedSolPredictor {
     }
 
 
-    private static void train(Class domainClass,double epsilon, int trainLevelLow, int trainLevelHigh, int trainLevelDelta, PacClassifierType classifierType) {
+    private static void train(Class domainClass,double epsilon, int trainLevelLow, int trainLevelHigh, int trainLevelDelta, PacClassifierType classifierType, PacTrainingScheduler scheduler) {
 
         String trainFormat = trainLevelLow + "-" + trainLevelHigh;
         OutputResult output = null;
@@ -371,18 +376,10 @@ public class MLPacBoundedSolPredictor {
         // -------------------------------------------------
         //  train + save the model to file
         // -------------------------------------------------
-        try {
-            String modelFileName = String.format(MLPacBoundedSolPredictor.modelFileFormat,epsilon,classifierType, trainFormat);
-            String datasetFilePath = outFile+ File.separator + dateFileName;
-            AbstractClassifier cls =
-                    MLPacPreprocess.setupAndGetClassifier(output.getFname(), classifierType,false,datasetFilePath);
-            String outputModel = outFile+ File.separator + modelFileName;
-            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(outputModel));
-            oos.writeObject(cls);
-            oos.flush();
-        } catch (Exception e) {
-            logger.error(e);
-        }
+        String modelFileName = String.format(MLPacBoundedSolPredictor.modelFileFormat,epsilon,classifierType, trainFormat);
+        String datasetFilePath = outFile+ File.separator + dateFileName;
+        String outputModel = outFile+ File.separator + modelFileName;
+        scheduler.submitModel(output.getFname(), classifierType,false,datasetFilePath,outputModel);
 
 
 
@@ -9,6 +9,7 @@ import org.cs4j.core.algorithms.AnytimeSearchNode;
 import org.cs4j.core.algorithms.WAStar;
 import org.cs4j.core.algorithms.pac.preprocess.MLPacPreprocess;
 import org.cs4j.core.algorithms.pac.preprocess.PacClassifierType;
+import org.cs4j.core.algorithms.pac.preprocess.PacTrainingScheduler;
 import org.cs4j.core.domains.DockyardRobot;
 import org.cs4j.core.domains.GridPathFinding;
 import org.cs4j.core.domains.Pancakes;
@@ -289,7 +290,7 @@ public class MLPacHStarPredictor {
 
 
 
-    private static void train(Class domainClass, int trainLevelLow, int trainLevelHigh, int trainLevelDelta,int numOfFeaturesPerNode, PacClassifierType classifierType) {
+    private static void train(Class domainClass, int trainLevelLow, int trainLevelHigh, int trainLevelDelta,int numOfFeaturesPerNode, PacClassifierType classifierType, PacTrainingScheduler scheduler) {
         String outfilePostfix = ".arff";
 
         OutputResult output = null;
@@ -327,12 +328,9 @@ public class MLPacHStarPredictor {
             // -------------------------------------------------
             // 3. train + save the model to file
             // -------------------------------------------------
-            AbstractClassifier cls =
-                    MLPacPreprocess.setupAndGetClassifier(output.getFname(), classifierType,false,outFile+ File.separator + "MLPacStatsPreprocess_"+classifierType+"_"+trainFormat+".arff");
             String outputModel = outFile+ File.separator + "MLPacStatsPreprocess_"+classifierType+"_"+trainFormat+".model";
-            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(outputModel));
-            oos.writeObject(cls);
-            oos.flush();
+            scheduler.submitModel(output.getFname(), classifierType,false,outFile+ File.separator + "MLPacStatsPreprocess_"+classifierType+"_"+trainFormat+".arff",
+                    outputModel);
 
 
 
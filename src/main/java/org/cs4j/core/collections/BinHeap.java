@@ -17,7 +17,11 @@
 package org.cs4j.core.collections;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * An implementation of a binary heap where elements are aware of their 
@@ -119,6 +123,38 @@ public class BinHeap<E extends SearchQueueElement> implements SearchQueue<E> {
 		return toReturn;
 	}
 
+	/**
+	 * Removes the pruned elements and rebuilds the heap in place, bottom-up (Floyd's method), which takes O(n)
+	 * comparisons instead of the O(n log n) of re-inserting all the elements.
+	 */
+	@Override
+	public void rekey(Predicate<? super E> prune, Consumer<? super E> onPruned) {
+		int size = 0;
+		for (int i = 0; i < heap.size(); i++) {
+			E e = heap.get(i);
+			if (prune.test(e)) {
+				setIndex(e, -1);
+				onPruned.accept(e);
+			}
+			else {
+				heap.set(size, e);
+				setIndex(e, size);
+				size++;
+			}
+		}
+		heap.subList(size, heap.size()).clear();
+		for (int i = size / 2 - 1; i >= 0; i--)
+			pushDown(i);
+	}
+
+	/**
+	 * @return A read-only view of the elements (in heap order), without copying them
+	 */
+	@Override
+	public List<E> getElements() {
+		return Collections.unmodifiableList(heap);
+	}
+
 	private int pullUp(int i) {
 		if (i == 0)
 			return i;
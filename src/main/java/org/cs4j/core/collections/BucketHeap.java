@@ -17,96 +17,185 @@
 package org.cs4j.core.collections;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.ToDoubleFunction;
 
 import org.cs4j.core.collections.BucketHeap.BucketHeapElement;
 
 /**
- * A bucket heap.
- * 
+ * A two-level bucket heap.
+ *
+ * The elements are kept in buckets according to their primary rank (smaller is polled first), and inside each bucket
+ * in bins according to their secondary rank (bigger is polled first - usually the rank is g, hence, this is the
+ * common tie-breaking of nodes with the same f). The elements of a bin are polled in LIFO or FIFO order.
+ *
+ * The ranks are mapped into buckets by multiplying them by a scale, and must be multiples of 1/scale (e.g. integral
+ * costs with a scale of 1, or a weight of 1.5 with a scale of 2) - a rank which would be quantized is rejected, hence
+ * the order is always exact. Adding elements takes O(1), polling takes O(1) amortized as long as the ranks of the
+ * polled elements are (roughly) monotone, as in best-first search, and removing an element from the middle of its bin
+ * shifts the shorter side of the bin (which preserves the LIFO/FIFO order of the rest of the bin).
+ *
+ * The index of an element (see SearchQueueElement) is its position in its bin (-1 if it isn't in the heap), and its
+ * secondary index is the id of its bin.
+ *
  * @author Matthew Hatem
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 public final class BucketHeap<E extends BucketHeapElement> implements SearchQueue<E> {
-	
-  private int fill, size;
-  private int min = Integer.MAX_VALUE;
-  private Bucket[] buckets;
-  private int key;
-  
-  public BucketHeap(int size, int key) {
-  	this.size = size;
-    this.buckets = new Bucket[size];
-    this.key = key;
-  }
-  
-  @Override
-  public int getKey() {
-  	return key;
-  }
-  
-  @Override
-  public void add(E n) {
-    int p0 = (int)n.getRank(0);
-    if (p0 < min) {
-      min = p0;
-    }
-    Bucket<E> bucket = buckets[p0];
-    if (bucket == null) {
-      bucket = new Bucket<E>(buckets.length, key);
-      buckets[p0] = bucket;
-    }
-    n.setIndex(key, p0);
-    
-    int p1 = (int)n.getRank(1);
-    bucket.push(n, p1);
-    n.setSecondaryIndex(key, p1);
-    
-    fill++;
-  }
-  
-  @Override
-  public E poll() {
-    for (; min < buckets.length; min++) {
-      Bucket minBucket = buckets[min];
-      if (minBucket != null && !minBucket.isEmpty()) break;
-    }
-    fill--;
-    Bucket<E> minBucket = buckets[min];
-    E e = minBucket.pop();
-    e.setIndex(key, -1);
-    e.setSecondaryIndex(key, -1);
-    return e;
-  }
-  
-  @Override
-  public E peek() {
-  	int min = this.min;
-    for (; min < buckets.length; min++) {
-      Bucket minBucket = buckets[min];
-      if (minBucket != null && !minBucket.isEmpty()) break;
-    }
-    Bucket<E> minBucket = buckets[min];
-    return minBucket.peek();
-  }
-  
+
+	// Tolerance for rounding errors of the scaled ranks (e.g. of sums of fractional costs)
+	private static final double EPSILON = 1e-6;
+
+	private final int size;
+	private final int key;
+	private final double scale;
+	private final boolean lifo;
+	private final ToDoubleFunction<? super E> primaryRank;
+
+	// The number of elements in the heap
+	private int fill;
+	// The buckets (by the primary rank), and the lowest bucket that may be non-empty
+	private Bucket[] buckets;
+	private int min;
+	// All the bins (by their ids)
+	private Bin[] bins;
+	private int binsCount;
+
+	/**
+	 * @param size The initial number of buckets
+	 * @param key The key of the heap (see SearchQueueElement)
+	 * @param scale The number of buckets per unit of rank
+	 * @param lifo Whether elements of the same bin are polled in LIFO order (otherwise, FIFO)
+	 * @param primaryRank Computes the primary rank of the elements
+	 */
+	public BucketHeap(int size, int key, double scale, boolean lifo, ToDoubleFunction<? super E> primaryRank) {
+		if (size <= 0 || scale <= 0) {
+			System.out.println("[ERROR] Invalid bucket heap (size: " + size + ", scale: " + scale + ")");
+			throw new IllegalArgumentException();
+		}
+		this.size = size;
+		this.key = key;
+		this.scale = scale;
+		this.lifo = lifo;
+		this.primaryRank = primaryRank;
+		this.clear();
+	}
+
+	/**
+	 * A bucket heap which ranks the elements by their getRank(0) (primary) and getRank(1) (secondary)
+	 */
+	public BucketHeap(int size, int key, double scale, boolean lifo) {
+		this(size, key, scale, lifo, e -> e.getRank(0));
+	}
+
+	public BucketHeap(int size, int key) {
+		this(size, key, 1, true);
+	}
+
 	@Override
-	public void update(E e) {
-		int p0 = e.getIndex(key);
-		if (p0 > buckets.length-1 || p0 < 0)
+	public int getKey() {
+		return key;
+	}
+
+	/**
+	 * @return The index of the bucket (or bin) of the given rank
+	 */
+	private int toBucket(double rank) {
+		double scaled = rank * scale;
+		if (!(scaled > -BucketHeap.EPSILON && scaled < Integer.MAX_VALUE)) {
+			System.out.println("[ERROR] Rank " + rank + " can't be kept in a bucket heap (scale: " + scale + ")");
 			throw new IllegalArgumentException();
-		Bucket<E> b = buckets[p0];
-		b.remove(e);
+		}
+		long bucket = Math.round(scaled);
+		if (Math.abs(scaled - bucket) > BucketHeap.EPSILON) {
+			System.out.println("[ERROR] Rank " + rank + " isn't a multiple of 1/" + scale + " (a larger bucket scale " +
+					"is required, or a binary heap)");
+			throw new IllegalArgumentException();
+		}
+		return (int) bucket;
+	}
+
+	@Override
+	public void add(E e) {
+		int p0 = toBucket(primaryRank.applyAsDouble(e));
+		int p1 = toBucket(e.getRank(1));
+		if (p0 >= buckets.length)
+			buckets = Arrays.copyOf(buckets, Math.max(p0 + 1, 2 * buckets.length));
+		Bucket bucket = buckets[p0];
+		if (bucket == null) {
+			bucket = new Bucket();
+			buckets[p0] = bucket;
+		}
+		if (p1 >= bucket.bins.length)
+			bucket.bins = Arrays.copyOf(bucket.bins, Math.max(p1 + 1, 2 * bucket.bins.length));
+		Bin bin = bucket.bins[p1];
+		if (bin == null) {
+			bin = new Bin(binsCount, p0, key);
+			if (binsCount == bins.length)
+				bins = Arrays.copyOf(bins, 2 * binsCount);
+			bins[binsCount++] = bin;
+			bucket.bins[p1] = bin;
+		}
+		bin.push(e);
+		bucket.fill++;
+		if (p1 > bucket.max)
+			bucket.max = p1;
+		if (p0 < min)
+			min = p0;
+		fill++;
+	}
+
+	/**
+	 * @return The bin of the first element (the heap must not be empty)
+	 */
+	private Bin firstBin() {
+		while (buckets[min] == null || buckets[min].fill == 0)
+			min++;
+		Bucket bucket = buckets[min];
+		while (bucket.bins[bucket.max] == null || bucket.bins[bucket.max].isEmpty())
+			bucket.max--;
+		return bucket.bins[bucket.max];
+	}
+
+	@Override
+	public E poll() {
+		if (fill == 0)
+			return null;
+		Bin bin = firstBin();
+		return removeAt(bin, lifo ? bin.tail - 1 : bin.head);
+	}
+
+	@Override
+	public E peek() {
+		if (fill == 0)
+			return null;
+		Bin bin = firstBin();
+		return (E) bin.elements[lifo ? bin.tail - 1 : bin.head];
+	}
+
+	@Override
+	public void update(E e) {
+		remove(e);
 		add(e);
 	}
-	
+
 	@Override
 	public E remove(E e) {
-		int p0 = e.getIndex(key);
-		if (p0 > buckets.length-1 || p0 < 0)
+		int id = e.getSecondaryIndex(key);
+		if (id < 0 || id >= binsCount)
 			throw new IllegalArgumentException();
-		Bucket<E> b = buckets[p0];
-		b.remove(e);
+		Bin bin = bins[id];
+		int i = e.getIndex(key);
+		if (i < bin.head || i >= bin.tail || bin.elements[i] != e)
+			throw new IllegalArgumentException();
+		return removeAt(bin, i);
+	}
+
+	private E removeAt(Bin bin, int i) {
+		E e = (E) bin.removeAt(i);
+		buckets[bin.p0].fill--;
+		fill--;
 		return e;
 	}
 
@@ -115,88 +204,121 @@ public final class BucketHeap<E extends BucketHeapElement> implements SearchQueu
 		fill = 0;
 		min = Integer.MAX_VALUE;
 		buckets = new Bucket[size];
+		bins = new Bin[size];
+		binsCount = 0;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return fill == 0;
+	}
+
+	@Override
+	public int size() {
+		return fill;
+	}
+
+	/**
+	 * @return The elements in the heap (in no particular order)
+	 */
+	@Override
+	public List<E> getElements() {
+		List<E> elements = new ArrayList<E>(fill);
+		for (int i = 0; i < binsCount; i++) {
+			Bin bin = bins[i];
+			for (int j = bin.head; j < bin.tail; j++)
+				elements.add((E) bin.elements[j]);
+		}
+		return elements;
+	}
+
+	/**
+	 * The bins of a single primary rank (indexed by the secondary rank)
+	 */
+	private static final class Bucket {
+		private Bin[] bins = new Bin[16];
+		private int fill;
+		// The highest bin that may be non-empty
+		private int max = -1;
+	}
+
+	/**
+	 * The elements with the same primary and secondary ranks, kept in elements[head..tail)
+	 */
+	private static final class Bin {
+		private final int id;
+		private final int p0;
+		private final int key;
+		private BucketHeapElement[] elements = new BucketHeapElement[4];
+		private int head, tail;
+
+		private Bin(int id, int p0, int key) {
+			this.id = id;
+			this.p0 = p0;
+			this.key = key;
+		}
+
+		private boolean isEmpty() {
+			return head == tail;
+		}
+
+		private void push(BucketHeapElement e) {
+			if (tail == elements.length) {
+				if (head >= elements.length / 2) {
+					// Reclaim the space of the elements that were polled from the head
+					System.arraycopy(elements, head, elements, 0, tail - head);
+					Arrays.fill(elements, tail - head, tail, null);
+					tail -= head;
+					head = 0;
+					for (int i = 0; i < tail; i++)
+						elements[i].setIndex(key, i);
+				}
+				else {
+					elements = Arrays.copyOf(elements, 2 * elements.length);
+				}
+			}
+			elements[tail] = e;
+			e.setIndex(key, tail);
+			e.setSecondaryIndex(key, id);
+			tail++;
+		}
+
+		/**
+		 * Removes the element at the given position (the shorter side of the bin is shifted into its place, hence the
+		 * order of the other elements is kept)
+		 */
+		private BucketHeapElement removeAt(int i) {
+			BucketHeapElement e = elements[i];
+			if (i - head < tail - 1 - i) {
+				for (int j = i; j > head; j--) {
+					elements[j] = elements[j - 1];
+					elements[j].setIndex(key, j);
+				}
+				elements[head++] = null;
+			}
+			else {
+				for (int j = i; j < tail - 1; j++) {
+					elements[j] = elements[j + 1];
+					elements[j].setIndex(key, j);
+				}
+				elements[--tail] = null;
+			}
+			if (head == tail)
+				head = tail = 0;
+			e.setIndex(key, -1);
+			e.setSecondaryIndex(key, -1);
+			return e;
+		}
+	}
+
+	public interface BucketHeapElement extends SearchQueueElement {
+
+		public void setSecondaryIndex(int key, int index);
+
+		public int getSecondaryIndex(int key);
+
+		public double getRank(int level);
+
 	}
-  
-  @Override
-  public boolean isEmpty() { 
-    return fill == 0; 
-  }
-  
-  @Override
-  public int size() {
-  	return fill;
-  }
-
-  private static final class Bucket<E extends BucketHeapElement> {
-    private int fill, max;
-    private ArrayList[] bins;
-    private int key;
-    
-    Bucket(int size, int key) {
-      bins = new ArrayList[size];
-      this.key = key;
-    }
-        
-    private void push(E n, int p) {
-       if (p > max) {
-        max = p; 
-      }
-      ArrayList<E> binP = bins[p];
-      if (binP == null) {
-        binP = new ArrayList<E>(10000);
-        bins[p] = binP;
-      }
-      binP.add(n);
-      fill++;
-    }
-    
-    private E pop() {
-      for ( ; max > 0; max--) {
-        ArrayList<E> maxBin = bins[max];
-        if (maxBin != null && !maxBin.isEmpty()) break;
-      }
-      ArrayList<E> maxBin = bins[max];
-      int last = maxBin.size()-1;
-      E n = maxBin.get(last);
-      maxBin.remove(last);
-      fill--;
-      return n;
-    }
-    
-    private E peek() {
-    	int max = this.max;
-      for ( ; max > 0; max--) {
-        ArrayList<E> maxBin = bins[max];
-        if (maxBin != null && !maxBin.isEmpty()) break;
-      }
-      ArrayList<E> maxBin = bins[max];
-      int last = maxBin.size()-1;
-      return maxBin.get(last);
-    }
-    
-    private void remove(E e) {
-  		int p1 = e.getSecondaryIndex(key);
-  		if (p1 > bins.length-1 || p1 < 0)
-  			throw new IllegalArgumentException();
-  		List<E> list = bins[p1];
-  		if (!list.remove(e))
-  			throw new IllegalArgumentException();
-  		fill--;
-    }
-    
-    private boolean isEmpty() {
-      return fill == 0;
-    }
-  }
-  
-  public interface BucketHeapElement extends SearchQueueElement {
-  	
-  	public void setSecondaryIndex(int key, int index);
-  	
-  	public int getSecondaryIndex(int key);
-  	
-  	public double getRank(int level);
-  	
-  }
 
 }
@@ -0,0 +1,33 @@
+package org.cs4j.core.collections;
+
+/**
+ * A pattern database which keeps a single byte per entry in a plain array
+ */
+public class ByteArrayPDB implements PDB {
+
+    private byte[] values;
+
+    /**
+     * @param values The distances of the patterns, indexed by their ranks (the array isn't copied)
+     */
+    public ByteArrayPDB(byte[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public byte get(long index) {
+        return this.values[(int) index];
+    }
+
+    @Override
+    public long size() {
+        return this.values.length;
+    }
+
+    /**
+     * @return The internal array of the distances
+     */
+    public byte[] getValues() {
+        return this.values;
+    }
+}
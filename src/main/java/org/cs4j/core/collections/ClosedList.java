@@ -0,0 +1,15 @@
+package org.cs4j.core.collections;
+
+import java.util.Map;
+
+/**
+ * The CLOSED list of a search algorithm: maps the packed representation of a state to the search
+ * node which was created for it.
+ *
+ * The implementation is chosen via {@link ClosedListType} (usually through the "closed-impl"
+ * parameter of the algorithm), such that the algorithms are not aware of the concrete data structure
+ *
+ * @param <E> the type of the stored search nodes
+ */
+public interface ClosedList<E> extends Map<PackedElement, E> {
+}
@@ -0,0 +1,60 @@
+package org.cs4j.core.collections;
+
+/**
+ * The available implementations of {@link ClosedList}
+ *
+ * TREE - a red-black tree ordered by the packed elements (the historical default of WAStar, DP and EES)
+ * HASH - a chained hash map (the historical default of the rest of the algorithms)
+ * OPEN_ADDRESSING - a primitive open-addressing hash table keyed by the packed longs themselves
+ */
+public enum ClosedListType {
+    TREE("tree"),
+    HASH("hash"),
+    OPEN_ADDRESSING("open-addressing");
+
+    private final String name;
+
+    ClosedListType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Creates an empty closed list of this type
+     *
+     * @param <E> the type of the stored search nodes
+     *
+     * @return The created closed list
+     */
+    public <E> ClosedList<E> create() {
+        switch (this) {
+            case TREE:
+                return new TreeClosedList<>();
+            case HASH:
+                return new HashClosedList<>();
+            case OPEN_ADDRESSING:
+                return new OpenAddressingClosedList<>();
+        }
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Finds the type that matches the given value of the "closed-impl" parameter
+     *
+     * @param value The value of the parameter (e.g. "tree", "hash", "open-addressing")
+     *
+     * @return The matching type
+     */
+    public static ClosedListType fromString(String value) {
+        for (ClosedListType type : ClosedListType.values()) {
+            if (type.name.equalsIgnoreCase(value) || type.name().equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        System.out.println("[ERROR] Unknown closed list implementation: " + value);
+        throw new IllegalArgumentException();
+    }
+}
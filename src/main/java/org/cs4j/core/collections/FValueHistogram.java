@@ -0,0 +1,281 @@
+package org.cs4j.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * A multiset of f values (or any other double values) which maintains the minimal value.
+ *
+ * The counts are kept in a primitive open-addressing table (keyed by the bits of the values, hence two values are the
+ * same iff they are equal as Double objects), and the distinct values are kept in a binary min-heap. A value whose
+ * count drops to zero is removed from the heap lazily (only when it reaches the top), hence adding and removing
+ * values take amortized O(1) for existing values and O(log k) for new ones (where k is the number of distinct values),
+ * and no value is ever boxed.
+ *
+ * Counts are allowed to become negative (a value is in the multiset iff its count isn't zero).
+ */
+public class FValueHistogram {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    // The hash table: the bits of the values, their counts, and whether each slot is used / in the heap
+    private long[] keys;
+    private int[] counts;
+    private boolean[] used;
+    private boolean[] inHeap;
+    private int mask;
+    private int usedCount;
+    private int resizeThreshold;
+
+    // The number of values with a non-zero count
+    private int distinct;
+
+    // A min-heap of the values (each value appears at most once)
+    private double[] heap;
+    private int heapSize;
+
+    public FValueHistogram() {
+        this._init(FValueHistogram.DEFAULT_CAPACITY);
+        this.heap = new double[FValueHistogram.DEFAULT_CAPACITY];
+        this.heapSize = 0;
+        this.distinct = 0;
+    }
+
+    private void _init(int capacity) {
+        this.keys = new long[capacity];
+        this.counts = new int[capacity];
+        this.used = new boolean[capacity];
+        this.inHeap = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.usedCount = 0;
+        this.resizeThreshold = (int) (capacity * FValueHistogram.MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Scrambles the bits of a long (the MurmurHash3 finalizer)
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private int _home(long bits) {
+        return (int) FValueHistogram.mix(bits) & this.mask;
+    }
+
+    /**
+     * @return The slot of the given value, or the (empty) slot in which it should be inserted
+     */
+    private int _findSlot(long bits) {
+        int slot = this._home(bits);
+        while (this.used[slot] && this.keys[slot] != bits) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private void _rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        int[] oldCounts = this.counts;
+        boolean[] oldUsed = this.used;
+        boolean[] oldInHeap = this.inHeap;
+        this._init(capacity);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldUsed[i]) {
+                int slot = this._findSlot(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.counts[slot] = oldCounts[i];
+                this.inHeap[slot] = oldInHeap[i];
+                this.used[slot] = true;
+                ++this.usedCount;
+            }
+        }
+    }
+
+    /**
+     * Removes the given slot from the hash table (backward shift deletion - no tombstones are required)
+     */
+    private void _removeSlot(int slot) {
+        this.used[slot] = false;
+        --this.usedCount;
+        int free = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & this.mask;
+            if (!this.used[current]) {
+                return;
+            }
+            int home = this._home(this.keys[current]);
+            // Move the value only if its home slot isn't cyclically in (free, current]
+            boolean stays = (free <= current) ? (free < home && home <= current) : (free < home || home <= current);
+            if (!stays) {
+                this.keys[free] = this.keys[current];
+                this.counts[free] = this.counts[current];
+                this.inHeap[free] = this.inHeap[current];
+                this.used[free] = true;
+                this.used[current] = false;
+                free = current;
+            }
+        }
+    }
+
+    /**
+     * Adds the given number of occurrences of a value (a negative delta removes occurrences, and a zero delta does
+     * nothing)
+     *
+     * @param f The value
+     * @param delta The number of occurrences to add
+     */
+    public void add(double f, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        long bits = Double.doubleToLongBits(f);
+        int slot = this._findSlot(bits);
+        if (!this.used[slot]) {
+            this.keys[slot] = bits;
+            this.counts[slot] = 0;
+            this.inHeap[slot] = false;
+            this.used[slot] = true;
+            ++this.usedCount;
+        }
+        int previous = this.counts[slot];
+        int current = previous + delta;
+        this.counts[slot] = current;
+        if (previous == 0 && current != 0) {
+            ++this.distinct;
+            if (!this.inHeap[slot]) {
+                this.inHeap[slot] = true;
+                this._heapAdd(f);
+            }
+        } else if (previous != 0 && current == 0) {
+            --this.distinct;
+        }
+        if (this.usedCount > this.resizeThreshold) {
+            this._rehash(this.keys.length * 2);
+        }
+    }
+
+    /**
+     * Adds a single occurrence of the given value
+     */
+    public void add(double f) {
+        this.add(f, 1);
+    }
+
+    /**
+     * Removes a single occurrence of the given value
+     */
+    public void remove(double f) {
+        this.add(f, -1);
+    }
+
+    /**
+     * @return The count of the given value (zero if the value isn't in the multiset)
+     */
+    public int count(double f) {
+        int slot = this._findSlot(Double.doubleToLongBits(f));
+        return this.used[slot] ? this.counts[slot] : 0;
+    }
+
+    /**
+     * @return Whether the given value is in the multiset
+     */
+    public boolean contains(double f) {
+        return this.count(f) != 0;
+    }
+
+    /**
+     * @return Whether the multiset is empty
+     */
+    public boolean isEmpty() {
+        return this.distinct == 0;
+    }
+
+    /**
+     * @return The number of distinct values in the multiset
+     */
+    public int size() {
+        return this.distinct;
+    }
+
+    /**
+     * @return The minimal value in the multiset, or Double.MAX_VALUE if the multiset is empty
+     */
+    public double min() {
+        while (this.heapSize > 0) {
+            double top = this.heap[0];
+            int slot = this._findSlot(Double.doubleToLongBits(top));
+            if (this.counts[slot] != 0) {
+                return top;
+            }
+            // Lazy removal of a value which is no longer in the multiset
+            this._heapPoll();
+            this._removeSlot(slot);
+        }
+        return Double.MAX_VALUE;
+    }
+
+    /**
+     * Removes all the values
+     */
+    public void clear() {
+        this._init(FValueHistogram.DEFAULT_CAPACITY);
+        this.heapSize = 0;
+        this.distinct = 0;
+    }
+
+    private void _heapAdd(double f) {
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+        }
+        int i = this.heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (Double.compare(this.heap[parent], f) <= 0) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            i = parent;
+        }
+        this.heap[i] = f;
+    }
+
+    private void _heapPoll() {
+        double last = this.heap[--this.heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.heapSize) {
+                break;
+            }
+            if (child + 1 < this.heapSize && Double.compare(this.heap[child + 1], this.heap[child]) < 0) {
+                ++child;
+            }
+            if (Double.compare(last, this.heap[child]) <= 0) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        this.heap[i] = last;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < this.keys.length; ++i) {
+            if (this.used[i] && this.counts[i] != 0) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(Double.longBitsToDouble(this.keys[i])).append("=").append(this.counts[i]);
+            }
+        }
+        return builder.append("}").toString();
+    }
+}
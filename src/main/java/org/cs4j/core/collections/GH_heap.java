@@ -12,8 +12,8 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
     private final int key;
     private double IsFocalizedPrecision = Math.pow(10,-13);
     private boolean debug = false;
-    private HashMap<Double, Double> countF = new HashMap<>();
-    private HashMap<Double, Double> countD = new HashMap<>();
+    private FValueHistogram countF = new FValueHistogram();
+    private FValueHistogram countD = new FValueHistogram();
     //    private BinHeap<E> heap;
     private TreeMap<gh_node,ArrayList<E>> tree;
     private TreeMap<gh_node,ArrayList<E>> outOfFocalTree;
@@ -60,7 +60,7 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
     }
 
     public double getFminCount(){
-        double counter = countF.get(fmin);
+        double counter = countF.count(fmin);
         if(counter == 0){
             System.out.println("[INFO GH_heap] getFminCount == 0");
         }
@@ -121,36 +121,10 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
     private void count_add(E e) {
         double f = e.getF();
         GH_heapSize++;
-        if(countF.containsKey(f))
-            countF.put(f,countF.get(f)+1);
-        else {
-            countF.put(f, 1.0);
-/*            if(!isOptimal) {//fmin might change/decrease
-//                if(fmin == 0.0) fmin = f;
-*//*                if (tree.size()+outOfFocalTree.size() == 0) {//tree is empty
-                    fmin = f;
-                }
-                if (fmin > f+ IsFocalizedPrecision) {//might occur due to rounding of f;
-                    throw new IllegalArgumentException("[ERROR] fmin:"+fmin+" > f:"+f+", IsFocalizedPrecision:"+ IsFocalizedPrecision +" heuristic might be inconsistent OR adding doubles round error");
-                }*//*
-            }*/
-        }
+        countF.add(f);
         if(useD) {
             double fd = e.getD() + e.getDepth();
-            if (countD.containsKey(fd))
-                countD.put(fd, countD.get(fd) + 1);
-            else {
-                countD.put(fd, 1.0);
-//                if(dmin == 0.0) dmin = fd;
-/*                if (!isOptimal) {//fmin might change/decrease
-                    if (tree.size() + outOfFocalTree.size() == 0) {//tree is empty
-                        dmin = fd;
-                    }
-                    if (dmin - fd > 0) {//might occur due to rounding of d??? - this should never happen;
-                        throw new IllegalArgumentException("[ERROR] dmin>d");
-                    }
-                }*/
-            }
+            countD.add(fd);
         }
     }
 
@@ -348,25 +322,13 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
         double f = e.getF();
         double fd = e.getD()+e.getDepth();
         GH_heapSize--;
-        if(!countF.containsKey(f)){
-            countF.put(f,0.0);
-        }
-        countF.put(f,countF.get(f)-1);
-        if(countF.get(f)==0){
-            countF.remove(f);
+        countF.remove(f);
+        if(countF.count(f)==0){
             if(!isOptimal) {
                 //fmin might increase, if the heuristic is consistent fmin should not decrease
                 if (f <= fmin && (tree.size()> 0 || outOfFocalTree.size() > 0)) {//find next lowest
                     double prevFmin = fmin;
-                    fmin = Integer.MAX_VALUE;
-                    Iterator it = countF.entrySet().iterator();
-                    while (it.hasNext()) {
-                        Map.Entry pair = (Map.Entry) it.next();
-                        double key = (double) pair.getKey();
-                        if (fmin >= key) {
-                            fmin = key;
-                        }
-                    }
+                    fmin = countF.isEmpty() ? Integer.MAX_VALUE : countF.min();
                     // for cases where the heuristic is admissible but not consistent
                     if(prevFmin > fmin){
 //                        System.out.print("\r[INFO GH_heap] heuristic is not consistent: prevFmin = "+prevFmin+" > fmin = "+fmin+" , inconsistency:"+(prevFmin-fmin));
@@ -383,25 +345,13 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
             }
         }
         if(useD) {
-            if (!countD.containsKey(fd)) {
-                countD.put(fd, 0.0);
-            }
-            countD.put(fd, countD.get(fd) - 1);
-            if (countD.get(fd) == 0) {
-                countD.remove(fd);
+            countD.remove(fd);
+            if (countD.count(fd) == 0) {
                 if (!isOptimal) {
                     //dmin might increase, if the heuristic is consistent dmin should not decrease
                     if (fd <= dmin && (tree.size()> 0 || outOfFocalTree.size() > 0)) {//find next lowest
                         double prevDmin = dmin;
-                        dmin = Integer.MAX_VALUE;
-                        Iterator it = countD.entrySet().iterator();
-                        while (it.hasNext()) {
-                            Map.Entry pair = (Map.Entry) it.next();
-                            double key = (double) pair.getKey();
-                            if (dmin >= key) {
-                                dmin = key;
-                            }
-                        }
+                        dmin = countD.isEmpty() ? Integer.MAX_VALUE : countD.min();
                         // for cases where the heuristic is admissible but not consistent
                         if(prevDmin > dmin){
 //                            System.out.print("\r[INFO GH_heap] heuristic is not consistent: prevDmin = "+prevDmin+" > dmin = "+dmin+" , inconsistency:"+(prevDmin-dmin));
@@ -459,15 +409,7 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
         if(from == "count_remove"){
             if(fmin == 455.27838751346) {
                 //check that fmin is still OK
-                double found_fmin = Integer.MAX_VALUE;
-                Iterator it = countF.entrySet().iterator();
-                while (it.hasNext()) {
-                    Map.Entry pair = (Map.Entry) it.next();
-                    double key = (double) pair.getKey();
-                    if (found_fmin >= key) {
-                        found_fmin = key;
-                    }
-                }
+                double found_fmin = countF.isEmpty() ? Integer.MAX_VALUE : countF.min();
                 // there is a problem with fmin
                 if (found_fmin > fmin) {
                     System.out.print("\r[ERROR GH_heap] check the fmin counter. fmin="+fmin+", found_fmin="+found_fmin);
@@ -528,8 +470,8 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
             if(Val < fmin){
                 System.out.println("test Failed! Val < fmin:tree");
             }
-            countF.put(Val,countF.get(Val)-list.size());
-            if(countF.get(Val)<0){
+            countF.add(Val,-list.size());
+            if(countF.count(Val)<0){
                 System.out.println("test failed! countF.get("+Val+")<0");
             }
         }
@@ -542,8 +484,8 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
                 if (Val < fmin) {
                     System.out.println("test Failed! Val < fmin:outOfFocalTree");
                 }
-                countF.put(Val, countF.get(Val) - list.size());
-                if (countF.get(Val) < 0) {
+                countF.add(Val, -list.size());
+                if (countF.count(Val) < 0) {
                     System.out.println("test failed! countF.get(" + Val + ")<0 : outOfFocalTree");
                 }
             }
@@ -556,7 +498,7 @@ public class GH_heap<E extends SearchQueueElement> implements SearchQueue<E> {
             if(Val < fmin){
                 System.out.println("test Failed! Val < fmin");
             }
-            countF.put(Val,countF.get(Val)+list.size());
+            countF.add(Val,list.size());
         }
     }
 
@@ -0,0 +1,12 @@
+package org.cs4j.core.collections;
+
+import java.util.HashMap;
+
+/**
+ * A closed list which is backed by a chained hash map
+ *
+ * @param <E> the type of the stored search nodes
+ */
+public class HashClosedList<E> extends HashMap<PackedElement, E> implements ClosedList<E> {
+    private static final long serialVersionUID = 1L;
+}
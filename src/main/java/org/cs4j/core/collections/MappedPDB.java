@@ -0,0 +1,70 @@
+package org.cs4j.core.collections;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A pattern database which remains on disk and is memory-mapped (read-only) into the address space of the process.
+ *
+ * The file is a dense PDB file (see PDBUtils), i.e. an array of distances which is indexed by the perfect-hash ranks
+ * of the patterns. Hence, a lookup is a single (zero-copy) read from the mapped buffer, and all the processes which
+ * map the same file share the pages of the OS cache.
+ */
+public class MappedPDB implements PDB {
+
+    private String fileName;
+    private boolean nibbles;
+    private long entriesCount;
+    private MappedByteBuffer data;
+
+    /**
+     * Maps the given dense PDB file into memory
+     *
+     * @param fileName The name of the dense PDB file
+     *
+     * @throws IOException If something wrong occurred (e.g. the file isn't a dense PDB file)
+     */
+    public MappedPDB(String fileName) throws IOException {
+        this.fileName = fileName;
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            long[] header = PDBUtils.readHeader(file, fileName);
+            int format = (int) header[0];
+            this.nibbles = (format == PDBUtils.FORMAT_NIBBLES);
+            this.entriesCount = header[1];
+            long dataSize = PDBUtils.getDataSize(format, this.entriesCount);
+            FileChannel channel = file.getChannel();
+            if (channel.size() < PDBUtils.HEADER_SIZE + dataSize) {
+                System.out.println("[ERROR] Dense PDB file " + fileName + " is too short for " +
+                        this.entriesCount + " entries");
+                throw new IOException();
+            }
+            // The mapping remains valid after the channel is closed
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, PDBUtils.HEADER_SIZE, dataSize);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Override
+    public byte get(long index) {
+        if (this.nibbles) {
+            return (byte) ((this.data.get((int) (index >>> 1)) >>> ((index & 1) << 2)) & NibblePDB.MAX_VALUE);
+        }
+        return this.data.get((int) index);
+    }
+
+    @Override
+    public long size() {
+        return this.entriesCount;
+    }
+
+    /**
+     * @return The name of the mapped file
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+}
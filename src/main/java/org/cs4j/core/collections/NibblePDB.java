@@ -0,0 +1,77 @@
+package org.cs4j.core.collections;
+
+/**
+ * A pattern database which packs two entries into each byte (4 bits per entry), hence all the distances must be
+ * in [0, MAX_VALUE].
+ *
+ * Entry i is kept in byte i / 2: even entries in the low nibble and odd entries in the high nibble.
+ */
+public class NibblePDB implements PDB {
+
+    public static final int MAX_VALUE = 0xF;
+
+    private long entriesCount;
+    private byte[] packed;
+
+    /**
+     * Packs the given distances
+     *
+     * @param values The distances of the patterns, indexed by their ranks (see fits)
+     */
+    public NibblePDB(byte[] values) {
+        if (!NibblePDB.fits(values)) {
+            System.out.println("[ERROR] All the distances must be in [0, " + NibblePDB.MAX_VALUE + "] " +
+                    "in order to pack them into nibbles");
+            throw new IllegalArgumentException();
+        }
+        this.entriesCount = values.length;
+        this.packed = new byte[(values.length + 1) >>> 1];
+        for (int i = 0; i < values.length; ++i) {
+            this.packed[i >>> 1] |= values[i] << ((i & 1) << 2);
+        }
+    }
+
+    /**
+     * Wraps already packed distances
+     *
+     * @param packed The packed distances (as returned by getPacked)
+     * @param entriesCount The number of entries in the PDB
+     */
+    public NibblePDB(byte[] packed, long entriesCount) {
+        if (packed.length != (entriesCount + 1) >>> 1) {
+            System.out.println("[ERROR] " + packed.length + " bytes can't hold " + entriesCount + " nibbles");
+            throw new IllegalArgumentException();
+        }
+        this.packed = packed;
+        this.entriesCount = entriesCount;
+    }
+
+    /**
+     * @return Whether all the given distances can be packed into nibbles
+     */
+    public static boolean fits(byte[] values) {
+        for (byte value : values) {
+            if (value < 0 || value > NibblePDB.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte get(long index) {
+        return (byte) ((this.packed[(int) (index >>> 1)] >>> ((index & 1) << 2)) & NibblePDB.MAX_VALUE);
+    }
+
+    @Override
+    public long size() {
+        return this.entriesCount;
+    }
+
+    /**
+     * @return The internal array of the packed distances
+     */
+    public byte[] getPacked() {
+        return this.packed;
+    }
+}
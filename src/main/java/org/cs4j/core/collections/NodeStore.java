@@ -0,0 +1,266 @@
+package org.cs4j.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * An arena of search nodes which are kept as a struct of arrays instead of a Java object per node.
+ *
+ * Each node is identified by an int, and its g, h, parent, operator, heap index and packed state are stored in
+ * parallel primitive arrays. The arrays are allocated in chunks (of 2^CHUNK_BITS nodes), such that growing the
+ * arena never copies the stored nodes.
+ *
+ * The operator of a node is kept as its index in the list of operators of the parent state
+ * (see SearchDomain.getOperator(State, int)), hence the operator objects are not retained by the store.
+ *
+ * The store also indexes the nodes by their packed states (a primitive open-addressing table of node ids), so it
+ * can serve as the CLOSED list of the search as well.
+ */
+public class NodeStore {
+
+    public static final int NO_NODE = -1;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << NodeStore.CHUNK_BITS;
+    private static final int CHUNK_MASK = NodeStore.CHUNK_SIZE - 1;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    // The number of longs in each packed state (fixed by the first added node)
+    private int width;
+
+    private double[][] g;
+    private double[][] h;
+    private int[][] parent;
+    private int[][] operator;
+    private int[][] heapIndex;
+    private long[][] packed;
+
+    private int chunksCount;
+    private int size;
+
+    // The index of the nodes by their packed states: each slot holds a node id or NO_NODE
+    private int[] slots;
+    private int mask;
+    private int resizeThreshold;
+
+    public NodeStore() {
+        this.g = new double[4][];
+        this.h = new double[4][];
+        this.parent = new int[4][];
+        this.operator = new int[4][];
+        this.heapIndex = new int[4][];
+        this.packed = new long[4][];
+        this.chunksCount = 0;
+        this.size = 0;
+        this.width = 0;
+        this._initSlots(NodeStore.CHUNK_SIZE);
+    }
+
+    private void _initSlots(int capacity) {
+        this.slots = new int[capacity];
+        Arrays.fill(this.slots, NodeStore.NO_NODE);
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * NodeStore.MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Allocates another chunk for each one of the arrays
+     */
+    private void _addChunk() {
+        if (this.chunksCount == this.g.length) {
+            int newLength = this.g.length * 2;
+            this.g = Arrays.copyOf(this.g, newLength);
+            this.h = Arrays.copyOf(this.h, newLength);
+            this.parent = Arrays.copyOf(this.parent, newLength);
+            this.operator = Arrays.copyOf(this.operator, newLength);
+            this.heapIndex = Arrays.copyOf(this.heapIndex, newLength);
+            this.packed = Arrays.copyOf(this.packed, newLength);
+        }
+        int chunk = this.chunksCount++;
+        this.g[chunk] = new double[NodeStore.CHUNK_SIZE];
+        this.h[chunk] = new double[NodeStore.CHUNK_SIZE];
+        this.parent[chunk] = new int[NodeStore.CHUNK_SIZE];
+        this.operator[chunk] = new int[NodeStore.CHUNK_SIZE];
+        this.heapIndex[chunk] = new int[NodeStore.CHUNK_SIZE];
+        this.packed[chunk] = new long[NodeStore.CHUNK_SIZE * this.width];
+    }
+
+    /**
+     * Adds a new node to the store (the node is also indexed by its packed state)
+     *
+     * NOTE: The caller is responsible for checking (via find) that the packed state isn't stored yet
+     *
+     * @param packed The packed state of the node
+     * @param g The g value of the node
+     * @param h The h value of the node
+     * @param parent The id of the parent node (or NO_NODE for the root)
+     * @param operator The index of the operator which generated the node from its parent (or -1 for the root)
+     *
+     * @return The id of the new node
+     */
+    public int add(PackedElement packed, double g, double h, int parent, int operator) {
+        if (this.width == 0) {
+            this.width = packed.getLongsCount();
+        } else if (packed.getLongsCount() != this.width) {
+            System.out.println("[ERROR] All the states in the node store must be packed into " +
+                    this.width + " longs (got " + packed.getLongsCount() + ")");
+            throw new IllegalArgumentException();
+        }
+        int node = this.size;
+        if ((node >>> NodeStore.CHUNK_BITS) == this.chunksCount) {
+            this._addChunk();
+        }
+        int chunk = node >>> NodeStore.CHUNK_BITS;
+        int offset = node & NodeStore.CHUNK_MASK;
+        this.g[chunk][offset] = g;
+        this.h[chunk][offset] = h;
+        this.parent[chunk][offset] = parent;
+        this.operator[chunk][offset] = operator;
+        this.heapIndex[chunk][offset] = -1;
+        System.arraycopy(packed.getInternal(), 0, this.packed[chunk], offset * this.width, this.width);
+        ++this.size;
+
+        this.slots[this._findSlot(packed.getInternal())] = node;
+        if (this.size > this.resizeThreshold) {
+            this._rehash(this.slots.length * 2);
+        }
+        return node;
+    }
+
+    /**
+     * @param packed A packed state
+     *
+     * @return The id of the node of the given packed state, or NO_NODE if there is no such node
+     */
+    public int find(PackedElement packed) {
+        if (this.size == 0 || packed.getLongsCount() != this.width) {
+            return NodeStore.NO_NODE;
+        }
+        return this.slots[this._findSlot(packed.getInternal())];
+    }
+
+    /**
+     * Scrambles the bits of a long (the MurmurHash3 finalizer)
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private int _hash(long[] key, int offset) {
+        long hash = NodeStore.mix(key[offset]);
+        for (int i = 1; i < this.width; ++i) {
+            hash = NodeStore.mix(hash * 31 + key[offset + i]);
+        }
+        return (int) hash & this.mask;
+    }
+
+    /**
+     * @return The slot which holds the node of the given key or the (empty) slot in which it should be inserted
+     */
+    private int _findSlot(long[] key) {
+        int slot = this._hash(key, 0);
+        while (true) {
+            int node = this.slots[slot];
+            if (node == NodeStore.NO_NODE) {
+                return slot;
+            }
+            long[] chunk = this.packed[node >>> NodeStore.CHUNK_BITS];
+            int offset = (node & NodeStore.CHUNK_MASK) * this.width;
+            int i = 0;
+            while (i < this.width && chunk[offset + i] == key[i]) {
+                ++i;
+            }
+            if (i == this.width) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    private void _rehash(int capacity) {
+        this._initSlots(capacity);
+        for (int node = 0; node < this.size; ++node) {
+            long[] chunk = this.packed[node >>> NodeStore.CHUNK_BITS];
+            int slot = this._hash(chunk, (node & NodeStore.CHUNK_MASK) * this.width);
+            while (this.slots[slot] != NodeStore.NO_NODE) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.slots[slot] = node;
+        }
+    }
+
+    /**
+     * @return The number of stored nodes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all the nodes
+     */
+    public void clear() {
+        this.size = 0;
+        this.width = 0;
+        this.chunksCount = 0;
+        this._initSlots(NodeStore.CHUNK_SIZE);
+    }
+
+    public double getG(int node) {
+        return this.g[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK];
+    }
+
+    public void setG(int node, double g) {
+        this.g[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK] = g;
+    }
+
+    public double getH(int node) {
+        return this.h[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK];
+    }
+
+    public void setH(int node, double h) {
+        this.h[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK] = h;
+    }
+
+    public double getF(int node) {
+        return this.getG(node) + this.getH(node);
+    }
+
+    public int getParent(int node) {
+        return this.parent[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK];
+    }
+
+    public void setParent(int node, int parent) {
+        this.parent[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK] = parent;
+    }
+
+    public int getOperator(int node) {
+        return this.operator[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK];
+    }
+
+    public void setOperator(int node, int operator) {
+        this.operator[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK] = operator;
+    }
+
+    public int getHeapIndex(int node) {
+        return this.heapIndex[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK];
+    }
+
+    public void setHeapIndex(int node, int index) {
+        this.heapIndex[node >>> NodeStore.CHUNK_BITS][node & NodeStore.CHUNK_MASK] = index;
+    }
+
+    /**
+     * @return A new packed element which holds the packed state of the given node
+     */
+    public PackedElement getPacked(int node) {
+        long[] result = new long[this.width];
+        System.arraycopy(this.packed[node >>> NodeStore.CHUNK_BITS], (node & NodeStore.CHUNK_MASK) * this.width,
+                result, 0, this.width);
+        return new PackedElement(result);
+    }
+}
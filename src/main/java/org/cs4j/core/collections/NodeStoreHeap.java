@@ -0,0 +1,186 @@
+package org.cs4j.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * A binary heap of the nodes of a NodeStore.
+ *
+ * Each entry holds the id of the node and two primitive keys: the entries are ordered by the primary key and
+ * ties are broken by the secondary key (smaller is preferred in both cases), hence no comparator is called
+ * during sifting. The location of each node in the heap is kept in the heap index array of the store.
+ */
+public class NodeStoreHeap {
+
+    private final NodeStore store;
+
+    private int[] nodes;
+    private double[] primary;
+    private double[] secondary;
+    private int size;
+
+    public NodeStoreHeap(NodeStore store) {
+        this.store = store;
+        this.nodes = new int[1024];
+        this.primary = new double[1024];
+        this.secondary = new double[1024];
+        this.size = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.size; ++i) {
+            this.store.setHeapIndex(this.nodes[i], -1);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * @return Whether the given node is currently in the heap
+     */
+    public boolean contains(int node) {
+        return this.store.getHeapIndex(node) != -1;
+    }
+
+    /**
+     * Adds a node to the heap
+     *
+     * @param node The id of the node
+     * @param primaryKey The priority of the node (smaller is preferred)
+     * @param secondaryKey The tie-breaker of the node (smaller is preferred)
+     */
+    public void add(int node, double primaryKey, double secondaryKey) {
+        if (this.size == this.nodes.length) {
+            int newLength = this.nodes.length * 2;
+            this.nodes = Arrays.copyOf(this.nodes, newLength);
+            this.primary = Arrays.copyOf(this.primary, newLength);
+            this.secondary = Arrays.copyOf(this.secondary, newLength);
+        }
+        int i = this.size++;
+        this._set(i, node, primaryKey, secondaryKey);
+        this._pullUp(i);
+    }
+
+    /**
+     * @return The id of the best node (without removing it), or NodeStore.NO_NODE if the heap is empty
+     */
+    public int peek() {
+        return (this.size == 0) ? NodeStore.NO_NODE : this.nodes[0];
+    }
+
+    /**
+     * Removes the best node from the heap
+     *
+     * @return The id of the removed node, or NodeStore.NO_NODE if the heap is empty
+     */
+    public int poll() {
+        if (this.size == 0) {
+            return NodeStore.NO_NODE;
+        }
+        int toReturn = this.nodes[0];
+        this.store.setHeapIndex(toReturn, -1);
+        --this.size;
+        if (this.size > 0) {
+            this._set(0, this.nodes[this.size], this.primary[this.size], this.secondary[this.size]);
+            this._pushDown(0);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Updates the keys of a node which is already in the heap
+     */
+    public void update(int node, double primaryKey, double secondaryKey) {
+        int i = this.store.getHeapIndex(node);
+        if (i < 0 || i >= this.size) {
+            throw new IllegalArgumentException();
+        }
+        this.primary[i] = primaryKey;
+        this.secondary[i] = secondaryKey;
+        this._pushDown(this._pullUp(i));
+    }
+
+    /**
+     * @return The id of the node at the given position of the heap (positions are in [0, size))
+     */
+    public int getNodeAt(int position) {
+        return this.nodes[position];
+    }
+
+    /**
+     * Sets the keys of the node at the given position without restoring the heap property
+     * (must be followed by a call to heapify)
+     */
+    public void setKeysAt(int position, double primaryKey, double secondaryKey) {
+        this.primary[position] = primaryKey;
+        this.secondary[position] = secondaryKey;
+    }
+
+    /**
+     * Restores the heap property over all the nodes in O(n) (Floyd's algorithm)
+     */
+    public void heapify() {
+        for (int i = (this.size >>> 1) - 1; i >= 0; --i) {
+            this._pushDown(i);
+        }
+    }
+
+    private void _set(int i, int node, double primaryKey, double secondaryKey) {
+        this.nodes[i] = node;
+        this.primary[i] = primaryKey;
+        this.secondary[i] = secondaryKey;
+        this.store.setHeapIndex(node, i);
+    }
+
+    private boolean _less(int i, int j) {
+        if (this.primary[i] != this.primary[j]) {
+            return this.primary[i] < this.primary[j];
+        }
+        return this.secondary[i] < this.secondary[j];
+    }
+
+    private void _swap(int i, int j) {
+        int node = this.nodes[i];
+        double primaryKey = this.primary[i];
+        double secondaryKey = this.secondary[i];
+        this._set(i, this.nodes[j], this.primary[j], this.secondary[j]);
+        this._set(j, node, primaryKey, secondaryKey);
+    }
+
+    private int _pullUp(int i) {
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (!this._less(i, p)) {
+                break;
+            }
+            this._swap(i, p);
+            i = p;
+        }
+        return i;
+    }
+
+    private void _pushDown(int i) {
+        while (true) {
+            int l = 2 * i + 1;
+            int r = l + 1;
+            int smallest = i;
+            if (l < this.size && this._less(l, smallest)) {
+                smallest = l;
+            }
+            if (r < this.size && this._less(r, smallest)) {
+                smallest = r;
+            }
+            if (smallest == i) {
+                return;
+            }
+            this._swap(i, smallest);
+            i = smallest;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package org.cs4j.core.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A closed list which is implemented by a linear-probing open-addressing hash table.
+ *
+ * The packed longs of the keys and the stored nodes are kept densely (in insertion order) in primitive
+ * arrays, while the hash table itself only holds indexes into these arrays. Hence, looking a state up
+ * doesn't require any allocation or any call to PackedElement.compareTo/equals.
+ *
+ * The number of longs per key is fixed by the first inserted key: keys of a single long (the common case,
+ * e.g. VacuumRobot, DockyardRobot and Pancakes) are handled by a specialized probing loop, while longer
+ * keys are compared long by long.
+ *
+ * @param <E> the type of the stored search nodes
+ */
+@SuppressWarnings("unchecked")
+public class OpenAddressingClosedList<E> extends AbstractMap<PackedElement, E> implements ClosedList<E> {
+
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    // The number of longs in each key (0 means that no key has been inserted yet)
+    private int width;
+    // The keys, stored densely: the key at index i occupies keys[i * width, (i + 1) * width)
+    private long[] keys;
+    // The nodes, stored densely: values[i] is the node of the key at index i
+    private Object[] values;
+    // The hash table: each slot holds an index into keys/values or EMPTY
+    private int[] slots;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    private Set<Map.Entry<PackedElement, E>> entrySet;
+
+    public OpenAddressingClosedList() {
+        this(OpenAddressingClosedList.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The expected number of stored nodes (the table grows if required)
+     */
+    public OpenAddressingClosedList(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 16) - 1) << 2;
+        this.slots = new int[capacity];
+        Arrays.fill(this.slots, OpenAddressingClosedList.EMPTY);
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * OpenAddressingClosedList.MAX_LOAD_FACTOR);
+        this.values = new Object[this.resizeThreshold];
+        this.keys = null;
+        this.width = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Scrambles the bits of a long (the MurmurHash3 finalizer) - packed states are usually far from uniform
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private int hashOfLong(long value) {
+        return (int) OpenAddressingClosedList.mix(value) & this.mask;
+    }
+
+    private int hashOfLongs(long[] value, int offset) {
+        long h = 0;
+        for (int i = 0; i < this.width; ++i) {
+            h = OpenAddressingClosedList.mix(h * 31 + value[offset + i]);
+        }
+        return (int) h & this.mask;
+    }
+
+    /**
+     * @return The home slot of the key which is stored at the given index
+     */
+    private int hashOfIndex(int index) {
+        if (this.width == 1) {
+            return this.hashOfLong(this.keys[index]);
+        }
+        return this.hashOfLongs(this.keys, index * this.width);
+    }
+
+    /**
+     * Finds the slot of a single long key
+     *
+     * @return The slot which holds the key or the (empty) slot in which it should be inserted
+     */
+    private int findSlot(long key) {
+        int slot = this.hashOfLong(key);
+        while (true) {
+            int index = this.slots[slot];
+            if (index == OpenAddressingClosedList.EMPTY || this.keys[index] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Finds the slot of a key which is composed of several longs
+     *
+     * @return The slot which holds the key or the (empty) slot in which it should be inserted
+     */
+    private int findSlot(long[] key) {
+        int slot = this.hashOfLongs(key, 0);
+        while (true) {
+            int index = this.slots[slot];
+            if (index == OpenAddressingClosedList.EMPTY) {
+                return slot;
+            }
+            int offset = index * this.width;
+            int i = 0;
+            while (i < this.width && this.keys[offset + i] == key[i]) {
+                ++i;
+            }
+            if (i == this.width) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    /**
+     * @return The slot of the given key (see findSlot) or EMPTY if the key can't be stored in this list
+     */
+    private int findSlot(PackedElement key) {
+        if (key.getLongsCount() != this.width) {
+            return OpenAddressingClosedList.EMPTY;
+        }
+        if (this.width == 1) {
+            return this.findSlot(key.getFirst());
+        }
+        return this.findSlot(key.getInternal());
+    }
+
+    /**
+     * @return The index (in keys/values) of the given key, or EMPTY if the key isn't stored
+     */
+    private int indexOf(Object key) {
+        if (this.size == 0 || !(key instanceof PackedElement)) {
+            return OpenAddressingClosedList.EMPTY;
+        }
+        int slot = this.findSlot((PackedElement) key);
+        return (slot == OpenAddressingClosedList.EMPTY) ? OpenAddressingClosedList.EMPTY : this.slots[slot];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.indexOf(key) != OpenAddressingClosedList.EMPTY;
+    }
+
+    @Override
+    public E get(Object key) {
+        int index = this.indexOf(key);
+        return (index == OpenAddressingClosedList.EMPTY) ? null : (E) this.values[index];
+    }
+
+    @Override
+    public E put(PackedElement key, E value) {
+        if (this.width == 0) {
+            this.width = key.getLongsCount();
+            this.keys = new long[this.values.length * this.width];
+        } else if (key.getLongsCount() != this.width) {
+            System.out.println("[ERROR] All the keys of the closed list must be composed of " +
+                    this.width + " longs (got " + key.getLongsCount() + ")");
+            throw new IllegalArgumentException();
+        }
+        int slot = this.findSlot(key);
+        int index = this.slots[slot];
+        // The key is already stored - just replace the node
+        if (index != OpenAddressingClosedList.EMPTY) {
+            E previous = (E) this.values[index];
+            this.values[index] = value;
+            return previous;
+        }
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length * 2);
+            this.keys = Arrays.copyOf(this.keys, this.values.length * this.width);
+        }
+        index = this.size++;
+        System.arraycopy(key.getInternal(), 0, this.keys, index * this.width, this.width);
+        this.values[index] = value;
+        this.slots[slot] = index;
+        if (this.size > this.resizeThreshold) {
+            this.rehash(this.slots.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Rebuilds the hash table with the given number of slots (the dense arrays are not moved)
+     */
+    private void rehash(int capacity) {
+        this.slots = new int[capacity];
+        Arrays.fill(this.slots, OpenAddressingClosedList.EMPTY);
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * OpenAddressingClosedList.MAX_LOAD_FACTOR);
+        for (int index = 0; index < this.size; ++index) {
+            int slot = this.hashOfIndex(index);
+            while (this.slots[slot] != OpenAddressingClosedList.EMPTY) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.slots[slot] = index;
+        }
+    }
+
+    @Override
+    public E remove(Object key) {
+        int index = this.indexOf(key);
+        if (index == OpenAddressingClosedList.EMPTY) {
+            return null;
+        }
+        E previous = (E) this.values[index];
+        this.removeIndex(index);
+        return previous;
+    }
+
+    /**
+     * Removes the key at the given index: the slot is freed by shifting back the following keys of the
+     * probing sequence and the last key is moved to the freed index (in order to keep the arrays dense)
+     */
+    private void removeIndex(int index) {
+        int slot = this.findSlotOfIndex(index);
+        this.slots[slot] = OpenAddressingClosedList.EMPTY;
+        // Backward shift deletion (no tombstones are required)
+        int free = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & this.mask;
+            int currentIndex = this.slots[current];
+            if (currentIndex == OpenAddressingClosedList.EMPTY) {
+                break;
+            }
+            int home = this.hashOfIndex(currentIndex);
+            // Move the key only if its home slot isn't cyclically in (free, current]
+            boolean stays = (free <= current) ? (free < home && home <= current) : (free < home || home <= current);
+            if (!stays) {
+                this.slots[free] = currentIndex;
+                this.slots[current] = OpenAddressingClosedList.EMPTY;
+                free = current;
+            }
+        }
+        int last = --this.size;
+        if (index != last) {
+            this.slots[this.findSlotOfIndex(last)] = index;
+            System.arraycopy(this.keys, last * this.width, this.keys, index * this.width, this.width);
+            this.values[index] = this.values[last];
+        }
+        this.values[last] = null;
+    }
+
+    /**
+     * @return The slot which points to the given index
+     */
+    private int findSlotOfIndex(int index) {
+        int slot = this.hashOfIndex(index);
+        while (this.slots[slot] != index) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.slots, OpenAddressingClosedList.EMPTY);
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<PackedElement, E>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<PackedElement, E>> {
+        @Override
+        public Iterator<Map.Entry<PackedElement, E>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return OpenAddressingClosedList.this.size;
+        }
+
+        @Override
+        public void clear() {
+            OpenAddressingClosedList.this.clear();
+        }
+    }
+
+    /**
+     * Iterates over the dense arrays (removing the current entry moves the last entry into its place, hence
+     * the iterator visits the same index again)
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<PackedElement, E>> {
+        private int next = 0;
+        private int current = OpenAddressingClosedList.EMPTY;
+
+        @Override
+        public boolean hasNext() {
+            return this.next < OpenAddressingClosedList.this.size;
+        }
+
+        @Override
+        public Map.Entry<PackedElement, E> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.current = this.next++;
+            return new Entry(this.current);
+        }
+
+        @Override
+        public void remove() {
+            if (this.current == OpenAddressingClosedList.EMPTY) {
+                throw new IllegalStateException();
+            }
+            OpenAddressingClosedList.this.removeIndex(this.current);
+            this.next = this.current;
+            this.current = OpenAddressingClosedList.EMPTY;
+        }
+    }
+
+    /**
+     * The key is copied when the entry is created, so the entry remains valid after it is removed by the iterator
+     */
+    private final class Entry implements Map.Entry<PackedElement, E> {
+        private final int index;
+        private final PackedElement key;
+        private E value;
+
+        private Entry(int index) {
+            int width = OpenAddressingClosedList.this.width;
+            long[] key = new long[width];
+            System.arraycopy(OpenAddressingClosedList.this.keys, index * width, key, 0, width);
+            this.index = index;
+            this.key = new PackedElement(key);
+            this.value = (E) OpenAddressingClosedList.this.values[index];
+        }
+
+        @Override
+        public PackedElement getKey() {
+            return this.key;
+        }
+
+        @Override
+        public E getValue() {
+            return this.value;
+        }
+
+        @Override
+        public E setValue(E value) {
+            E previous = this.value;
+            this.value = value;
+            OpenAddressingClosedList.this.put(this.key, value);
+            return previous;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.cs4j.core.collections;
+
+/**
+ * A pattern database: a dense table of distances, indexed by the perfect-hash ranks of the patterns
+ * (the ranks of a PDB with N entries are in [0, N))
+ */
+public interface PDB {
+
+    /**
+     * @param index The rank of the pattern (must be in [0, size()))
+     *
+     * @return The distance which is stored for the pattern
+     */
+    byte get(long index);
+
+    /**
+     * @return The number of entries in the PDB
+     */
+    long size();
+}
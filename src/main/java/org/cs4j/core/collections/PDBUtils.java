@@ -0,0 +1,234 @@
+package org.cs4j.core.collections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reading and writing of pattern databases.
+ *
+ * Two file formats are supported:
+ *  1. Indexed files: a sequence of (int rank, byte distance) records, in any order (a rank may be missing, e.g. if
+ *     another rank is repeated or if the file has fewer records than entries - its distance is 0, which keeps the
+ *     heuristic admissible)
+ *  2. Dense files: MAGIC (int), the format of the entries (int), the number of entries (long) and then the entries,
+ *     ordered by their ranks - either a byte per entry (FORMAT_BYTES) or two entries per byte (FORMAT_NIBBLES,
+ *     see NibblePDB). Dense files can be loaded into memory or memory-mapped (see MappedPDB).
+ *
+ * Since MAGIC is larger than the number of entries of any supported PDB, the formats can't be confused.
+ */
+public class PDBUtils {
+
+    // "PDB1"
+    public static final int MAGIC = 0x50444231;
+    // Each entry is stored as a single byte
+    public static final int FORMAT_BYTES = 0;
+    // Two entries are stored in each byte
+    public static final int FORMAT_NIBBLES = 1;
+    // Magic, format and entries count
+    public static final int HEADER_SIZE = 4 + 4 + 8;
+
+    // Marks ranks which don't appear in an indexed file (until they are set to 0)
+    private static final byte MISSING = -1;
+    // Print the progress of reading every PRINT_GAP entries
+    private static final int PRINT_GAP = 1 << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @param values The distances of the patterns, indexed by their ranks
+     *
+     * @return The most compact in-memory PDB which can hold the given distances
+     */
+    public static PDB compact(byte[] values) {
+        if (NibblePDB.fits(values)) {
+            return new NibblePDB(values);
+        }
+        return new ByteArrayPDB(values);
+    }
+
+    /**
+     * Reads the (rank, distance) records of an indexed PDB file into a dense array (the records are read until the
+     * end of the file, or until entriesCount records were read)
+     *
+     * @param fileName The name of the indexed PDB file
+     * @param entriesCount The number of entries in the PDB
+     *
+     * @return An array of the distances, indexed by the ranks of the patterns (0 for the missing ranks)
+     *
+     * @throws IOException If something wrong occurred (e.g. some rank is invalid, or the last record is truncated)
+     */
+    public static byte[] readIndexedFile(String fileName, int entriesCount) throws IOException {
+        byte[] values = new byte[entriesCount];
+        Arrays.fill(values, PDBUtils.MISSING);
+        DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(fileName), PDBUtils.BUFFER_SIZE));
+        try {
+            for (int i = 0; i < entriesCount; ++i) {
+                // Debug
+                if (i % PDBUtils.PRINT_GAP == 0) {
+                    System.out.print("\r[INFO] Read " + (i + 1) + "/" + entriesCount + " values");
+                }
+                int first = inputStream.read();
+                if (first == -1) {
+                    // The file has fewer records than entries (the rest of the ranks are missing)
+                    break;
+                }
+                long index;
+                byte distance;
+                try {
+                    index = ((long) first << 24) | (inputStream.readUnsignedByte() << 16) |
+                            inputStream.readUnsignedShort();
+                    distance = inputStream.readByte();
+                } catch (EOFException e) {
+                    System.out.println();
+                    System.out.println("[ERROR] Truncated record found in PDB " + fileName + " (record " + i + ")");
+                    throw e;
+                }
+                if (index >= entriesCount || distance < 0) {
+                    System.out.println();
+                    System.out.println("[ERROR] Invalid record found in PDB " + fileName +
+                            " (hash: " + index + ", distance: " + distance + ")");
+                    throw new IOException();
+                }
+                values[(int) index] = distance;
+            }
+        } finally {
+            inputStream.close();
+        }
+        // Last new line
+        System.out.println();
+        int missingCount = 0;
+        for (int i = 0; i < entriesCount; ++i) {
+            if (values[i] == PDBUtils.MISSING) {
+                values[i] = 0;
+                ++missingCount;
+            }
+        }
+        if (missingCount > 0) {
+            System.out.println("[WARNING] No distance found in PDB " + fileName + " for " + missingCount + "/" +
+                    entriesCount + " hashes (their distance is 0)");
+        }
+        return values;
+    }
+
+    /**
+     * @param fileName The name of some PDB file
+     *
+     * @return Whether the file is a dense PDB file
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static boolean isDenseFile(String fileName) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(fileName));
+        try {
+            return inputStream.readInt() == PDBUtils.MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Reads and validates the header of a dense PDB file
+     *
+     * @param input The input to read the header from
+     * @param fileName The name of the file (for error messages)
+     *
+     * @return An array of the form {format, entries count}
+     *
+     * @throws IOException If something wrong occurred
+     */
+    static long[] readHeader(DataInput input, String fileName) throws IOException {
+        if (input.readInt() != PDBUtils.MAGIC) {
+            System.out.println("[ERROR] " + fileName + " isn't a dense PDB file (use DensePDBConverter " +
+                    "in order to convert it)");
+            throw new IOException();
+        }
+        int format = input.readInt();
+        if (format != PDBUtils.FORMAT_BYTES && format != PDBUtils.FORMAT_NIBBLES) {
+            System.out.println("[ERROR] Unsupported format of dense PDB file " + fileName + ": " + format);
+            throw new IOException();
+        }
+        long entriesCount = input.readLong();
+        if (entriesCount < 0 || entriesCount > Integer.MAX_VALUE) {
+            System.out.println("[ERROR] Invalid number of entries in dense PDB file " + fileName + ": " +
+                    entriesCount);
+            throw new IOException();
+        }
+        return new long[]{format, entriesCount};
+    }
+
+    /**
+     * @param format The format of the entries
+     * @param entriesCount The number of entries
+     *
+     * @return The number of bytes required for the entries
+     */
+    static long getDataSize(int format, long entriesCount) {
+        return (format == PDBUtils.FORMAT_NIBBLES) ? (entriesCount + 1) >>> 1 : entriesCount;
+    }
+
+    /**
+     * Reads a dense PDB file into memory
+     *
+     * @param fileName The name of the dense PDB file
+     *
+     * @return The read PDB
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static PDB readDenseFile(String fileName) throws IOException {
+        DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(fileName), PDBUtils.BUFFER_SIZE));
+        try {
+            long[] header = PDBUtils.readHeader(inputStream, fileName);
+            int format = (int) header[0];
+            long entriesCount = header[1];
+            byte[] data = new byte[(int) PDBUtils.getDataSize(format, entriesCount)];
+            inputStream.readFully(data);
+            if (format == PDBUtils.FORMAT_NIBBLES) {
+                return new NibblePDB(data, entriesCount);
+            }
+            return new ByteArrayPDB(data);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes a dense PDB file (nibbles are written only for a NibblePDB)
+     *
+     * @param pdb The PDB to write
+     * @param fileName The name of the output file
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static void writeDenseFile(PDB pdb, String fileName) throws IOException {
+        DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName), PDBUtils.BUFFER_SIZE));
+        try {
+            outputStream.writeInt(PDBUtils.MAGIC);
+            if (pdb instanceof NibblePDB) {
+                outputStream.writeInt(PDBUtils.FORMAT_NIBBLES);
+                outputStream.writeLong(pdb.size());
+                outputStream.write(((NibblePDB) pdb).getPacked());
+            } else {
+                outputStream.writeInt(PDBUtils.FORMAT_BYTES);
+                outputStream.writeLong(pdb.size());
+                for (long i = 0; i < pdb.size(); ++i) {
+                    outputStream.writeByte(pdb.get(i));
+                }
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+}
@@ -16,6 +16,12 @@
  */
 package org.cs4j.core.collections;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
 /**
  * A basic heap interface
  * 
@@ -43,4 +49,37 @@ public interface SearchQueue<E> {
 	
 	public int getKey();
 
+	/**
+	 * Restores the order of the queue after the priorities of its elements have changed (e.g., when the priority
+	 * depends on an incumbent solution), and removes the elements that satisfy the given predicate.
+	 *
+	 * The default implementation removes all the elements and re-inserts the remaining ones.
+	 *
+	 * @param prune Whether an element should be removed from the queue
+	 * @param onPruned Called for each removed element
+	 */
+	public default void rekey(Predicate<? super E> prune, Consumer<? super E> onPruned) {
+		List<E> elements = new ArrayList<E>(this.size());
+		while (!this.isEmpty())
+			elements.add(this.poll());
+		for (E e : elements) {
+			if (prune.test(e))
+				onPruned.accept(e);
+			else
+				this.add(e);
+		}
+	}
+
+	/**
+	 * @return The elements in the queue (in no particular order) - the list must not be modified
+	 */
+	public default List<E> getElements() {
+		List<E> elements = new ArrayList<E>(this.size());
+		while (!this.isEmpty())
+			elements.add(this.poll());
+		for (E e : elements)
+			this.add(e);
+		return Collections.unmodifiableList(elements);
+	}
+
 }
@@ -0,0 +1,12 @@
+package org.cs4j.core.collections;
+
+import java.util.TreeMap;
+
+/**
+ * A closed list which is backed by a red-black tree ordered by the packed elements
+ *
+ * @param <E> the type of the stored search nodes
+ */
+public class TreeClosedList<E> extends TreeMap<PackedElement, E> implements ClosedList<E> {
+    private static final long serialVersionUID = 1L;
+}
@@ -16,17 +16,18 @@
  */
 package org.cs4j.core.domains;
 
-import com.carrotsearch.hppc.LongByteHashMap;
 import org.cs4j.core.AbstractSearchDomain;
 import org.cs4j.core.SearchDomain;
+import org.cs4j.core.collections.MappedPDB;
+import org.cs4j.core.collections.PDB;
+import org.cs4j.core.collections.PDBUtils;
 import org.cs4j.core.collections.PackedElement;
 import java.io.BufferedReader;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -80,23 +81,14 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
 
     private boolean pdbRemainsOnDisk;
 
-    // Used in case PDB remains cached on dist
-    private RandomAccessFile pdb7File;
-    private RandomAccessFile pdb8File;
+    // PDBs for 7-8 partitioning (memory-mapped in case PDB remains on disk)
+    private PDB pdb7;
+    private PDB pdb8;
 
-    // PDBs for 7-8 partitioning
-    private LongByteHashMap pdb7;
-    private LongByteHashMap pdb8;
-
-    // Used in case PDB remains cached on dist
-    private RandomAccessFile pdb5_1File;
-    private RandomAccessFile pdb5_2File;
-    private RandomAccessFile pdb5_3File;
-
-    // PDBs for 5-5-5 partitioning
-    private LongByteHashMap pdb5_1;
-    private LongByteHashMap pdb5_2;
-    private LongByteHashMap pdb5_3;
+    // PDBs for 5-5-5 partitioning (memory-mapped in case PDB remains on disk)
+    private PDB pdb5_1;
+    private PDB pdb5_2;
+    private PDB pdb5_3;
 
     private boolean useReflection;
     // Reflection via the diagonal
@@ -111,10 +103,6 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
     // Size of the PDB for the 8 rest tiles
     private static final int TABLE_SIZE_PDB8 = 16 * 15 * 14 * 13 * 12 * 11 * 10 * 9;
 
-    // When reading some PDB create a map with the required size * PDB_ENTRIES_INCREASE
-    // (in order to disallow map copying)
-    private static final double PDB_ENTRIES_INCREASE = 1.1d;
-
     // Declare the parameters that can be tunes before running the search
     static
     {
@@ -384,6 +372,41 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
         this.pdbRemainsOnDisk = other.pdbRemainsOnDisk;
     }
 
+    /**
+     * Writes the given tiles in the format which is read by the constructors of the class
+     *
+     * @param tiles The tiles of the instance
+     *
+     * @return A stream of the instance
+     */
+    private InputStream _instanceStream(int[] tiles) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.width).append(" ").append(this.height).append("\n");
+        sb.append("starting positions for each tile:\n");
+        for (int t = 0; t < this.tilesNumber; ++t) {
+            sb.append(tiles[t]).append("\n");
+        }
+        sb.append("goal positions:\n");
+        for (int t = 0; t < this.tilesNumber; ++t) {
+            sb.append(t).append("\n");
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public boolean supportsCopyForThread() {
+        return true;
+    }
+
+    @Override
+    public SearchDomain copyForThread() {
+        // The PDBs are read-only, hence they can be shared with the copy
+        FifteenPuzzle copy = new FifteenPuzzle(this, this._instanceStream(this.init));
+        copy.costAlpha = this.costAlpha;
+        copy.tileCosts = this.tileCosts;
+        return copy;
+    }
+
     /**
      * Computes the TOTAL Manhattan distance for the specified blank and tile configuration.
      *
@@ -424,10 +447,6 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
         }*/
     }
 
-    private double[] _computeHDNoMDFromDisk(TileState state) {
-       throw new UnsupportedOperationException();
-    }
-
     /**
      * This function is called in case the heuristic type is not Manhattan Distance
      *
@@ -488,9 +507,6 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
                 break;
             }
             default: {
-                if (this.pdbRemainsOnDisk) {
-                    return this._computeHDNoMDFromDisk(state);
-                }
                 return this._computeHDNoMD(state);
             }
         }
@@ -629,8 +645,18 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
 
     @Override
     public State copy(State s) {
-        TileState ts = (TileState) s;
-        TileState copy = new TileState();
+        return this._copy((TileState) s, new TileState());
+    }
+
+    /**
+     * Copies a state into another (existing) state
+     *
+     * @param ts The state to copy
+     * @param copy The state to copy into
+     *
+     * @return The copy
+     */
+    private TileState _copy(TileState ts, TileState copy) {
         // Copy the tiles
         System.arraycopy(ts.tiles, 0, copy.tiles, 0, ts.tiles.length);
         // Copy the positions of the tiles
@@ -667,7 +693,12 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
 
     @Override
     public State applyOperator(State s, Operator op) {
-        TileState ts = (TileState) copy(s);
+        return this.applyOperator(s, op, null);
+    }
+
+    @Override
+    public State applyOperator(State s, Operator op, State buffer) {
+        TileState ts = this._copy((TileState) s, (buffer != null) ? (TileState) buffer : new TileState());
         FifteenPuzzleOperator fop = (FifteenPuzzleOperator) op;
         // Get the updated position of the blank
         int futureBlankPosition = fop.value;
@@ -687,7 +718,8 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
             ts.positionsOfTiles[currentTileAtFutureBlankPosition] = ts.blank;
             ts.positionsOfTiles[0] = futureBlankPosition;
             ts.blank = futureBlankPosition;
-            double[] computedHD = this._computeHDNoMD(ts);
+            // The PDBs (in memory or mapped from the disk) are looked up as for any other state
+            double[] computedHD = this.computeHD(ts);
             ts.h = computedHD[0];
             ts.d = computedHD[1];
         }
@@ -741,10 +773,17 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
 
     @Override
     public State unpack(PackedElement packed) {
+        return this.unpack(packed, null);
+    }
+
+    @Override
+    public State unpack(PackedElement packed, State buffer) {
         assert packed.getLongsCount() == 1;
         long firstPacked = packed.getFirst();
-        TileState ts = new TileState();
+        TileState ts = (buffer != null) ? (TileState) buffer : new TileState();
         ts.blank = -1;
+        ts.h = 0;
+        ts.d = 0;
         // Start from end and go to start
         for (int i = this.tilesNumber - 1; i >= 0; --i) {
             // Each time, extract a single tile
@@ -986,95 +1025,87 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
     }
 
     /**
-     * Read a permutation index from the DB
+     * Reads a single PDB table from the given file - either a dense PDB file or a file of (index, distance) records
+     * (see PDBUtils)
+     *
+     * @param pdbFileName The name of the PDB file
+     * @param permutationsCount The number of permutations assumed to be in the file
+     *
+     * @return An initialized PDB that contains all the distances for the permutations
+     *
+     * @throws IOException If something wrong occurred
+     */
+    private PDB _readSinglePDB(String pdbFileName, int permutationsCount) throws IOException {
+        PDB toReturn;
+        if (PDBUtils.isDenseFile(pdbFileName)) {
+            toReturn = PDBUtils.readDenseFile(pdbFileName);
+        } else {
+            // Pack the distances into nibbles if possible
+            toReturn = PDBUtils.compact(PDBUtils.readIndexedFile(pdbFileName, permutationsCount));
+        }
+        this._assertPDBSize(toReturn, pdbFileName, permutationsCount);
+        return toReturn;
+    }
+
+    /**
+     * Maps a single dense PDB file (see DensePDBConverter) into memory
      *
-     * @param inputStream The DB of permutations
+     * @param pdbFileName The name of the dense PDB file
+     * @param permutationsCount The number of permutations assumed to be in the file
      *
-     * @return The read index
+     * @return The mapped PDB
      *
      * @throws IOException If something wrong occurred
      */
-    private long _readIndex(DataInputStream inputStream) throws IOException {
-        return inputStream.readInt() & 0xffffffffl;
+    private PDB _mapSinglePDB(String pdbFileName, int permutationsCount) throws IOException {
+        PDB toReturn = new MappedPDB(pdbFileName);
+        this._assertPDBSize(toReturn, pdbFileName, permutationsCount);
+        return toReturn;
+    }
+
+    private void _assertPDBSize(PDB pdb, String pdbFileName, int permutationsCount) throws IOException {
+        if (pdb.size() != permutationsCount) {
+            System.out.println("[ERROR] Invalid number of entries in PDB " + pdbFileName +
+                    " (expected: " + permutationsCount + ", found: " + pdb.size() + ")");
+            throw new IOException();
+        }
     }
 
     /**
-     * Reads a single PDB table from the given file
+     * Reads (or maps, in case PDB remains on disk) a single PDB table from the given file
      *
      * @param pdbFileName The name of the PDB file
      * @param permutationsCount The number of permutations assumed to be in the file
      *
-     * @return An initialized map that contains all the distances for the permutations
+     * @return The read PDB
      *
      * @throws IOException If something wrong occurred
      */
-    private LongByteHashMap _readSinglePDB(String pdbFileName, int permutationsCount) throws IOException {
-        LongByteHashMap toReturn = new LongByteHashMap((int)(permutationsCount * FifteenPuzzle.PDB_ENTRIES_INCREASE));
-        // Each permutation index is stored as int
-        DataInputStream inputStream = new DataInputStream(new FileInputStream(pdbFileName));
-        for (long i = 0; i < permutationsCount; ++i) {
-            // Debug
-            if (i % 999 == 0) {
-                System.out.print("\r[INFO] Read " + (i + 1) + "/" + permutationsCount + " values");
-            }
-            // First, read the hash value of the permutation
-            long hashValue = this._readIndex(inputStream);
-            // Now, read the distance
-            byte distance = inputStream.readByte();
-            if (hashValue >= permutationsCount) {
-                System.out.println("[ERROR] Invalid hash value found in PDB " + pdbFileName +
-                        "(hash: " + hashValue + ", distance: " + distance + ")");
-                throw new IOException();
-            }
-            // Debug:
-            /*
-            if (toReturn.containsKey(hashValue)) {
-                System.out.println((int)toReturn.get(hashValue));
-                System.out.println((int) distance);
-                assert toReturn.get(hashValue) == distance;
-            } else {
-                toReturn.put(hashValue, distance);
-            }*/
-            toReturn.put(hashValue, distance);
+    private PDB _loadSinglePDB(String pdbFileName, int permutationsCount) throws IOException {
+        if (this.pdbRemainsOnDisk) {
+            System.out.println("[INFO] Mapping PDB from " + pdbFileName);
+            return this._mapSinglePDB(pdbFileName, permutationsCount);
         }
-        // Last new line
-        System.out.println();
+        System.out.println("[INFO] Reading PDB from " + pdbFileName);
+        PDB toReturn = this._readSinglePDB(pdbFileName, permutationsCount);
+        System.out.println("[INFO] Finished reading PDB from " + pdbFileName);
         return toReturn;
     }
 
     private void _readPDB78(String pdb7FileName, String pdb8FileName) throws IOException {
         // Read PDB 7
-        if (this.pdbRemainsOnDisk) {
-            this.pdb7File = new RandomAccessFile(pdb7FileName, "r");
-        } else {
-            System.out.println("[INFO] Reading PDB from " + pdb7FileName);
-            this.pdb7 = this._readSinglePDB(pdb7FileName, FifteenPuzzle.TABLE_SIZE_PDB7);
-            System.out.println("[INFO] Finished reading PDB from " + pdb7FileName);
-        }
+        this.pdb7 = this._loadSinglePDB(pdb7FileName, FifteenPuzzle.TABLE_SIZE_PDB7);
         // Read PDB 8
-        if (this.pdbRemainsOnDisk) {
-            this.pdb8File = new RandomAccessFile(pdb8FileName, "r");
-        } else {
-            System.out.println("[INFO] Reading PDB from " + pdb8FileName);
-            this.pdb8 = this._readSinglePDB(pdb8FileName, FifteenPuzzle.TABLE_SIZE_PDB8);
-            System.out.println("[INFO] Finished reading PDB from " + pdb8FileName);
-        }
+        this.pdb8 = this._loadSinglePDB(pdb8FileName, FifteenPuzzle.TABLE_SIZE_PDB8);
     }
 
-
     private void _readPDB555(String pdb5_1FileName, String pdb5_2FileName, String pdb5_3FileName) throws IOException {
         // Read PDB 5_1
-        System.out.println("[INFO] Reading PDB from " + pdb5_1FileName);
-        this.pdb5_1 = this._readSinglePDB(pdb5_1FileName, FifteenPuzzle.TABLE_SIZE_PDB5);
-        System.out.println("[INFO] Finished reading PDB from " + pdb5_1FileName);
+        this.pdb5_1 = this._loadSinglePDB(pdb5_1FileName, FifteenPuzzle.TABLE_SIZE_PDB5);
         // Read PDB 5_2
-        System.out.println("[INFO] Reading PDB from " + pdb5_2FileName);
-        this.pdb5_2 = this._readSinglePDB(pdb5_2FileName, FifteenPuzzle.TABLE_SIZE_PDB5);
-        System.out.println("[INFO] Finished reading PDB from " + pdb5_2FileName);
+        this.pdb5_2 = this._loadSinglePDB(pdb5_2FileName, FifteenPuzzle.TABLE_SIZE_PDB5);
         // Read PDB 5_3
-        System.out.println("[INFO] Reading PDB from " + pdb5_3FileName);
-        this.pdb5_3 = this._readSinglePDB(pdb5_3FileName, FifteenPuzzle.TABLE_SIZE_PDB5);
-        System.out.println("[INFO] Finished reading PDB from " + pdb5_3FileName);
+        this.pdb5_3 = this._loadSinglePDB(pdb5_3FileName, FifteenPuzzle.TABLE_SIZE_PDB5);
     }
 
     /**
@@ -1118,6 +1149,7 @@ public final class FifteenPuzzle extends AbstractSearchDomain {
                     System.out.println("[ERROR] The type of the heuristic function must involve PDB");
                     throw new IllegalArgumentException();
                 }
+                // NOTE: Must be set before the PDB files, which are then assumed to be dense (see DensePDBConverter)
                 this.pdbRemainsOnDisk = Boolean.parseBoolean(value);
                 break;
             }
@@ -5,7 +5,6 @@ import org.cs4j.core.AbstractSearchDomain;
 import org.cs4j.core.SearchDomain;
 import org.cs4j.core.algorithms.AbstractAnytimeSearch;
 import org.cs4j.core.collections.PackedElement;
-import org.cs4j.core.collections.Pair;
 import org.cs4j.core.collections.PairInt;
 
 import java.io.*;
@@ -85,7 +84,10 @@ public class GridPathFinding extends AbstractSearchDomain {
     // Required for the TDH heuristic
     private int[] orderedPivots;
 
-    private Map<Integer, Map<Integer, Double>> distancesFromPivots;
+    // The distances from the pivots (shared by all the domains which use the same pivots DB file)
+    private GridPivotsDB pivotsDB;
+    // Marks the pivots which were already used by DH_RANDOM_PIVOTS (when computing the heuristic of a state)
+    private boolean[] usedRandomPivots;
 
     private GridPathFindingOperator[] reverseOperators;
 
@@ -329,7 +331,7 @@ public class GridPathFinding extends AbstractSearchDomain {
         // No need for this
         this.pivotsCount = -1;
         this.orderedPivots = null;
-        this.distancesFromPivots = null;
+        this.pivotsDB = null;
         this.randomPivotsIndexes = null;
 
         // Compute bit masks for bit twiddling states in pack/unpack
@@ -716,43 +718,58 @@ public class GridPathFinding extends AbstractSearchDomain {
         this.heuristicType = other.heuristicType;
         this.pivotsCount = other.pivotsCount;
         this.orderedPivots = other.orderedPivots;
-        this.distancesFromPivots = other.distancesFromPivots;
+        this.pivotsDB = other.pivotsDB;
         this.randomPivotsCount = other.randomPivotsCount;
         this.randomPivotsIndexes = other.randomPivotsIndexes;
     }
 
     /**
-     * The constructor of the general GridPathFinding domain (with the UNIT cost f
-     * unction)
+     * This constructor initializes a GridPathFinding problem on the map of other given problem (and with the same
+     * parameters), with the given start and goal locations
      *
-     * @param stream The input stream for parsing the instance
+     * @param other The GridPathFinding problem to copy from
+     * @param start The start location
+     * @param goal The goal location
      */
-    public GridPathFinding(InputStream stream) {
-        this(stream, COST_FUNCTION.UNIT);
+    private GridPathFinding(GridPathFinding other, PairInt start, PairInt goal) {
+        this.optimalSolutionCost = -1;
+        this.map = other.map;
+        this.startX = start.first;
+        this.startY = start.second;
+        this.goals = new ArrayList<>(1);
+        this.goalsPairs = new ArrayList<>(1);
+        this.goals.add(this.map.getLocationIndex(goal));
+        this.goalsPairs.add(goal);
+
+        this.heavy = other.heavy;
+        this.agentLocationBitMask = other.agentLocationBitMask;
+        this.reverseOperators = other.reverseOperators;
+
+        this.heuristicType = other.heuristicType;
+        this.pivotsCount = other.pivotsCount;
+        this.orderedPivots = other.orderedPivots;
+        this.pivotsDB = other.pivotsDB;
+        this.randomPivotsCount = other.randomPivotsCount;
+        this.randomPivotsIndexes = other.randomPivotsIndexes;
+    }
+
+    @Override
+    public SearchDomain createBackwardDomain() {
+        if (this.goalsPairs.size() != 1) {
+            return null;
+        }
+        // The moves are reversible (and of symmetric costs), hence only the start and goal are swapped
+        return new GridPathFinding(this, this.goalsPairs.get(0), new PairInt(this.startX, this.startY));
     }
 
     /**
-     * The function computes the differential heuristics value for a single pivot case
-     *
-     * @param startLocation The start location on the grid
-     * @param pivotIndex The index of the pivot to take from the pivots map
-     * @param goalLocation The end location on the grid
-     * @param failIf0 Whether to return -1 if one of the pivots is unreachable from start or from goal or the distance
-     *                from one of the pivots is 0
+     * The constructor of the general GridPathFinding domain (with the UNIT cost f
+     * unction)
      *
-     * @return The computed heuristic value or -1 in case one of the distances is unreachable or 0 and failIf0 is true
+     * @param stream The input stream for parsing the instance
      */
-    private double _computeDHForSinglePivot(int startLocation, int pivotIndex, int goalLocation, boolean failIf0) {
-        int currentPivot = this.orderedPivots[pivotIndex];
-        double distanceFromAgentToPivot = this.distancesFromPivots.get(currentPivot).get(startLocation);
-        if ((failIf0 && distanceFromAgentToPivot == 0) || distanceFromAgentToPivot < 0) {
-            return -1;
-        }
-        double distanceFromPivotToGoal = this.distancesFromPivots.get(currentPivot).get(goalLocation);
-        if ((failIf0 && distanceFromPivotToGoal == 0) || distanceFromPivotToGoal < 0) {
-            return -1;
-        }
-        return Math.abs(distanceFromAgentToPivot - distanceFromPivotToGoal);
+    public GridPathFinding(InputStream stream) {
+        this(stream, COST_FUNCTION.UNIT);
     }
 
     /*
@@ -786,38 +803,16 @@ public class GridPathFinding extends AbstractSearchDomain {
             }
             // A simple DH heuristic, but, choose max from DH and MD
             case DH_FURTHEST: {
-                maxDistance = 0.0d;
-                for (int i = 0; i < this.pivotsCount; ++i) {
-                    // Compute the heuristic value for this pivot, don't return -1 if the distance from one of the
-                    // pivots is 0
-                    double diff = this._computeDHForSinglePivot(
-                            s.agentLocation,
-                            this.orderedPivots[i],
-                            currentGoal,
-                            false);
-                    if (diff > maxDistance) {
-                        maxDistance = diff;
-                    }
-                }
+                // Compute the heuristic value for all the pivots, don't ignore a pivot if the distance from it is 0
+                maxDistance = this.pivotsDB.computeMaxDH(s.agentLocation, currentGoal, this.pivotsCount, false);
                 // Take the maximum value (chose from MD and DH)
                 double maxValue = Math.max(maxDistance, md);
                 return new double[]{maxValue, maxValue};
             }
             // Take the average between DH (no max with MD) and MD; if DH == 0 => Take only MD
             case DH_MD_AVERAGE_MD_IF_DH_IS_0: {
-                maxDistance = 0.0d;
-                for (int i = 0; i < this.pivotsCount; ++i) {
-                    // Compute the heuristic value for this pivot, return -1 if the distance from one of the
-                    // pivots is 0
-                    double diff = this._computeDHForSinglePivot(
-                            s.agentLocation,
-                            i,
-                            currentGoal,
-                            true);
-                    if (diff > maxDistance) {
-                        maxDistance = diff;
-                    }
-                }
+                // Compute the heuristic value for all the pivots, ignore a pivot if the distance from it is 0
+                maxDistance = this.pivotsDB.computeMaxDH(s.agentLocation, currentGoal, this.pivotsCount, true);
                 // If DH is greater than 0 => return the average, otherwise, return only MD
                 if (maxDistance > 0) {
                     double val = (md + maxDistance) / 2;
@@ -827,11 +822,11 @@ public class GridPathFinding extends AbstractSearchDomain {
                 }
             }
             case DH_RANDOM_PIVOT: {
-                // The pivot index is calculated using the packed value (takes the first long only ...)
-                double diff = this._computeDHForSinglePivot(
+                // The pivot index is calculated using the location of the agent (which is the packed value)
+                double diff = this.pivotsDB.computeDH(
                         s.agentLocation,
-                        (int)(this.pack(s).getLongsSum() % this.pivotsCount),
                         currentGoal,
+                        s.agentLocation % this.pivotsCount,
                         false);
                 // Take the maximum value (chose from MD and DH)
                 double maxValue = Math.max(diff, md);
@@ -839,39 +834,46 @@ public class GridPathFinding extends AbstractSearchDomain {
             }
             case DH_RANDOM_PIVOTS: {
                 maxDistance = 0.0d;
-                Set<Integer> usedIndexes = new HashSet<>();
-                int currentIndex = (int)(this.pack(s).getLongsSum() % GridPathFinding.RANDOM_PIVOTS_INDEXES_COUNT);
+                if (this.usedRandomPivots == null || this.usedRandomPivots.length != this.pivotsCount) {
+                    this.usedRandomPivots = new boolean[this.pivotsCount];
+                }
+                int[] usedIndexes = new int[this.randomPivotsCount];
+                int currentIndex = s.agentLocation % GridPathFinding.RANDOM_PIVOTS_INDEXES_COUNT;
                 for (int i = 0; i < this.randomPivotsCount; ++i) {
                     int value = this.randomPivotsIndexes[currentIndex];
-                    while (usedIndexes.contains(value)) {
+                    while (this.usedRandomPivots[value]) {
                         currentIndex = (currentIndex + 1) % GridPathFinding.RANDOM_PIVOTS_INDEXES_COUNT;
                         value = this.randomPivotsIndexes[currentIndex];
                     }
-                    usedIndexes.add(value);
+                    this.usedRandomPivots[value] = true;
+                    usedIndexes[i] = value;
                     // Compute the heuristic value for this pivot, don't return -1 if the distance from one of the
                     // pivots is 0
-                    double diff = this._computeDHForSinglePivot(
+                    double diff = this.pivotsDB.computeDH(
                             s.agentLocation,
-                            value,
                             currentGoal,
+                            value,
                             false);
                     if (diff > maxDistance) {
                         maxDistance = diff;
                     }
                 }
+                for (int usedIndex : usedIndexes) {
+                    this.usedRandomPivots[usedIndex] = false;
+                }
                 // Take the maximum value (chose from MD and DH)
                 double maxValue = Math.max(maxDistance, md);
                 return new double[]{maxValue, maxValue};
             }
             case RANDOM_DH_MD: {
-                if (this.pack(s).getLongsSum() % 2 == 0) {
+                if (s.agentLocation % 2 == 0) {
                     return new double[]{md, md};
                 }
-                // The pivot index is calculated using the packed value (takes the first long only ...)
-                double diff = this._computeDHForSinglePivot(
+                // The pivot index is calculated using the location of the agent (which is the packed value)
+                double diff = this.pivotsDB.computeDH(
                         s.agentLocation,
-                        (int)(this.pack(s).getLongsSum() % this.pivotsCount),
                         currentGoal,
+                        s.agentLocation % this.pivotsCount,
                         false);
                 return new double[] {diff, diff};
             }
@@ -1089,50 +1091,6 @@ public class GridPathFinding extends AbstractSearchDomain {
         return sb.toString();
     }
 
-    /**
-     * The function reads the distances from all pivots of the TDH heuristic from the given pivots PDB file
-     *
-     * The file is assumed to be of the following formats:
-     *
-     *       <pivots-count>
-     *       <pivot-1>
-     *       <pivot-2>
-     *       ...
-     *       <pivot-n>
-     *       <all-distances-from-pivot-1>
-     *       <all-distances-from-pivot-2>
-     *       ...
-     *       <all-distances-from-pivot-n>
-     *
-     * @param pivotsPDBFile The input file which contains the pivots
-     *
-     * @return The created map of pivots : pivot => map : location => distance
-     *
-     * @throws IOException In something wrong occurred
-     */
-    private Pair<int[], Map<Integer, Map<Integer, Double>>> _readPivotsDB(String pivotsPDBFile) throws IOException {
-        System.out.println("[INFO] Reading pivots DB from " + pivotsPDBFile);
-        DataInputStream inputStream = new DataInputStream(new FileInputStream(pivotsPDBFile));
-        // First, read count of pivots
-        int pivotsCount = inputStream.readInt();
-        // Next read the pivots
-        int[] pivots = new int[pivotsCount];
-        for (int i = 0; i < pivotsCount; ++i) {
-            pivots[i] = inputStream.readInt();
-        }
-        Map<Integer, Map<Integer, Double>> distancesMap = new HashMap<>();
-        // Finally, read the distances
-        for (int pivot : pivots) {
-            Map<Integer, Double> currentDistancesMap = new HashMap<>();
-            for (int i = 0; i < this.map.mapSize; ++i) {
-                currentDistancesMap.put(i, inputStream.readDouble());
-            }
-            distancesMap.put(pivot, currentDistancesMap);
-        }
-        System.out.println("[INFO] Finished reading pivots DB from " + pivotsPDBFile);
-        return new Pair<>(pivots, distancesMap);
-    }
-
     @Override
     public Map<String, Class> getPossibleParameters() {
         return GridPathFinding.GridPathFindingPossibleParameters;
@@ -1201,9 +1159,10 @@ public class GridPathFinding extends AbstractSearchDomain {
             }
             case "pivots-distances-db-file": {
                 try {
-                    Pair<int[], Map<Integer, Map<Integer, Double>>> readData = this._readPivotsDB(value);
-                    this.orderedPivots = readData.getKey();
-                    this.distancesFromPivots = readData.getValue();
+                    // The file is read once for all the domains (see GridPivotsDB for the format)
+                    System.out.println("[INFO] Reading pivots DB from " + value);
+                    this.pivotsDB = GridPivotsDB.get(value, this.map.mapSize);
+                    this.orderedPivots = this.pivotsDB.getPivots();
                     // Debug:
                     //for (int p : this.orderedPivots) {
                     //    String formattedP = String.format("%7d", p);
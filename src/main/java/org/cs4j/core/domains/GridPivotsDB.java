@@ -0,0 +1,180 @@
+package org.cs4j.core.domains;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The distances from the pivots of the differential heuristic (DH) of GridPathFinding.
+ *
+ * The distances are kept in a single float array in a cell-major layout: the distances of location l from all the
+ * pivots are at [l * pivotsCount, (l + 1) * pivotsCount), so evaluating all the pivots for a location is a contiguous
+ * scan. A negative distance means that the location is unreachable.
+ *
+ * The file format (see PivotsDBGenerator) is: the number of pivots (int), the pivots (ints), and then, for each
+ * pivot, the distances of all the locations (doubles).
+ */
+public class GridPivotsDB {
+
+    // The number of distances which are read from the file at once
+    private static final int READ_CHUNK_DISTANCES = 1 << 16;
+
+    // The loaded DBs (a DB is loaded once, and shared by all the domains which use it)
+    private static final Map<String, GridPivotsDB> loaded = new ConcurrentHashMap<>();
+
+    public final int mapSize;
+    public final int pivotsCount;
+    private final int[] pivots;
+    private final float[] distances;
+
+    /**
+     * Creates a DB of the given distances
+     *
+     * @param mapSize The number of locations on the map
+     * @param pivots The pivots
+     * @param distances The distances from the pivots, in a cell-major layout
+     */
+    public GridPivotsDB(int mapSize, int[] pivots, float[] distances) {
+        if ((long) mapSize * pivots.length != distances.length) {
+            System.out.println("[ERROR] Invalid pivots DB size: " + distances.length);
+            throw new IllegalArgumentException();
+        }
+        this.mapSize = mapSize;
+        this.pivotsCount = pivots.length;
+        this.pivots = pivots;
+        this.distances = distances;
+    }
+
+    /**
+     * @return The pivots (in their order in the file)
+     */
+    public int[] getPivots() {
+        return this.pivots;
+    }
+
+    /**
+     * @return The distance between the given location and the pivot of the given index
+     */
+    public float getDistance(int location, int pivotIndex) {
+        return this.distances[location * this.pivotsCount + pivotIndex];
+    }
+
+    /**
+     * Computes the differential heuristic of a location, by a single pivot
+     *
+     * @param location The location
+     * @param goalLocation The goal location
+     * @param pivotIndex The index of the pivot
+     * @param failIf0 Whether to fail if the distance of one of the locations from the pivot is 0
+     *
+     * @return The computed heuristic value or -1 in case one of the distances is unreachable (or 0 and failIf0 is true)
+     */
+    public double computeDH(int location, int goalLocation, int pivotIndex, boolean failIf0) {
+        float distanceFromLocation = this.distances[location * this.pivotsCount + pivotIndex];
+        if ((failIf0 && distanceFromLocation == 0) || distanceFromLocation < 0) {
+            return -1;
+        }
+        float distanceFromGoal = this.distances[goalLocation * this.pivotsCount + pivotIndex];
+        if ((failIf0 && distanceFromGoal == 0) || distanceFromGoal < 0) {
+            return -1;
+        }
+        return Math.abs(distanceFromLocation - distanceFromGoal);
+    }
+
+    /**
+     * Computes the differential heuristic of a location, by the first pivots
+     *
+     * @param location The location
+     * @param goalLocation The goal location
+     * @param pivotsCount The number of pivots to use
+     * @param failIf0 Whether to ignore a pivot if the distance of one of the locations from it is 0
+     *
+     * @return The maximum heuristic value of the pivots (0 if no pivot gives a value)
+     */
+    public double computeMaxDH(int location, int goalLocation, int pivotsCount, boolean failIf0) {
+        int locationOffset = location * this.pivotsCount;
+        int goalOffset = goalLocation * this.pivotsCount;
+        float maxDistance = 0.0f;
+        for (int i = 0; i < pivotsCount; ++i) {
+            float distanceFromLocation = this.distances[locationOffset + i];
+            float distanceFromGoal = this.distances[goalOffset + i];
+            if (distanceFromLocation < 0 || distanceFromGoal < 0 ||
+                    (failIf0 && (distanceFromLocation == 0 || distanceFromGoal == 0))) {
+                continue;
+            }
+            maxDistance = Math.max(maxDistance, Math.abs(distanceFromLocation - distanceFromGoal));
+        }
+        return maxDistance;
+    }
+
+    /**
+     * Reads a DB from a file
+     *
+     * @param fileName The name of the file
+     * @param mapSize The number of locations on the map
+     *
+     * @return The read DB
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static GridPivotsDB read(String fileName, int mapSize) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(fileName), "r");
+        try {
+            int pivotsCount = file.readInt();
+            if (pivotsCount < 0) {
+                throw new IOException("Invalid pivots DB file: " + fileName);
+            }
+            int[] pivots = new int[pivotsCount];
+            for (int i = 0; i < pivotsCount; ++i) {
+                pivots[i] = file.readInt();
+            }
+            long headerSize = 4L + 4L * pivotsCount;
+            FileChannel channel = file.getChannel();
+            if (channel.size() < headerSize + 8L * mapSize * pivotsCount) {
+                throw new IOException("Truncated pivots DB file: " + fileName);
+            }
+            float[] distances = new float[mapSize * pivotsCount];
+            double[] chunk = new double[Math.min(mapSize, GridPivotsDB.READ_CHUNK_DISTANCES)];
+            // The file is pivot-major: transpose it while reading
+            for (int pivotIndex = 0; pivotIndex < pivotsCount; ++pivotIndex) {
+                long pivotStart = headerSize + 8L * mapSize * pivotIndex;
+                for (int start = 0; start < mapSize; start += chunk.length) {
+                    int count = Math.min(chunk.length, mapSize - start);
+                    DoubleBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                            pivotStart + 8L * start, 8L * count).asDoubleBuffer();
+                    buffer.get(chunk, 0, count);
+                    for (int i = 0; i < count; ++i) {
+                        distances[(start + i) * pivotsCount + pivotIndex] = (float) chunk[i];
+                    }
+                }
+            }
+            return new GridPivotsDB(mapSize, pivots, distances);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Returns the DB of the given file - each file is read only once
+     *
+     * @param fileName The name of the file
+     * @param mapSize The number of locations on the map
+     *
+     * @return The DB
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static GridPivotsDB get(String fileName, int mapSize) throws IOException {
+        String key = new File(fileName).getAbsolutePath() + "#" + mapSize;
+        GridPivotsDB db = GridPivotsDB.loaded.get(key);
+        if (db == null) {
+            db = GridPivotsDB.read(fileName, mapSize);
+            GridPivotsDB.loaded.putIfAbsent(key, db);
+        }
+        return db;
+    }
+}
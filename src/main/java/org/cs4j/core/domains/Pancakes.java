@@ -20,6 +20,8 @@ public class Pancakes extends AbstractSearchDomain {
     private double k;
 //    private double alpha;// thw power of the real cost to use;
     private double tileCosts[];
+    // The minimal cost of a pancake (each flip costs at least this value)
+    private double minTileCost;
 
     private static final Map<String, Class> PancakesPossibleParameters;
 
@@ -28,6 +30,7 @@ public class Pancakes extends AbstractSearchDomain {
     {
         PancakesPossibleParameters = new HashMap<>();
         PancakesPossibleParameters.put("GAP-k", Integer.class);
+        PancakesPossibleParameters.put("pdb", String.class);
     }
     // the actual parameters that have been set
     private TreeMap<String,String> parameters = new TreeMap<>();
@@ -53,12 +56,25 @@ public class Pancakes extends AbstractSearchDomain {
     // This can be set only according to the number of pancakes
     private int maxPancakeForPDB;
 
+    // A pattern database whose distances are used as a lower bound on the number of required flips (null if no
+    // PDB is used), and temporary arrays for looking up the PDB
+    private PancakesPDB pdb;
+    private int[] pdbPositions;
+    private int[] pdbInverse;
+
+    // The values of the pancakes in the packed representation of the states (null means that they are the same): the
+    // backward domain (see createBackwardDomain) relabels the pancakes, but packs its states like this domain
+    private int[] packedLabels;
+    // The inverse of packedLabels
+    private int[] unpackedLabels;
+
     /**
      * Initialize all the data structures relevant to the domain
      */
     private void _initializeDataStructures() {
         this.tileCosts = new double[this.numCakes];
         Arrays.fill(this.tileCosts, 1);
+        this.minTileCost = 1;
         this.possibleOperators = new Operator[this.numCakes];
         // Initialize the operators (according to the updated position of the pancake)
         for (int i = 0; i < this.numCakes; ++i) {
@@ -150,6 +166,66 @@ public class Pancakes extends AbstractSearchDomain {
         this._initializeDataStructures();
     }
 
+    @Override
+    public boolean supportsCopyForThread() {
+        return true;
+    }
+
+    @Override
+    public SearchDomain copyForThread() {
+        Pancakes copy = new Pancakes(this.init);
+        copy.parameters.putAll(this.parameters);
+        copy.k = this.k;
+        copy.tileCosts = this.tileCosts;
+        copy.minTileCost = this.minTileCost;
+        // The PDB is read-only, but the arrays for looking it up are not
+        if (this.pdb != null) {
+            copy.pdb = this.pdb;
+            copy.pdbPositions = new int[this.numCakes];
+            copy.pdbInverse = new int[this.numCakes];
+        }
+        copy.packedLabels = this.packedLabels;
+        copy.unpackedLabels = this.unpackedLabels;
+        return copy;
+    }
+
+    /**
+     * The pancakes of the backward domain are relabeled by their positions in the initial state of this domain, such
+     * that its goal is the sorted stack (and, hence, all its heuristics estimate the cost of reaching the initial state
+     * of this domain). The costs of the pancakes are relabeled as well, hence the costs of the moves don't change.
+     *
+     * NOTE: With GAP-k, the pancakes which are ignored by the heuristic of the backward domain are different (but the
+     * heuristic is still admissible)
+     */
+    @Override
+    public SearchDomain createBackwardDomain() {
+        // The position of each pancake in the initial state: the goal of this domain in the backward labels
+        int[] positions = new int[this.numCakes];
+        for (int i = 0; i < this.numCakes; ++i) {
+            positions[this.init[i]] = i;
+        }
+        Pancakes backward = new Pancakes(positions);
+        backward.parameters.putAll(this.parameters);
+        backward.k = this.k;
+        backward.minTileCost = this.minTileCost;
+        backward.packedLabels = new int[this.numCakes];
+        backward.unpackedLabels = new int[this.numCakes];
+        for (int label = 0; label < this.numCakes; ++label) {
+            // The backward label of a pancake is its position in the initial state
+            int pancake = this.init[label];
+            backward.tileCosts[label] = this.tileCosts[pancake];
+            int packedPancake = (this.packedLabels == null) ? pancake : this.packedLabels[pancake];
+            backward.packedLabels[label] = packedPancake;
+            backward.unpackedLabels[packedPancake] = label;
+        }
+        if (this.pdb != null) {
+            backward.pdb = this.pdb;
+            backward.pdbPositions = new int[this.numCakes];
+            backward.pdbInverse = new int[this.numCakes];
+        }
+        return backward;
+    }
+
     /**
      * Check whether there is a gap between the cakes n and n+1? (whether they are following)
      *
@@ -215,6 +291,20 @@ public class Pancakes extends AbstractSearchDomain {
         return this._countGaps(cakes, unitCost, true);
     }
 
+    /**
+     * Improves the h and d values of the given state by the PDB (if a PDB is used): at least PDB[state] flips are
+     * required, and each flip costs at least the minimal cost of a pancake
+     *
+     * @param state The state whose values should be updated
+     */
+    private void _applyPDB(PancakeState state) {
+        if (this.pdb != null) {
+            int distance = this.pdb.getDistance(state.cakes, this.pdbPositions, this.pdbInverse);
+            state.h = Math.max(state.h, distance * this.minTileCost);
+            state.d = Math.max(state.d, distance);
+        }
+    }
+
     @Override
     protected PancakeState createInitialState() {
         PancakeState s = new PancakeState(this.numCakes);
@@ -227,6 +317,7 @@ public class Pancakes extends AbstractSearchDomain {
             // Calc d without k
             s.dNoGaps = this._countGaps(s.cakes, true, false);
         }
+        this._applyPDB(s);
         return s;
     }
 
@@ -267,7 +358,12 @@ public class Pancakes extends AbstractSearchDomain {
 
     @Override
     public State applyOperator(State state, Operator op) {
-        PancakeState pancakeState = (PancakeState)copy(state);
+        return this.applyOperator(state, op, null);
+    }
+
+    @Override
+    public State applyOperator(State state, Operator op, State buffer) {
+        PancakeState pancakeState = this._copy((PancakeState)state, (PancakeState)buffer);
         int pancakeOperator = ((PancakeOperator)op).value;
         // Flip the top of the stack
         pancakeState.flipTopStackPortion(pancakeOperator);
@@ -279,6 +375,7 @@ public class Pancakes extends AbstractSearchDomain {
             // Calc d without k
             pancakeState.dNoGaps = this._countGaps(pancakeState.cakes, true, false);
         }
+        this._applyPDB(pancakeState);
         return pancakeState;
     }
 
@@ -287,6 +384,25 @@ public class Pancakes extends AbstractSearchDomain {
         return new PancakeState((PancakeState)state);
     }
 
+    /**
+     * Copies a state into another (existing) state
+     *
+     * @param state The state to copy
+     * @param copy The state to copy into (if null - a new state is created)
+     *
+     * @return The copy
+     */
+    private PancakeState _copy(PancakeState state, PancakeState copy) {
+        if (copy == null) {
+            return new PancakeState(state);
+        }
+        System.arraycopy(state.cakes, 0, copy.cakes, 0, state.cakes.length);
+        copy.h = state.h;
+        copy.d = state.d;
+        copy.dNoGaps = state.dNoGaps;
+        return copy;
+    }
+
     /**
      * Calculates the cost of the given operator according to the given cost function
      *
@@ -321,7 +437,11 @@ public class Pancakes extends AbstractSearchDomain {
         for (int i = 0; i < this.packedLongsCount; ++i) {
             long word = 0;
             for (int j = 0; (j < this.packedCakesInSingleLong) && (index <= this.numCakes - 1); ++j) {
-                word = (word << this.bitsForSinglePancake) | ps.cakes[index++];
+                int pancake = ps.cakes[index++];
+                if (this.packedLabels != null) {
+                    pancake = this.packedLabels[pancake];
+                }
+                word = (word << this.bitsForSinglePancake) | pancake;
             }
             packed[i] = word;
         }
@@ -348,7 +468,12 @@ public class Pancakes extends AbstractSearchDomain {
 
     @Override
     public State unpack(PackedElement packed) {
-        PancakeState state = new PancakeState(this.numCakes);
+        return this.unpack(packed, null);
+    }
+
+    @Override
+    public State unpack(PackedElement packed, State buffer) {
+        PancakeState state = (buffer != null) ? (PancakeState)buffer : new PancakeState(this.numCakes);
         int index = this.numCakes - 1;
         for (int i = packed.getLongsCount() - 1; i >= 0; --i) {
             long current = packed.getLong(i);
@@ -367,12 +492,13 @@ public class Pancakes extends AbstractSearchDomain {
             for (int j = 0; j < maxIterationIndex && index >= 0; ++j) {
                 int p = (int) (current & (int)this.maskForSinglePancake);
                 current >>= this.bitsForSinglePancake;
-                state.cakes[index--] = p;
+                state.cakes[index--] = (this.unpackedLabels == null) ? p : this.unpackedLabels[p];
             }
         }
         state.h = this._countGaps(state.cakes, false);
         state.d = this._countGaps(state.cakes, true);
         state.dNoGaps = this._countGaps(state.cakes, true, false);
+        this._applyPDB(state);
         return state;
     }
 
@@ -573,12 +699,25 @@ public class Pancakes extends AbstractSearchDomain {
             case "cost-function": {
                 double alpha = Double.parseDouble(value);
                 for(int i=0; i< this.numCakes; i++) this.tileCosts[i] = Math.pow(i+1.0,alpha);
+                this.minTileCost = Arrays.stream(this.tileCosts).min().getAsDouble();
                 break;
             }
             case "GAP-k": {
                 this.k = Double.parseDouble(value);
                 assert this.k >= 0 && this.k < this.numCakes;
                 break;
+            }
+            case "pdb": {
+                PancakesPDB pdb = PancakesPDB.get(value);
+                if (pdb.numCakes != this.numCakes) {
+                    System.out.println("[ERROR] The PDB " + value + " is for " + pdb.numCakes + " pancakes (instead of " +
+                            this.numCakes + ")");
+                    throw new IllegalArgumentException();
+                }
+                this.pdb = pdb;
+                this.pdbPositions = new int[this.numCakes];
+                this.pdbInverse = new int[this.numCakes];
+                break;
             } default: {
               throw new IllegalArgumentException("Invalid parameter: " + parameterName);
             }
@@ -0,0 +1,266 @@
+package org.cs4j.core.domains;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pattern database (PDB) for the Pancakes domain with unit costs.
+ *
+ * The pattern consists of the largest pancakes (patternStart, ..., numCakes - 1) - the other pancakes are "don't
+ * cares". Hence, an abstract state is defined by the positions of the pattern pancakes, and the abstract goal is the
+ * state in which each pattern pancake p is at position p.
+ *
+ * The abstract states are ranked by the Myrvold-Ruskey ranking of partial permutations: the positions of the k pattern
+ * pancakes are ranked into [0, n!/(n-k)!). The table holds the number of flips from each abstract state to the
+ * abstract goal, packed as nibbles (16 in a long) - distances above MAX_DISTANCE are stored as MAX_DISTANCE (which
+ * keeps the heuristic admissible).
+ *
+ * The file format is: MAGIC (int), the number of pancakes (int), the first pancake of the pattern (int), the number of
+ * abstract states (long), and then the words of the table (longs).
+ */
+public class PancakesPDB {
+
+    // "PPDB"
+    public static final int MAGIC = 0x50504442;
+    public static final int MAX_DISTANCE = 15;
+    // Magic, the number of pancakes, the first pancake of the pattern and the number of abstract states
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    // The number of words which are read from the file at once
+    private static final int READ_CHUNK_WORDS = 1 << 24;
+
+    // The loaded PDBs (a PDB is loaded once, and shared by all the domains which use it)
+    private static final Map<String, PancakesPDB> loaded = new ConcurrentHashMap<>();
+
+    public final int numCakes;
+    public final int patternStart;
+    public final long statesCount;
+    private final long[] table;
+
+    /**
+     * Creates a PDB of the given table
+     *
+     * @param numCakes The number of pancakes
+     * @param patternStart The first (smallest) pancake of the pattern
+     * @param table The distances of the abstract states, packed as nibbles (see getTableSize)
+     */
+    public PancakesPDB(int numCakes, int patternStart, long[] table) {
+        this.numCakes = numCakes;
+        this.patternStart = patternStart;
+        this.statesCount = PancakesPDB.getAbstractStatesCount(numCakes, patternStart);
+        if (table.length != PancakesPDB.getTableSize(this.statesCount)) {
+            System.out.println("[ERROR] Invalid PDB table size: " + table.length);
+            throw new IllegalArgumentException();
+        }
+        this.table = table;
+    }
+
+    /**
+     * @return The number of abstract states (n!/(n-k)!, where k is the number of pancakes in the pattern)
+     */
+    public static long getAbstractStatesCount(int numCakes, int patternStart) {
+        if (patternStart < 0 || patternStart >= numCakes) {
+            System.out.println("[ERROR] Invalid pattern for " + numCakes + " pancakes: " + patternStart);
+            throw new IllegalArgumentException();
+        }
+        long count = 1;
+        for (int i = numCakes; i > patternStart; --i) {
+            if (count > Long.MAX_VALUE / i) {
+                System.out.println("[ERROR] The pattern is too large: " + (numCakes - patternStart) + " pancakes");
+                throw new IllegalArgumentException();
+            }
+            count *= i;
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of longs required for holding the distances of the given number of states
+     */
+    public static int getTableSize(long statesCount) {
+        long words = (statesCount + 15) >>> 4;
+        if (words > Integer.MAX_VALUE - 8) {
+            System.out.println("[ERROR] The PDB is too large: " + statesCount + " states");
+            throw new IllegalArgumentException();
+        }
+        return (int) words;
+    }
+
+    /**
+     * Ranks an abstract state (partial Myrvold-Ruskey ranking)
+     *
+     * @param numCakes The number of pancakes
+     * @param patternStart The first pancake of the pattern
+     * @param positions The positions of the pattern pancakes (positions[p] is the position of pancake p, for
+     *                  p >= patternStart) - the array is changed by the call
+     * @param inverse A temporary array (of numCakes elements)
+     *
+     * @return The rank of the state
+     */
+    public static long rank(int numCakes, int patternStart, int[] positions, int[] inverse) {
+        // inverse[position] is the pancake at the position (or -1 for "don't cares")
+        for (int i = 0; i < numCakes; ++i) {
+            inverse[i] = -1;
+        }
+        for (int p = patternStart; p < numCakes; ++p) {
+            inverse[positions[p]] = p;
+        }
+        long rank = 0;
+        long multiplier = 1;
+        for (int p = numCakes - 1; p >= patternStart; --p) {
+            int position = positions[p];
+            // Swap the positions of p and of the pancake at position p (which is never read again)
+            int other = inverse[p];
+            if (other >= 0) {
+                positions[other] = position;
+            }
+            inverse[position] = other;
+            rank += position * multiplier;
+            multiplier *= p + 1;
+        }
+        return rank;
+    }
+
+    /**
+     * Computes the abstract state of a rank (the inverse of rank)
+     *
+     * @param numCakes The number of pancakes
+     * @param patternStart The first pancake of the pattern
+     * @param rank The rank
+     * @param positions The array into which the positions of the pattern pancakes are written (positions[p] for
+     *                  p >= patternStart)
+     * @param permutation A temporary array (of numCakes elements)
+     */
+    public static void unrank(int numCakes, int patternStart, long rank, int[] positions, int[] permutation) {
+        for (int i = 0; i < numCakes; ++i) {
+            permutation[i] = i;
+        }
+        for (int p = numCakes - 1; p >= patternStart; --p) {
+            int position = (int) (rank % (p + 1));
+            rank /= p + 1;
+            int tmp = permutation[p];
+            permutation[p] = permutation[position];
+            permutation[position] = tmp;
+        }
+        System.arraycopy(permutation, patternStart, positions, patternStart, numCakes - patternStart);
+    }
+
+    /**
+     * @return The distance which is stored for the given rank
+     */
+    public static int getDistance(long[] table, long rank) {
+        return (int) (table[(int) (rank >>> 4)] >>> ((rank & 15) << 2)) & 15;
+    }
+
+    /**
+     * Stores a distance for the given rank (the nibble is assumed to be 15 before the call)
+     */
+    public static void setDistance(long[] table, long rank, int distance) {
+        long cleared = ~(((long) (15 - Math.min(distance, PancakesPDB.MAX_DISTANCE))) << ((rank & 15) << 2));
+        table[(int) (rank >>> 4)] &= cleared;
+    }
+
+    /**
+     * Looks up the distance of a state
+     *
+     * @param cakes The pancakes of the state
+     * @param positions A temporary array (of numCakes elements)
+     * @param inverse A temporary array (of numCakes elements)
+     *
+     * @return The distance of the abstract state of the given state from the abstract goal
+     */
+    public int getDistance(int[] cakes, int[] positions, int[] inverse) {
+        for (int i = 0; i < this.numCakes; ++i) {
+            if (cakes[i] >= this.patternStart) {
+                positions[cakes[i]] = i;
+            }
+        }
+        return PancakesPDB.getDistance(this.table,
+                PancakesPDB.rank(this.numCakes, this.patternStart, positions, inverse));
+    }
+
+    /**
+     * Writes the PDB into a file
+     *
+     * @param fileName The name of the file
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public void write(String fileName) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName),
+                1 << 20));
+        try {
+            output.writeInt(PancakesPDB.MAGIC);
+            output.writeInt(this.numCakes);
+            output.writeInt(this.patternStart);
+            output.writeLong(this.statesCount);
+            for (long word : this.table) {
+                output.writeLong(word);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Reads a PDB from a file
+     *
+     * @param fileName The name of the file
+     *
+     * @return The read PDB
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static PancakesPDB read(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(fileName), "r");
+        try {
+            int magic = file.readInt();
+            int numCakes = file.readInt();
+            int patternStart = file.readInt();
+            long statesCount = file.readLong();
+            if (magic != PancakesPDB.MAGIC || statesCount != PancakesPDB.getAbstractStatesCount(numCakes, patternStart)) {
+                throw new IOException("Invalid Pancakes PDB file: " + fileName);
+            }
+            long[] table = new long[PancakesPDB.getTableSize(statesCount)];
+            FileChannel channel = file.getChannel();
+            if (channel.size() != PancakesPDB.HEADER_SIZE + (long) table.length * 8) {
+                throw new IOException("Truncated Pancakes PDB file: " + fileName);
+            }
+            // Map the table in chunks (a single mapping is limited to 2GB)
+            for (int start = 0; start < table.length; start += PancakesPDB.READ_CHUNK_WORDS) {
+                int words = Math.min(PancakesPDB.READ_CHUNK_WORDS, table.length - start);
+                LongBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                        PancakesPDB.HEADER_SIZE + (long) start * 8, (long) words * 8).asLongBuffer();
+                chunk.get(table, start, words);
+            }
+            return new PancakesPDB(numCakes, patternStart, table);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Returns the PDB of the given file - each file is read only once
+     *
+     * @param fileName The name of the file
+     *
+     * @return The PDB
+     */
+    public static PancakesPDB get(String fileName) {
+        return PancakesPDB.loaded.computeIfAbsent(new File(fileName).getAbsolutePath(), f -> {
+            try {
+                return PancakesPDB.read(f);
+            } catch (IOException e) {
+                System.out.println("[ERROR] Failed reading Pancakes PDB " + f + ": " + e.getMessage());
+                throw new IllegalArgumentException(e);
+            }
+        });
+    }
+}
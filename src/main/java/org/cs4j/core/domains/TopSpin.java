@@ -1,15 +1,19 @@
 package org.cs4j.core.domains;
 
-import com.carrotsearch.hppc.LongByteHashMap;
 import org.cs4j.core.AbstractSearchDomain;
 import org.cs4j.core.SearchDomain;
+import org.cs4j.core.collections.PDB;
+import org.cs4j.core.collections.PDBUtils;
 import org.cs4j.core.collections.PackedElement;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -233,6 +237,29 @@ public class TopSpin extends AbstractSearchDomain{
         this.heuristicType = other.heuristicType;
     }
 
+    @Override
+    public boolean supportsCopyForThread() {
+        return true;
+    }
+
+    @Override
+    public SearchDomain copyForThread() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.tokensNumber).append(" ").append(this.spinSize).append("\n");
+        sb.append("tokens:\n");
+        for (int i = 0; i < this.tokensNumber; ++i) {
+            sb.append(this.init[i]).append("\n");
+        }
+        TopSpin copy = new TopSpin(this,
+                new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.US_ASCII)));
+        // The PDBs use scratch arrays for calculating the heuristic, hence only their values are shared
+        copy.pdbs = new HashMap<>();
+        for (Map.Entry<Integer, SinglePDB> currentPDBEntry : this.pdbs.entrySet()) {
+            copy.pdbs.put(currentPDBEntry.getKey(), copy.new SinglePDB(currentPDBEntry.getValue()));
+        }
+        return copy;
+    }
+
     @Override
     public State copy(State state) {
         return new TopSpinState(state);
@@ -561,11 +588,8 @@ public class TopSpin extends AbstractSearchDomain{
      * A class that contains all the relevant information for a single PDB of the TopSpin problem
      */
     private class SinglePDB {
-        // When reading some PDB create a map with the required size * PDB_ENTRIES_INCREASE
-        // (in order to disallow map copying)
-        private static final double PDB_ENTRIES_INCREASE = 1.1d;
-        // Print some debugging information every DEBUG_PRINT_GAP entries of the PDB
-        private static final int DEBUG_PRINT_GAP = 999;
+        // The size of the buffer used for reading the PDB file
+        private static final int READ_BUFFER_SIZE = 1 << 16;
 
         private long entriesCount;
         private String pdbFileName;
@@ -581,7 +605,7 @@ public class TopSpin extends AbstractSearchDomain{
         // The positions of the tokens for a given state in order to calculate the heuristic value
         private int[] tokensPositionsForHeuristicCalculation;
 
-        private LongByteHashMap pdb;
+        private PDB pdb;
 
         /**
          * @return The index of the first token in the pattern this PDB refers to
@@ -690,23 +714,22 @@ public class TopSpin extends AbstractSearchDomain{
          * @throws IOException If something wrong occurred
          */
         private void _readPDB() throws IOException {
-            this.pdb = new LongByteHashMap((int)(this.entriesCount * SinglePDB.PDB_ENTRIES_INCREASE));
-            // Each permutation index is stored as int
-            DataInputStream inputStream = new DataInputStream(new FileInputStream(this.pdbFileName));
-            long hashValue = 0;
-            long i = 0;
-            for (; i < this.entriesCount; ++i) {
-                // Debug
-                if (i % SinglePDB.DEBUG_PRINT_GAP == 0) {
-                    System.out.print("\r[INFO] Read " + (i + 1) + "/" + this.entriesCount + " values");
-                }
-                // Read the distance
-                byte distance = inputStream.readByte();
-                this.pdb.put(hashValue++, distance);
+            if (this.entriesCount > Integer.MAX_VALUE) {
+                System.out.println("[ERROR] PDB of TopSpin problem is too large: " + this.entriesCount + " entries");
+                throw new IOException();
             }
-            System.out.print("\r[INFO] Read " + i + "/" + this.entriesCount + " values");
-            // Last new line
-            System.out.println();
+            // The file holds the distances ordered by the hash values (a byte per distance)
+            byte[] distances = new byte[(int) this.entriesCount];
+            DataInputStream inputStream = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(this.pdbFileName), SinglePDB.READ_BUFFER_SIZE));
+            try {
+                inputStream.readFully(distances);
+            } finally {
+                inputStream.close();
+            }
+            System.out.println("[INFO] Read " + this.entriesCount + "/" + this.entriesCount + " values");
+            // Pack the distances into nibbles if possible
+            this.pdb = PDBUtils.compact(distances);
         }
 
         /**
@@ -755,6 +778,23 @@ public class TopSpin extends AbstractSearchDomain{
                 }
             }
         }
+
+        /**
+         * A copy constructor of the class - the copy shares the values of the given PDB, but has its own scratch
+         * arrays (hence, the copies can be used by different threads)
+         *
+         * @param other The PDB to copy
+         */
+        private SinglePDB(SinglePDB other) {
+            this.entriesCount = other.entriesCount;
+            this.pdbFileName = other.pdbFileName;
+            this.tokensInPattern = other.tokensInPattern;
+            this.tokenBelongsToPattern = other.tokenBelongsToPattern;
+            this.locationOfPatternInTokens = other.locationOfPatternInTokens;
+            this.rotatedTokensForHeuristicCalculation = new int[TopSpin.this.tokensNumber];
+            this.tokensPositionsForHeuristicCalculation = new int[this.tokensInPattern.length + 1];
+            this.pdb = other.pdb;
+        }
     }
 
 }
\ No newline at end of file
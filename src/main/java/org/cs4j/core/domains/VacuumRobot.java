@@ -53,11 +53,28 @@ public class VacuumRobot extends AbstractSearchDomain {
 
     private int[] minDirtDistance = new int[2];
 
+    // Whether to verify the packed states and the cached heuristic values (expensive - for debugging only)
+    private boolean debugChecks = false;
+
+    // The dirty locations (as an array) and the Manhattan distances between each pair of them
+    private PairInt[] dirtyLocationsArray;
+    private int[][] dirtyLocationsDistances;
+
+    // A direct-mapped cache of the greedy d values (see _getGreedyD), keyed by the location of the robot and the dirty
+    // locations vector - like lookupMST_heavy for h, but bounded, since there are too many such pairs to tabulate
+    private static final int DEFAULT_GREEDY_D_CACHE_SIZE = 1 << 16;
+    private static final long NO_KEY = -1L;
+    private int greedyDCacheSize = VacuumRobot.DEFAULT_GREEDY_D_CACHE_SIZE;
+    private long[] greedyDCacheKeys;
+    private double[] greedyDCacheValues;
+
     // Declare the parameters that can be tunes before running the search
     static
     {
         VacuumPossibleParameters = new HashMap<>();
         VacuumPossibleParameters.put("cost-function", COST_FUNCTION.class);
+        VacuumPossibleParameters.put("debug-checks", Boolean.class);
+        VacuumPossibleParameters.put("greedy-d-cache-size", Integer.class);
     }
 
     /**
@@ -272,6 +289,26 @@ public class VacuumRobot extends AbstractSearchDomain {
         // Pre-compute the {h, d} pairs for all the possible combinations of dirty vectors
         this._preComputeMSTHeavy();
 //        System.out.println("[Done] (Initializes MST for isNonUnitCost calculation)");
+        this._initializeGreedyD();
+    }
+
+    /**
+     * Pre-computes the distances between the dirty locations and (re)creates the greedy d cache
+     *
+     * NOTE: This function must be called whenever the dirty locations are changed
+     */
+    private void _initializeGreedyD() {
+        this.dirtyLocationsArray = this.dirtyLocations.toArray(new PairInt[this.maximumDirtyLocationsCount]);
+        this.dirtyLocationsDistances = new int[this.maximumDirtyLocationsCount][this.maximumDirtyLocationsCount];
+        for (int i = 0; i < this.maximumDirtyLocationsCount; ++i) {
+            for (int j = 0; j < this.maximumDirtyLocationsCount; ++j) {
+                this.dirtyLocationsDistances[i][j] =
+                        Utils.calcManhattanDistance(this.dirtyLocationsArray[i], this.dirtyLocationsArray[j]);
+            }
+        }
+        this.greedyDCacheKeys = new long[this.greedyDCacheSize];
+        this.greedyDCacheValues = new double[this.greedyDCacheSize];
+        Arrays.fill(this.greedyDCacheKeys, VacuumRobot.NO_KEY);
     }
 
     /**
@@ -1120,10 +1157,89 @@ public class VacuumRobot extends AbstractSearchDomain {
         // double h = computeHD_chris(s)[0];
         // For d, use the standard function for the unit cost domain (which estimates the cost of a
         // greedy traversal of the the dirt piles)
-        double d = computeHD_greedy(state)[1];
+        double d = this._getGreedyD(state);
         return new double[]{h, d};
     }
 
+    /**
+     * Computes the d value of computeHD_greedy (the number of actions of a greedy traversal of the dirt piles) without
+     * allocating anything
+     *
+     * NOTE: The ties are broken exactly as in computeHD_greedy (the first closest location is chosen)
+     *
+     * @param s The state whose d value should be calculated
+     *
+     * @return The calculated d value
+     */
+    private double _computeGreedyD(VacuumRobotState s) {
+        // The dirty locations which weren't visited yet
+        int remaining = s.dirt & (int) Utils.mask(this.maximumDirtyLocationsCount);
+        if (remaining == 0) {
+            return 0.0d;
+        }
+        // First, move the robot to the closest dirty location
+        int robotX = s.robotLocation % this.map.mapWidth;
+        int robotY = s.robotLocation / this.map.mapWidth;
+        int current = -1;
+        int minDistance = Integer.MAX_VALUE;
+        for (int n = 0; n < this.maximumDirtyLocationsCount; ++n) {
+            if ((remaining & (1 << n)) != 0) {
+                PairInt location = this.dirtyLocationsArray[n];
+                int distance = Math.abs(robotX - location.first) + Math.abs(robotY - location.second);
+                if (distance < minDistance) {
+                    current = n;
+                    minDistance = distance;
+                }
+            }
+        }
+        // Number of operations: MOVE + SUCK
+        double d = minDistance + 1;
+        remaining &= ~(1 << current);
+        // Now, each time move the robot to the dirty location which is the closest to its current location
+        while (remaining != 0) {
+            int[] distances = this.dirtyLocationsDistances[current];
+            int next = -1;
+            minDistance = Integer.MAX_VALUE;
+            for (int n = 0; n < this.maximumDirtyLocationsCount; ++n) {
+                if ((remaining & (1 << n)) != 0 && distances[n] < minDistance) {
+                    next = n;
+                    minDistance = distances[n];
+                }
+            }
+            d += minDistance + 1;
+            remaining &= ~(1 << next);
+            current = next;
+        }
+        return d;
+    }
+
+    /**
+     * Returns the greedy d value of a state from the cache (and computes it in case of a miss)
+     *
+     * @param s The state whose d value should be returned
+     *
+     * @return The greedy d value (as would be calculated by computeHD_greedy)
+     */
+    private double _getGreedyD(VacuumRobotState s) {
+        if (this.greedyDCacheSize == 0) {
+            return this._computeGreedyD(s);
+        }
+        long key = ((long) s.robotLocation << 32) | (s.dirt & 0xFFFFFFFFL);
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (this.greedyDCacheSize - 1);
+        if (this.greedyDCacheKeys[slot] == key) {
+            double d = this.greedyDCacheValues[slot];
+            if (this.debugChecks && d != this.computeHD_greedy(s)[1]) {
+                System.out.println("[ERROR] Wrong cached greedy d value for state " + this.dumpStateShort(s));
+                throw new IllegalStateException();
+            }
+            return d;
+        }
+        double d = this._computeGreedyD(s);
+        this.greedyDCacheKeys[slot] = key;
+        this.greedyDCacheValues[slot] = d;
+        return d;
+    }
+
     /**
      * Compute the heuristic value of a given state
      *
@@ -1337,15 +1453,13 @@ public class VacuumRobot extends AbstractSearchDomain {
     public PackedElement pack(State s) {
         VacuumRobotState state = (VacuumRobotState)s;
 
-        long packed = 0L;
         // pack the location of the robot
-        packed |= (state.robotLocation & this.robotLocationBitMask);
-        // pack 1 bit for each remaining dirt
-        for (int i = 0; i < this.maximumDirtyLocationsCount; ++i) {
-            packed <<= 1;
-            if (state.isDirty(i)) {
-                packed |= 1 & this.singleBitMask;
-            }
+        long packed = (state.robotLocation & this.robotLocationBitMask);
+        // pack 1 bit for each remaining dirt: the i'th location is stored in bit (maximumDirtyLocationsCount - 1 - i),
+        // hence the dirty locations vector is just reversed
+        if (this.maximumDirtyLocationsCount > 0) {
+            packed <<= this.maximumDirtyLocationsCount;
+            packed |= (Integer.reverse(state.dirt) >>> (32 - this.maximumDirtyLocationsCount)) & 0xFFFFFFFFL;
         }
 
         PackedElement toReturn = new PackedElement(packed);
@@ -1353,15 +1467,14 @@ public class VacuumRobot extends AbstractSearchDomain {
         /**
          * Debug: perform unpack after packing and assure results are ok
          */
-        if ((((VacuumRobotState)this.unpack(toReturn)).robotLocation != state.robotLocation) ||
-                (((VacuumRobotState)this.unpack(toReturn)).dirt != state.dirt)) {
-            assert false;
+        if (this.debugChecks) {
+            VacuumRobotState test = new VacuumRobotState();
+            this._unpackLite(packed, test);
+            if (test.robotLocation != state.robotLocation || test.dirt != state.dirt) {
+                System.out.println("[ERROR] Wrong packing of state " + this.dumpStateShort(state));
+                throw new IllegalStateException();
+            }
         }
-
-        /*
-         * VacuumRobotState test = unpack(packed);
-         * assert(test.equals(state));
-         */
         return toReturn;
     }
 
@@ -1378,19 +1491,12 @@ public class VacuumRobot extends AbstractSearchDomain {
         // Initially, there are no dirty locations
         dst.remainingDirtyLocationsCount = 0;
         dst.dirt = 0;
-        // For each possible dirty location, check if it is actually dirty
-        for (int i = this.maximumDirtyLocationsCount - 1; i >= 0; --i) {
-            long d = packed & singleBitMask;
-            if (d == 1) {
-                // Make the location dirty
-                dst.setDirty(i, true);
-                // Increase the counter
-                ++dst.remainingDirtyLocationsCount;
-            } else {
-                // Clear the dirty value from the location
-                dst.setDirty(i, false);
-            }
-            packed >>= 1;
+        // The dirty locations are packed in reverse order (see pack)
+        if (this.maximumDirtyLocationsCount > 0) {
+            dst.dirt = Integer.reverse((int) (packed & Utils.mask(this.maximumDirtyLocationsCount))) >>>
+                    (32 - this.maximumDirtyLocationsCount);
+            dst.remainingDirtyLocationsCount = Integer.bitCount(dst.dirt);
+            packed >>>= this.maximumDirtyLocationsCount;
         }
         // Finally, unpack the location of the robot
         dst.robotLocation = (int) (packed & this.robotLocationBitMask);
@@ -1855,6 +1961,22 @@ public class VacuumRobot extends AbstractSearchDomain {
                 this.maximumDirtyLocationsCount = this.dirtyLocations.size();
                 initializeCost();
                 break;
+            }
+            case "debug-checks": {
+                this.debugChecks = Boolean.parseBoolean(value);
+                break;
+            }
+            case "greedy-d-cache-size": {
+                int size = Integer.parseInt(value);
+                // The size of the cache must be a power of 2 (0 means no cache)
+                if (size < 0 || (size & (size - 1)) != 0) {
+                    System.out.println("[ERROR] The size of the greedy d cache must be a power of 2 (or 0), got " +
+                            size);
+                    throw new IllegalArgumentException();
+                }
+                this.greedyDCacheSize = size;
+                this._initializeGreedyD();
+                break;
             } default: {
                 throw new IllegalArgumentException("Invalid parameter: " + parameterName);
             }
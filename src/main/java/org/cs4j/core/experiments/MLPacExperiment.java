@@ -32,8 +32,14 @@ public class MLPacExperiment extends StandardExperiment {
 
 
 		Experiment experiment = new MLPacExperiment();
-		PACOnlineExperimentRunner runner = new PACOnlineExperimentRunner();
+		// Each worker thread runs the instances through its own experiment
+		ParallelExperimentScheduler scheduler = new ParallelExperimentScheduler(MLPacExperiment::new,
+				PacConfig.instance.onlineThreads(),
+				PacConfig.instance.onlineJobTimeOutMs(),
+				PacConfig.instance.onlineJobMemoryMB());
+		PACOnlineExperimentRunner runner = new PACOnlineExperimentRunner(scheduler);
 		runner.runExperimentBatch(domains, pacConditions, epsilons, deltas, experiment);
+		scheduler.shutdown();
 
 	}
 
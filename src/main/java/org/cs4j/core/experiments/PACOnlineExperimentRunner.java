@@ -23,6 +23,7 @@ import org.cs4j.core.domains.Pancakes;
 import org.cs4j.core.domains.VacuumRobot;
 import org.cs4j.core.mains.DomainExperimentData;
 import org.cs4j.core.mains.DomainExperimentData.RunType;
+import org.cs4j.core.pac.conf.PacConfig;
 
 /**
  * This class runs PAC search experiments. It assumes the pre-process is given.
@@ -30,6 +31,20 @@ import org.cs4j.core.mains.DomainExperimentData.RunType;
 public class PACOnlineExperimentRunner {
     final static Logger logger = Logger.getLogger(PACOnlineExperimentRunner.class);
 
+    // In case a scheduler is set, the instances are solved in parallel by the scheduler
+    protected ParallelExperimentScheduler scheduler;
+
+    public PACOnlineExperimentRunner() {
+        this(null);
+    }
+
+    /**
+     * @param scheduler The scheduler which runs the jobs in parallel (null for running them sequentially)
+     */
+    public PACOnlineExperimentRunner(ParallelExperimentScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     public void run(Experiment experiment,
                     Class domainClass,
                     RunType runType,
@@ -44,6 +59,14 @@ public class PACOnlineExperimentRunner {
         int toInstance = DomainExperimentData.get(domainClass, runType).toInstance;
         String inputPath = DomainExperimentData.get(domainClass, runType).inputPath;
 
+        // The results are written by the scheduler (see runExperimentBatch)
+        if (this.scheduler != null) {
+            for (int i = fromInstance; i <= toInstance; ++i) {
+                this.scheduler.submit(domainClass, runType, domainParams, i, runParams);
+            }
+            return;
+        }
+
         // search on this domain and algo and weight the 100 instances
         for (int i = fromInstance; i <= toInstance; ++i) {
             logger.info("\rSolving " + domainClass.getName() + "\t instance " + i + "\t" + runParamsToLog(runParams));
@@ -126,6 +149,10 @@ public class PACOnlineExperimentRunner {
                         }
                     }
                 }
+                // Wait for the parallel jobs (if any) and write their results in order
+                if (this.scheduler != null) {
+                    this.scheduler.writeResults(output);
+                }
             } catch (IOException e) {
                 logger.error(e);
             } finally {
@@ -146,13 +173,20 @@ public class PACOnlineExperimentRunner {
         double[] epsilons = {0, 0.1, 0.25, 0.5, 0.75, 1};// ,1 ,1.5};
         double[] deltas = {0, 0.1, 0.25, 0.5, 0.75, 0.8, 1};
         Experiment experiment = new StandardExperiment(new PACSearchFramework());
-        PACOnlineExperimentRunner runner = new PACOnlineExperimentRunner();
+        // Each worker thread runs the instances through its own experiment
+        ParallelExperimentScheduler scheduler = new ParallelExperimentScheduler(
+                () -> new StandardExperiment(new PACSearchFramework()),
+                PacConfig.instance.onlineThreads(),
+                PacConfig.instance.onlineJobTimeOutMs(),
+                PacConfig.instance.onlineJobMemoryMB());
+        PACOnlineExperimentRunner runner = new PACOnlineExperimentRunner(scheduler);
         runner.runExperimentBatch(
                 domains,
                 pacConditions,
                 epsilons,
                 deltas,
                 experiment);
+        scheduler.shutdown();
     }
 
 }
@@ -4,13 +4,16 @@ import org.apache.log4j.Logger;
 import org.cs4j.core.OutputResult;
 import org.cs4j.core.SearchDomain;
 import org.cs4j.core.SearchResult;
+import org.cs4j.core.algorithms.ExternalAstar;
 import org.cs4j.core.algorithms.IDAstar;
 import org.cs4j.core.algorithms.WAStar;
 import org.cs4j.core.domains.*;
 import org.cs4j.core.mains.DomainExperimentData;
 import org.cs4j.core.mains.DomainExperimentData.RunType;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.util.HashMap;
 
@@ -21,6 +24,14 @@ public class PacPreprocessRunner {
 
 	final static Logger logger = Logger.getLogger(PacPreprocessRunner.class);
 
+	// Describes the solver of the instances in the keys of the preprocess cache (all the solvers are optimal)
+	private static final String CACHE_ALGORITHM = "optimal(astar,external-astar,idastar)";
+	// The values of a cached result
+	private static final int CACHED_COST = 0;
+	private static final int CACHED_INITIAL_H = 1;
+	private static final int CACHED_EXPANDED = 2;
+	private static final int CACHED_GENERATED = 3;
+
 	public double[] run(Class domainClass, HashMap<String, String> domainParams) {
 		String inputPath = DomainExperimentData.get(domainClass, RunType.TRAIN).inputPath;
 		String outputPath = DomainExperimentData.get(domainClass, RunType.TRAIN).outputPreprocessPath;
@@ -35,9 +46,13 @@ public class PacPreprocessRunner {
 		double[] resultsData;
 		SearchDomain domain;
 		SearchResult result;
+		SearchResult externalResult;
 		SearchResult idaResult;
 		OutputResult output = null;
+		ExternalAstar externalAstar;
 		IDAstar idaStar;
+		// Instances that were solved by previous runs are read from the cache
+		PreprocessCache cache = PreprocessCache.open();
 
 		// Construct a variant of A* that records also the h value of the start state
 		WAStar astar = new WAStar() {
@@ -67,20 +82,51 @@ public class PacPreprocessRunner {
 					logger.info("Running the " + i +"'th instance");
 					// Read domain from file
 					resultsData = new double[resultColumnNames.length];
+					String cacheKey = (cache != null) ? PreprocessCache.key(domainClass,
+							new File(inputPath + "/" + i + ".in"), domainParams, CACHE_ALGORITHM) : null;
+					double[] cached = (cacheKey != null) ? cache.get(cacheKey) : null;
+					if (cached != null) {
+						logger.info("Instance " + i + " was already solved (found in the preprocess cache)");
+						setResultsData(cached[CACHED_COST], cached[CACHED_INITIAL_H], resultsData, i);
+						output.appendNewResult(resultsData);
+						output.newline();
+						continue;
+					}
 					domain = ExperimentUtils.getSearchDomain(inputPath, domainParams, cons, i);
 					result = astar.search(domain);
 					logger.info("Solution found? " + result.hasSolution());
 					if(result.hasSolution()==false) {
-						idaStar = new IDAstar();
-						logger.info("A* failed on instance " + i + ", running IDA*");
-						idaResult = idaStar.search(domain);
-						if (idaResult.hasSolution() == false) {
-							logger.info("IDA* also failed :(");
+						// The nodes of an external A* are kept on disk, hence it isn't bounded by the memory
+						externalAstar = new ExternalAstar();
+						logger.info("A* failed on instance " + i + ", running external A*");
+						try {
+							externalResult = externalAstar.search(domain);
+							externalResult.getExtras().put("initial-h",result.getExtras().get("initial-h"));
+						} catch (UncheckedIOException e) {
+							logger.error("External A* failed on I/O on instance " + i, e);
+							externalResult = null;
+						}
+						if (externalResult == null || externalResult.hasSolution() == false) {
+							idaStar = new IDAstar();
+							logger.info("External A* also failed on instance " + i + ", running IDA*");
+							idaResult = idaStar.search(domain);
+							if (idaResult.hasSolution() == false) {
+								logger.info("IDA* also failed :(");
+							}
+							idaResult.getExtras().put("initial-h",result.getExtras().get("initial-h"));
+							externalResult=idaResult;
 						}
-						idaResult.getExtras().put("initial-h",result.getExtras().get("initial-h"));
-						result=idaResult;
+						result=externalResult;
 					}
 					setResultsData(result, resultsData, i);
+					if (cacheKey != null && result.hasSolution()) {
+						double[] values = new double[4];
+						values[CACHED_COST] = resultsData[1];
+						values[CACHED_INITIAL_H] = resultsData[2];
+						values[CACHED_EXPANDED] = result.getExpanded();
+						values[CACHED_GENERATED] = result.getGenerated();
+						cache.put(cacheKey, values);
+					}
 					output.appendNewResult(resultsData);
 					output.newline();
 				} catch (OutOfMemoryError e) {
@@ -91,6 +137,9 @@ public class PacPreprocessRunner {
 		} catch (IOException e1) {
 		} finally {
 			output.close();
+			if (cache != null) {
+				cache.close();
+			}
 		}
 		return null;
 	}
@@ -99,13 +148,17 @@ public class PacPreprocessRunner {
 
 
 	private void setResultsData(SearchResult result, double[] resultsData, int i) {
-		int instanceId = i;
 		double cost=-1;
 		// RONI: I hate these unreadable one-liners
 		if(result.hasSolution()){
 			cost = result.getSolutions().get(0).getCost();
 		}
 		double initialH = (double)result.getExtras().get("initial-h");
+		setResultsData(cost, initialH, resultsData, i);
+	}
+
+	private void setResultsData(double cost, double initialH, double[] resultsData, int i) {
+		int instanceId = i;
 		double suboptimality = cost / initialH;
 		
 		resultsData[0] = instanceId;
@@ -0,0 +1,161 @@
+package org.cs4j.core.experiments;
+
+import org.apache.log4j.Logger;
+import org.cs4j.core.OutputResult;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.algorithms.SearchResultImpl;
+import org.cs4j.core.mains.DomainExperimentData;
+import org.cs4j.core.mains.DomainExperimentData.RunType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs the jobs of an experiment batch in parallel.
+ *
+ * Each job is a single (domain, instance, run parameters) run of an experiment (the run parameters usually hold the
+ * PAC condition, epsilon and delta). The jobs are executed by a work-stealing pool, and each worker thread runs the
+ * jobs through its own Experiment object (created by the given factory), since experiments hold a search algorithm
+ * which keeps the state of the current run.
+ *
+ * The results of each job are buffered in memory, and are written to the output in the order in which the jobs were
+ * submitted - hence, the output file is the same as the one of a sequential run (up to the measured times).
+ *
+ * Each job has a time budget and a memory budget:
+ *  - Every search which is started by a job stops after the time budget (see SearchResultImpl.checkMinTimeOut)
+ *  - The number of concurrent jobs is bounded such that their memory budgets fit into the maximal heap size
+ */
+public class ParallelExperimentScheduler {
+    final static Logger logger = Logger.getLogger(ParallelExperimentScheduler.class);
+
+    private ForkJoinPool pool;
+    private int threadsCount;
+    private int jobTimeOutInMs;
+    private ThreadLocal<Experiment> experiments;
+
+    // The results of the submitted jobs, in submission order
+    private List<Future<String>> pendingResults;
+
+    /**
+     * @param experimentFactory Creates the experiment objects (one per worker thread)
+     * @param threadsCount The maximal number of threads (0 means the number of available processors)
+     * @param jobTimeOutInMs The time budget of each job
+     * @param jobMemoryInMB The memory budget of each job (0 means that the memory isn't considered)
+     */
+    public ParallelExperimentScheduler(Supplier<Experiment> experimentFactory,
+                                       int threadsCount,
+                                       int jobTimeOutInMs,
+                                       int jobMemoryInMB) {
+        if (threadsCount < 0 || jobTimeOutInMs <= 0 || jobMemoryInMB < 0) {
+            System.out.println("[ERROR] Invalid parameters for the experiment scheduler (threads: " + threadsCount +
+                    ", time out: " + jobTimeOutInMs + ", memory: " + jobMemoryInMB + ")");
+            throw new IllegalArgumentException();
+        }
+        if (threadsCount == 0) {
+            threadsCount = Runtime.getRuntime().availableProcessors();
+        }
+        if (jobMemoryInMB > 0) {
+            long jobsInMemory = Runtime.getRuntime().maxMemory() / ((long) jobMemoryInMB * 1024 * 1024);
+            threadsCount = (int) Math.max(1, Math.min(threadsCount, jobsInMemory));
+        }
+        this.threadsCount = threadsCount;
+        this.jobTimeOutInMs = jobTimeOutInMs;
+        this.experiments = ThreadLocal.withInitial(experimentFactory);
+        this.pool = new ForkJoinPool(threadsCount);
+        this.pendingResults = new ArrayList<>();
+        logger.info("Running experiments on " + threadsCount + " threads");
+    }
+
+    /**
+     * @return The number of threads which actually run the jobs
+     */
+    public int getThreadsCount() {
+        return this.threadsCount;
+    }
+
+    /**
+     * Submits a single job (the given parameters are copied, hence they can be changed after the call)
+     *
+     * @param domainClass The class of the domain
+     * @param runType The type of the run (determines the input path of the instances)
+     * @param domainParams Additional parameters of the domain
+     * @param instanceId The id of the instance to run on
+     * @param runParams The parameters of the run
+     */
+    public void submit(Class<?> domainClass,
+                       RunType runType,
+                       SortedMap<String, String> domainParams,
+                       int instanceId,
+                       SortedMap<String, Object> runParams) {
+        Constructor<?> cons = ExperimentUtils.getSearchDomainConstructor(domainClass);
+        String inputPath = DomainExperimentData.get(domainClass.asSubclass(SearchDomain.class), runType).inputPath;
+        SortedMap<String, String> jobDomainParams = new TreeMap<>(domainParams);
+        SortedMap<String, Object> jobRunParams = new TreeMap<>(runParams);
+        this.pendingResults.add(this.pool.submit(() ->
+                this._runJob(domainClass, inputPath, cons, jobDomainParams, instanceId, jobRunParams)));
+    }
+
+    /**
+     * Runs a single job on the current (worker) thread
+     *
+     * @return The results of the job, as they should appear in the output file
+     */
+    private String _runJob(Class<?> domainClass,
+                           String inputPath,
+                           Constructor<?> cons,
+                           SortedMap<String, String> domainParams,
+                           int instanceId,
+                           SortedMap<String, Object> runParams) {
+        logger.info("Solving " + domainClass.getName() + "\t instance " + instanceId + "\t" + runParams);
+        SearchResultImpl.setTimeOutForCurrentThread(this.jobTimeOutInMs);
+        StringWriter buffer = new StringWriter();
+        OutputResult output = new OutputResult(buffer);
+        try {
+            SearchDomain domain = ExperimentUtils.getSearchDomain(inputPath, domainParams, cons, instanceId);
+            this.experiments.get().run(domain, output, instanceId, runParams);
+        } catch (OutOfMemoryError e) {
+            logger.error("OutOfMemory in " + domainClass.getName() + " instance " + instanceId);
+        } catch (RuntimeException e) {
+            logger.error("Failed running " + domainClass.getName() + " instance " + instanceId, e);
+        } finally {
+            output.close();
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Waits for all the submitted jobs and writes their results to the output (in submission order)
+     *
+     * @param output The output to write the results into
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public void writeResults(OutputResult output) throws IOException {
+        try {
+            for (Future<String> result : this.pendingResults) {
+                output.write(result.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            logger.error("Failed waiting for the experiment jobs", e);
+            throw new IOException(e);
+        } finally {
+            this.pendingResults.clear();
+        }
+    }
+
+    /**
+     * Stops the worker threads (after all the submitted jobs are done)
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
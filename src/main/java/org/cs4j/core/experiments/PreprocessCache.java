@@ -0,0 +1,361 @@
+package org.cs4j.core.experiments;
+
+import org.apache.log4j.Logger;
+import org.cs4j.core.pac.conf.PacConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of the results of the preprocessing runs, so that an interrupted run resumes where it stopped,
+ * and an instance which was already solved in the same configuration (by a previous run or by a sibling experiment)
+ * isn't solved again.
+ *
+ * A result is keyed by the domain class, a hash of the content of the instance file, the domain parameters and a
+ * description of the algorithm and its configuration (see key), and holds an array of doubles (e.g. the optimal cost,
+ * the h of the initial state and the numbers of expanded and generated nodes).
+ *
+ * The results are kept in an append-only binary log, in which each record is [length, key, values, CRC32] - a record
+ * that was torn by an interrupted run is detected by its checksum and dropped. The offsets of the records are kept in
+ * an index file, which is rewritten when the cache is closed (records which were appended after the index was written
+ * are recovered by scanning the tail of the log).
+ *
+ * Several processes (and several caches of the same process) may share a directory: every access to the files is done
+ * while holding a lock of the log, the records that other writers appended are added to the index by scanning the tail
+ * of the log (before an append, on a missing key and before the index is written), and the index is written to a
+ * unique temporary file before it replaces the index file.
+ *
+ * The cache is a best effort: I/O errors are logged, and the result is treated as missing (or isn't stored).
+ */
+public class PreprocessCache {
+
+    final static Logger logger = Logger.getLogger(PreprocessCache.class);
+
+    private static final String LOG_FILE_NAME = "results.log";
+    private static final String INDEX_FILE_NAME = "results.idx";
+    // Identifies (and versions) the index file
+    private static final long INDEX_MAGIC = 0x5043414348450001L;
+
+    // The file locks are held by the whole JVM (another channel of the same JVM fails to lock the log), hence the caches
+    // of this JVM also serialize their locks
+    private static final Object JVM_LOCK = new Object();
+
+    private final File indexFile;
+    private final RandomAccessFile log;
+    // The offset of the last record of each key in the log
+    private final Map<String, Long> index;
+    // The length of the log that the index covers
+    private long indexedLength;
+
+    /**
+     * Opens (or creates) a cache
+     *
+     * @param directory The directory of the cache files
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public PreprocessCache(String directory) throws IOException {
+        File dir = new File(directory);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create the cache directory " + directory);
+        }
+        this.indexFile = new File(dir, PreprocessCache.INDEX_FILE_NAME);
+        this.log = new RandomAccessFile(new File(dir, PreprocessCache.LOG_FILE_NAME), "rw");
+        this.index = new HashMap<>();
+        synchronized (PreprocessCache.JVM_LOCK) {
+            FileLock lock = this.log.getChannel().lock();
+            try {
+                this.indexedLength = this._readIndex();
+                this._scanLog();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Opens the cache of the directory that is configured in PacConfig
+     *
+     * @return The cache, or null if the cache is disabled (or can't be opened)
+     */
+    public static PreprocessCache open() {
+        String directory = PacConfig.instance.pacPreprocessCacheDirectory();
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        try {
+            PreprocessCache cache = new PreprocessCache(directory);
+            logger.info("Opened the preprocess cache at " + directory + " (" + cache.size() + " results)");
+            return cache;
+        } catch (IOException e) {
+            logger.error("Failed to open the preprocess cache at " + directory + ", running without it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Builds the key of a result
+     *
+     * @param domainClass The class of the domain
+     * @param instanceFile The file of the instance
+     * @param domainParams The additional parameters of the domain
+     * @param algorithm A description of the algorithm and its configuration (e.g. "astar(weight=1.0)")
+     *
+     * @return The key (null if the instance file can't be read)
+     */
+    public static String key(Class<?> domainClass, File instanceFile, Map<String, String> domainParams,
+                             String algorithm) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(instanceFile.toPath()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.error("Failed to hash the instance " + instanceFile + " for the preprocess cache", e);
+            return null;
+        }
+        StringBuilder key = new StringBuilder(domainClass.getName()).append('|');
+        for (byte b : hash) {
+            key.append(String.format("%02x", b));
+        }
+        // The parameters are sorted, so that the key doesn't depend on the order of the map
+        return key.append('|').append(new TreeMap<>(domainParams)).append('|').append(algorithm).toString();
+    }
+
+    /**
+     * @return The number of cached results
+     */
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Looks a result up
+     *
+     * @param key The key of the result (see key)
+     *
+     * @return The values of the result, or null if it isn't cached
+     */
+    public synchronized double[] get(String key) {
+        try {
+            synchronized (PreprocessCache.JVM_LOCK) {
+                FileLock lock = this.log.getChannel().lock();
+                try {
+                    Long offset = this.index.get(key);
+                    if (offset == null) {
+                        // The result may have been added by another writer
+                        this._scanLog();
+                        offset = this.index.get(key);
+                        if (offset == null) {
+                            return null;
+                        }
+                    }
+                    this.log.seek(offset);
+                    byte[] payload = new byte[this.log.readInt()];
+                    this.log.readFully(payload);
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                    in.readUTF();
+                    double[] values = new double[in.readInt()];
+                    for (int i = 0; i < values.length; ++i) {
+                        values[i] = in.readDouble();
+                    }
+                    return values;
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read from the preprocess cache", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds a result (a result of an existing key replaces it)
+     *
+     * @param key The key of the result (see key)
+     * @param values The values of the result
+     */
+    public synchronized void put(String key, double[] values) {
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeUTF(key);
+            payload.writeInt(values.length);
+            for (double value : values) {
+                payload.writeDouble(value);
+            }
+            payload.flush();
+            byte[] payloadArray = payloadBytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payloadArray);
+
+            // The record is written at once, so that an interrupted run tears at most a single record
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(payloadArray.length + 8);
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            record.writeInt(payloadArray.length);
+            record.write(payloadArray);
+            record.writeInt((int) crc.getValue());
+            record.flush();
+            synchronized (PreprocessCache.JVM_LOCK) {
+                FileLock lock = this.log.getChannel().lock();
+                try {
+                    // Index the records of the other writers, so that the tail of the log is always scanned from the
+                    // end of a record
+                    this._scanLog();
+                    long offset = this.log.length();
+                    this.log.seek(offset);
+                    this.log.write(recordBytes.toByteArray());
+                    this.index.put(key, offset);
+                    this.indexedLength = this.log.length();
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write to the preprocess cache", e);
+        }
+    }
+
+    /**
+     * Writes the index and closes the log
+     */
+    public synchronized void close() {
+        try {
+            synchronized (PreprocessCache.JVM_LOCK) {
+                FileLock lock = this.log.getChannel().lock();
+                try {
+                    // The index must cover all the records of the log that it claims to cover, including the records of
+                    // the other writers
+                    this._scanLog();
+                    this._writeIndex();
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write the index of the preprocess cache (it will be rebuilt from the log)", e);
+        }
+        try {
+            this.log.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the log of the preprocess cache", e);
+        }
+    }
+
+    /**
+     * Reads the index file (if it exists and matches the log)
+     *
+     * @return The length of the log that the index covers (0 if there is no valid index)
+     */
+    private long _readIndex() throws IOException {
+        if (!this.indexFile.exists()) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.indexFile)));
+        try {
+            if (in.readLong() != PreprocessCache.INDEX_MAGIC) {
+                logger.warn("Unknown index file of the preprocess cache, rebuilding it from the log");
+                return 0;
+            }
+            long indexedLength = in.readLong();
+            if (indexedLength > this.log.length()) {
+                // The log was truncated after the index was written
+                logger.warn("The index of the preprocess cache doesn't match the log, rebuilding it");
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                String key = in.readUTF();
+                this.index.put(key, in.readLong());
+            }
+            return indexedLength;
+        } catch (EOFException e) {
+            logger.warn("Truncated index file of the preprocess cache, rebuilding it from the log");
+            this.index.clear();
+            return 0;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds the records of the log which follow the indexed length to the index (a torn record at the end of the log is
+     * dropped). The lock of the log must be held, hence a record is torn only if its writer was interrupted.
+     */
+    private void _scanLog() throws IOException {
+        long offset = this.indexedLength;
+        long length = this.log.length();
+        while (offset < length) {
+            long recordEnd = -1;
+            String key = null;
+            if (length - offset >= 8) {
+                this.log.seek(offset);
+                int payloadLength = this.log.readInt();
+                if (payloadLength >= 0 && offset + 8 + payloadLength <= length) {
+                    byte[] payload = new byte[payloadLength];
+                    this.log.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if (this.log.readInt() == (int) crc.getValue()) {
+                        key = new DataInputStream(new ByteArrayInputStream(payload)).readUTF();
+                        recordEnd = offset + 8 + payloadLength;
+                    }
+                }
+            }
+            if (key == null) {
+                logger.warn("Dropping a torn record at the end of the preprocess cache (offset " + offset + ")");
+                this.log.setLength(offset);
+                break;
+            }
+            this.index.put(key, offset);
+            offset = recordEnd;
+        }
+        this.indexedLength = offset;
+    }
+
+    /**
+     * Writes the index to a temporary file (unique to this writer), and then replaces the index file by it
+     */
+    private void _writeIndex() throws IOException {
+        File tempFile = File.createTempFile(PreprocessCache.INDEX_FILE_NAME, ".tmp", this.indexFile.getParentFile());
+        boolean written = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeLong(PreprocessCache.INDEX_MAGIC);
+                out.writeLong(this.indexedLength);
+                out.writeInt(this.index.size());
+                for (Map.Entry<String, Long> entry : this.index.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tempFile.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            written = true;
+        } finally {
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.cs4j.core.generators;
+
+import org.cs4j.core.collections.ByteArrayPDB;
+import org.cs4j.core.collections.NibblePDB;
+import org.cs4j.core.collections.PDB;
+import org.cs4j.core.collections.PDBUtils;
+
+import java.io.IOException;
+
+/**
+ * Converts a PDB file of (index, distance) records (an int index followed by a byte distance, as read by the
+ * FifteenPuzzle domain) into a dense PDB file (see PDBUtils), which can be read much faster, or memory-mapped
+ * (see MappedPDB).
+ *
+ * The conversion is done only once per PDB file.
+ */
+public class DensePDBConverter {
+
+    /**
+     * Converts a single PDB file
+     *
+     * @param inputFileName The name of the (index, distance) PDB file
+     * @param outputFileName The name of the dense PDB file to create
+     * @param entriesCount The number of entries in the PDB
+     * @param nibbles Whether to pack two entries into each byte (all the distances must be at most 15)
+     *
+     * @throws IOException If something wrong occurred
+     */
+    public static void convert(String inputFileName, String outputFileName, int entriesCount, boolean nibbles)
+            throws IOException {
+        System.out.println("[INFO] Converting PDB from " + inputFileName + " into " + outputFileName);
+        byte[] values = PDBUtils.readIndexedFile(inputFileName, entriesCount);
+        PDB pdb = nibbles ? new NibblePDB(values) : new ByteArrayPDB(values);
+        PDBUtils.writeDenseFile(pdb, outputFileName);
+        System.out.println("[INFO] Finished converting PDB (" + entriesCount + " entries)");
+    }
+
+    /**
+     * @param args <input-file> <output-file> <entries-count> [nibbles]
+     *             (e.g. 57657600 for PDB-7, 518918400 for PDB-8 and 524160 for PDB-5 of the 15-puzzle)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && !(args.length == 4 && args[3].equals("nibbles"))) {
+            System.out.println("[ERROR] Usage: DensePDBConverter <input-file> <output-file> <entries-count> " +
+                    "[nibbles]");
+            throw new IllegalArgumentException();
+        }
+        DensePDBConverter.convert(args[0], args[1], Integer.parseInt(args[2]), args.length == 4);
+    }
+}
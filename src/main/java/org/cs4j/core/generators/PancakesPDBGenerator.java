@@ -1,263 +1,214 @@
 package org.cs4j.core.generators;
 
-import org.cs4j.core.SearchResult;
-import org.cs4j.core.algorithms.EES;
-import org.cs4j.core.collections.Pair;
-import org.cs4j.core.domains.Pancakes;
-import org.cs4j.core.domains.Utils;
-//import org.cs4j.core.domains.PancakesWithDontCares;
+import org.cs4j.core.domains.PancakesPDB;
 
-import java.util.*;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Created by sepetnit on 11/7/2015.
  *
- * Generates a PDB for the generic Pancakes problem
+ * Generates a PDB for the generic Pancakes problem (see PancakesPDB)
  *
+ * The PDB is built by a single breadth-first search over the abstract states, starting from the abstract goal (since
+ * flips are self-inverse, searching forward from the goal is the same as searching backward). The abstract states are
+ * kept in bitsets which are indexed by their ranks (the visited states, the current level and the next level), and
+ * each level is expanded in parallel - the ranks of the current level are split into chunks which are expanded by
+ * different threads, and a generated state is added to the next level by the thread which first marks it as visited.
  */
 public class PancakesPDBGenerator extends GeneralInstancesGenerator {
+    // The number of bitset words (64 states each) in a chunk of work
+    private static final int WORDS_IN_CHUNK = 256;
+
     private int size;
     private int specificStartIndex;
+    private int threadsCount;
 
-    private Map<Long, Map<Long, Long>> pdb;
-    private int[] specific;
-    private List<Integer> specificAsList;
-    Map<Integer, Integer> converter;
-
-    public PancakesPDBGenerator(int size, int specificStartIndex) {
+    /**
+     * @param size The number of pancakes
+     * @param specificStartIndex The first (smallest) pancake of the pattern
+     * @param threadsCount The number of threads which expand the levels (0 means the number of available processors)
+     */
+    public PancakesPDBGenerator(int size, int specificStartIndex, int threadsCount) {
         this.size = size;
         this.specificStartIndex = specificStartIndex;
+        this.threadsCount = (threadsCount > 0) ? threadsCount : Runtime.getRuntime().availableProcessors();
+    }
 
-        this.specific = this._getSpecificIndexes(size, specificStartIndex);
-        this.specificAsList = Utils.intArrayToIntegerList(this.specific);
-        this.converter = new HashMap<>();
-        for (int i = 0; i < this.specific.length; ++i) {
-            converter.put(this.specific[i], i);
-        }
-
-        this.pdb = new HashMap<>();
+    public PancakesPDBGenerator(int size, int specificStartIndex) {
+        this(size, specificStartIndex, 0);
     }
 
     /**
-     * Implement (n k) in o(k)
-     * @param n Size of the data
-     * @param k Number of objects to choose from data
-     *
-     * @return The result of (n k)
+     * Runs the given task on the chunks [0, chunksCount) in parallel
      */
-    private double _choose(int n, int k) {
-        if (k < 0 || k > n) return 0;
-        if (k > n / 2) {
-            // choose(n,k) == choose(n,n-k),
-            // so this could save a little effort
-            k = n - k;
-        }
-        double denominator = 1.0;
-        double numerator = 1.0;
-        for (int i = 1; i <= k; ++i) {
-            denominator *= i;
-            numerator *= (n + 1 - i);
+    private void _runInParallel(ForkJoinPool pool, int chunksCount, IntConsumer task) {
+        try {
+            pool.submit(() -> IntStream.range(0, chunksCount).parallel().forEach(task)).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
         }
-        return numerator / denominator;
     }
 
     /**
+     * Sets a bit of an atomic bitset
      *
-     * @param arr The input array
-     * @param start Start index in arr (from which combinations should be taken)
-     * @param end End index in arr (from which combinations should be taken)
-     * @param result Temporary array to store current combination
-     * @param index Current index in data[]
-     * @param combinationsSize Size of a combinations to create
-     * @param dst The result list of combinations
-     *
+     * @return Whether the bit was set by this call (false if it was already set)
      */
-    private void _getPossibleCombinationsRec(int arr[], int start, int end,
-                                             int result[], int index,
-                                             int combinationsSize,
-                                             List<List<Integer>> dst) {
-        // Current combination is ready - add it to the list
-        if (combinationsSize == index) {
-            List<Integer> toAdd = new ArrayList<>();
-            for (int current : result) {
-                toAdd.add(current);
+    private static boolean _setBit(AtomicLongArray bits, long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << (index & 63);
+        long current = bits.get(word);
+        while ((current & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
             }
-            dst.add(toAdd);
-            return;
+            current = bits.get(word);
         }
-
-        // Replace index with all possible elements.
-        // TODO:
-        // The condition "end - i + 1 >= r - index" makes sure that including one element at index will make a
-        // combination with remaining elements at remaining positions
-        for (int i = start; i <= end && ((end - i + 1) >= (combinationsSize - index)); ++i) {
-            result[index] = arr[i];
-            this._getPossibleCombinationsRec(arr, i + 1, end, result, index + 1, combinationsSize, dst);
-        }
-    }
-
-    private List<List<Integer>> _getPossibleCombinations(int arr[], int combinationsSize) {
-        List<List<Integer>> dst = new ArrayList<>();
-        int[] result = new int[combinationsSize];
-        // Fill the destination list (call the recursive function)
-        this._getPossibleCombinationsRec(arr, 0, arr.length - 1, result, 0, combinationsSize, dst);
-        // Let's assert the length of the results
-        assert dst.size() == (int)this._choose(arr.length, combinationsSize);
-        return dst;
+        return false;
     }
 
     /**
-     * Builds an array of a default size, such that arr[i] = i
-     *
-     * @param size The size of the required array
+     * Expands the states of the given words of the current level
      *
-     * @return The built array
+     * @return The number of states which were added to the next level
      */
-    private int[] _getDefaultArray(int size) {
-        int[] indexes = new int[size];
-        for (int i = 0; i < indexes.length; ++i) {
-            indexes[i] = i;
-        }
-        return indexes;
-    }
-
-    private int[][] getAllPossibleSubProblems(int size, int[] specificPancakes) {
-        assert specificPancakes.length < size;
-        List<Integer> specificPancakesAsList = Utils.intArrayToIntegerList(specificPancakes);
-        int[] otherPancakes = new int[size - specificPancakes.length];
-        // Fill other pancakes
-        int index = 0;
-        for (int p = 0; p < size; ++p) {
-            if (!specificPancakesAsList.contains(p)) {
-                otherPancakes[index++] = p;
-            }
-        }
-        // Get all the possible combination of indexes for the specific pancakes
-        List<List<Integer>> possibleIndexesCombinations =
-                this._getPossibleCombinations(
-                        this._getDefaultArray(size),
-                        specificPancakes.length);
-        int[][] inputPancakesProblems = new int[possibleIndexesCombinations.size()][];
-        for (int i = 0; i < possibleIndexesCombinations.size(); ++i) {
-            // System.out.println("Creating problem # " + i);
-            inputPancakesProblems[i] = new int[size];
-            // Fill with default value
-            Arrays.fill(inputPancakesProblems[i], -1);
-            List<Integer> currentIndexes = possibleIndexesCombinations.get(i);
-            // Fill specific pancakes
-            for (int j = 0; j < specificPancakes.length; ++j) {
-                inputPancakesProblems[i][currentIndexes.get(j)] = specificPancakes[j];
-            }
-            index = 0;
-            for (int j = 0; j < inputPancakesProblems[i].length; ++j) {
-                // Fill some value if -1
-                if (inputPancakesProblems[i][j] == -1) {
-                    inputPancakesProblems[i][j] = otherPancakes[index++];
+    private long _expandChunk(long[] current, int fromWord, int toWord,
+                              AtomicLongArray visited, AtomicLongArray next) {
+        int n = this.size;
+        int patternStart = this.specificStartIndex;
+        int[] positions = new int[n];
+        int[] successor = new int[n];
+        int[] temp = new int[n];
+        long added = 0;
+        for (int word = fromWord; word < toWord; ++word) {
+            long bits = current[word];
+            while (bits != 0) {
+                long rank = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                PancakesPDB.unrank(n, patternStart, rank, positions, temp);
+                // Flip the top op + 1 pancakes
+                for (int op = 1; op < n; ++op) {
+                    for (int p = patternStart; p < n; ++p) {
+                        successor[p] = (positions[p] <= op) ? op - positions[p] : positions[p];
+                    }
+                    long successorRank = PancakesPDB.rank(n, patternStart, successor, temp);
+                    if (PancakesPDBGenerator._setBit(visited, successorRank)) {
+                        PancakesPDBGenerator._setBit(next, successorRank);
+                        ++added;
+                    }
                 }
             }
         }
-        return inputPancakesProblems;
+        return added;
     }
 
-    private int[] _getSpecificIndexes(int size, int specificStartIndex) {
-        int[] toReturn = new int[size - specificStartIndex];
-        for (int i = 0; i < toReturn.length; ++i) {
-            toReturn[i] = specificStartIndex + i;
-        }
-        return toReturn;
-    }
-
-    private void swap(int[] arr, int first, int second) {
-        int tmp = arr[first];
-        arr[first] = arr[second];
-        arr[second] = tmp;
-    }
-
-    public long _getMyrvoldAndRuskeyHashValue(int[] pancakes, int[] w, int n) {
-        if (n == 1) {
-            return 0;
-        }
-        int d = pancakes[n - 1];
-        this.swap(pancakes, pancakes[n - 1], pancakes[w[n - 1]]);
-        this.swap(pancakes, w[n - 1], w[d]);
-        return d + n * _getMyrvoldAndRuskeyHashValue(pancakes, w, n - 1);
-    }
-
-    public long _getMyrvoldAndRuskeyHashValue(int[] pancakes) {
-        int[] pancakesCopy = new int[pancakes.length];
-        System.arraycopy(pancakes, 0, pancakesCopy, 0, pancakes.length);
-        int[] w = new int[pancakesCopy.length];
-        for (int i = 0; i < pancakesCopy.length - 1; ++i) {
-            w[pancakesCopy[i]] = i;
+    /**
+     * Builds the PDB
+     *
+     * @return The built PDB
+     */
+    public PancakesPDB createPDB() {
+        int n = this.size;
+        int patternStart = this.specificStartIndex;
+        long statesCount = PancakesPDB.getAbstractStatesCount(n, patternStart);
+        int words = (int) ((statesCount + 63) >>> 6);
+        int chunksCount = (words + PancakesPDBGenerator.WORDS_IN_CHUNK - 1) / PancakesPDBGenerator.WORDS_IN_CHUNK;
+        System.out.println("[INFO] Building PDB for " + n + " pancakes (pattern: " + patternStart + "-" + (n - 1) +
+                ", " + statesCount + " abstract states) on " + this.threadsCount + " threads");
+
+        // All the distances are initially MAX_DISTANCE (all the bits are set)
+        long[] table = new long[PancakesPDB.getTableSize(statesCount)];
+        Arrays.fill(table, -1L);
+        AtomicLongArray visited = new AtomicLongArray(words);
+        AtomicLongArray next = new AtomicLongArray(words);
+        long[] current = new long[words];
+
+        // In the abstract goal, each pattern pancake is at its place
+        int[] goal = new int[n];
+        for (int p = patternStart; p < n; ++p) {
+            goal[p] = p;
         }
-        return this._getMyrvoldAndRuskeyHashValue(pancakesCopy, w, pancakes.length);
-    }
-
-    public Pair<Long, Long> hash(int[] pancakes,  List<Integer> specificPancakes, Map<Integer, Integer> converter) {
-        int[] specific = new int[specificPancakes.size()];
-        long hash1 = this._getMyrvoldAndRuskeyHashValue(specific);
-        int previousIndex = -1;
-        int currentIndex = -1;
-        long hash2 = 0;
-        for (int p = 0; p < pancakes.length; ++p) {
-            if (specificPancakes.contains(pancakes[p])) {
-                if (previousIndex == -1) {
-                    previousIndex = p;
-                } else if (currentIndex == -1) {
-                    currentIndex = p;
-                    hash2 |= (currentIndex - previousIndex);
-                } else {
-                    previousIndex = currentIndex;
-                    currentIndex = p;
-                    hash2 |= (currentIndex - previousIndex);
-                }
-                hash2 <<= 4;
+        long goalRank = PancakesPDB.rank(n, patternStart, goal, new int[n]);
+        PancakesPDBGenerator._setBit(visited, goalRank);
+        current[(int) (goalRank >>> 6)] = 1L << (goalRank & 63);
+        PancakesPDB.setDistance(table, goalRank, 0);
+
+        ForkJoinPool pool = new ForkJoinPool(this.threadsCount);
+        try {
+            long levelSize = 1;
+            long totalCount = 1;
+            int depth = 0;
+            while (levelSize > 0) {
+                System.out.println("[INFO] Depth " + depth + ": " + levelSize + " states (" + totalCount + " total)");
+                // Expand the current level
+                AtomicLong added = new AtomicLong();
+                this._runInParallel(pool, chunksCount, chunk -> {
+                    int from = chunk * PancakesPDBGenerator.WORDS_IN_CHUNK;
+                    int to = Math.min(words, from + PancakesPDBGenerator.WORDS_IN_CHUNK);
+                    added.addAndGet(this._expandChunk(current, from, to, visited, next));
+                });
+                ++depth;
+                // Store the distances of the next level and make it the current one (each chunk of bitset words
+                // corresponds to distinct words of the table)
+                int nextDepth = depth;
+                this._runInParallel(pool, chunksCount, chunk -> {
+                    int from = chunk * PancakesPDBGenerator.WORDS_IN_CHUNK;
+                    int to = Math.min(words, from + PancakesPDBGenerator.WORDS_IN_CHUNK);
+                    for (int word = from; word < to; ++word) {
+                        long bits = next.get(word);
+                        current[word] = bits;
+                        next.set(word, 0);
+                        while (bits != 0) {
+                            long rank = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            PancakesPDB.setDistance(table, rank, nextDepth);
+                        }
+                    }
+                });
+                levelSize = added.get();
+                totalCount += levelSize;
             }
+            assert totalCount == statesCount;
+        } finally {
+            pool.shutdown();
         }
-        return new Pair<>(hash1, hash2);
-    }
-
-    private void _store(int[] subProblem, long cost) {
-        Pair<Long, Long> hashValues = this.hash(subProblem, specificAsList, converter);
-        System.out.println("[INFO] Solved (PDB[" + hashValues.toString() + "] = " + cost + ")");
-        Map<Long, Long> internal = this.pdb.get(hashValues.getKey());
-        if (internal == null) {
-            internal = new HashMap<>();
-            pdb.put(hashValues.getKey(), internal);
-        }
-        assert !internal.containsKey(hashValues.getValue());
-        internal.put(hashValues.getValue(), cost);
-    }
-
-    public void createPDB() {
-        // Preserve previous
-        int tmp = Pancakes.MIN_PANCAKE_FOR_PDB;
-        Pancakes.MIN_PANCAKE_FOR_PDB = this.specificStartIndex;
-        int[][] allSubProblems =
-                this.getAllPossibleSubProblems(size, this.specific);
-        EES ees = new EES(1.0);
-        for (int count = 0; count < allSubProblems.length; ++count) {
-            int[] subProblem = allSubProblems[count];
-            System.out.println("[INFO] Solving: (" + (count + 1) + "/" + allSubProblems.length + ") " +
-                    Arrays.toString(subProblem));
-            Pancakes instance = new Pancakes(subProblem);
-            SearchResult result = ees.search(instance);
-            assert result != null;
-            long cost = (long)result.getSolutions().get(0).getCost();
-            this._store(subProblem, cost);
-        }
-        Pancakes.MIN_PANCAKE_FOR_PDB = tmp;
-
+        return new PancakesPDB(n, patternStart, table);
     }
 
     /**
      * This main function generates the PDB
      *
-     * @param args The arguments to main - should contain only the size of the Pancakes problem
+     * @param args The arguments to main: the number of pancakes, the first pancake of the pattern, the output file and
+     *             (optionally) the number of threads
      */
-    public static void main(String[] args) {
-        PancakesPDBGenerator generator = new PancakesPDBGenerator(17, 10);
-        generator.createPDB();
+    public static void main(String[] args) throws IOException {
+        int size = 17;
+        int specificStartIndex = 10;
+        String outputFile = "pancakes-" + size + "-" + specificStartIndex + ".pdb";
+        int threadsCount = 0;
+        if (args.length >= 3) {
+            size = GeneralInstancesGenerator.readIntNumber(args[0], 2, -1, "# of pancakes");
+            specificStartIndex = GeneralInstancesGenerator.readIntNumber(args[1], 0, size - 1, "pattern start");
+            outputFile = args[2];
+            if (args.length >= 4) {
+                threadsCount = GeneralInstancesGenerator.readIntNumber(args[3], 0, -1, "# of threads");
+            }
+        } else {
+            System.out.println("[WARNING] Using local arguments");
+        }
+        PancakesPDBGenerator generator = new PancakesPDBGenerator(size, specificStartIndex, threadsCount);
+        long start = System.currentTimeMillis();
+        PancakesPDB pdb = generator.createPDB();
+        pdb.write(outputFile);
+        System.out.println("[INFO] PDB written to " + outputFile + " (" +
+                (System.currentTimeMillis() - start) / 1000 + " seconds)");
         System.out.println("Done.");
     }
 }
@@ -1,14 +1,11 @@
 package org.cs4j.core.generators;
 
-import org.cs4j.core.SearchAlgorithm;
-import org.cs4j.core.SearchDomain;
-import org.cs4j.core.SearchResult;
-import org.cs4j.core.algorithms.WAStar;
 import org.cs4j.core.collections.Pair;
 import org.cs4j.core.collections.PairInt;
 import org.cs4j.core.domains.GridPathFinding;
 import org.cs4j.core.domains.Utils;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -24,10 +21,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Created by sepetnit on 11/12/2015.
  *
+ * The distances from (or to) a pivot are computed by a single breadth-first search over the grid (the moves of
+ * GridPathFinding are the 4 cardinal moves with unit costs), and are kept in a float array which is indexed by the
+ * locations. When all the pivots are known, their searches run in parallel.
  */
 public class PivotsDBGenerator {
 
@@ -36,6 +39,20 @@ public class PivotsDBGenerator {
     private static double DOUBLE_SIZE_IN_BYTES = 8.0d;
     private static double MB_SIZE_IN_BYTES = 1024.0d * 1024.0d;
 
+    private int threadsCount;
+
+    /**
+     * @param threadsCount The number of threads which compute the distances of the pivots (0 means the number of
+     *                     available processors)
+     */
+    public PivotsDBGenerator(int threadsCount) {
+        this.threadsCount = (threadsCount > 0) ? threadsCount : Runtime.getRuntime().availableProcessors();
+    }
+
+    public PivotsDBGenerator() {
+        this(0);
+    }
+
     /**
      * This class represents a grid on which the agent is moving
      * The grid must be a rectangle (and can contain obstacles)
@@ -212,28 +229,82 @@ public class PivotsDBGenerator {
     }
 
     /**
-     * Finds a returns the minimum cost of reaching goal location from start location (on the given grid)
-     * The cost is found by running an optimal-cost search algorithm (e.g. AStar)
+     * Computes the minimum costs of reaching all the locations from the pivot (or of reaching the pivot from all the
+     * locations) on the given grid, by a breadth-first search
+     *
+     * The moves are those of GridPathFinding: a move is valid if it doesn't exceed the grid and its target location
+     * isn't blocked (and isn't location 0, which GridPathFinding never enters) - the source location of a move may be
+     * blocked. Hence, the costs from the pivot and to the pivot are the same, except for blocked locations (which can
+     * only be left) and location 0.
+     *
+     * @param grid The grid to find distances on
+     * @param pivot The pivot location on the grid
+     * @param toPivot Whether to compute the costs of reaching the pivot (rather than of reaching from the pivot)
+     *
+     * @return The found distances (indexed by the locations), NO_SOLUTION for unreachable locations
+     */
+    private float[] _minDistances(GridMap grid, int pivot, boolean toPivot) {
+        float[] distances = new float[grid.mapSize];
+        Arrays.fill(distances, (float) PivotsDBGenerator.NO_SOLUTION);
+        // Each location is added to the queue at most once
+        int[] queue = new int[grid.mapSize];
+        int head = 0;
+        int tail = 0;
+        distances[pivot] = 0.0f;
+        queue[tail++] = pivot;
+        while (head < tail) {
+            int location = queue[head++];
+            // When searching backwards, the predecessors of a location are the locations which can move into it
+            if (toPivot && (location == 0 || grid.isBlocked(location))) {
+                continue;
+            }
+            float nextDistance = distances[location] + 1.0f;
+            int x = location % grid.mapWidth;
+            int y = location / grid.mapWidth;
+            for (int i = 0; i < 4; ++i) {
+                int next;
+                if (i == 0) {
+                    next = (y + 1 < grid.mapHeight) ? location + grid.mapWidth : -1;
+                } else if (i == 1) {
+                    next = (y > 0) ? location - grid.mapWidth : -1;
+                } else if (i == 2) {
+                    next = (x > 0) ? location - 1 : -1;
+                } else {
+                    next = (x + 1 < grid.mapWidth) ? location + 1 : -1;
+                }
+                // Searching forward, the successor must be enterable; searching backwards, any location can leave
+                if (next < 0 || distances[next] != (float) PivotsDBGenerator.NO_SOLUTION ||
+                        (!toPivot && (next == 0 || grid.isBlocked(next)))) {
+                    continue;
+                }
+                distances[next] = nextDistance;
+                queue[tail++] = next;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Computes the minimum costs of reaching the given pivots from all the locations - the pivots are handled in
+     * parallel
      *
      * @param grid The grid to find distances on
-     * @param startLocation The start location on the grid
-     * @param goalLocation The goal location on the grid
+     * @param pivots The pivots
      *
-     * @return The found distance
+     * @return The distances to each pivot (in the order of the pivots)
      */
-    private double _minDistance(GridMap grid, int startLocation, int goalLocation) {
-        SearchAlgorithm alg = new WAStar();
-        SearchDomain domain =
-                new GridPathFinding(
-                        grid.mapWidth,
-                        grid.mapHeight,
-                        grid.map,
-                        startLocation, goalLocation);
-        SearchResult result = alg.search(domain);
-        if (result.hasSolution()) {
-            return result.getSolutions().get(0).getCost();
+    private float[][] _minDistancesToPivots(GridMap grid, int[] pivots) {
+        float[][] distances = new float[pivots.length][];
+        ForkJoinPool pool = new ForkJoinPool(this.threadsCount);
+        try {
+            pool.submit(() -> IntStream.range(0, pivots.length).parallel().forEach(
+                    pivotIndex -> distances[pivotIndex] = this._minDistances(grid, pivots[pivotIndex], true))).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
         }
-        return PivotsDBGenerator.NO_SOLUTION;
+        return distances;
     }
 
     /**
@@ -260,20 +331,23 @@ public class PivotsDBGenerator {
      *
      * @param pivotsCount The computed pivots count
      *
-     * @return The computed pivots and distances from them
+     * @return The computed pivots and distances from them (the distances from pivot k are at index k - they are
+     *         computed for all the pivots except the last one)
      */
-    private Pair<int[], Map<Integer, Map<Integer, Double>>> _computePivotsAndDistances(GridMap grid, int pivotsCount) {
+    private Pair<int[], float[][]> _computePivotsAndDistances(GridMap grid, int pivotsCount) {
         int pivots[] = new int[pivotsCount];
         System.out.println("[INFO] The file will be at least " +
                 this._getPivotsFileSize(grid.mapSize, pivots.length) + " MB");
-        Map<Integer, Map<Integer, Double>> allDistances = new HashMap<>();
+        float[][] allDistances = new float[pivotsCount][];
         // Choose the first pivot - left-most and top-most free location
         pivots[0] = this._chooseFirstPivotByMostLeftTop(grid);
         assert pivots[0] != -1;
         System.out.println("[INFO] First pivot is : " + grid.getPosition(pivots[0]) + " - " + pivots[0]);
         // For each pivot to look for
         for (int currentPivotIndex = 1; currentPivotIndex < pivotsCount; ++currentPivotIndex) {
-            Map<Integer, Double> currentDistances = new HashMap<>();
+            float[] currentDistances = new float[grid.mapSize];
+            // The distances from the previous pivot
+            float[] previousPivotDistances = this._minDistances(grid, pivots[currentPivotIndex - 1], false);
             System.out.println("[INFO] Looking for pivot " + currentPivotIndex);
             double maxSumOfDistances = 0.0d;
             int locationWithMaxSumOfDistances = -1;
@@ -285,11 +359,11 @@ public class PivotsDBGenerator {
                 }
                 // i can't be a pivot
                 if (this.contains(pivots, i)) {
-                    currentDistances.put(i, 0.0d);
+                    currentDistances[i] = 0.0f;
                     continue;
                 }
                 if (grid.isBlocked(i)) {
-                    currentDistances.put(i, PivotsDBGenerator.NO_SOLUTION);
+                    currentDistances[i] = (float) PivotsDBGenerator.NO_SOLUTION;
                     continue;
                 }
                 double currentSumOfDistances = 0.0d;
@@ -297,14 +371,14 @@ public class PivotsDBGenerator {
                     double currentValue = 0;
                     if (i != pivots[k]) {
                         if (k < currentPivotIndex - 1) {
-                            currentValue = allDistances.get(pivots[k]).get(i);
+                            currentValue = allDistances[k][i];
                         // Otherwise, k == currentPivotIndex - 1
                         } else {
-                            currentValue = this._minDistance(grid, pivots[k], i);
-                            currentDistances.put(i, currentValue);
+                            currentValue = previousPivotDistances[i];
+                            currentDistances[i] = previousPivotDistances[i];
                         }
                     } else if (k == currentPivotIndex - 1) {
-                        currentDistances.put(i, 0.0d);
+                        currentDistances[i] = 0.0f;
                     }
                     // Here, we of course have the value of distances[pivots[k]][i] correctly set
                     if (currentValue > 0) {
@@ -322,7 +396,7 @@ public class PivotsDBGenerator {
             pivots[currentPivotIndex] = locationWithMaxSumOfDistances;
             System.out.println("[INFO] Pivot " + currentPivotIndex + " is : " +
                     grid.getPosition(pivots[currentPivotIndex]) + " - " + pivots[currentPivotIndex]);
-            allDistances.put(pivots[currentPivotIndex - 1], currentDistances);
+            allDistances[currentPivotIndex - 1] = currentDistances;
             //gridCopy.map[pivots[currentPivotIndex]] = 'Y';
         }
         //System.out.println(gridCopy.toString());
@@ -344,8 +418,11 @@ public class PivotsDBGenerator {
         pivots[0] = this._chooseFirstPivotByMostLeftTop(grid);
         assert pivots[0] != -1;
         System.out.println("[INFO] First pivot is : " + grid.getPosition(pivots[0]));
+        // The distances from each pivot that was already found
+        float[][] allDistances = new float[pivotsCount][];
         // For each pivot to look for
         for (int currentPivotIndex = 1; currentPivotIndex < pivotsCount; ++currentPivotIndex) {
+            allDistances[currentPivotIndex - 1] = this._minDistances(grid, pivots[currentPivotIndex - 1], false);
             System.out.println("[INFO] Looking for pivot " + currentPivotIndex);
             double maxSumOfDistances = 0.0d;
             int locationWithMaxSunOfDistances = -1;
@@ -366,7 +443,7 @@ public class PivotsDBGenerator {
                 for (int k = 0; k < currentPivotIndex; ++k) {
                     double currentValue = 0;
                     if (i != pivots[k]) {
-                        currentValue = this._minDistance(grid, pivots[k], i);
+                        currentValue = allDistances[k][i];
                     }
                     // Here, we of course have the value of distances[pivots[k]][i] correctly set
                     if (currentValue > 0) {
@@ -420,7 +497,7 @@ public class PivotsDBGenerator {
      *       <all-distances-from-pivot-n>
      */
     private void _storePivots(GridMap grid, int[] pivots, String outputFile) throws IOException {
-        DataOutputStream writer = new DataOutputStream(new FileOutputStream(outputFile));
+        DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
         System.out.println("[INFO] Creating pivots file " + outputFile);
         System.out.println("[INFO] The file will be at least " +
                 this._getPivotsFileSize(grid.mapSize, pivots.length) + " MB");
@@ -430,23 +507,16 @@ public class PivotsDBGenerator {
         for (int pivot : pivots) {
             writer.writeInt(pivot);
         }
+        float[][] allDistances = this._minDistancesToPivots(grid, pivots);
         // Write the distances for each pivot
         for (int pivotIndex = 0; pivotIndex < pivots.length; ++pivotIndex) {
             int pivot = pivots[pivotIndex];
+            float[] currentDistances = allDistances[pivotIndex];
             System.out.println("[INFO] Writing all distances for pivot # " +
                     (pivotIndex + 1) + "/" + pivots.length + " " + grid.getPosition(pivot));
             for (int i = 0; i < grid.mapSize; ++i) {
-                if (i % 999 == 0) {
-                    System.out.print("\r[INFO] Wrote " + (i + 1) + "/" + grid.mapSize + " distances");
-                }
-                if (i == pivot) {
-                    writer.writeDouble(0.0d);
-                } else {
-                    writer.writeDouble(this._minDistance(grid, i, pivot));
-                }
+                writer.writeDouble(currentDistances[i]);
             }
-            // Add a newline
-            System.out.println();
         }
         writer.close();
         System.out.println("[INFO] Done creating pivots file " + outputFile);
@@ -586,12 +656,14 @@ public class PivotsDBGenerator {
                                                  int pivotsCount,
                                                  String outputFile) throws IOException {
         GridMap gridCopy = new GridMap(width, height, grid);
-        Pair<int[], Map<Integer, Map<Integer, Double>>> pivotsAndDistances =
-                this._computePivotsAndDistances(gridCopy, pivotsCount);
+        Pair<int[], float[][]> pivotsAndDistances = this._computePivotsAndDistances(gridCopy, pivotsCount);
         int[] pivots = pivotsAndDistances.getKey();
-        Map<Integer, Map<Integer, Double>> allDistances = pivotsAndDistances.getValue();
-        System.out.println(Arrays.toString(allDistances.keySet().toArray()));
-        DataOutputStream writer = new DataOutputStream(new FileOutputStream(outputFile));
+        float[][] allDistances = pivotsAndDistances.getValue();
+        // The distances of the last pivot weren't computed - compute the distances to it
+        int lastPivotIndex = pivots.length - 1;
+        allDistances[lastPivotIndex] = this._minDistances(gridCopy, pivots[lastPivotIndex], true);
+        System.out.println(Arrays.toString(pivots));
+        DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
         // Write pivots count
         writer.writeInt(pivots.length);
         // Write the pivots
@@ -601,23 +673,12 @@ public class PivotsDBGenerator {
         // Write the distances for each pivot
         for (int pivotIndex = 0; pivotIndex < pivots.length; ++pivotIndex) {
             int pivot = pivots[pivotIndex];
-            Map<Integer, Double> currentDistances = allDistances.get(pivot);
+            float[] currentDistances = allDistances[pivotIndex];
             System.out.println("[INFO] Writing all distances for pivot # " +
                     (pivotIndex + 1) + "/" + pivots.length + " " + gridCopy.getPosition(pivot));
             for (int i = 0; i < gridCopy.mapSize; ++i) {
-                if (i % 999 == 0) {
-                    System.out.print("\r[INFO] Wrote " + (i + 1) + "/" + gridCopy.mapSize + " distances");
-                }
-                if (currentDistances != null) {
-                    writer.writeDouble(currentDistances.get(i));
-                } else  if (i == pivot) {
-                    writer.writeDouble(0.0d);
-                } else {
-                    writer.writeDouble(this._minDistance(gridCopy, i, pivot));
-                }
+                writer.writeDouble(currentDistances[i]);
             }
-            // Add a newline
-            System.out.println();
         }
         writer.close();
     }
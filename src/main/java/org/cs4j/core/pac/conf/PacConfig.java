@@ -44,6 +44,11 @@ public interface PacConfig extends Config {
     @DefaultValue("66")
     double gridMinDistTest();
 
+    // The directory of the binary copies of the statistics files (empty means that the CSV files are always parsed)
+    @Key(PAC + STATS_GEN +".cacheDirectory")
+    @DefaultValue("./cache/statistics")
+    String pacStatisticsCacheDirectory();
+
 
     //-----------------------------------------
     // PAC Preprocess
@@ -79,6 +84,22 @@ public interface PacConfig extends Config {
     @DefaultValue("false")
     boolean useDomainFeatures();
 
+    // The directory of the persistent cache of the preprocessing results (empty means no cache)
+    @Key(PAC + PREPROCESS +".cacheDirectory")
+    @DefaultValue("./cache/preprocess")
+    String pacPreprocessCacheDirectory();
+
+    // The number of threads which train the classifiers and their cross-validation folds (0 means all the available
+    // processors)
+    @Key(PAC + PREPROCESS +".trainingThreads")
+    @DefaultValue("0")
+    int pacPreprocessTrainingThreads();
+
+    // The memory that the concurrent training jobs may hold together (0 means 3/4 of the maximal heap size)
+    @Key(PAC + PREPROCESS +".trainingMemoryMB")
+    @DefaultValue("0")
+    int pacPreprocessTrainingMemoryMB();
+
     //-----------------------------------------
     // PAC online search
     //-----------------------------------------
@@ -103,6 +124,21 @@ public interface PacConfig extends Config {
     @ConverterClass(PacConditionConverter.class)
     Class[] onlinePacConditions();
 
+    // The number of threads which run the online experiments (0 means all the available processors)
+    @Key(PAC + ONLINE +".threads")
+    @DefaultValue("0")
+    int onlineThreads();
+
+    // The time budget of a single run (20 minutes by default)
+    @Key(PAC + ONLINE +".jobTimeOutMs")
+    @DefaultValue("1200000")
+    int onlineJobTimeOutMs();
+
+    // The memory budget of a single run (0 means that the memory doesn't limit the number of threads)
+    @Key(PAC + ONLINE +".jobMemoryMB")
+    @DefaultValue("0")
+    int onlineJobMemoryMB();
+
     //-----------------------------------------
     // ML PAC for hard domains
     //-----------------------------------------
@@ -3,6 +3,7 @@ package org.cs4j.core.pac.evaluation;
 
 import org.apache.log4j.Logger;
 import org.cs4j.core.algorithms.pac.preprocess.PacClassifierType;
+import org.cs4j.core.algorithms.pac.preprocess.PacTrainingScheduler;
 import org.cs4j.core.domains.DockyardRobot;
 import org.cs4j.core.domains.GridPathFinding;
 import org.cs4j.core.domains.Pancakes;
@@ -67,6 +68,8 @@ public class PacRocCurveEvaluator {
         headerTable += ",Domain,Epsilon,AUC,ImbalanceRatio";
         outputTable.add(headerTable);
 
+        // The folds of the cross-validations are built in parallel
+        PacTrainingScheduler scheduler = PacTrainingScheduler.create();
 
 
         for(Class domain : domains) {
@@ -101,8 +104,7 @@ public class PacRocCurveEvaluator {
                         break;
                 }
                 logger.info("Initialize classifier: " + classifierType.toString() +" succeeded");
-                Evaluation eval = new Evaluation(data);
-                eval.crossValidateModel(cl, data, 10, new Random(1));
+                Evaluation eval = scheduler.crossValidateModel(cl, data, 10, new Random(1));
 
 
                 logger.info("--------------------" + epsilon + "-----------------------");
@@ -169,6 +171,8 @@ public class PacRocCurveEvaluator {
         }
 
 
+        scheduler.shutdown();
+
         saveInstancesToFile(outputTable,classifierType);
     }
 
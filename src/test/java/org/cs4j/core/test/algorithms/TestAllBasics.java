@@ -24,6 +24,9 @@ import org.cs4j.core.algorithms.*;
 import org.junit.Test;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class TestAllBasics {
 		
@@ -34,6 +37,30 @@ public class TestAllBasics {
 		TestUtils.checkSearchAlgorithm(domain, algo, 65271, 32470, 45);
 	}	
 
+	@Test
+	public void testAstarOpenAddressingClosedList() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+		SearchAlgorithm algo = new WAStar();
+		algo.setAdditionalParameter("closed-impl", "open-addressing");
+		TestUtils.checkSearchAlgorithm(domain, algo, 65271, 32470, 45);
+	}
+
+	@Test
+	public void testAstarBucketHeap() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+		SearchAlgorithm algo = new WAStar();
+		algo.setAdditionalParameter("heap-type", "bucket");
+		TestUtils.checkSearchAlgorithm(domain, algo, 64963, 32334, 45);
+	}
+
+	@Test
+	public void testAstarNodeStore() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+		SearchAlgorithm algo = new WAStar();
+		algo.setAdditionalParameter("node-store", "true");
+		TestUtils.checkSearchAlgorithm(domain, algo, 65271, 32470, 45);
+	}
+
 	@Test
 	public void testRBFS() throws FileNotFoundException {
 		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
@@ -48,6 +75,42 @@ public class TestAllBasics {
 		TestUtils.checkSearchAlgorithm(domain, algo, 546343, 269708, 45);
 	}		
 
+	@Test
+	public void testIDAstarTranspositionTable() throws FileNotFoundException {
+		// A small table, for the replacements to be exercised as well
+		for (String policy : new String[]{"depth-preferred", "two-tier"}) {
+			SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+			SearchAlgorithm algo = new IDAstar();
+			algo.setAdditionalParameter("transposition-table-mb", "1");
+			algo.setAdditionalParameter("transposition-table-policy", policy);
+			TestUtils.checkOptimalCost(domain, algo);
+		}
+	}
+
+	@Test
+	public void testRBFSTranspositionTable() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+		SearchAlgorithm algo = new RBFS();
+		algo.setAdditionalParameter("transposition-table-mb", "1");
+		TestUtils.checkOptimalCost(domain, algo);
+	}
+
+	@Test
+	public void testParallelIDAstar() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+		SearchAlgorithm algo = new IDAstar();
+		algo.setAdditionalParameter("threads", "4");
+		TestUtils.checkOptimalCost(domain, algo);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testParallelIDAstarUncopyableDomain() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createVacuumRobot(10, "1");
+		SearchAlgorithm algo = new IDAstar();
+		algo.setAdditionalParameter("threads", "4");
+		algo.search(domain);
+	}
+
 	@Test
 	public void testEES() throws FileNotFoundException {
 		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
@@ -62,6 +125,66 @@ public class TestAllBasics {
 		TestUtils.checkSearchAlgorithm(domain, algo, 301098, 148421, 45);
 	}	
 	
+	@Test
+	public void testHDAstar() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createFifteenPuzzle("12");
+		SearchAlgorithm algo = new HDAstar();
+		algo.setAdditionalParameter("threads", "4");
+		TestUtils.checkOptimalCost(domain, algo);
+	}
+
+	@Test
+	public void testHDAstarSingleWorkerFallback() throws FileNotFoundException {
+		// VacuumRobot can't be copied for other threads, hence it is searched by a single worker
+		SearchDomain domain = TestUtils.createVacuumRobot(10, "1");
+		SearchAlgorithm algo = new HDAstar();
+		algo.setAdditionalParameter("threads", "4");
+		TestUtils.checkOptimalCost(domain, algo);
+	}
+
+	@Test
+	public void testMM() throws FileNotFoundException {
+		TestUtils.checkOptimalCost(TestUtils.createPancakePuzzle(12, "1"), new MM());
+		TestUtils.checkOptimalCost(TestUtils.createPancakePuzzle(40, "2"), new MM());
+		// The minimal cost of a move of the (unit cost) pancakes
+		SearchAlgorithm algo = new MM();
+		algo.setAdditionalParameter("epsilon", "1");
+		TestUtils.checkOptimalCost(TestUtils.createPancakePuzzle(40, "2"), algo);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testMMWithoutBackwardDomain() throws FileNotFoundException {
+		new MM().search(TestUtils.createFifteenPuzzle("12"));
+	}
+
+	@Test
+	public void testExternalAstar() throws FileNotFoundException {
+		SearchDomain domain = TestUtils.createPancakePuzzle(40, "2");
+		SearchAlgorithm algo = new ExternalAstar();
+		algo.setAdditionalParameter("buckets", "16");
+		SearchResult result = TestUtils.checkOptimalCost(domain, algo);
+		// The tie-breaking on larger g saves most of the expansions of the last f-layer (10194 by A*)
+		Assert.assertTrue(result.getExpanded() < 2 * 10194);
+
+		algo = new ExternalAstar();
+		algo.setAdditionalParameter("buckets", "16");
+		algo.setAdditionalParameter("layer-width", "2");
+		TestUtils.checkOptimalCost(TestUtils.createPancakePuzzle(12, "1"), algo);
+	}
+
+	@Test
+	public void testExternalAstarCreatesDirectory() throws IOException {
+		Path base = Files.createTempDirectory("test-external-astar");
+		Path directory = base.resolve("a").resolve("b");
+		SearchAlgorithm algo = new ExternalAstar();
+		algo.setAdditionalParameter("directory", directory.toString());
+		TestUtils.checkOptimalCost(TestUtils.createPancakePuzzle(12, "1"), algo);
+		// The files of the search are deleted
+		Assert.assertEquals(0, directory.toFile().list().length);
+		Files.delete(directory);
+		Files.delete(directory.getParent());
+		Files.delete(base);
+	}
 
 	@Test
 	public void testDPS() throws FileNotFoundException {
@@ -9,6 +9,7 @@ import org.cs4j.core.algorithms.AnytimePTS;
 import org.cs4j.core.algorithms.AnytimeWAStar;
 import org.cs4j.core.algorithms.SearchResultImpl;
 import org.cs4j.core.algorithms.WAStar;
+import org.cs4j.core.algorithms.pac.conditions.BoundedCostPACSearch;
 import org.junit.Test;
 
 import java.io.FileNotFoundException;
@@ -103,5 +104,76 @@ public class TestAnytimeSearchAlgorithms {
         }
     }
 
+    /**
+     * Run AWA* on AnytimeSearchNode objects and on a node store, and verify that the two modes find solutions of
+     * the same costs in every iteration
+     */
+    @Test
+    public void testAnytimeWAstarOnNodeStore() throws FileNotFoundException {
+        SearchDomain[] domains = {
+                TestUtils.createFifteenPuzzle("12"),
+                TestUtils.createPancakePuzzle(12,"12")
+        };
+        for(SearchDomain domain : domains) {
+            AnytimeWAStar objects = new AnytimeWAStar();
+            objects.setAdditionalParameter("weight", "3");
+            AnytimeWAStar store = new AnytimeWAStar();
+            store.setAdditionalParameter("weight", "3");
+            store.setAdditionalParameter("node-store", "true");
+
+            SearchResult objectsResults = objects.search(domain);
+            SearchResult storeResults = store.search(domain);
+            while (objectsResults.hasSolution()) {
+                Assert.assertTrue(storeResults.hasSolution());
+                Assert.assertEquals(objectsResults.getSolutions().get(0).getCost(),
+                        storeResults.getSolutions().get(0).getCost());
+                objectsResults = objects.continueSearch();
+                storeResults = store.continueSearch();
+            }
+            Assert.assertFalse(storeResults.hasSolution());
+        }
+    }
+
+    /**
+     * An anytime PTS which exposes the re-keying of OPEN and the tracked f values
+     */
+    private static class RekeyedAnytimePTS extends AnytimePTS {
+        private void rekey(double incumbent) {
+            this.incumbentSolution = incumbent;
+            this.rekeyOpen();
+        }
+
+        private double getFmin() {
+            return this.fmin;
+        }
+
+        private double getMaxFmin() {
+            return this.maxFmin;
+        }
+    }
+
+    /**
+     * When a new incumbent prunes all of OPEN, fmin is reset as for an empty OPEN and the lower bound is the
+     * incumbent (rather than Double.MAX_VALUE)
+     */
+    @Test
+    public void testRekeyPrunesAllOfOpen() throws FileNotFoundException {
+        RekeyedAnytimePTS algorithm = new RekeyedAnytimePTS();
+        SearchResult results = algorithm.search(TestUtils.createPancakePuzzle(12,"12"));
+        Assert.assertTrue(results.hasSolution());
+        double cost = results.getSolutions().get(0).getCost();
+        // Every node in OPEN has f >= 0
+        algorithm.rekey(0);
+        Assert.assertEquals(-1.0, algorithm.getFmin());
+        Assert.assertTrue(algorithm.getMaxFmin() < Double.MAX_VALUE);
+        Assert.assertTrue(algorithm.getMaxFmin() <= cost);
+        Assert.assertFalse(algorithm.continueSearch().hasSolution());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNodeStoreRejectedByBoundedCostPAC() {
+        new BoundedCostPACSearch().setAdditionalParameter("node-store", "true");
+    }
+
 
 }
@@ -60,6 +60,18 @@ public class TestUtils {
         return results;
     }
 
+    /**
+     * Runs a given search algorithm on a given domain and verifies that it finds an optimal solution (of the same cost
+     * as the one of A*)
+     */
+    public static SearchResult checkOptimalCost(SearchDomain domain, SearchAlgorithm algo) {
+        double optimalCost = findOptimalSolution(domain).getBestSolution().getCost();
+        SearchResult result = algo.search(domain);
+        Assert.assertTrue("No solution was found", result.hasSolution());
+        Assert.assertEquals(optimalCost, result.getBestSolution().getCost(), 1e-9);
+        return result;
+    }
+
     /**
      * Run a given search algorithm on a given domain and verify
      * the expected runtime, #generated, #expanded, cost, and length
@@ -0,0 +1,117 @@
+package org.cs4j.core.test.algorithms.pac;
+
+import junit.framework.Assert;
+import org.cs4j.core.algorithms.pac.PACStatisticsTable;
+import org.cs4j.core.algorithms.pac.PACUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the binary statistics files (which are kept in a cache directory) and the data derived from the statistics
+ */
+public class TestPACStatisticsTable {
+
+    private static void writeCSV(File csvFile, int rows) throws IOException {
+        FileWriter writer = new FileWriter(csvFile);
+        try {
+            writer.write("instance,h,optimal\n");
+            for (int i = 0; i < rows; ++i) {
+                writer.write(i + "," + (i / 2.0) + "," + (i + 0.25) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void assertTable(int rows, PACStatisticsTable table) {
+        Assert.assertEquals(rows, table.size());
+        for (int i = 0; i < rows; ++i) {
+            Assert.assertEquals(i, table.instances[i]);
+            Assert.assertEquals(i / 2.0, table.initialHs[i]);
+            Assert.assertEquals(i + 0.25, table.optimals[i]);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        for (File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        Path inputDirectory = Files.createTempDirectory("test-statistics-input");
+        Path cacheDirectory = Files.createTempDirectory("test-statistics-cache");
+        // The cache directory is created on the first write
+        String cacheName = cacheDirectory.resolve("statistics").toString();
+        try {
+            File csvFile = inputDirectory.resolve("statistics.csv").toFile();
+            writeCSV(csvFile, 100);
+            assertTable(100, PACStatisticsTable.read(csvFile.getPath(), cacheName));
+            // The binary file is written to the cache directory (and not next to the CSV file)
+            File binaryFile = PACStatisticsTable.getBinaryFile(csvFile.getPath(), cacheName);
+            Assert.assertTrue(binaryFile.exists());
+            Assert.assertEquals(cacheName, binaryFile.getParent());
+            Assert.assertEquals(1, inputDirectory.toFile().list().length);
+            // A CSV file of the same name in another directory has another binary file
+            Assert.assertFalse(binaryFile.equals(
+                    PACStatisticsTable.getBinaryFile(cacheDirectory.resolve("statistics.csv").toString(), cacheName)));
+
+            // The CSV file is modified, hence it is parsed again (and the binary file is rewritten)
+            writeCSV(csvFile, 50);
+            csvFile.setLastModified(csvFile.lastModified() - 10000);
+            PACStatisticsTable table = PACStatisticsTable.read(csvFile.getPath(), cacheName);
+            assertTable(50, table);
+            Assert.assertTrue(table.isUpToDate(csvFile.getPath()));
+
+            // Without the CSV file, the table is read from the binary file
+            Assert.assertTrue(csvFile.delete());
+            assertTable(50, PACStatisticsTable.read(csvFile.getPath(), cacheName));
+            binaryFile.delete();
+            new File(cacheName).delete();
+        } finally {
+            deleteDirectory(inputDirectory);
+            deleteDirectory(cacheDirectory);
+        }
+    }
+
+    @Test
+    public void testNoCacheDirectory() throws IOException {
+        Path inputDirectory = Files.createTempDirectory("test-statistics-input");
+        try {
+            File csvFile = inputDirectory.resolve("statistics.csv").toFile();
+            writeCSV(csvFile, 10);
+            assertTable(10, PACStatisticsTable.read(csvFile.getPath(), ""));
+            Assert.assertEquals(1, inputDirectory.toFile().list().length);
+        } finally {
+            deleteDirectory(inputDirectory);
+        }
+    }
+
+    @Test
+    public void testDerivedOfNewerVersionReplacesOlder() {
+        AtomicInteger computations = new AtomicInteger();
+        String kind = "test-" + System.nanoTime();
+        Assert.assertEquals("1", PACUtils.getDerived(TestPACStatisticsTable.class, kind, 1,
+                () -> "" + computations.incrementAndGet()));
+        Assert.assertEquals("1", PACUtils.getDerived(TestPACStatisticsTable.class, kind, 1,
+                () -> "" + computations.incrementAndGet()));
+        Assert.assertEquals(1, computations.get());
+        // A newer version is computed again and replaces the older one
+        Assert.assertEquals("2", PACUtils.getDerived(TestPACStatisticsTable.class, kind, 2,
+                () -> "" + computations.incrementAndGet()));
+        Assert.assertEquals("3", PACUtils.getDerived(TestPACStatisticsTable.class, kind, 1,
+                () -> "" + computations.incrementAndGet()));
+        // The older version doesn't evict the newer one
+        Assert.assertEquals("2", PACUtils.getDerived(TestPACStatisticsTable.class, kind, 2,
+                () -> "" + computations.incrementAndGet()));
+        Assert.assertEquals(3, computations.get());
+    }
+}
@@ -0,0 +1,194 @@
+package org.cs4j.core.test.algorithms.pac;
+
+import junit.framework.Assert;
+import org.cs4j.core.experiments.PreprocessCache;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Tests the persistent cache of the preprocessing results (its log and index files, and its concurrent writers)
+ */
+public class TestPreprocessCache {
+
+    private static double[] values(int i) {
+        return new double[]{i, i / 2.0, 10 * i, 100 * i};
+    }
+
+    private static Path createDirectory() throws IOException {
+        return Files.createTempDirectory("test-preprocess-cache");
+    }
+
+    private static void deleteDirectory(Path directory) {
+        for (File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+        directory.toFile().delete();
+    }
+
+    private static void assertContains(PreprocessCache cache, String prefix, int count) {
+        for (int i = 0; i < count; ++i) {
+            double[] cached = cache.get(prefix + i);
+            Assert.assertNotNull(prefix + i, cached);
+            Assert.assertEquals(values(i).length, cached.length);
+            for (int v = 0; v < cached.length; ++v) {
+                Assert.assertEquals(values(i)[v], cached[v]);
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path directory = createDirectory();
+        try {
+            PreprocessCache cache = new PreprocessCache(directory.toString());
+            for (int i = 0; i < 10; ++i) {
+                cache.put("key" + i, values(i));
+            }
+            // A result of an existing key replaces it
+            cache.put("key3", values(30));
+            Assert.assertNull(cache.get("missing"));
+            cache.close();
+
+            cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(10, cache.size());
+            Assert.assertEquals(values(30)[2], cache.get("key3")[2]);
+            cache.put("key3", values(3));
+            assertContains(cache, "key", 10);
+            cache.close();
+
+            // The index is rebuilt from the log
+            Files.delete(directory.resolve("results.idx"));
+            cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(10, cache.size());
+            assertContains(cache, "key", 10);
+            cache.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testTwoWriters() throws IOException {
+        Path directory = createDirectory();
+        try {
+            PreprocessCache first = new PreprocessCache(directory.toString());
+            PreprocessCache second = new PreprocessCache(directory.toString());
+            for (int i = 0; i < 20; ++i) {
+                first.put("first" + i, values(i));
+                second.put("second" + i, values(i));
+            }
+            // The results of the other writer are found in the log
+            assertContains(first, "second", 20);
+            assertContains(second, "first", 20);
+            // The index of the last writer covers the records of both
+            first.close();
+            second.put("second20", values(20));
+            second.close();
+
+            PreprocessCache cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(41, cache.size());
+            assertContains(cache, "first", 20);
+            assertContains(cache, "second", 21);
+            cache.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Writes results to a cache (the writer of testTwoProcesses)
+     *
+     * @param args The directory of the cache, the prefix of the keys and the number of results
+     */
+    public static void main(String[] args) throws IOException {
+        PreprocessCache cache = new PreprocessCache(args[0]);
+        for (int i = 0; i < Integer.parseInt(args[2]); ++i) {
+            cache.put(args[1] + i, values(i));
+        }
+        cache.close();
+    }
+
+    @Test
+    public void testTwoProcesses() throws Exception {
+        Path directory = createDirectory();
+        try {
+            int count = 5000;
+            Process process = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    TestPreprocessCache.class.getName(), directory.toString(), "child", Integer.toString(count))
+                    .inheritIO().start();
+            // Start writing once the child opened the cache, so that the writers overlap
+            File log = directory.resolve("results.log").toFile();
+            while (!log.exists() && process.isAlive()) {
+                Thread.sleep(10);
+            }
+            main(new String[]{directory.toString(), "parent", Integer.toString(count)});
+            Assert.assertEquals(0, process.waitFor());
+
+            PreprocessCache cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(2 * count, cache.size());
+            assertContains(cache, "parent", count);
+            assertContains(cache, "child", count);
+            cache.close();
+            // The temporary index files were replaced
+            Assert.assertEquals(2, directory.toFile().list().length);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        Path directory = createDirectory();
+        File log = directory.resolve("results.log").toFile();
+        try {
+            PreprocessCache cache = new PreprocessCache(directory.toString());
+            for (int i = 0; i < 3; ++i) {
+                cache.put("key" + i, values(i));
+            }
+            cache.close();
+
+            // A record which was torn after the index was written
+            FileOutputStream out = new FileOutputStream(log, true);
+            try {
+                out.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+            } finally {
+                out.close();
+            }
+            long length = log.length();
+            cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(3, cache.size());
+            Assert.assertEquals(length - 7, log.length());
+            cache.put("key3", values(3));
+            cache.close();
+
+            cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(4, cache.size());
+            assertContains(cache, "key", 4);
+            cache.close();
+
+            // The last record is torn, and the index covers it (hence the index is rebuilt from the log)
+            RandomAccessFile file = new RandomAccessFile(log, "rw");
+            try {
+                file.setLength(file.length() - 5);
+            } finally {
+                file.close();
+            }
+            cache = new PreprocessCache(directory.toString());
+            Assert.assertEquals(3, cache.size());
+            Assert.assertNull(cache.get("key3"));
+            assertContains(cache, "key", 3);
+            cache.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+}
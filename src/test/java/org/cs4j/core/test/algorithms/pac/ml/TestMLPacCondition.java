@@ -6,6 +6,9 @@ import org.cs4j.core.SearchDomain;
 import org.cs4j.core.SearchResult;
 import org.cs4j.core.algorithms.pac.*;
 import org.cs4j.core.algorithms.pac.conditions.MLPacCondition;
+import org.cs4j.core.algorithms.pac.conditions.MLPacConditionForBoundSolPredNN;
+import org.cs4j.core.algorithms.pac.conditions.MLPacConditionJ48;
+import org.cs4j.core.algorithms.pac.conditions.MLPacConditionNN;
 import org.cs4j.core.domains.VacuumRobot;
 import org.cs4j.core.experiments.ExperimentUtils;
 import org.cs4j.core.test.algorithms.TestUtils;
@@ -44,6 +47,42 @@ public class TestMLPacCondition {
         condition.setup(instance, epsilon, delta);
     }
 
+    private static class ExposedNN extends MLPacConditionNN {
+        String getClsType() { return this.clsType; }
+    }
+
+    private static class ExposedJ48 extends MLPacConditionJ48 {
+        String getClsType() { return this.clsType; }
+    }
+
+    private static class ExposedBoundSolPred extends MLPacConditionForBoundSolPredNN {
+        String getTrainFormat() { return this.trainFormat; }
+        double getDomainLevel() { return this.domainLevel; }
+    }
+
+    /**
+     * The conditions of an experiment run on several threads, hence each condition keeps its own classifier type and
+     * run parameters
+     */
+    @Test
+    public void testConditionsDontShareState() {
+        ExposedNN nn = new ExposedNN();
+        ExposedJ48 j48 = new ExposedJ48();
+        Assert.assertEquals("NN", nn.getClsType());
+        Assert.assertEquals("J48", j48.getClsType());
+
+        ExposedBoundSolPred first = new ExposedBoundSolPred();
+        ExposedBoundSolPred second = new ExposedBoundSolPred();
+        first.setTrainLevel("1-2");
+        first.setDomainLevel(3);
+        second.setTrainLevel("4-5");
+        second.setDomainLevel(6);
+        Assert.assertEquals("1-2", first.getTrainFormat());
+        Assert.assertEquals(3.0, first.getDomainLevel());
+        Assert.assertEquals("4-5", second.getTrainFormat());
+        Assert.assertEquals(6.0, second.getDomainLevel());
+    }
+
     @Test
     public void testDeltaEffect(){
         Class[] domains = {VacuumRobot.class};
@@ -0,0 +1,65 @@
+package org.cs4j.core.test.algorithms.pac.ml;
+
+import junit.framework.Assert;
+import org.cs4j.core.AnytimeSearchAlgorithm;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.algorithms.SearchResultImpl;
+import org.cs4j.core.algorithms.WAStar;
+import org.cs4j.core.algorithms.pac.preprocess.MLPacPreprocess;
+import org.cs4j.core.test.algorithms.TestUtils;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Tests the features of the ML PAC preprocessing (the rows of all the epsilons are harvested from a single run)
+ */
+public class TestMLPacPreprocess {
+
+    private static final double[] EPSILONS = {0.0, 0.05, 0.1, 0.2, 0.3};
+
+    /**
+     * Relabeling the row of the first epsilon gives the row which is extracted for each of the other epsilons
+     */
+    @Test
+    public void testLabelFeaturesRow() throws FileNotFoundException {
+        SearchDomain domain = TestUtils.createPancakePuzzle(12, "1");
+        double optimalCost = new WAStar().search(domain).getBestSolution().getCost();
+
+        domain = TestUtils.createPancakePuzzle(12, "1");
+        AnytimeSearchAlgorithm algorithm = MLPacPreprocess.getAnytimeAlg(EPSILONS[0]);
+        SearchResultImpl result = (SearchResultImpl) algorithm.search(domain);
+        int solutions = 0;
+        while (result.hasSolution() && solutions < 20) {
+            double[] row = MLPacPreprocess.extractFeaturesRow(result, optimalCost, EPSILONS[0]);
+            for (double epsilon : EPSILONS) {
+                // The row which a run with this epsilon would have extracted
+                result.setExtras("epsilon", epsilon);
+                double[] expected = MLPacPreprocess.extractFeaturesRow(result, optimalCost, epsilon);
+                double[] labeled = MLPacPreprocess.labelFeaturesRow(row, optimalCost, epsilon);
+                Assert.assertEquals(expected.length, labeled.length);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertEquals("epsilon " + epsilon + ", column " + i, expected[i], labeled[i]);
+                }
+            }
+            result.setExtras("epsilon", EPSILONS[0]);
+            ++solutions;
+            result = (SearchResultImpl) algorithm.continueSearch();
+        }
+        Assert.assertTrue(solutions > 0);
+    }
+
+    @Test
+    public void testLabelFeaturesRowDoesNotChangeTheRow() {
+        double[] row = {100, 50, 0, 11.5, 1, 10, 2, 9, 2, 9, 1.0, 0};
+        double[] copy = row.clone();
+        double[] labeled = MLPacPreprocess.labelFeaturesRow(row, 10, 0.2);
+        for (int i = 0; i < row.length; ++i) {
+            Assert.assertEquals(copy[i], row[i]);
+        }
+        Assert.assertEquals(1.2, labeled[10]);
+        // 11.5 <= 1.2 * 10 (but not 1.1 * 10)
+        Assert.assertEquals(1.0, labeled[11]);
+        Assert.assertEquals(0.0, MLPacPreprocess.labelFeaturesRow(row, 10, 0.1)[11]);
+    }
+}
@@ -0,0 +1,136 @@
+package org.cs4j.core.test.algorithms.pac.ml;
+
+import junit.framework.Assert;
+import org.cs4j.core.algorithms.pac.preprocess.PacDatasetReader;
+import org.cs4j.core.algorithms.pac.preprocess.PacDatasetWriter;
+import org.junit.Test;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests the round trip of the binary datasets of the ML PAC pipeline (PacDatasetWriter and PacDatasetReader)
+ */
+public class TestPacDataset {
+
+    private static final int ROWS = 100;
+
+    /**
+     * @return A structure whose names aren't plain ASCII (their modified UTF-8 is longer than their UTF-8, by more than
+     * the size of a row)
+     */
+    private static Instances createStructure() {
+        StringBuilder name = new StringBuilder("h-");
+        for (int i = 0; i < 20; ++i) {
+            name.append("😀");
+        }
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("générated"));
+        attributes.add(new Attribute(name.toString()));
+        attributes.add(new Attribute("domain", Arrays.asList("pancakes", "vacuum robot")));
+        attributes.add(new Attribute("is-W-opt", Arrays.asList("false", "true")));
+        return new Instances("pac-ε", attributes, 0);
+    }
+
+    private static double[] row(int i) {
+        // A missing value in some of the rows
+        return new double[]{i, (i % 7 == 0) ? Double.NaN : i / 3.0, i % 2, (i % 3 == 0) ? 1 : 0};
+    }
+
+    private static void assertRow(int i, Instance instance) {
+        double[] expected = row(i);
+        for (int a = 0; a < expected.length; ++a) {
+            if (Double.isNaN(expected[a])) {
+                Assert.assertTrue(instance.isMissing(a));
+            } else {
+                Assert.assertEquals(expected[a], instance.value(a));
+            }
+        }
+    }
+
+    private static File writeDataset() throws IOException {
+        File file = File.createTempFile("test-dataset", PacDatasetWriter.FILE_EXTENSION);
+        PacDatasetWriter writer = new PacDatasetWriter(file.getPath(), createStructure());
+        try {
+            for (int i = 0; i < ROWS; ++i) {
+                writer.write(row(i));
+            }
+            Assert.assertEquals(ROWS, writer.numRows());
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = writeDataset();
+        try {
+            Assert.assertTrue(PacDatasetReader.isDatasetFile(file.getPath()));
+            PacDatasetReader reader = new PacDatasetReader(file.getPath());
+            try {
+                Assert.assertEquals(ROWS, reader.numRows());
+                Instances structure = reader.getStructure();
+                Assert.assertEquals(createStructure().toString(), structure.toString());
+                // The class is the last attribute by default
+                Assert.assertEquals(3, structure.classIndex());
+                // Some rows are streamed, and the rest are read at once
+                for (int i = 0; i < 10; ++i) {
+                    assertRow(i, reader.next());
+                }
+                Instances rest = reader.readAll();
+                Assert.assertEquals(ROWS - 10, rest.numInstances());
+                for (int i = 10; i < ROWS; ++i) {
+                    assertRow(i, rest.instance(i - 10));
+                }
+                Assert.assertNull(reader.next());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testExportArff() throws IOException {
+        File file = writeDataset();
+        File arff = File.createTempFile("test-dataset", ".arff");
+        try {
+            PacDatasetReader.exportArff(file.getPath(), arff.getPath());
+            BufferedReader in = new BufferedReader(new FileReader(arff));
+            Instances exported;
+            try {
+                exported = new Instances(in);
+            } finally {
+                in.close();
+            }
+            Assert.assertEquals(ROWS, exported.numInstances());
+            Assert.assertEquals(createStructure().attribute(2).value(1), exported.attribute(2).value(1));
+            for (int i = 0; i < ROWS; ++i) {
+                assertRow(i, exported.instance(i));
+            }
+            // Writing the loaded dataset gives the same file
+            Instances dataset = PacDatasetReader.read(file.getPath());
+            File written = File.createTempFile("test-dataset", ".arff");
+            try {
+                PacDatasetReader.writeArff(dataset, written.getPath());
+                Assert.assertEquals(new String(Files.readAllBytes(arff.toPath()), "UTF-8"),
+                        new String(Files.readAllBytes(written.toPath()), "UTF-8"));
+            } finally {
+                written.delete();
+            }
+        } finally {
+            file.delete();
+            arff.delete();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.cs4j.core.test.algorithms.pac.ml;
+
+import junit.framework.Assert;
+import org.cs4j.core.algorithms.pac.preprocess.PacTrainingScheduler;
+import org.junit.Test;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.evaluation.Evaluation;
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the parallel cross-validation of the ML PAC classifiers
+ */
+public class TestPacTrainingScheduler {
+
+    /**
+     * @return A noisy dataset of two numeric features and a nominal class
+     */
+    private static Instances createDataset(int rows) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("cost"));
+        attributes.add(new Attribute("h"));
+        attributes.add(new Attribute("is-W-opt", Arrays.asList("false", "true")));
+        Instances data = new Instances("pac", attributes, rows);
+        data.setClassIndex(2);
+        Random random = new Random(7);
+        for (int i = 0; i < rows; ++i) {
+            double cost = random.nextDouble() * 100;
+            double h = random.nextDouble() * 100;
+            boolean wOptimal = (cost < h) != (random.nextDouble() < 0.1);
+            data.add(new DenseInstance(1.0, new double[]{cost, h, wOptimal ? 1 : 0}));
+        }
+        return data;
+    }
+
+    private static void assertSameEvaluation(Evaluation expected, Evaluation actual) throws Exception {
+        Assert.assertEquals(expected.numInstances(), actual.numInstances());
+        Assert.assertEquals(expected.correct(), actual.correct());
+        Assert.assertEquals(expected.toSummaryString(), actual.toSummaryString());
+        Assert.assertEquals(expected.toMatrixString(), actual.toMatrixString());
+        Assert.assertEquals(expected.toClassDetailsString(), actual.toClassDetailsString());
+    }
+
+    @Test
+    public void testSameAsSequentialCrossValidation() throws Exception {
+        Instances data = createDataset(500);
+        Evaluation expected = new Evaluation(data);
+        expected.crossValidateModel(new J48(), data, 10, new Random(1));
+
+        PacTrainingScheduler scheduler = new PacTrainingScheduler(3, 0);
+        try {
+            assertSameEvaluation(expected, scheduler.crossValidateModel(new J48(), data, 10, new Random(1)));
+            // A memory bound that fits a single fold at a time
+            PacTrainingScheduler bounded = new PacTrainingScheduler(3, 1);
+            try {
+                assertSameEvaluation(expected, bounded.crossValidateModel(new J48(), data, 10, new Random(1)));
+            } finally {
+                bounded.shutdown();
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+        // The dataset isn't reordered
+        Instances original = createDataset(500);
+        for (int i = 0; i < data.numInstances(); ++i) {
+            Assert.assertEquals(original.instance(i).toString(), data.instance(i).toString());
+        }
+    }
+
+    /**
+     * A classifier which fails to build on the given fold (the folds of the dataset are identified by their size)
+     */
+    private static class FailingClassifier extends AbstractClassifier {
+        private int failingTrainSize;
+
+        private FailingClassifier(int failingTrainSize) {
+            this.failingTrainSize = failingTrainSize;
+        }
+
+        @Override
+        public void buildClassifier(Instances data) throws Exception {
+            if (data.numInstances() == this.failingTrainSize) {
+                throw new IllegalStateException("Failed fold");
+            }
+        }
+
+        @Override
+        public double classifyInstance(Instance instance) {
+            return 0;
+        }
+    }
+
+    // A reservation which isn't released would block the next cross-validation
+    @Test(timeout = 60000)
+    public void testFailedFold() throws Exception {
+        Instances data = createDataset(101);
+        PacTrainingScheduler scheduler = new PacTrainingScheduler(2, 1);
+        try {
+            // The first fold has 11 test instances and 90 train instances
+            Classifier failing = new FailingClassifier(90);
+            try {
+                scheduler.crossValidateModel(failing, data, 10, new Random(1));
+                Assert.fail("The failure of a fold was ignored");
+            } catch (IllegalStateException e) {
+                // The pool may wrap the exception of the worker thread by an exception of the same type
+                Assert.assertTrue(e.getMessage(), e.getMessage().endsWith("Failed fold"));
+            }
+            // The reservations of the failed cross-validation were released
+            Evaluation evaluation = scheduler.crossValidateModel(new J48(), data, 10, new Random(1));
+            Assert.assertEquals(101.0, evaluation.numInstances());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.cs4j.core.test.collections;
+
+import junit.framework.Assert;
+import org.cs4j.core.algorithms.SearchQueueElementImpl;
+import org.cs4j.core.collections.BinHeap;
+import org.cs4j.core.collections.SearchQueueElement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the in-place re-keying of the binary heap (which prunes elements and rebuilds the heap)
+ */
+public class TestBinHeap {
+
+    private static final class Element extends SearchQueueElementImpl {
+        private final double f;
+        // The priority of the element (smaller first), which may change before a rekey
+        private double rank;
+
+        private Element(double f, double rank) {
+            super(1);
+            this.f = f;
+            this.rank = rank;
+        }
+
+        @Override
+        public double getF() {
+            return this.f;
+        }
+
+        @Override
+        public double getG() {
+            return 0;
+        }
+
+        @Override
+        public double getDepth() {
+            return 0;
+        }
+
+        @Override
+        public double getH() {
+            return this.f;
+        }
+
+        @Override
+        public double getD() {
+            return 0;
+        }
+
+        @Override
+        public double getHhat() {
+            return 0;
+        }
+
+        @Override
+        public double getDhat() {
+            return 0;
+        }
+
+        @Override
+        public SearchQueueElement getParent() {
+            return null;
+        }
+    }
+
+    private static BinHeap<Element> createHeap() {
+        return new BinHeap<>(new Comparator<Element>() {
+            @Override
+            public int compare(Element a, Element b) {
+                return Double.compare(a.rank, b.rank);
+            }
+        }, 0);
+    }
+
+    /**
+     * Checks that the heap is ordered, and that every element knows its index
+     */
+    private static void assertHeap(BinHeap<Element> heap) {
+        List<Element> elements = heap.getElements();
+        Assert.assertEquals(heap.size(), elements.size());
+        for (int i = 0; i < elements.size(); ++i) {
+            Assert.assertEquals(i, elements.get(i).getIndex(0));
+            if (i > 0) {
+                Assert.assertTrue(elements.get((i - 1) / 2).rank <= elements.get(i).rank);
+            }
+        }
+    }
+
+    @Test
+    public void testRekeyPrunesSome() {
+        Random random = new Random(1);
+        BinHeap<Element> heap = TestBinHeap.createHeap();
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            Element element = new Element(random.nextInt(50), random.nextDouble());
+            elements.add(element);
+            heap.add(element);
+        }
+        // The priorities change (as after a new incumbent), and the elements with f >= 30 are pruned
+        for (Element element : elements) {
+            element.rank = random.nextDouble();
+        }
+        List<Element> pruned = new ArrayList<>();
+        heap.rekey(element -> element.f >= 30, pruned::add);
+
+        int kept = 0;
+        for (Element element : elements) {
+            if (element.f >= 30) {
+                Assert.assertTrue(pruned.contains(element));
+                Assert.assertEquals(-1, element.getIndex(0));
+            } else {
+                ++kept;
+            }
+        }
+        Assert.assertEquals(elements.size() - kept, pruned.size());
+        Assert.assertEquals(kept, heap.size());
+        assertHeap(heap);
+
+        // The heap keeps working after the rekey
+        heap.add(new Element(0, -1));
+        heap.remove(heap.getElements().get(heap.size() / 2));
+        assertHeap(heap);
+        double previous = -2;
+        while (!heap.isEmpty()) {
+            Element element = heap.poll();
+            Assert.assertTrue(previous <= element.rank);
+            previous = element.rank;
+        }
+    }
+
+    @Test
+    public void testRekeyPrunesAll() {
+        BinHeap<Element> heap = TestBinHeap.createHeap();
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            Element element = new Element(i, 20 - i);
+            elements.add(element);
+            heap.add(element);
+        }
+        List<Element> pruned = new ArrayList<>();
+        heap.rekey(element -> true, pruned::add);
+        Assert.assertTrue(heap.isEmpty());
+        Assert.assertNull(heap.peek());
+        Assert.assertEquals(elements.size(), pruned.size());
+        for (Element element : elements) {
+            Assert.assertEquals(-1, element.getIndex(0));
+        }
+        // The pruned elements can be added again
+        heap.add(elements.get(3));
+        heap.add(elements.get(7));
+        assertHeap(heap);
+        Assert.assertSame(elements.get(7), heap.poll());
+    }
+}
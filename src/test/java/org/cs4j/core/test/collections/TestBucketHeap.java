@@ -0,0 +1,144 @@
+package org.cs4j.core.test.collections;
+
+import junit.framework.Assert;
+import org.cs4j.core.algorithms.SearchQueueElementImpl;
+import org.cs4j.core.collections.BucketHeap;
+import org.cs4j.core.collections.SearchQueueElement;
+import org.junit.Test;
+
+/**
+ * Tests the order of the two-level bucket heap
+ */
+public class TestBucketHeap {
+
+    private static final class Element extends SearchQueueElementImpl implements BucketHeap.BucketHeapElement {
+        private final int id;
+        private final double f;
+        private final double g;
+        private int secondaryIndex;
+
+        private Element(int id, double f, double g) {
+            super(1);
+            this.id = id;
+            this.f = f;
+            this.g = g;
+            this.secondaryIndex = -1;
+        }
+
+        @Override
+        public void setSecondaryIndex(int key, int index) {
+            this.secondaryIndex = index;
+        }
+
+        @Override
+        public int getSecondaryIndex(int key) {
+            return this.secondaryIndex;
+        }
+
+        @Override
+        public double getRank(int level) {
+            return (level == 0) ? this.f : this.g;
+        }
+
+        @Override
+        public double getF() {
+            return this.f;
+        }
+
+        @Override
+        public double getG() {
+            return this.g;
+        }
+
+        @Override
+        public double getDepth() {
+            return 0;
+        }
+
+        @Override
+        public double getH() {
+            return this.f - this.g;
+        }
+
+        @Override
+        public double getD() {
+            return 0;
+        }
+
+        @Override
+        public double getHhat() {
+            return 0;
+        }
+
+        @Override
+        public double getDhat() {
+            return 0;
+        }
+
+        @Override
+        public SearchQueueElement getParent() {
+            return null;
+        }
+    }
+
+    /**
+     * Polls the heap and checks the ids of the polled elements
+     */
+    private static void assertPolls(BucketHeap<Element> heap, int... ids) {
+        for (int id : ids) {
+            Assert.assertEquals(id, heap.poll().id);
+        }
+        Assert.assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testOrder() {
+        BucketHeap<Element> heap = new BucketHeap<>(4, 0);
+        heap.add(new Element(0, 10, 3));
+        heap.add(new Element(1, 9, 1));
+        heap.add(new Element(2, 10, 5));
+        heap.add(new Element(3, 9, 2));
+        heap.add(new Element(4, 12, 0));
+        // Smaller f first, and then larger g
+        assertPolls(heap, 3, 1, 2, 0, 4);
+    }
+
+    @Test
+    public void testRemovePreservesOrder() {
+        for (boolean lifo : new boolean[]{true, false}) {
+            BucketHeap<Element> heap = new BucketHeap<>(4, 0, 1, lifo);
+            Element[] elements = new Element[8];
+            for (int i = 0; i < elements.length; ++i) {
+                elements[i] = new Element(i, 5, 2);
+                heap.add(elements[i]);
+            }
+            // Remove from the middle of the bin (near its head and near its tail), and update an element
+            heap.remove(elements[2]);
+            heap.remove(elements[5]);
+            heap.update(elements[3]);
+            Assert.assertEquals(-1, elements[2].getIndex(0));
+            if (lifo) {
+                assertPolls(heap, 3, 7, 6, 4, 1, 0);
+            } else {
+                assertPolls(heap, 0, 1, 4, 6, 7, 3);
+            }
+        }
+    }
+
+    @Test
+    public void testScaledRanks() {
+        // A weight of 1.5 is exact with a scale of 2
+        BucketHeap<Element> heap = new BucketHeap<>(4, 0, 2, true);
+        heap.add(new Element(0, 4.5, 1));
+        heap.add(new Element(1, 4, 1));
+        heap.add(new Element(2, 4.5, 1.5));
+        assertPolls(heap, 1, 2, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFractionalRankIsRejected() {
+        // The rank would be quantized with a scale of 1
+        BucketHeap<Element> heap = new BucketHeap<>(4, 0);
+        heap.add(new Element(0, 4.5, 1));
+    }
+}
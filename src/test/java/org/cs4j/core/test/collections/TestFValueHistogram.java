@@ -0,0 +1,107 @@
+package org.cs4j.core.test.collections;
+
+import junit.framework.Assert;
+import org.cs4j.core.collections.FValueHistogram;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Tests the counts and the minimum of the f-value histogram
+ */
+public class TestFValueHistogram {
+
+    @Test
+    public void testAddRemove() {
+        FValueHistogram histogram = new FValueHistogram();
+        Assert.assertTrue(histogram.isEmpty());
+        Assert.assertEquals(Double.MAX_VALUE, histogram.min());
+
+        histogram.add(5);
+        histogram.add(3.5);
+        histogram.add(5);
+        histogram.add(7, 3);
+        Assert.assertEquals(2, histogram.count(5));
+        Assert.assertEquals(3, histogram.count(7));
+        Assert.assertEquals(0, histogram.count(4));
+        Assert.assertEquals(3, histogram.size());
+        Assert.assertEquals(3.5, histogram.min());
+
+        histogram.remove(5);
+        Assert.assertTrue(histogram.contains(5));
+        histogram.remove(5);
+        Assert.assertFalse(histogram.contains(5));
+        Assert.assertEquals(2, histogram.size());
+
+        histogram.clear();
+        Assert.assertTrue(histogram.isEmpty());
+        Assert.assertEquals(Double.MAX_VALUE, histogram.min());
+    }
+
+    @Test
+    public void testRemoveLastMinimum() {
+        FValueHistogram histogram = new FValueHistogram();
+        histogram.add(10);
+        histogram.add(10);
+        histogram.add(12);
+        histogram.add(15);
+        histogram.remove(10);
+        Assert.assertEquals(10.0, histogram.min());
+        // The last node with the minimal f leaves
+        histogram.remove(10);
+        Assert.assertFalse(histogram.contains(10));
+        Assert.assertEquals(12.0, histogram.min());
+        // The minimum is added again after it was removed
+        histogram.add(10);
+        Assert.assertEquals(10.0, histogram.min());
+        histogram.remove(10);
+        histogram.remove(12);
+        histogram.remove(15);
+        Assert.assertTrue(histogram.isEmpty());
+        Assert.assertEquals(Double.MAX_VALUE, histogram.min());
+    }
+
+    @Test
+    public void testZeroCountIsNoOp() {
+        FValueHistogram histogram = new FValueHistogram();
+        histogram.add(4, 0);
+        Assert.assertTrue(histogram.isEmpty());
+        Assert.assertEquals(0, histogram.size());
+        Assert.assertEquals("{}", histogram.toString());
+        Assert.assertEquals(Double.MAX_VALUE, histogram.min());
+
+        histogram.add(6);
+        histogram.add(2, 0);
+        Assert.assertFalse(histogram.contains(2));
+        Assert.assertEquals(6.0, histogram.min());
+    }
+
+    /**
+     * Random additions and removals (including enough distinct values to grow the table) against a sorted map
+     */
+    @Test
+    public void testLikeSortedMap() {
+        Random random = new Random(3);
+        FValueHistogram histogram = new FValueHistogram();
+        TreeMap<Double, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; ++i) {
+            double f = random.nextInt(300) / 2.0;
+            Integer count = expected.get(f);
+            if (count != null && random.nextBoolean()) {
+                histogram.remove(f);
+                if (count == 1) {
+                    expected.remove(f);
+                } else {
+                    expected.put(f, count - 1);
+                }
+            } else {
+                histogram.add(f);
+                expected.put(f, (count == null) ? 1 : count + 1);
+            }
+            Assert.assertEquals(expected.size(), histogram.size());
+            Assert.assertEquals(expected.isEmpty() ? Double.MAX_VALUE : expected.firstKey(), histogram.min());
+            Assert.assertEquals(expected.containsKey(f) ? (int) expected.get(f) : 0, histogram.count(f));
+        }
+    }
+}
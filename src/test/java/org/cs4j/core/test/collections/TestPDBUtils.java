@@ -0,0 +1,194 @@
+package org.cs4j.core.test.collections;
+
+import junit.framework.Assert;
+import org.cs4j.core.collections.ByteArrayPDB;
+import org.cs4j.core.collections.MappedPDB;
+import org.cs4j.core.collections.NibblePDB;
+import org.cs4j.core.collections.PDB;
+import org.cs4j.core.collections.PDBUtils;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Tests the file formats of the pattern databases
+ */
+public class TestPDBUtils {
+
+    /**
+     * @return Random distances (at most maxValue)
+     */
+    static byte[] randomValues(int count, int maxValue) {
+        Random random = new Random(1);
+        byte[] values = new byte[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = (byte) random.nextInt(maxValue + 1);
+        }
+        return values;
+    }
+
+    static void assertValues(byte[] expected, PDB pdb) {
+        Assert.assertEquals(expected.length, pdb.size());
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertEquals(expected[i], pdb.get(i));
+        }
+    }
+
+    @Test
+    public void testIndexedFile() throws IOException {
+        File file = File.createTempFile("test-pdb", ".indexed");
+        try {
+            byte[] values = randomValues(1000, 30);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            try {
+                // The records may be in any order
+                for (int i = values.length - 1; i >= 0; --i) {
+                    out.writeInt(i);
+                    out.writeByte(values[i]);
+                }
+            } finally {
+                out.close();
+            }
+            Assert.assertFalse(PDBUtils.isDenseFile(file.getPath()));
+            assertValues(values, new ByteArrayPDB(PDBUtils.readIndexedFile(file.getPath(), values.length)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testIndexedFileWithMissingRanks() throws IOException {
+        File file = File.createTempFile("test-pdb", ".indexed");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            try {
+                // Rank 1 is repeated, hence rank 2 is missing
+                int[] ranks = {0, 1, 1, 3};
+                for (int rank : ranks) {
+                    out.writeInt(rank);
+                    out.writeByte(rank + 5);
+                }
+            } finally {
+                out.close();
+            }
+            byte[] values = PDBUtils.readIndexedFile(file.getPath(), 4);
+            Assert.assertEquals(5, values[0]);
+            Assert.assertEquals(6, values[1]);
+            // A missing distance is 0 (which is admissible)
+            Assert.assertEquals(0, values[2]);
+            Assert.assertEquals(8, values[3]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testShortIndexedFile() throws IOException {
+        File file = File.createTempFile("test-pdb", ".indexed");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            try {
+                // Only 3 of the 6 ranks have records
+                int[] ranks = {4, 0, 2};
+                for (int rank : ranks) {
+                    out.writeInt(rank);
+                    out.writeByte(rank + 5);
+                }
+            } finally {
+                out.close();
+            }
+            byte[] values = PDBUtils.readIndexedFile(file.getPath(), 6);
+            Assert.assertEquals(6, values.length);
+            byte[] expected = {5, 0, 7, 0, 9, 0};
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertEquals(expected[i], values[i]);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedIndexedRecord() throws IOException {
+        File file = File.createTempFile("test-pdb", ".indexed");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            try {
+                out.writeInt(0);
+                out.writeByte(1);
+                // Half of a rank
+                out.writeShort(0);
+            } finally {
+                out.close();
+            }
+            PDBUtils.readIndexedFile(file.getPath(), 6);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDenseFiles() throws IOException {
+        File file = File.createTempFile("test-pdb", ".dense");
+        try {
+            // Distances which don't fit in nibbles
+            byte[] values = randomValues(1001, 40);
+            PDB pdb = PDBUtils.compact(values);
+            Assert.assertTrue(pdb instanceof ByteArrayPDB);
+            PDBUtils.writeDenseFile(pdb, file.getPath());
+            Assert.assertTrue(PDBUtils.isDenseFile(file.getPath()));
+            Assert.assertEquals(PDBUtils.HEADER_SIZE + values.length, file.length());
+            assertValues(values, PDBUtils.readDenseFile(file.getPath()));
+
+            // Distances which fit in nibbles (an odd number of entries)
+            values = randomValues(1001, NibblePDB.MAX_VALUE);
+            pdb = PDBUtils.compact(values);
+            Assert.assertTrue(pdb instanceof NibblePDB);
+            assertValues(values, pdb);
+            PDBUtils.writeDenseFile(pdb, file.getPath());
+            Assert.assertEquals(PDBUtils.HEADER_SIZE + (values.length + 1) / 2, file.length());
+            PDB read = PDBUtils.readDenseFile(file.getPath());
+            Assert.assertTrue(read instanceof NibblePDB);
+            assertValues(values, read);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMappedPDB() throws IOException {
+        File file = File.createTempFile("test-pdb", ".dense");
+        try {
+            for (int maxValue : new int[]{40, NibblePDB.MAX_VALUE}) {
+                byte[] values = randomValues(1001, maxValue);
+                PDBUtils.writeDenseFile(PDBUtils.compact(values), file.getPath());
+                MappedPDB pdb = new MappedPDB(file.getPath());
+                Assert.assertEquals(file.getPath(), pdb.getFileName());
+                assertValues(values, pdb);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMappedPDBOfIndexedFile() throws IOException {
+        File file = File.createTempFile("test-pdb", ".indexed");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            try {
+                out.writeInt(0);
+                out.writeByte(1);
+            } finally {
+                out.close();
+            }
+            new MappedPDB(file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+}
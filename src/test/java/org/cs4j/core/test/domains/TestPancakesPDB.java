@@ -0,0 +1,123 @@
+package org.cs4j.core.test.domains;
+
+import junit.framework.Assert;
+import org.cs4j.core.SearchAlgorithm;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.SearchResult;
+import org.cs4j.core.algorithms.WAStar;
+import org.cs4j.core.domains.PancakesPDB;
+import org.cs4j.core.generators.PancakesPDBGenerator;
+import org.cs4j.core.test.algorithms.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Tests the ranking, the generation and the file format of the Pancakes PDB
+ */
+public class TestPancakesPDB {
+
+    /**
+     * @return A permutation of the pancakes in which the pattern pancakes are at the given positions
+     */
+    private static int[] toCakes(int numCakes, int patternStart, int[] positions) {
+        int[] cakes = new int[numCakes];
+        boolean[] taken = new boolean[numCakes];
+        for (int p = patternStart; p < numCakes; ++p) {
+            cakes[positions[p]] = p;
+            taken[positions[p]] = true;
+        }
+        // The "don't care" pancakes fill the rest of the positions
+        int dontCare = 0;
+        for (int i = 0; i < numCakes; ++i) {
+            if (!taken[i]) {
+                cakes[i] = dontCare++;
+            }
+        }
+        return cakes;
+    }
+
+    @Test
+    public void testRankUnrank() {
+        int n = 8;
+        int patternStart = 4;
+        long statesCount = PancakesPDB.getAbstractStatesCount(n, patternStart);
+        Assert.assertEquals(8 * 7 * 6 * 5, statesCount);
+        int[] positions = new int[n];
+        int[] temp = new int[n];
+        for (long rank = 0; rank < statesCount; ++rank) {
+            PancakesPDB.unrank(n, patternStart, rank, positions, temp);
+            Assert.assertEquals(rank, PancakesPDB.rank(n, patternStart, positions, temp));
+        }
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        int n = 8;
+        int patternStart = 4;
+        PancakesPDB pdb = new PancakesPDBGenerator(n, patternStart, 2).createPDB();
+        File file = File.createTempFile("test-pancakes", ".pdb");
+        try {
+            pdb.write(file.getPath());
+            PancakesPDB read = PancakesPDB.read(file.getPath());
+            Assert.assertEquals(n, read.numCakes);
+            Assert.assertEquals(patternStart, read.patternStart);
+            Assert.assertEquals(pdb.statesCount, read.statesCount);
+
+            int[] positions = new int[n];
+            int[] temp = new int[n];
+            int maxDistance = 0;
+            for (long rank = 0; rank < pdb.statesCount; ++rank) {
+                PancakesPDB.unrank(n, patternStart, rank, positions, temp);
+                int[] cakes = toCakes(n, patternStart, positions);
+                int distance = pdb.getDistance(cakes, new int[n], new int[n]);
+                Assert.assertEquals(distance, read.getDistance(cakes, new int[n], new int[n]));
+                maxDistance = Math.max(maxDistance, distance);
+            }
+            // The abstract goal
+            int[] goal = new int[n];
+            for (int i = 0; i < n; ++i) {
+                goal[i] = i;
+            }
+            Assert.assertEquals(0, read.getDistance(goal, new int[n], new int[n]));
+            Assert.assertTrue(maxDistance > 0 && maxDistance <= PancakesPDB.MAX_DISTANCE);
+
+            // A truncated file is rejected
+            RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+            try {
+                truncated.setLength(truncated.length() - 1);
+            } finally {
+                truncated.close();
+            }
+            try {
+                PancakesPDB.read(file.getPath());
+                Assert.fail("A truncated PDB was read");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testPDBHeuristicIsAdmissible() throws IOException {
+        File file = File.createTempFile("test-pancakes", ".pdb");
+        try {
+            new PancakesPDBGenerator(12, 6, 2).createPDB().write(file.getPath());
+            SearchDomain domain = TestUtils.createPancakePuzzle(12, "1");
+            SearchAlgorithm astar = new WAStar();
+            SearchResult expected = astar.search(domain);
+
+            domain = TestUtils.createPancakePuzzle(12, "1");
+            domain.setAdditionalParameter("pdb", file.getPath());
+            SearchResult result = new WAStar().search(domain);
+            Assert.assertTrue(result.hasSolution());
+            Assert.assertEquals(expected.getBestSolution().getCost(), result.getBestSolution().getCost(), 1e-9);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.cs4j.core.test.domains;
+
+import junit.framework.Assert;
+import org.cs4j.core.SearchResult;
+import org.cs4j.core.algorithms.WAStar;
+import org.cs4j.core.domains.GridPathFinding;
+import org.cs4j.core.generators.PivotsDBGenerator;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Tests the distances of the pivots files (computed by breadth-first searches over the grid) against the distances
+ * that an optimal search of GridPathFinding finds between every location and every pivot
+ */
+public class TestPivotsDBGenerator {
+
+    private static final double NO_SOLUTION = -2.0d;
+
+    /**
+     * @return A random grid, whose first location is blocked or free
+     */
+    private static char[] createGrid(int width, int height, long seed, boolean firstBlocked) {
+        Random random = new Random(seed);
+        char[] grid = new char[width * height];
+        for (int i = 0; i < grid.length; ++i) {
+            grid[i] = (random.nextDouble() < 0.25) ? '@' : '.';
+        }
+        grid[0] = firstBlocked ? '@' : '.';
+        return grid;
+    }
+
+    /**
+     * The minimum cost of reaching the goal from the start, by an optimal search (as the pivots were computed
+     * before they were computed by breadth-first searches)
+     */
+    private static double searchDistance(int width, int height, char[] grid, int start, int goal) {
+        if (start == goal) {
+            return 0.0d;
+        }
+        SearchResult result = new WAStar().search(new GridPathFinding(width, height, grid, start, goal));
+        return result.hasSolution() ? result.getSolutions().get(0).getCost() : TestPivotsDBGenerator.NO_SOLUTION;
+    }
+
+    private static void assertPivotsFile(int width, int height, char[] grid, int[] pivots, File file)
+            throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            Assert.assertEquals(pivots.length, input.readInt());
+            for (int pivot : pivots) {
+                Assert.assertEquals(pivot, input.readInt());
+            }
+            for (int pivot : pivots) {
+                for (int i = 0; i < grid.length; ++i) {
+                    Assert.assertEquals("From " + i + " to " + pivot,
+                            TestPivotsDBGenerator.searchDistance(width, height, grid, i, pivot), input.readDouble());
+                }
+            }
+            Assert.assertEquals(-1, input.read());
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void testDistancesLikeSearch() throws IOException {
+        int width = 11;
+        int height = 7;
+        File file = File.createTempFile("test-pivots", ".pdb");
+        try {
+            for (int seed = 0; seed < 4; ++seed) {
+                char[] grid = TestPivotsDBGenerator.createGrid(width, height, seed, seed % 2 == 0);
+                // The pivots are searched in parallel
+                int[] pivots = new PivotsDBGenerator(2).computeAndStorePivots(width, height, grid, 3,
+                        file.getPath());
+                TestPivotsDBGenerator.assertPivotsFile(width, height, grid, pivots, file);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.cs4j.core.test.domains;
+
+import junit.framework.Assert;
+import org.cs4j.core.SearchDomain;
+import org.cs4j.core.collections.PackedElement;
+import org.cs4j.core.test.algorithms.TestUtils;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the packing of the Vacuum Robot states (the dirty locations are packed in reverse order) and the cache of the
+ * greedy d values
+ */
+public class TestVacuumRobot {
+
+    /**
+     * @return The states of a random walk from the initial state (which may clean some of the dirty locations)
+     */
+    private static List<SearchDomain.State> randomWalk(SearchDomain domain, int length, long seed) {
+        Random random = new Random(seed);
+        List<SearchDomain.State> states = new ArrayList<>();
+        SearchDomain.State state = domain.initialState();
+        states.add(state);
+        for (int i = 0; i < length; ++i) {
+            int operators = domain.getNumOperators(state);
+            if (operators == 0) {
+                break;
+            }
+            state = domain.applyOperator(state, domain.getOperator(state, random.nextInt(operators)));
+            states.add(state);
+        }
+        return states;
+    }
+
+    private static void assertRoundTrip(SearchDomain domain) {
+        for (SearchDomain.State state : TestVacuumRobot.randomWalk(domain, 2000, 1)) {
+            PackedElement packed = domain.pack(state);
+            SearchDomain.State unpacked = domain.unpack(packed);
+            Assert.assertEquals(state, unpacked);
+            Assert.assertEquals(packed, domain.pack(unpacked));
+            Assert.assertEquals(state.getH(), unpacked.getH());
+            Assert.assertEquals(state.getD(), unpacked.getD());
+        }
+    }
+
+    @Test
+    public void testPackUnpackRoundTrip() throws FileNotFoundException {
+        TestVacuumRobot.assertRoundTrip(TestUtils.createVacuumRobot(5, "1"));
+        TestVacuumRobot.assertRoundTrip(TestUtils.createVacuumRobot(10, "1"));
+        // Fewer dirty locations (hence fewer packed bits)
+        SearchDomain shrunk = TestUtils.createVacuumRobot(10, "1");
+        shrunk.setAdditionalParameter("shrinkTo", "3");
+        TestVacuumRobot.assertRoundTrip(shrunk);
+    }
+
+    /**
+     * The heuristic values of the states with the greedy d cache are the same as without the cache
+     */
+    private static void assertSameAsUncached(SearchDomain cached, SearchDomain uncached) {
+        // The walk visits some states several times, hence the cached values are used
+        List<SearchDomain.State> states = TestVacuumRobot.randomWalk(cached, 5000, 2);
+        for (SearchDomain.State state : states) {
+            SearchDomain.State expected = uncached.unpack(uncached.pack(state));
+            SearchDomain.State actual = cached.unpack(cached.pack(state));
+            Assert.assertEquals(expected.getH(), actual.getH());
+            Assert.assertEquals(expected.getD(), actual.getD());
+        }
+    }
+
+    @Test
+    public void testGreedyDCache() throws FileNotFoundException {
+        SearchDomain uncached = TestUtils.createVacuumRobot(10, "2");
+        uncached.setAdditionalParameter("greedy-d-cache-size", "0");
+        // A tiny cache, which has many collisions
+        SearchDomain cached = TestUtils.createVacuumRobot(10, "2");
+        cached.setAdditionalParameter("greedy-d-cache-size", "4");
+        TestVacuumRobot.assertSameAsUncached(cached, uncached);
+        TestVacuumRobot.assertSameAsUncached(TestUtils.createVacuumRobot(10, "2"), uncached);
+
+        // The cache is rebuilt for the remaining dirty locations (the domain is shrunk before its initial state is
+        // created, hence the cache is filled by unpacking the states of another domain of the same instance)
+        uncached = TestUtils.createVacuumRobot(10, "2");
+        uncached.setAdditionalParameter("greedy-d-cache-size", "0");
+        uncached.setAdditionalParameter("shrinkTo", "4");
+        cached = TestUtils.createVacuumRobot(10, "2");
+        cached.setAdditionalParameter("greedy-d-cache-size", "4");
+        SearchDomain unshrunk = TestUtils.createVacuumRobot(10, "2");
+        for (SearchDomain.State state : TestVacuumRobot.randomWalk(unshrunk, 100, 3)) {
+            cached.unpack(unshrunk.pack(state));
+        }
+        cached.setAdditionalParameter("shrinkTo", "4");
+        TestVacuumRobot.assertSameAsUncached(cached, uncached);
+    }
+}